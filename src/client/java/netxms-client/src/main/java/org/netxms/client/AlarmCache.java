@@ -0,0 +1,368 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.netxms.client.constants.Severity;
+import org.netxms.client.events.Alarm;
+
+/**
+ * Client-side cache of active alarms. Cache is seeded by full alarm list download and then kept current from alarm change
+ * notifications. Readers do not block; updates are serialized by writer lock.
+ * <p>
+ * Cache maintains indexes by source object, alarm state and current severity. Indexes are only used to select candidate
+ * alarms, so queries always check actual alarm attributes as well.
+ * <p>
+ * Cache is inactive until first synchronization starts, so sessions that never use it do not accumulate alarms from
+ * notifications. Updates received while synchronization is in progress take precedence over downloaded alarm list.
+ * <p>
+ * Cached alarm objects are never modified after they are put into cache; any change replaces cached object.
+ */
+final class AlarmCache
+{
+   private final ConcurrentHashMap<Long, Alarm> alarms = new ConcurrentHashMap<Long, Alarm>(1024);
+   private final ConcurrentHashMap<Long, ConcurrentHashMap<Long, Alarm>> sourceIndex = new ConcurrentHashMap<Long, ConcurrentHashMap<Long, Alarm>>();
+   private final ConcurrentHashMap<Long, Alarm>[] stateIndex = createBuckets(4);
+   private final ConcurrentHashMap<Long, Alarm>[] severityIndex = createBuckets(Severity.values().length);
+   private final Object writeLock = new Object();
+   private boolean active = false;
+   private Set<Long> modifiedDuringSync = null;
+
+   /**
+    * Create array of index buckets.
+    *
+    * @param count number of buckets
+    * @return array of empty buckets
+    */
+   @SuppressWarnings("unchecked")
+   private static ConcurrentHashMap<Long, Alarm>[] createBuckets(int count)
+   {
+      ConcurrentHashMap<Long, Alarm>[] buckets = new ConcurrentHashMap[count];
+      for(int i = 0; i < count; i++)
+         buckets[i] = new ConcurrentHashMap<Long, Alarm>();
+      return buckets;
+   }
+
+   /**
+    * Add alarm to or remove it from indexes.
+    *
+    * @param alarm alarm to process
+    * @param add true to add alarm to indexes, false to remove
+    */
+   private void updateIndexes(Alarm alarm, boolean add)
+   {
+      final Long id = alarm.getId();
+      final Map<Long, Alarm> stateBucket = stateIndex[alarm.getState() & 0x03];
+      final Map<Long, Alarm> severityBucket = severityIndex[alarm.getCurrentSeverity().ordinal()];
+      if (add)
+      {
+         sourceIndex.computeIfAbsent(alarm.getSourceObjectId(), (k) -> new ConcurrentHashMap<Long, Alarm>(4)).put(id, alarm);
+         stateBucket.put(id, alarm);
+         severityBucket.put(id, alarm);
+      }
+      else
+      {
+         ConcurrentHashMap<Long, Alarm> set = sourceIndex.get(alarm.getSourceObjectId());
+         if (set != null)
+         {
+            set.remove(id, alarm);
+            if (set.isEmpty())
+               sourceIndex.remove(alarm.getSourceObjectId(), set);
+         }
+         stateBucket.remove(id, alarm);
+         severityBucket.remove(id, alarm);
+      }
+   }
+
+   /**
+    * Add or replace alarm without checking cache state. Caller must hold writer lock.
+    *
+    * @param alarm alarm to add
+    */
+   private void putInternal(Alarm alarm)
+   {
+      final Alarm prev = alarms.put(alarm.getId(), alarm);
+      if (prev != null)
+         updateIndexes(prev, false);
+      updateIndexes(alarm, true);
+   }
+
+   /**
+    * Remove alarm without checking cache state. Caller must hold writer lock.
+    *
+    * @param id alarm ID
+    */
+   private void removeInternal(long id)
+   {
+      final Alarm prev = alarms.remove(id);
+      if (prev != null)
+         updateIndexes(prev, false);
+   }
+
+   /**
+    * Start synchronization. Cache is cleared and becomes active.
+    */
+   void beginSync()
+   {
+      synchronized(writeLock)
+      {
+         clearInternal();
+         active = true;
+         modifiedDuringSync = new HashSet<Long>();
+      }
+   }
+
+   /**
+    * Complete synchronization with alarm list downloaded from server. Alarms changed or deleted by notifications received
+    * after synchronization start are not overwritten.
+    *
+    * @param downloaded alarms downloaded from server
+    */
+   void completeSync(Collection<Alarm> downloaded)
+   {
+      synchronized(writeLock)
+      {
+         if (!active)
+            return;
+         for(Alarm a : downloaded)
+         {
+            if ((modifiedDuringSync == null) || !modifiedDuringSync.contains(a.getId()))
+               putInternal(a);
+         }
+         modifiedDuringSync = null;
+      }
+   }
+
+   /**
+    * Process alarm update received from server (new or changed alarm).
+    *
+    * @param alarm updated alarm
+    */
+   void update(Alarm alarm)
+   {
+      synchronized(writeLock)
+      {
+         if (!active)
+            return;
+         if (modifiedDuringSync != null)
+            modifiedDuringSync.add(alarm.getId());
+         putInternal(alarm);
+      }
+   }
+
+   /**
+    * Process alarm removal (alarm terminated or deleted).
+    *
+    * @param id alarm ID
+    */
+   void remove(long id)
+   {
+      synchronized(writeLock)
+      {
+         if (!active)
+            return;
+         if (modifiedDuringSync != null)
+            modifiedDuringSync.add(id);
+         removeInternal(id);
+      }
+   }
+
+   /**
+    * Process bulk alarm resolve notification.
+    *
+    * @param ids IDs of resolved alarms
+    * @param userId ID of user that resolved alarms
+    * @param changeTime time of change
+    */
+   void setResolved(Collection<Long> ids, int userId, Date changeTime)
+   {
+      synchronized(writeLock)
+      {
+         if (!active)
+            return;
+         for(Long id : ids)
+         {
+            if (modifiedDuringSync != null)
+               modifiedDuringSync.add(id);
+            Alarm alarm = alarms.get(id);
+            if (alarm != null)
+            {
+               // Cached alarm instances can be held by readers, so resolved alarm replaces cached one
+               Alarm resolved = new Alarm(alarm);
+               resolved.setResolved(userId, changeTime);
+               putInternal(resolved);
+            }
+         }
+      }
+   }
+
+   /**
+    * Process bulk alarm termination notification.
+    *
+    * @param ids IDs of terminated alarms
+    */
+   void remove(Collection<Long> ids)
+   {
+      synchronized(writeLock)
+      {
+         if (!active)
+            return;
+         for(Long id : ids)
+         {
+            if (modifiedDuringSync != null)
+               modifiedDuringSync.add(id);
+            removeInternal(id);
+         }
+      }
+   }
+
+   /**
+    * Get alarm by ID.
+    *
+    * @param id alarm ID
+    * @return alarm or null
+    */
+   Alarm get(long id)
+   {
+      return alarms.get(id);
+   }
+
+   /**
+    * Get all alarms.
+    *
+    * @return list of all cached alarms
+    */
+   List<Alarm> getAll()
+   {
+      return new ArrayList<Alarm>(alarms.values());
+   }
+
+   /**
+    * Find alarms matching given criteria. Candidate set is selected using most selective available index.
+    *
+    * @param sources set of source object IDs (null to match any source)
+    * @param stateMask mask of state bits (Alarm.STATE_BIT_xxx) to match (0 to match any state)
+    * @param severityMask mask of severities (bit 1 &lt;&lt; severity value) to match (0 to match any severity)
+    * @return list of matching alarms
+    */
+   List<Alarm> find(Set<Long> sources, int stateMask, int severityMask)
+   {
+      final List<Alarm> result = new ArrayList<Alarm>();
+      if (sources != null)
+      {
+         for(Long id : sources)
+         {
+            Map<Long, Alarm> set = sourceIndex.get(id);
+            if (set != null)
+               filter(set.values(), stateMask, severityMask, result);
+         }
+         return result;
+      }
+
+      int stateCandidates = 0;
+      int severityCandidates = 0;
+      for(int i = 0; i < stateIndex.length; i++)
+         if ((stateMask & (1 << i)) != 0)
+            stateCandidates += stateIndex[i].size();
+      for(Severity s : Severity.values())
+         if ((severityMask & (1 << s.getValue())) != 0)
+            severityCandidates += severityIndex[s.ordinal()].size();
+
+      if ((stateMask != 0) && ((severityMask == 0) || (stateCandidates <= severityCandidates)))
+      {
+         for(int i = 0; i < stateIndex.length; i++)
+            if ((stateMask & (1 << i)) != 0)
+               filter(stateIndex[i].values(), stateMask, severityMask, result);
+      }
+      else if (severityMask != 0)
+      {
+         for(Severity s : Severity.values())
+            if ((severityMask & (1 << s.getValue())) != 0)
+               filter(severityIndex[s.ordinal()].values(), stateMask, severityMask, result);
+      }
+      else
+      {
+         result.addAll(alarms.values());
+      }
+      return result;
+   }
+
+   /**
+    * Add alarms matching given criteria to result list.
+    *
+    * @param candidates candidate alarms
+    * @param stateMask mask of state bits to match (0 to match any state)
+    * @param severityMask mask of severities to match (0 to match any severity)
+    * @param result result list
+    */
+   private static void filter(Collection<Alarm> candidates, int stateMask, int severityMask, List<Alarm> result)
+   {
+      for(Alarm a : candidates)
+      {
+         if ((stateMask != 0) && ((stateMask & (1 << (a.getState() & 0x03))) == 0))
+            continue;
+         if ((severityMask != 0) && ((severityMask & (1 << a.getCurrentSeverity().getValue())) == 0))
+            continue;
+         result.add(a);
+      }
+   }
+
+   /**
+    * Get number of cached alarms.
+    *
+    * @return number of cached alarms
+    */
+   int size()
+   {
+      return alarms.size();
+   }
+
+   /**
+    * Remove all alarms from cache and make it inactive.
+    */
+   void reset()
+   {
+      synchronized(writeLock)
+      {
+         clearInternal();
+         active = false;
+         modifiedDuringSync = null;
+      }
+   }
+
+   /**
+    * Remove all alarms and index entries. Caller must hold writer lock.
+    */
+   private void clearInternal()
+   {
+      alarms.clear();
+      sourceIndex.clear();
+      for(Map<Long, Alarm> m : stateIndex)
+         m.clear();
+      for(Map<Long, Alarm> m : severityIndex)
+         m.clear();
+   }
+}
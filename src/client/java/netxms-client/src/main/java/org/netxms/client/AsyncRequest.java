@@ -0,0 +1,148 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+
+/**
+ * Outstanding asynchronous request. Responses are correlated with request by message ID on receiver thread. Request can expect
+ * CMD_REQUEST_COMPLETED message, sequence of response messages with given code, or both (request completion message first).
+ */
+final class AsyncRequest
+{
+   private final long id;
+   private final boolean expectRCC;
+   private final int responseCode;
+   private final Predicate<NXCPMessage> endOfSequence;
+   private final int timeout;
+   private final CompletableFuture<List<NXCPMessage>> future = new CompletableFuture<List<NXCPMessage>>();
+   private final List<NXCPMessage> messages = new ArrayList<NXCPMessage>(1);
+   private boolean rccReceived = false;
+   private volatile long lastMessageTimestamp = System.currentTimeMillis();
+
+   /**
+    * Create new asynchronous request.
+    *
+    * @param id request message ID
+    * @param expectRCC true if CMD_REQUEST_COMPLETED message is expected
+    * @param responseCode code of response messages or 0 if only CMD_REQUEST_COMPLETED message is expected
+    * @param endOfSequence predicate for detecting last message in response sequence (null if single response message is expected)
+    * @param timeout maximum time between response messages in milliseconds
+    */
+   AsyncRequest(long id, boolean expectRCC, int responseCode, Predicate<NXCPMessage> endOfSequence, int timeout)
+   {
+      this.id = id;
+      this.expectRCC = expectRCC;
+      this.responseCode = responseCode;
+      this.endOfSequence = endOfSequence;
+      this.timeout = timeout;
+   }
+
+   /**
+    * Process message with matching ID. Completion message is added to result list only if no other response messages are expected.
+    *
+    * @param msg message to process
+    * @return true if message was consumed
+    */
+   synchronized boolean processMessage(NXCPMessage msg)
+   {
+      if (future.isDone())
+         return false;
+
+      if (expectRCC && !rccReceived)
+      {
+         if (msg.getMessageCode() != NXCPCodes.CMD_REQUEST_COMPLETED)
+            return false;
+         lastMessageTimestamp = System.currentTimeMillis();
+         NXCException e = NXCSession.createExceptionFromRCC(msg);
+         if (e != null)
+         {
+            future.completeExceptionally(e);
+            return true;
+         }
+         rccReceived = true;
+         if (responseCode == 0)
+         {
+            messages.add(msg);
+            future.complete(messages);
+         }
+         return true;
+      }
+
+      if (msg.getMessageCode() != responseCode)
+         return false;
+      lastMessageTimestamp = System.currentTimeMillis();
+      messages.add(msg);
+      if ((endOfSequence == null) || endOfSequence.test(msg))
+         future.complete(messages);
+      return true;
+   }
+
+   /**
+    * Fail request with given exception.
+    *
+    * @param e exception
+    */
+   void fail(Throwable e)
+   {
+      future.completeExceptionally(e);
+   }
+
+   /**
+    * Check if request is timed out.
+    *
+    * @param now current time
+    * @return true if request is timed out
+    */
+   boolean isTimedOut(long now)
+   {
+      return now - lastMessageTimestamp > timeout;
+   }
+
+   /**
+    * Check if request is completed (normally or exceptionally).
+    *
+    * @return true if request is completed
+    */
+   boolean isDone()
+   {
+      return future.isDone();
+   }
+
+   /**
+    * @return request message ID
+    */
+   long getId()
+   {
+      return id;
+   }
+
+   /**
+    * @return future for list of response messages
+    */
+   CompletableFuture<List<NXCPMessage>> getFuture()
+   {
+      return future;
+   }
+}
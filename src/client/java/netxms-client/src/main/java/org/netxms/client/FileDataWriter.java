@@ -0,0 +1,355 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous writer for received file data. Network receiver thread only queues incoming file chunks; decompression and
+ * writing to destination is done by writer threads, so slow disk or slow destination stream does not delay processing of
+ * other messages. Each transfer has its own queue, and chunks of a transfer are written in the order they were queued by
+ * at most one writer thread at a time, so slow destination of one transfer does not delay other transfers. If amount of data
+ * queued for single transfer would exceed transfer quota, queuing waits for that transfer's writes to catch up, but not longer
+ * than configured maximum wait time; if quota is still exceeded after that, the transfer is failed and all further data for it
+ * is discarded. This way short write stalls only slow down receiving, while stuck destination cannot block receiver
+ * indefinitely.
+ */
+final class FileDataWriter
+{
+   private static final Logger logger = LoggerFactory.getLogger(FileDataWriter.class);
+
+   private static final int DATA = 0;
+   private static final int END_OF_FILE = 1;
+   private static final int ABORT = 2;
+   private static final int CANCEL = 3;
+   private static final int OVERFLOW = 4;
+
+   private final Map<NXCReceivedFile, Transfer> transfers = new HashMap<NXCReceivedFile, Transfer>();
+   private final Listener listener;
+   private final long quota;
+   private final long maxWaitTime;
+   private long queuedBytes = 0;
+   private ExecutorService executor = null;
+
+   /**
+    * Queued operation
+    */
+   private static final class Task
+   {
+      final int operation;
+      final byte[] data;
+      final boolean compressed;
+
+      Task(int operation, byte[] data, boolean compressed)
+      {
+         this.operation = operation;
+         this.data = data;
+         this.compressed = compressed;
+      }
+   }
+
+   /**
+    * Queue of pending operations for single file transfer
+    */
+   private static final class Transfer
+   {
+      final NXCReceivedFile file;
+      final ArrayDeque<Task> tasks = new ArrayDeque<Task>();
+      long queuedBytes = 0;
+      boolean scheduled = false;
+
+      Transfer(NXCReceivedFile file)
+      {
+         this.file = file;
+      }
+   }
+
+   /**
+    * Listener for writer events. Methods are called from writer threads.
+    */
+   interface Listener
+   {
+      /**
+       * Called after data chunk was written.
+       *
+       * @param file received file
+       * @param bytes number of bytes written (after decompression)
+       */
+      void onDataWritten(NXCReceivedFile file, int bytes);
+
+      /**
+       * Called when file transfer is completed (successfully or not).
+       *
+       * @param file received file
+       */
+      void onTransferCompleted(NXCReceivedFile file);
+   }
+
+   /**
+    * Create new writer.
+    *
+    * @param quota maximum number of bytes waiting to be written for single transfer
+    * @param maxWaitTime maximum time (in milliseconds) to wait for transfer's writes to catch up when quota is exceeded
+    * @param listener writer event listener
+    */
+   FileDataWriter(long quota, long maxWaitTime, Listener listener)
+   {
+      this.quota = quota;
+      this.maxWaitTime = maxWaitTime;
+      this.listener = listener;
+   }
+
+   /**
+    * Start writer.
+    */
+   synchronized void start()
+   {
+      if (executor != null)
+         return;
+      executor = Executors.newCachedThreadPool((r) -> {
+         Thread t = new Thread(r, "Received File Writer");
+         t.setDaemon(true);
+         return t;
+      });
+      logger.debug("Received file writer started");
+   }
+
+   /**
+    * Stop writer after processing already queued operations.
+    */
+   synchronized void shutdown()
+   {
+      if (executor == null)
+         return;
+      executor.shutdown();
+      executor = null;
+      logger.debug("Received file writer stopped");
+   }
+
+   /**
+    * Queue data chunk for writing. If amount of data queued for this transfer would exceed transfer quota, this method waits
+    * until enough data is written, but not longer than maximum wait time. If quota is still exceeded after that, transfer is
+    * failed and queued data is discarded.
+    *
+    * @param file received file
+    * @param data data chunk
+    * @param compressed true if chunk is part of compressed stream
+    */
+   void submitData(NXCReceivedFile file, byte[] data, boolean compressed)
+   {
+      synchronized(transfers)
+      {
+         if (file.isWriteQueueOverflow())
+            return;
+
+         // Single chunk is always accepted if transfer queue is empty, even if it exceeds quota
+         Transfer t = transfers.computeIfAbsent(file, (f) -> new Transfer(f));
+         long deadline = System.currentTimeMillis() + maxWaitTime;
+         while((t.queuedBytes > 0) && (t.queuedBytes + data.length > quota))
+         {
+            long waitTime = deadline - System.currentTimeMillis();
+            if (waitTime <= 0)
+               break;
+            try
+            {
+               transfers.wait(waitTime);
+            }
+            catch(InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               break;
+            }
+            t = transfers.computeIfAbsent(file, (f) -> new Transfer(f)); // transfer entry is removed when its queue is empty
+         }
+
+         if ((t.queuedBytes > 0) && (t.queuedBytes + data.length > quota))
+         {
+            logger.warn("Write queue overflow for file transfer " + file.getId() + " (" + t.queuedBytes + " bytes queued)");
+            file.setWriteQueueOverflow();
+            Iterator<Task> it = t.tasks.iterator();
+            while(it.hasNext())
+            {
+               Task task = it.next();
+               if (task.operation == DATA)
+               {
+                  t.queuedBytes -= task.data.length;
+                  queuedBytes -= task.data.length;
+                  it.remove();
+               }
+            }
+            enqueue(t, new Task(OVERFLOW, null, false));
+            return;
+         }
+
+         t.queuedBytes += data.length;
+         queuedBytes += data.length;
+         enqueue(t, new Task(DATA, data, compressed));
+      }
+      file.touch();
+   }
+
+   /**
+    * Queue end of file marker. File will be closed after all previously queued data is written.
+    *
+    * @param file received file
+    */
+   void submitEndOfFile(NXCReceivedFile file)
+   {
+      submit(file, END_OF_FILE);
+   }
+
+   /**
+    * Queue transfer abort. Transfer will be aborted after all previously queued data is written.
+    *
+    * @param file received file
+    * @param cancelled true if transfer was cancelled by user
+    */
+   void submitAbort(NXCReceivedFile file, boolean cancelled)
+   {
+      submit(file, cancelled ? CANCEL : ABORT);
+   }
+
+   /**
+    * Queue control operation for given file.
+    *
+    * @param file received file
+    * @param operation operation code
+    */
+   private void submit(NXCReceivedFile file, int operation)
+   {
+      synchronized(transfers)
+      {
+         if (file.isWriteQueueOverflow())
+            return; // Transfer already failed
+         enqueue(transfers.computeIfAbsent(file, (f) -> new Transfer(f)), new Task(operation, null, false));
+      }
+   }
+
+   /**
+    * Add task to transfer queue and schedule transfer processing if needed. Caller must hold lock on transfer map.
+    *
+    * @param t transfer
+    * @param task task to add
+    */
+   private void enqueue(Transfer t, Task task)
+   {
+      t.tasks.add(task);
+      if (t.scheduled)
+         return;
+
+      ExecutorService e;
+      synchronized(this)
+      {
+         e = executor;
+      }
+      if (e == null)
+      {
+         logger.debug("Received file writer is not running, file transfer " + t.file.getId() + " data discarded");
+         queuedBytes -= t.queuedBytes;
+         transfers.remove(t.file);
+         return;
+      }
+      t.scheduled = true;
+      e.execute(() -> processTransfer(t));
+   }
+
+   /**
+    * Get number of bytes currently waiting to be written for all transfers.
+    *
+    * @return number of bytes waiting to be written
+    */
+   long getQueuedBytes()
+   {
+      synchronized(transfers)
+      {
+         return queuedBytes;
+      }
+   }
+
+   /**
+    * Process queued operations for given transfer until its queue is empty.
+    *
+    * @param t transfer
+    */
+   private void processTransfer(Transfer t)
+   {
+      while(true)
+      {
+         Task task;
+         synchronized(transfers)
+         {
+            task = t.tasks.poll();
+            if (task == null)
+            {
+               t.scheduled = false;
+               transfers.remove(t.file, t);
+               return;
+            }
+         }
+
+         try
+         {
+            switch(task.operation)
+            {
+               case DATA:
+                  int bytes = t.file.writeData(task.data, task.compressed);
+                  listener.onDataWritten(t.file, bytes);
+                  break;
+               case END_OF_FILE:
+                  t.file.close();
+                  listener.onTransferCompleted(t.file);
+                  break;
+               case ABORT:
+               case CANCEL:
+                  t.file.abortTransfer(task.operation == CANCEL);
+                  listener.onTransferCompleted(t.file);
+                  break;
+               case OVERFLOW:
+                  t.file.failTransfer(new IOException("Received data cannot be written fast enough (more than " + quota + " bytes waiting)"));
+                  listener.onTransferCompleted(t.file);
+                  break;
+            }
+         }
+         catch(Exception e)
+         {
+            logger.error("Unexpected exception in received file writer", e);
+         }
+         finally
+         {
+            if (task.operation == DATA)
+            {
+               synchronized(transfers)
+               {
+                  t.queuedBytes -= task.data.length;
+                  queuedBytes -= task.data.length;
+                  transfers.notifyAll();
+               }
+            }
+         }
+      }
+   }
+}
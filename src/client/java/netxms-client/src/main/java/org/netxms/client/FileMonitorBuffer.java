@@ -0,0 +1,132 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Bounded buffer for file monitor updates not yet taken by consumer. Received chunks are kept as is (without concatenation).
+ * When total size of buffered data exceeds buffer capacity oldest chunks are dropped and number of dropped characters is
+ * accounted, so consumer can be informed about the gap. Not thread safe - caller should provide synchronization.
+ */
+final class FileMonitorBuffer
+{
+   private final ArrayDeque<String> chunks = new ArrayDeque<String>();
+   private final int capacity;
+   private int size = 0;
+   private long discarded = 0;
+   private long totalDiscarded = 0;
+
+   /**
+    * Create new buffer.
+    *
+    * @param capacity buffer capacity in characters
+    */
+   FileMonitorBuffer(int capacity)
+   {
+      this.capacity = Math.max(capacity, 1);
+   }
+
+   /**
+    * Add received data to the buffer. Oldest data will be dropped if buffer capacity is exceeded.
+    *
+    * @param data received data
+    */
+   void append(String data)
+   {
+      if ((data == null) || data.isEmpty())
+         return;
+
+      if (data.length() >= capacity)
+      {
+         // New chunk alone fills entire buffer
+         discard(size + data.length() - capacity);
+         chunks.clear();
+         size = 0;
+         data = data.substring(data.length() - capacity);
+      }
+
+      chunks.addLast(data);
+      size += data.length();
+      while(size > capacity)
+      {
+         String s = chunks.removeFirst();
+         size -= s.length();
+         discard(s.length());
+      }
+   }
+
+   /**
+    * Account discarded data.
+    *
+    * @param count number of discarded characters
+    */
+   private void discard(long count)
+   {
+      discarded += count;
+      totalDiscarded += count;
+   }
+
+   /**
+    * Check if buffer has no pending data.
+    *
+    * @return true if buffer has no pending data
+    */
+   boolean isEmpty()
+   {
+      return chunks.isEmpty();
+   }
+
+   /**
+    * Get number of characters currently in the buffer.
+    *
+    * @return number of characters currently in the buffer
+    */
+   int getSize()
+   {
+      return size;
+   }
+
+   /**
+    * Get total number of characters discarded because of buffer overflow since buffer creation.
+    *
+    * @return total number of discarded characters
+    */
+   long getTotalDiscarded()
+   {
+      return totalDiscarded;
+   }
+
+   /**
+    * Move all pending chunks to given list (in order of arrival) and reset buffer.
+    *
+    * @param out list to add chunks to
+    * @return number of characters discarded since previous call (all discarded data precedes returned chunks)
+    */
+   long drainTo(List<String> out)
+   {
+      out.addAll(chunks);
+      chunks.clear();
+      size = 0;
+      long count = discarded;
+      discarded = 0;
+      return count;
+   }
+}
@@ -0,0 +1,40 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+/**
+ * Consumer for data received from file monitor (see {@link NXCSession#waitForFileUpdate(java.util.UUID, int, FileMonitorDataConsumer)}).
+ */
+public interface FileMonitorDataConsumer
+{
+   /**
+    * Called when some data was dropped because it was not taken from session's file monitor buffer in time. Always called
+    * before chunks that follow the gap.
+    *
+    * @param characters number of dropped characters
+    */
+   public void dataDiscarded(long characters);
+
+   /**
+    * Called for each received chunk of data, in order of arrival.
+    *
+    * @param data received data
+    */
+   public void dataReceived(String data);
+}
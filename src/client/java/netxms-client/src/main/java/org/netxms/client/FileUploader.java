@@ -0,0 +1,329 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+import org.netxms.client.constants.RCC;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.jcraft.jzlib.Deflater;
+import com.jcraft.jzlib.JZlib;
+
+/**
+ * Upload engine for sending data stream as sequence of CMD_FILE_DATA messages. Data is read (and compressed, if enabled) by
+ * separate reader thread into fixed set of reusable buffers, while calling thread sends already prepared chunks. Number of
+ * buffers (window size) limits how far reader can get ahead of sender. Compression is adaptive: after initial sample is
+ * compressed, compression is turned off for the rest of the stream if it does not reduce data size significantly.
+ */
+final class FileUploader
+{
+   private static final Logger logger = LoggerFactory.getLogger(FileUploader.class);
+
+   /**
+    * Maximum size of compressed chunk before compression (uncompressed length of compressed chunk is sent as 16 bit value)
+    */
+   static final int MAX_COMPRESSED_CHUNK_SIZE = 65535;
+
+   /**
+    * Amount of data to compress before deciding if compression should be used for the rest of the stream
+    */
+   static final int COMPRESSION_SAMPLE_SIZE = 262144;
+
+   /**
+    * Compression is turned off if compressed sample is larger than this percentage of original sample
+    */
+   static final int MIN_COMPRESSION_GAIN = 90;
+
+   /**
+    * Interface for sending messages
+    */
+   interface MessageSender
+   {
+      /**
+       * Send message.
+       *
+       * @param msg message to send
+       * @throws IOException if socket I/O error occurs
+       * @throws NXCException if operation fails
+       */
+      void sendMessage(NXCPMessage msg) throws IOException, NXCException;
+   }
+
+   /**
+    * Single chunk of data (reusable)
+    */
+   private static final class Chunk
+   {
+      final byte[] input;
+      final byte[] output;
+      byte[] data;
+      int length;
+      int sourceBytes;
+      boolean compressed;
+      boolean endOfFile;
+      Exception error;
+
+      Chunk(int size, int compressedSize)
+      {
+         input = new byte[size];
+         output = (compressedSize > 0) ? new byte[compressedSize] : null;
+      }
+   }
+
+   private final int chunkSize;
+   private final int windowSize;
+   private final int compressionLevel;
+   private long bytesSent = 0;
+   // Updated by reader thread and read by sending thread
+   private volatile long compressedChunks = 0;
+   private volatile boolean compressionDisabled = false;
+
+   /**
+    * Create new uploader.
+    *
+    * @param chunkSize maximum chunk size in bytes (compressed chunks are limited to {@value #MAX_COMPRESSED_CHUNK_SIZE} bytes)
+    * @param windowSize number of chunks that could be prepared ahead of sending
+    * @param compressionLevel compression level (1 to 9)
+    */
+   FileUploader(int chunkSize, int windowSize, int compressionLevel)
+   {
+      this.chunkSize = chunkSize;
+      this.windowSize = Math.max(windowSize, 1);
+      this.compressionLevel = compressionLevel;
+   }
+
+   /**
+    * Send data from given input stream. Last message sent will have "end of file" flag set. Caller is responsible for sending
+    * abort message to peer if this method throws an exception.
+    *
+    * @param requestId request ID
+    * @param inputStream data source
+    * @param listener progress listener (can be null)
+    * @param allowCompression true if stream compression is allowed
+    * @param sender message sender
+    * @throws IOException if socket or file I/O error occurs
+    * @throws NXCException if operation fails
+    */
+   void upload(final long requestId, final InputStream inputStream, final ProgressListener listener, boolean allowCompression,
+         MessageSender sender) throws IOException, NXCException
+   {
+      final BlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<Chunk>(windowSize);
+      final BlockingQueue<Chunk> readyChunks = new ArrayBlockingQueue<Chunk>(windowSize);
+      final Deflater compressor = allowCompression ? new Deflater(compressionLevel) : null;
+      // 4 bytes for chunk header plus space for sync flush marker
+      final int compressedBufferSize = allowCompression ? compressor.deflateBound(MAX_COMPRESSED_CHUNK_SIZE) + 16 : 0;
+      for(int i = 0; i < windowSize; i++)
+         freeChunks.add(new Chunk(chunkSize, compressedBufferSize));
+
+      final Reader reader = new Reader(inputStream, compressor, freeChunks, readyChunks);
+      final Thread readerThread = new Thread(reader, "File Upload Reader");
+      readerThread.setDaemon(true);
+      readerThread.start();
+
+      final NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_FILE_DATA, requestId);
+      msg.setBinaryMessage(true);
+      try
+      {
+         while(true)
+         {
+            Chunk chunk = readyChunks.take();
+            if (chunk.error != null)
+            {
+               if (chunk.error instanceof IOException)
+                  throw (IOException)chunk.error;
+               if (chunk.error instanceof NXCException)
+                  throw (NXCException)chunk.error;
+               throw new IOException(chunk.error);
+            }
+
+            msg.setStream(true, chunk.compressed);
+            msg.setEndOfFile(chunk.endOfFile);
+            msg.setBinaryData(chunk.data, chunk.length);
+            sender.sendMessage(msg);
+
+            bytesSent += chunk.sourceBytes;
+            if (listener != null)
+               listener.markProgress(bytesSent);
+
+            if (chunk.endOfFile)
+               break;
+            freeChunks.put(chunk);
+         }
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new NXCException(RCC.OPERATION_CANCELLED);
+      }
+      finally
+      {
+         reader.cancel();
+         readerThread.interrupt();
+         if (compressor != null)
+            compressor.deflateEnd();
+      }
+
+      if (compressionDisabled)
+         logger.debug("Stream compression for request " + requestId + " disabled after " + compressedChunks + " chunks");
+   }
+
+   /**
+    * Get number of source bytes sent by last upload.
+    *
+    * @return number of source bytes sent
+    */
+   long getBytesSent()
+   {
+      return bytesSent;
+   }
+
+   /**
+    * Check if compression was turned off during last upload because data was not compressible.
+    *
+    * @return true if compression was turned off
+    */
+   boolean isCompressionDisabled()
+   {
+      return compressionDisabled;
+   }
+
+   /**
+    * Reader - fills free chunks with data and passes them to sender.
+    */
+   private final class Reader implements Runnable
+   {
+      private final InputStream inputStream;
+      private final Deflater compressor;
+      private final BlockingQueue<Chunk> freeChunks;
+      private final BlockingQueue<Chunk> readyChunks;
+      private volatile boolean cancelled = false;
+      private long sampleInput = 0;
+      private long sampleOutput = 0;
+
+      Reader(InputStream inputStream, Deflater compressor, BlockingQueue<Chunk> freeChunks, BlockingQueue<Chunk> readyChunks)
+      {
+         this.inputStream = inputStream;
+         this.compressor = compressor;
+         this.freeChunks = freeChunks;
+         this.readyChunks = readyChunks;
+      }
+
+      /**
+       * Cancel reader
+       */
+      void cancel()
+      {
+         cancelled = true;
+      }
+
+      /**
+       * @see java.lang.Runnable#run()
+       */
+      @Override
+      public void run()
+      {
+         try
+         {
+            while(!cancelled)
+            {
+               Chunk chunk = freeChunks.poll(1, TimeUnit.SECONDS);
+               if (chunk == null)
+                  continue;
+               try
+               {
+                  fillChunk(chunk);
+               }
+               catch(Exception e)
+               {
+                  chunk.error = e;
+                  chunk.endOfFile = true;
+               }
+               readyChunks.put(chunk);
+               if (chunk.endOfFile)
+                  break;
+            }
+         }
+         catch(InterruptedException e)
+         {
+            // upload cancelled
+         }
+      }
+
+      /**
+       * Fill chunk with next portion of data.
+       *
+       * @param chunk chunk to fill
+       * @throws IOException on read error
+       * @throws NXCException on compression error
+       */
+      private void fillChunk(Chunk chunk) throws IOException, NXCException
+      {
+         final boolean compress = (compressor != null) && !compressionDisabled;
+         final int size = compress ? Math.min(chunkSize, MAX_COMPRESSED_CHUNK_SIZE) : chunkSize;
+
+         int bytesRead = 0;
+         while(bytesRead < size)
+         {
+            int rc = inputStream.read(chunk.input, bytesRead, size - bytesRead);
+            if (rc == -1)
+               break;
+            bytesRead += rc;
+         }
+         chunk.sourceBytes = bytesRead;
+         chunk.endOfFile = (bytesRead < size);
+         chunk.error = null;
+
+         if (compress && (bytesRead > 0))
+         {
+            compressor.setInput(chunk.input, 0, bytesRead, false);
+            compressor.setOutput(chunk.output, 4, chunk.output.length - 4);
+            if ((compressor.deflate(JZlib.Z_SYNC_FLUSH) != JZlib.Z_OK) || (compressor.getAvailOut() == 0))
+               throw new NXCException(RCC.IO_ERROR);
+            chunk.output[0] = 2;   // DEFLATE method
+            chunk.output[1] = 0;   // reserved
+            chunk.output[2] = (byte)((bytesRead >> 8) & 0xFF);   // uncompressed length, high bits
+            chunk.output[3] = (byte)(bytesRead & 0xFF);   // uncompressed length, low bits
+            chunk.data = chunk.output;
+            chunk.length = chunk.output.length - compressor.getAvailOut();
+            chunk.compressed = true;
+            compressedChunks++;
+
+            if (sampleInput < COMPRESSION_SAMPLE_SIZE)
+            {
+               sampleInput += bytesRead;
+               sampleOutput += chunk.length;
+               if ((sampleInput >= COMPRESSION_SAMPLE_SIZE) && (sampleOutput * 100 > sampleInput * MIN_COMPRESSION_GAIN))
+                  compressionDisabled = true;
+            }
+         }
+         else
+         {
+            chunk.data = chunk.input;
+            chunk.length = bytesRead;
+            chunk.compressed = compress; // empty final chunk keeps stream type
+         }
+      }
+   }
+}
@@ -30,13 +30,42 @@
    private boolean expired = false;
    private long lastMessageTimestamp = System.currentTimeMillis();
    private int messageWaitTimeout = 60000;
+   private Runnable completionCallback = null;
 
    /**
     * Set handler to complete state. This will signal all waiters and remove subscription. 
     */
    protected final void setComplete()
    {
-      latch.countDown();
+      Runnable callback;
+      synchronized(this)
+      {
+         if (latch.getCount() == 0)
+            return;
+         latch.countDown();
+         callback = completionCallback;
+      }
+      if (callback != null)
+         callback.run();
+   }
+
+   /**
+    * Set callback to be called when handler is completed (or expired). If handler is already completed, callback is called
+    * immediately.
+    *
+    * @param callback completion callback
+    */
+   public final void onCompletion(Runnable callback)
+   {
+      synchronized(this)
+      {
+         if (latch.getCount() != 0)
+         {
+            completionCallback = callback;
+            return;
+         }
+      }
+      callback.run();
    }
 
    /**
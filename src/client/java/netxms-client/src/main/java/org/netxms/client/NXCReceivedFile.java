@@ -1,6 +1,6 @@
 /**
  * NetXMS - open source network management system
- * Copyright (C) 2003-2020 Victor Kirhenshtein
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -21,13 +21,15 @@
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.jcraft.jzlib.Inflater;
 import com.jcraft.jzlib.JZlib;
 
 /**
- * Represents file received from server
+ * Represents file received from server. Received data is written either to temporary file (created on first write) or to
+ * output stream provided by caller. All write operations are performed by session's file data writer (by one thread at a time).
  */
 final class NXCReceivedFile
 {
@@ -40,36 +42,57 @@
    private static Logger logger = LoggerFactory.getLogger(NXCReceivedFile.class);
 
 	private long id;
-	private File file;
-	private FileOutputStream stream;
-	private int status;
-	private long timestamp;
+	private File file = null;
+	private OutputStream stream = null;
+	private boolean externalStream = false;
+	private volatile int status;
+	private volatile long timestamp;
 	private long size;
-	private Exception exception;
+	private volatile Exception exception;
+	private volatile boolean writeFailed = false;
+   private boolean writeQueueOverflow = false;
 	private Inflater decompressor = null;
 	
 	/**
-	 * Create new received file with given id
+	 * Create new received file with given id. Data will be written to temporary file.
+	 *
 	 * @param id ID
 	 */
 	protected NXCReceivedFile(final long id)
 	{
 		this.id = id;
-		try
-		{
-			file = File.createTempFile("nxc", "data");
-			file.deleteOnExit();
-			stream = new FileOutputStream(file);
-			timestamp = System.currentTimeMillis();
-			status = OPEN;
-			size = 0;
-		}
-		catch(IOException e)
-		{
-			exception = e;
-			status = FAILED;
-		}
+		timestamp = System.currentTimeMillis();
+		status = OPEN;
+		size = 0;
 	}
+
+   /**
+    * Create new received file with given id. Data will be written to given output stream. Stream is not closed when transfer
+    * completes.
+    *
+    * @param id ID
+    * @param stream destination stream
+    */
+   protected NXCReceivedFile(final long id, OutputStream stream)
+   {
+      this(id);
+      this.stream = stream;
+      this.externalStream = true;
+   }
+
+   /**
+    * Create temporary file if data is not written to external stream and file is not created yet.
+    *
+    * @throws IOException if temporary file cannot be created
+    */
+   private void open() throws IOException
+   {
+      if (stream != null)
+         return;
+      file = File.createTempFile("nxc", "data");
+      file.deleteOnExit();
+      stream = new FileOutputStream(file);
+   }
 	
 	/**
 	 * Write data to file
@@ -85,6 +108,7 @@ protected int writeData(final byte[] data, boolean compressedStream)
 		{
 			try
 			{
+			   open();
 			   if (compressedStream)
 			   {
 			      if (data[0] != 2)
@@ -93,7 +117,7 @@ protected int writeData(final byte[] data, boolean compressedStream)
 			      if (decompressor == null)
 			      {
 			         decompressor = new Inflater();
-                  logger.debug("Decompressor created for file " + file.getAbsolutePath());
+                  logger.debug("Decompressor created for file transfer " + id);
 			      }
 			      decompressor.setInput(data, 4, data.length - 4, false);
 
@@ -118,15 +142,10 @@ protected int writeData(final byte[] data, boolean compressedStream)
 			catch(Exception e)
 			{
             logger.error("Exception during file processing", e);
-				try
-				{
-					stream.close();
-				}
-				catch(IOException e1)
-				{
-				}
-				status = FAILED;
+				closeStream();
 				exception = e;
+				writeFailed = true;
+				status = FAILED;
 			}
 			timestamp = System.currentTimeMillis();
 		}
@@ -142,13 +161,18 @@ protected void close()
 		{
 			try
 			{
-				stream.close();
+			   open(); // create empty file if no data was received
+			   if (externalStream)
+			      stream.flush();
+			   else
+			      stream.close();
 				status = RECEIVED;
 			}
 			catch(IOException e)
 			{
-				status = FAILED;
 				exception = e;
+				writeFailed = true;
+				status = FAILED;
 			}
 			timestamp = System.currentTimeMillis();
 		}
@@ -160,21 +184,78 @@ protected void close()
 	protected void abortTransfer(boolean isCancelled)
 	{
 		if (status == OPEN)
-		{
-			try
-			{
-				stream.close();
-				status = RECEIVED;
-			}
-			catch(IOException e)
-			{
-			}
-		}
+         closeStream();
 		timestamp = System.currentTimeMillis();
-      status = isCancelled ? CANCELLED : FAILED;
 		exception = new IOException();
+      status = isCancelled ? CANCELLED : FAILED;
 	}
 
+   /**
+    * Fail transfer because of local error.
+    *
+    * @param e exception describing failure
+    */
+   protected void failTransfer(Exception e)
+   {
+      if (status == OPEN)
+         closeStream();
+      timestamp = System.currentTimeMillis();
+      exception = e;
+      writeFailed = true;
+      status = FAILED;
+   }
+
+   /**
+    * Check if write queue for this file overflowed (used by file data writer only).
+    *
+    * @return true if write queue for this file overflowed
+    */
+   protected boolean isWriteQueueOverflow()
+   {
+      return writeQueueOverflow;
+   }
+
+   /**
+    * Mark write queue for this file as overflowed (used by file data writer only).
+    */
+   protected void setWriteQueueOverflow()
+   {
+      writeQueueOverflow = true;
+   }
+
+   /**
+    * Close stream after failure. External stream is left open.
+    */
+   private void closeStream()
+   {
+      if ((stream == null) || externalStream)
+         return;
+      try
+      {
+         stream.close();
+      }
+      catch(IOException e)
+      {
+      }
+   }
+
+   /**
+    * Update activity timestamp (called when new data for this file is queued for writing).
+    */
+   protected void touch()
+   {
+      timestamp = System.currentTimeMillis();
+   }
+
+   /**
+    * Discard received file - delete temporary file if it was created.
+    */
+   protected void discard()
+   {
+      if (file != null)
+         file.delete();
+   }
+
 	/**
 	 * @return the id
 	 */
@@ -184,7 +265,7 @@ public long getId()
 	}
 
 	/**
-	 * @return the file
+	 * @return the file (null if data was written to external stream)
 	 */
 	public File getFile()
 	{
@@ -215,6 +296,16 @@ public long getSize()
 		return size;
 	}
 
+   /**
+    * Check if transfer failed because of local write error (as opposed to transfer abort by server).
+    *
+    * @return true if transfer failed because of local write error
+    */
+   public boolean isWriteFailed()
+   {
+      return writeFailed;
+   }
+
 	/**
 	 * @return the exception
 	 */
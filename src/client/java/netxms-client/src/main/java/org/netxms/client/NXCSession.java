@@ -20,6 +20,7 @@
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -30,6 +31,10 @@
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -46,29 +51,39 @@
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.netxms.base.DeflateCodec;
 import org.netxms.base.EncryptionContext;
 import org.netxms.base.GeoLocation;
 import org.netxms.base.InetAddressEx;
 import org.netxms.base.MacAddress;
+import org.netxms.base.NXCPChannelReceiver;
 import org.netxms.base.NXCPCodes;
-import org.netxms.base.NXCPDataInputStream;
 import org.netxms.base.NXCPException;
 import org.netxms.base.NXCPMessage;
-import org.netxms.base.NXCPMessageReceiver;
+import org.netxms.base.NXCPMessageWriter;
 import org.netxms.base.NXCPMsgWaitQueue;
 import org.netxms.base.VersionInfo;
 import org.netxms.client.agent.config.AgentConfiguration;
@@ -87,6 +102,9 @@
 import org.netxms.client.constants.RCC;
 import org.netxms.client.dashboards.DashboardElement;
 import org.netxms.client.datacollection.ChartDciConfig;
+import org.netxms.client.datacollection.CollectedDataHandler;
+import org.netxms.client.datacollection.CollectedDataListener;
+import org.netxms.client.datacollection.CollectedDataRequest;
 import org.netxms.client.datacollection.ConditionDciInfo;
 import org.netxms.client.datacollection.DCOStatusHolder;
 import org.netxms.client.datacollection.DataCollectionConfiguration;
@@ -94,7 +112,6 @@
 import org.netxms.client.datacollection.DataCollectionObject;
 import org.netxms.client.datacollection.DataCollectionTable;
 import org.netxms.client.datacollection.DciData;
-import org.netxms.client.datacollection.DciDataRow;
 import org.netxms.client.datacollection.DciInfo;
 import org.netxms.client.datacollection.DciLastValue;
 import org.netxms.client.datacollection.DciPushData;
@@ -220,8 +237,6 @@
 import org.netxms.client.users.UserGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.jcraft.jzlib.Deflater;
-import com.jcraft.jzlib.JZlib;
 
 /**
  * Communication session with NetXMS server.
@@ -282,8 +297,14 @@
    // Private constants
    private static final int CLIENT_CHALLENGE_SIZE = 256;
    private static final int MAX_DCI_DATA_ROWS = 200000;
+   private static final int DEFAULT_COLLECTED_DATA_REQUESTS_IN_FLIGHT = 8;
+   private static final int OBJECT_SNAPSHOT_TIME_MARGIN = 60; // seconds
    private static final int RECEIVED_FILE_TTL = 300000; // 300 seconds
-   private static final int FILE_BUFFER_SIZE = 32768; // 32KB
+   private static final int DEFAULT_FILE_TRANSFER_CHUNK_SIZE = 262144; // 256KB
+   private static final int DEFAULT_FILE_TRANSFER_WINDOW_SIZE = 4;
+   private static final int FILE_WRITER_QUEUE_SIZE = 16 * 1024 * 1024; // 16MB per transfer
+   private static final int FILE_WRITER_MAX_WAIT_TIME = 10000; // 10 seconds
+   private static final int DEFAULT_FILE_MONITOR_BUFFER_SIZE = 1024 * 1024; // 1M characters
 
    // Logger
    private static Logger logger = LoggerFactory.getLogger(NXCSession.class);
@@ -316,6 +337,8 @@
    // Internal communication data
    private Socket socket = null;
    private NXCPMsgWaitQueue msgWaitQueue = null;
+   private final Map<Long, AsyncRequest> asyncRequests = new ConcurrentHashMap<Long, AsyncRequest>();
+   private Executor asyncExecutor = ForkJoinPool.commonPool();
    private ReceiverThread recvThread = null;
    private HousekeeperThread housekeeperThread = null;
    private Thread reconnectThread = null;
@@ -333,13 +356,17 @@
    // Communication parameters
    private int defaultRecvBufferSize = 4194304; // Default is 4MB
    private int maxRecvBufferSize = 33554432;    // Max is 32MB
+   private NXCPMessageWriter messageWriter = new NXCPMessageWriter();
+   private int compressionLevel = DeflateCodec.LEVEL_BEST;
+   private int fileTransferChunkSize = DEFAULT_FILE_TRANSFER_CHUNK_SIZE;
+   private int fileTransferWindowSize = DEFAULT_FILE_TRANSFER_WINDOW_SIZE;
+   private int fileMonitorBufferSize = DEFAULT_FILE_MONITOR_BUFFER_SIZE;
    private int connectTimeout = 10000; // Default is 10 seconds  
    private int commandTimeout = 30000; // Default is 30 seconds
    private int serverCommandOutputTimeout = 60000;
 
    // Notification listeners and queue
-   private LinkedBlockingQueue<SessionNotification> notificationQueue = new LinkedBlockingQueue<SessionNotification>(8192);
-   private Set<SessionListener> listeners = new HashSet<SessionListener>(0);
+   private NotificationDispatcher notificationDispatcher = new NotificationDispatcher(8192, 8192);
    private Set<ServerConsoleListener> consoleListeners = new HashSet<ServerConsoleListener>(0);
    private Map<Long, ProgressListener> progressListeners = new HashMap<Long, ProgressListener>(0);
 
@@ -348,9 +375,25 @@
 
    // Received files
    private Map<Long, NXCReceivedFile> receivedFiles = new HashMap<Long, NXCReceivedFile>();
+   private FileDataWriter fileDataWriter = new FileDataWriter(FILE_WRITER_QUEUE_SIZE, FILE_WRITER_MAX_WAIT_TIME, new FileDataWriter.Listener() {
+      @Override
+      public void onDataWritten(NXCReceivedFile file, int bytes)
+      {
+         notifyProgressListener(file.getId(), bytes);
+      }
+
+      @Override
+      public void onTransferCompleted(NXCReceivedFile file)
+      {
+         synchronized(receivedFiles)
+         {
+            receivedFiles.notifyAll();
+         }
+      }
+   });
 
    // Received file updates(for file monitoring)
-   private Map<UUID, String> receivedFileUpdates = new HashMap<UUID, String>();
+   private Map<UUID, FileMonitorBuffer> receivedFileUpdates = new HashMap<UUID, FileMonitorBuffer>();
 
    // Server information
    private ProtocolVersion protocolVersion;
@@ -383,12 +426,12 @@
    private Map<String, String> clientConfigurationHints = new HashMap<String, String>();
 
    // Objects
-   private Map<Long, AbstractObject> objectList = new HashMap<Long, AbstractObject>();
-   private Map<UUID, AbstractObject> objectListGUID = new HashMap<UUID, AbstractObject>();
-   private Map<Long, AbstractObject> partialObjectList = new HashMap<Long, AbstractObject>();
-   private Map<Integer, Zone> zoneList = new HashMap<Integer, Zone>();
+   private ObjectCache objectCache = new ObjectCache();
    private Map<Integer, ObjectCategory> objectCategories = new HashMap<Integer, ObjectCategory>();
    private boolean objectsSynchronized = false;
+   private File objectSnapshotDirectory = null;
+   private volatile ObjectSnapshot objectSnapshot = null;
+   private volatile Set<Long> snapshotObjectsWithoutCredentials = null;
    private Set<String> responsibleUserTags = new HashSet<String>();
 
    // Users
@@ -407,6 +450,12 @@
    private Map<Long, AlarmCategory> alarmCategories = new HashMap<Long, AlarmCategory>();
    private boolean alarmCategoriesSynchronized = false;
 
+   // Alarms
+   private final AlarmCache alarmCache = new AlarmCache();
+   private volatile boolean alarmsSynchronized = false;
+   private final Object alarmSyncLock = new Object();
+   private CompletableFuture<Void> alarmSyncInProgress = null;
+
    // Message of the day
    private String messageOfTheDay;
    
@@ -499,7 +548,8 @@ public void run()
       {
          logger.debug("Network receiver thread started");
 
-         final NXCPMessageReceiver receiver = new NXCPMessageReceiver(defaultRecvBufferSize, maxRecvBufferSize);
+         final NXCPChannelReceiver receiver = new NXCPChannelReceiver(defaultRecvBufferSize, maxRecvBufferSize);
+         receiver.setLazyFieldDecoding(true);
          InputStream in;
 
          try
@@ -536,20 +586,17 @@ public void run()
                         final AbstractObject object = createObjectFromMessage(msg);
                         if (object.isPartialObject())
                         {
-                           synchronized(objectList)
-                           {
-                              partialObjectList.put(object.getObjectId(), object);
-                           }
+                           objectCache.putPartial(object);
                         }
                         else
                         {
-                           synchronized(objectList)
-                           {
-                              newObject = (objectList.put(object.getObjectId(), object) == null);
-                              objectListGUID.put(object.getGuid(), object);
-                              if (object instanceof Zone)
-                                 zoneList.put(((Zone)object).getUIN(), (Zone)object);
-                           }
+                           newObject = objectCache.put(object);
+                           final ObjectSnapshot snapshot = objectSnapshot;
+                           if (snapshot != null)
+                              snapshot.update(object.getObjectId(), msg);
+                           final Set<Long> restoredObjects = snapshotObjectsWithoutCredentials;
+                           if (restoredObjects != null)
+                              restoredObjects.remove(object.getObjectId());
                         }
                         if (msg.getMessageCode() == NXCPCodes.CMD_OBJECT_UPDATE)
                         {
@@ -565,17 +612,10 @@ public void run()
                      else
                      {
                         long objectId = msg.getFieldAsInt32(NXCPCodes.VID_OBJECT_ID);
-                        synchronized(objectList)
-                        {
-                           AbstractObject object = objectList.get(objectId);
-                           if (object != null)
-                           {
-                              objectListGUID.remove(object.getGuid());
-                              objectList.remove(objectId);
-                              if (object instanceof Zone)
-                                 zoneList.remove(((Zone)object).getUIN());
-                           }
-                        }
+                        objectCache.remove(objectId);
+                        final ObjectSnapshot snapshot = objectSnapshot;
+                        if (snapshot != null)
+                           snapshot.remove(objectId);
                         sendNotification(new SessionNotification(SessionNotification.OBJECT_DELETED, objectId));
                      }
                      break;
@@ -633,8 +673,7 @@ public void run()
                      processUserDBUpdate(msg);
                      break;
                   case NXCPCodes.CMD_ALARM_UPDATE:
-                     sendNotification(new SessionNotification(
-                           msg.getFieldAsInt32(NXCPCodes.VID_NOTIFICATION_CODE) + SessionNotification.NOTIFY_BASE, new Alarm(msg)));
+                     processAlarmUpdate(msg);
                      break;
                   case NXCPCodes.CMD_BULK_ALARM_STATE_CHANGE:
                      processBulkAlarmStateChange(msg);
@@ -771,6 +810,15 @@ public void run()
                      }
                      break;
                   default:
+                     // Check outstanding asynchronous requests
+                     AsyncRequest asyncRequest = asyncRequests.get(msg.getMessageId());
+                     if ((asyncRequest != null) && asyncRequest.processMessage(msg))
+                     {
+                        if (asyncRequest.isDone())
+                           asyncRequests.remove(msg.getMessageId(), asyncRequest);
+                        break;
+                     }
+
                      // Check subscriptions
                      synchronized(messageSubscriptions)
                      {
@@ -860,6 +908,7 @@ public void run()
 
          logger.info("Network receiver thread stopped");
          msgWaitQueue.shutdown();
+         failAsyncRequests();
       }
 
       /**
@@ -938,7 +987,35 @@ private void processSyslogRecords(final NXCPMessage msg)
       private void processBulkAlarmStateChange(final NXCPMessage msg)
       {
          int code = msg.getFieldAsInt32(NXCPCodes.VID_NOTIFICATION_CODE) + SessionNotification.NOTIFY_BASE;
-         sendNotification(new SessionNotification(code, new BulkAlarmStateChangeData(msg)));
+         BulkAlarmStateChangeData data = new BulkAlarmStateChangeData(msg);
+         if (code == SessionNotification.MULTIPLE_ALARMS_RESOLVED)
+            alarmCache.setResolved(data.getAlarms(), data.getUserId(), data.getChangeTime());
+         else if (code == SessionNotification.MULTIPLE_ALARMS_TERMINATED)
+            alarmCache.remove(data.getAlarms());
+         sendNotification(new SessionNotification(code, data));
+      }
+
+      /**
+       * Process CMD_ALARM_UPDATE notification message
+       *
+       * @param msg NXCP message
+       */
+      private void processAlarmUpdate(final NXCPMessage msg)
+      {
+         int code = msg.getFieldAsInt32(NXCPCodes.VID_NOTIFICATION_CODE) + SessionNotification.NOTIFY_BASE;
+         Alarm alarm = new Alarm(msg);
+         switch(code)
+         {
+            case SessionNotification.NEW_ALARM:
+            case SessionNotification.ALARM_CHANGED:
+               alarmCache.update(alarm);
+               break;
+            case SessionNotification.ALARM_TERMINATED:
+            case SessionNotification.ALARM_DELETED:
+               alarmCache.remove(alarm.getId());
+               break;
+         }
+         sendNotification(new SessionNotification(code, alarm));
       }
 
       /**
@@ -989,16 +1066,24 @@ private void processFileUpdate(final NXCPMessage msg)
       {
          UUID monitorId = msg.getFieldAsUUID(NXCPCodes.VID_MONITOR_ID);
          String newData = msg.getFieldAsString(NXCPCodes.VID_FILE_DATA);
+         if ((monitorId == null) || (newData == null) || newData.isEmpty())
+            return;
          synchronized(receivedFileUpdates)
          {
-            String existingData = receivedFileUpdates.get(monitorId);
-            receivedFileUpdates.put(monitorId, (existingData != null) ? existingData + newData : newData);
+            FileMonitorBuffer buffer = receivedFileUpdates.get(monitorId);
+            if (buffer == null)
+            {
+               buffer = new FileMonitorBuffer(fileMonitorBufferSize);
+               receivedFileUpdates.put(monitorId, buffer);
+            }
+            buffer.append(newData);
             receivedFileUpdates.notifyAll();
          }
       }
 
       /**
-       * Process file data
+       * Process file data. Data is passed to file data writer, so receiver thread is not blocked by disk I/O or by slow destination
+       * stream. If transfer's write queue exceeds quota, receiver waits for limited time and then fails that transfer.
        *
        * @param msg
        */
@@ -1015,16 +1100,9 @@ private void processFileData(final NXCPMessage msg)
                receivedFiles.put(id, file);
             }
          }
-         int bytes = file.writeData(msg.getBinaryData(), msg.isCompressedStream());
-         notifyProgressListener(id, bytes);
+         fileDataWriter.submitData(file, msg.getBinaryData(), msg.isCompressedStream());
          if (msg.isEndOfFile())
-         {
-            file.close();
-            synchronized(receivedFiles)
-            {
-               receivedFiles.notifyAll();
-            }
-         }
+            fileDataWriter.submitEndOfFile(file);
       }
 
       /**
@@ -1045,9 +1123,8 @@ private void processFileTransferError(final NXCPMessage msg)
                file = new NXCReceivedFile(id);
                receivedFiles.put(id, file);
             }
-            file.abortTransfer(msg.getFieldAsBoolean(NXCPCodes.VID_JOB_CANCELLED));
-            receivedFiles.notifyAll();
          }
+         fileDataWriter.submitAbort(file, msg.getFieldAsBoolean(NXCPCodes.VID_JOB_CANCELLED));
       }
 
       /**
@@ -1314,7 +1391,7 @@ public void run()
                   NXCReceivedFile file = it.next();
                   if (file.getTimestamp() + RECEIVED_FILE_TTL < currTime)
                   {
-                     file.getFile().delete();
+                     file.discard();
                      it.remove();
                   }
                }
@@ -1335,6 +1412,18 @@ public void run()
                   }
                }
             }
+
+            // Check timeouts on asynchronous requests
+            Iterator<AsyncRequest> ait = asyncRequests.values().iterator();
+            while(ait.hasNext())
+            {
+               AsyncRequest r = ait.next();
+               if (r.isTimedOut(currTime))
+               {
+                  ait.remove();
+                  r.fail(new NXCException(RCC.TIMEOUT));
+               }
+            }
          }
       }
 
@@ -1347,71 +1436,6 @@ public void setStopFlag(boolean stopFlag)
       }
    }
 
-   /**
-    * Notification processor
-    */
-   private class NotificationProcessor extends Thread
-   {
-      private SessionListener[] cachedListenerList = new SessionListener[0];
-
-      NotificationProcessor()
-      {
-         setName("Session Notification Processor");
-         setDaemon(true);
-         start();
-      }
-
-      /**
-       * @see java.lang.Thread#run()
-       */
-      @Override
-      public void run()
-      {
-         while(true)
-         {
-            SessionNotification n;
-            try
-            {
-               n = notificationQueue.take();
-            }
-            catch(InterruptedException e)
-            {
-               continue;
-            }
-
-            if (n.getCode() == SessionNotification.STOP_PROCESSING_THREAD)
-               break;
-
-            if (n.getCode() == SessionNotification.UPDATE_LISTENER_LIST)
-            {
-               synchronized(listeners)
-               {
-                  cachedListenerList = listeners.toArray(new SessionListener[listeners.size()]);
-               }
-               continue;
-            }
-
-            // loop must be on listeners set copy to prevent 
-            // possible deadlock when one of the listeners calls 
-            // syncExec on UI thread while UI thread trying to add
-            // new listener and stays locked inside addListener
-            for(SessionListener l : cachedListenerList)
-            {
-               try
-               {
-                  l.notificationHandler(n);
-               }
-               catch(Exception e)
-               {
-                  logger.error("Unhandled exception in notification handler", e);
-               }
-            }
-         }
-         cachedListenerList = null;
-         logger.debug("Client session notification processor stopped");
-      }
-   }
-   
    /**
     * User synchronization thread
     */
@@ -1743,13 +1767,20 @@ private void completeSync(final Semaphore syncObject)
     */
    public void addListener(SessionListener listener)
    {
-      boolean changed;
-      synchronized(listeners)
-      {
-         changed = listeners.add(listener);
-      }
-      if (changed)
-         notificationQueue.offer(new SessionNotification(SessionNotification.UPDATE_LISTENER_LIST));
+      notificationDispatcher.addListener(listener, null);
+   }
+
+   /**
+    * Add notification listener that will be called using given executor. Such listener does not delay delivery of notifications
+    * to other listeners. If number of notifications submitted to executor but not processed yet for this listener exceeds
+    * limit set by <code>setListenerNotificationQueueCapacity</code>, further notifications for this listener will be dropped.
+    *
+    * @param listener Listener to add
+    * @param executor executor for calling listener
+    */
+   public void addListener(SessionListener listener, Executor executor)
+   {
+      notificationDispatcher.addListener(listener, executor);
    }
 
    /**
@@ -1759,13 +1790,7 @@ public void addListener(SessionListener listener)
     */
    public void removeListener(SessionListener listener)
    {
-      boolean changed;
-      synchronized(listeners)
-      {
-         changed = listeners.remove(listener);
-      }
-      if (changed)
-         notificationQueue.offer(new SessionNotification(SessionNotification.UPDATE_LISTENER_LIST));
+      notificationDispatcher.removeListener(listener);
    }
 
    /**
@@ -1830,12 +1855,86 @@ public void removeMessageSubscription(int messageCode, long messageId)
     */
    protected void sendNotification(SessionNotification n)
    {
-      if (!notificationQueue.offer(n))
+      if (!notificationDispatcher.submit(n) && (notificationDispatcher.getDroppedCount() % 1000 == 1))
       {
-         logger.warn("Notification processing queue is full");
+         logger.warn("Notification processing queue is full (" + notificationDispatcher.getDroppedCount() + " notifications dropped so far)");
       }
    }
 
+   /**
+    * Get number of notifications currently waiting for delivery to listeners.
+    *
+    * @return number of queued notifications
+    */
+   public int getNotificationQueueSize()
+   {
+      return notificationDispatcher.getQueueSize();
+   }
+
+   /**
+    * Get total number of notifications dropped because notification queue or listener's queue was full.
+    *
+    * @return number of dropped notifications
+    */
+   public long getDroppedNotificationCount()
+   {
+      return notificationDispatcher.getDroppedCount();
+   }
+
+   /**
+    * Get total number of OBJECT_CHANGED and ALARM_CHANGED notifications merged into already queued notifications for same
+    * object or alarm.
+    *
+    * @return number of coalesced notifications
+    */
+   public long getCoalescedNotificationCount()
+   {
+      return notificationDispatcher.getCoalescedCount();
+   }
+
+   /**
+    * Get total number of notifications delivered to listeners.
+    *
+    * @return number of delivered notifications
+    */
+   public long getDeliveredNotificationCount()
+   {
+      return notificationDispatcher.getDeliveredCount();
+   }
+
+   /**
+    * Set maximum number of notifications waiting for delivery to listeners. When queue is full new notifications are dropped.
+    * Default is 8192.
+    *
+    * @param capacity new queue capacity
+    */
+   public void setNotificationQueueCapacity(int capacity)
+   {
+      notificationDispatcher.setQueueCapacity(capacity);
+   }
+
+   /**
+    * Set maximum number of notifications pending for each listener registered with executor. Default is 8192.
+    *
+    * @param capacity new listener queue capacity
+    */
+   public void setListenerNotificationQueueCapacity(int capacity)
+   {
+      notificationDispatcher.setListenerQueueCapacity(capacity);
+   }
+
+   /**
+    * Set notification coalescing window. OBJECT_CHANGED and ALARM_CHANGED notifications are held in the queue for at least this
+    * time, and any further changes of same object or alarm received during that time are merged into single notification.
+    * Default is 0 (changes are only merged while notification waits in the queue for other reasons).
+    *
+    * @param window coalescing window in milliseconds
+    */
+   public void setNotificationCoalescingWindow(int window)
+   {
+      notificationDispatcher.setCoalescingWindow(window);
+   }
+
    /**
     * Send message to server
     *
@@ -1850,23 +1949,23 @@ public synchronized void sendMessage(final NXCPMessage msg) throws IOException,
          throw new IllegalStateException("Session is not connected");
       }
       final OutputStream outputStream = socket.getOutputStream();
-      byte[] message;
       if ((encryptionContext != null) && !msg.isEncryptionDisabled())
       {
+         byte[] message;
          try
          {
-            message = encryptionContext.encryptMessage(msg, allowCompression);
+            message = encryptionContext.encryptMessage(msg, allowCompression ? messageWriter.getCompressionCodec() : null);
          }
          catch(GeneralSecurityException e)
          {
             throw new NXCException(RCC.ENCRYPTION_ERROR);
          }
+         outputStream.write(message);
       }
       else
       {
-         message = msg.createNXCPMessage(allowCompression);
+         messageWriter.writeMessage(msg, allowCompression, outputStream);
       }
-      outputStream.write(message);
    }
 
    /**
@@ -1936,8 +2035,9 @@ protected void sendFile(final long requestId, final byte[] data, ProgressListene
    }
 
    /**
-    * Send binary message, data loaded from provided input stream and splitted
-    * into chunks of {@value FILE_BUFFER_SIZE} bytes
+    * Send binary message, data loaded from provided input stream and splitted into chunks of configured size (see
+    * {@link #setFileTransferChunkSize(int)}). Reading and compression of next chunks is done in background while current chunk
+    * is being sent.
     *
     * @param requestId              request ID
     * @param inputStream            data input stream
@@ -1950,55 +2050,18 @@ protected void sendFile(final long requestId, final byte[] data, ProgressListene
    private void sendFileStream(final long requestId, final InputStream inputStream, ProgressListener listener,
          boolean allowStreamCompression, long offset) throws IOException, NXCException
    {
-      NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_FILE_DATA, requestId);
-      msg.setBinaryMessage(true);
-      inputStream.skip(offset);
-
-      Deflater compressor = allowStreamCompression ? new Deflater(9) : null;
-      msg.setStream(true, allowStreamCompression);
-
-      final byte[] buffer = new byte[FILE_BUFFER_SIZE];
       try
       {
-         long bytesSent = 0;
-         while(true)
+         while(offset > 0)
          {
-            final int bytesRead = inputStream.read(buffer);
-            if (bytesRead < FILE_BUFFER_SIZE)
-            {
-               msg.setEndOfFile(true);
-            }
-
-            if ((compressor != null) && (bytesRead > 0))
-            {
-               byte[] compressedData = new byte[compressor.deflateBound(bytesRead) + 4];
-               compressor.setInput(buffer, 0, bytesRead, false);
-               compressor.setOutput(compressedData, 4, compressedData.length - 4);
-               if (compressor.deflate(JZlib.Z_SYNC_FLUSH) != JZlib.Z_OK)
-                  throw new NXCException(RCC.IO_ERROR);
-               int length = compressedData.length - compressor.getAvailOut();
-               byte[] payload = Arrays.copyOf(compressedData, length);
-               payload[0] = 2;   // DEFLATE method
-               payload[1] = 0;   // reserved
-               payload[2] = (byte)((bytesRead >> 8) & 0xFF);   // uncompressed length, high bits
-               payload[3] = (byte)(bytesRead & 0xFF);   // uncompressed length, low bits
-               msg.setBinaryData(payload);
-            }
-            else
-            {
-               msg.setBinaryData((bytesRead > 0) ? Arrays.copyOf(buffer, bytesRead) : new byte[0]);
-            }
-            sendMessage(msg);
-
-            bytesSent += (bytesRead == -1) ? 0 : bytesRead;
-            if (listener != null)
-               listener.markProgress(bytesSent);
-
-            if (bytesRead < FILE_BUFFER_SIZE)
+            long skipped = inputStream.skip(offset);
+            if (skipped <= 0)
                break;
+            offset -= skipped;
          }
-         if (compressor != null)
-            compressor.deflateEnd();
+
+         FileUploader uploader = new FileUploader(fileTransferChunkSize, fileTransferWindowSize, compressionLevel);
+         uploader.upload(requestId, inputStream, listener, allowStreamCompression, (m) -> sendMessage(m));
       }
       catch(Exception e)
       {
@@ -2007,6 +2070,19 @@ private void sendFileStream(final long requestId, final InputStream inputStream,
       }
    }
 
+   /**
+    * Discard responses to abandoned request (request completion message and messages with given code), so late responses do
+    * not stay in message wait queue until they expire.
+    *
+    * @param id request ID
+    * @param responseCode code of expected response messages
+    */
+   private void discardResponses(final long id, final int responseCode)
+   {
+      msgWaitQueue.discardMessages(NXCPCodes.CMD_REQUEST_COMPLETED, id);
+      msgWaitQueue.discardMessages(responseCode, id);
+   }
+
    /**
     * Wait for message with specific code and id.
     *
@@ -2062,116 +2138,336 @@ public NXCPMessage waitForRCC(final long id) throws NXCException
    public NXCPMessage waitForRCC(final long id, final int timeout) throws NXCException
    {
       final NXCPMessage msg = waitForMessage(NXCPCodes.CMD_REQUEST_COMPLETED, id, timeout);
-      final int rcc = msg.getFieldAsInt32(NXCPCodes.VID_RCC);
-      if (rcc != RCC.SUCCESS && rcc != RCC.FILE_APPEND_POSSIBLE)
-      {
-         long[] relatedObjects = msg.getFieldAsUInt32Array(NXCPCodes.VID_OBJECT_LIST);
-         String description;
-         if ((rcc == RCC.COMPONENT_LOCKED) && (msg.findField(NXCPCodes.VID_LOCKED_BY) != null))
-         {
-            description = msg.getFieldAsString(NXCPCodes.VID_LOCKED_BY);
-         }
-         else if (msg.findField(NXCPCodes.VID_ERROR_TEXT) != null)
-         {
-            description = msg.getFieldAsString(NXCPCodes.VID_ERROR_TEXT);
-         }
-         else if (msg.findField(NXCPCodes.VID_VALUE) != null)
-         {
-            description = msg.getFieldAsString(NXCPCodes.VID_VALUE);
-         }
-         else
-         {
-            description = null;
-         }
-         throw new NXCException(rcc, description, relatedObjects);
-      }
+      NXCException e = createExceptionFromRCC(msg);
+      if (e != null)
+         throw e;
       return msg;
    }
 
    /**
-    * Create new NXCP message with unique id
+    * Create exception from error code in CMD_REQUEST_COMPLETED message.
     *
-    * @param code Message code
-    * @return New message object
+    * @param msg request completion message
+    * @return exception object or null if message indicates success
     */
-   public final NXCPMessage newMessage(int code)
+   static NXCException createExceptionFromRCC(NXCPMessage msg)
    {
-      return new NXCPMessage(code, requestId.getAndIncrement());
+      final int rcc = msg.getFieldAsInt32(NXCPCodes.VID_RCC);
+      if (rcc == RCC.SUCCESS || rcc == RCC.FILE_APPEND_POSSIBLE)
+         return null;
+
+      long[] relatedObjects = msg.getFieldAsUInt32Array(NXCPCodes.VID_OBJECT_LIST);
+      String description;
+      if ((rcc == RCC.COMPONENT_LOCKED) && (msg.findField(NXCPCodes.VID_LOCKED_BY) != null))
+      {
+         description = msg.getFieldAsString(NXCPCodes.VID_LOCKED_BY);
+      }
+      else if (msg.findField(NXCPCodes.VID_ERROR_TEXT) != null)
+      {
+         description = msg.getFieldAsString(NXCPCodes.VID_ERROR_TEXT);
+      }
+      else if (msg.findField(NXCPCodes.VID_VALUE) != null)
+      {
+         description = msg.getFieldAsString(NXCPCodes.VID_VALUE);
+      }
+      else
+      {
+         description = null;
+      }
+      return new NXCException(rcc, description, relatedObjects);
    }
 
    /**
-    * Wait for specific file to arrive
+    * Send request to server without waiting for response. Responses are correlated with request by message ID on receiver
+    * thread, so any number of requests can be outstanding at the same time. If <code>expectRCC</code> is true, request completion
+    * message is expected first, and future is completed exceptionally if it contains error code. If <code>responseCode</code> is
+    * not 0, messages with that code are collected until <code>endOfSequence</code> predicate returns true for received message
+    * (or after first message if predicate is null). Returned future is completed using session's asynchronous executor (see
+    * {@link #setAsyncExecutor(Executor)}), so dependent actions are never executed on network receiver thread. Cancelling
+    * returned future releases request immediately, and responses received for it later are discarded.
     *
-    * @param id Message ID
-    * @param timeout Timeout (since arrival of last received file part) in milliseconds to consider file transfer as timed out
-    * @return Received file or null in case of failure
+    * @param request request message
+    * @param expectRCC true if request completion message is expected
+    * @param responseCode code of response messages or 0 if only request completion message is expected
+    * @param endOfSequence predicate for detecting last message in response sequence (can be null)
+    * @return future for list of response messages (contains only request completion message if <code>responseCode</code> is 0)
     */
-   public ReceivedFile waitForFile(final long id, final int timeout)
+   public CompletableFuture<List<NXCPMessage>> sendRequestAsync(NXCPMessage request, boolean expectRCC, int responseCode, Predicate<NXCPMessage> endOfSequence)
    {
-      File file = null;
-      int status = ReceivedFile.FAILED;
-      long timestamp = System.currentTimeMillis();
-
-      while(true)
-      {
-         synchronized(receivedFiles)
+      final AsyncRequest r = new AsyncRequest(request.getMessageId(), expectRCC, responseCode, endOfSequence, commandTimeout);
+      r.getFuture().whenComplete((messages, e) -> {
+         // Release cancelled request immediately and drop responses that may still arrive
+         if (r.getFuture().isCancelled() && asyncRequests.remove(r.getId(), r))
          {
-            NXCReceivedFile rf = receivedFiles.get(id);
-            if (rf != null)
-            {
-               if (rf.getStatus() != NXCReceivedFile.OPEN)
-               {
-                  if (rf.getStatus() == NXCReceivedFile.RECEIVED)
-                  {
-                     file = rf.getFile();
-                     status = ReceivedFile.SUCCESS;
-                  }
-                  break;
-               }
-               timestamp = rf.getTimestamp();
-            }
-
-            if (System.currentTimeMillis() - timestamp > timeout)
-            {
-               status = ReceivedFile.TIMEOUT;
-               break;
-            }
-
-            try
-            {
-               receivedFiles.wait(timeout);
-            }
-            catch(InterruptedException e)
+            final NXCPMsgWaitQueue waitQueue = msgWaitQueue;
+            if (waitQueue != null)
             {
+               waitQueue.discardMessages(NXCPCodes.CMD_REQUEST_COMPLETED, r.getId());
+               if (responseCode != 0)
+                  waitQueue.discardMessages(responseCode, r.getId());
             }
          }
+      });
+      asyncRequests.put(r.getId(), r);
+      try
+      {
+         sendMessage(request);
       }
-      return new ReceivedFile(file, status);
+      catch(Exception e)
+      {
+         asyncRequests.remove(r.getId(), r);
+         r.fail(e);
+      }
+      return propagateCancellation(r.getFuture().whenCompleteAsync((messages, e) -> {}, asyncExecutor), r.getFuture());
    }
 
    /**
-    * Wait for update from specific file monitor.
+    * Send request to server without waiting for response. Returned future is completed with request completion message, or
+    * exceptionally with NXCException if server returns an error or operation was timed out.
     *
-    * @param monitorId file monitor ID (previously returned by <code>downloadFileFromAgent</code>
-    * @param timeout Wait timeout in milliseconds
-    * @return Received tail string or null in case of failure
+    * @param request request message
+    * @return future for request completion message
     */
-   public String waitForFileUpdate(UUID monitorId, final int timeout)
+   public CompletableFuture<NXCPMessage> sendRequestAsync(NXCPMessage request)
    {
-      int timeRemaining = timeout;
-      String data = null;
+      return thenApplyCancellable(sendRequestAsync(request, true, 0, null), (messages) -> messages.get(0));
+   }
 
-      while(timeRemaining > 0)
-      {
-         synchronized(receivedFileUpdates)
+   /**
+    * Cancel source future when dependent future is cancelled.
+    *
+    * @param dependent dependent future
+    * @param source source future
+    * @return dependent future
+    */
+   private static <T> CompletableFuture<T> propagateCancellation(final CompletableFuture<T> dependent, final CompletableFuture<?> source)
+   {
+      dependent.whenComplete((v, e) -> {
+         if (dependent.isCancelled())
+            source.cancel(false);
+      });
+      return dependent;
+   }
+
+   /**
+    * Apply function to result of given future. Unlike {@link CompletableFuture#thenApply(Function)}, cancellation of returned
+    * future is propagated to source future, so cancelled request is released without waiting for response or timeout.
+    *
+    * @param source source future
+    * @param fn function to apply
+    * @return future for function result
+    */
+   private static <T, R> CompletableFuture<R> thenApplyCancellable(final CompletableFuture<T> source, Function<? super T, ? extends R> fn)
+   {
+      return propagateCancellation(source.thenApply(fn), source);
+   }
+
+   /**
+    * Check if asynchronous request with given ID is still waiting for response.
+    *
+    * @param id request ID
+    * @return true if request is still waiting for response
+    */
+   boolean isAsyncRequestPending(long id)
+   {
+      return asyncRequests.containsKey(id);
+   }
+
+   /**
+    * Fail all outstanding asynchronous requests after connection loss.
+    */
+   private void failAsyncRequests()
+   {
+      Iterator<AsyncRequest> it = asyncRequests.values().iterator();
+      while(it.hasNext())
+      {
+         AsyncRequest r = it.next();
+         it.remove();
+         r.fail((receiverStopCause != null) ? new NXCException(RCC.COMM_FAILURE, receiverStopCause) : new NXCException(RCC.COMM_FAILURE));
+      }
+   }
+
+   /**
+    * Get executor used for completing futures returned by asynchronous API calls.
+    *
+    * @return executor used for asynchronous calls
+    */
+   public Executor getAsyncExecutor()
+   {
+      return asyncExecutor;
+   }
+
+   /**
+    * Set executor used for completing futures returned by asynchronous API calls. Default is common fork-join pool.
+    *
+    * @param executor new executor (must not be null)
+    */
+   public void setAsyncExecutor(Executor executor)
+   {
+      asyncExecutor = executor;
+   }
+
+   /**
+    * Create new NXCP message with unique id
+    *
+    * @param code Message code
+    * @return New message object
+    */
+   public final NXCPMessage newMessage(int code)
+   {
+      return new NXCPMessage(code, requestId.getAndIncrement());
+   }
+
+   /**
+    * Wait for specific file to arrive
+    *
+    * @param id Message ID
+    * @param timeout Timeout (since arrival of last received file part) in milliseconds to consider file transfer as timed out
+    * @return Received file or null in case of failure
+    */
+   public ReceivedFile waitForFile(final long id, final int timeout)
+   {
+      File file = null;
+      int status = ReceivedFile.FAILED;
+      long timestamp = System.currentTimeMillis();
+
+      while(true)
+      {
+         synchronized(receivedFiles)
+         {
+            NXCReceivedFile rf = receivedFiles.get(id);
+            if (rf != null)
+            {
+               if (rf.getStatus() != NXCReceivedFile.OPEN)
+               {
+                  if (rf.getStatus() == NXCReceivedFile.RECEIVED)
+                  {
+                     file = rf.getFile();
+                     status = ReceivedFile.SUCCESS;
+                  }
+                  break;
+               }
+               timestamp = rf.getTimestamp();
+            }
+
+            if (System.currentTimeMillis() - timestamp > timeout)
+            {
+               status = ReceivedFile.TIMEOUT;
+               break;
+            }
+
+            try
+            {
+               receivedFiles.wait(timeout);
+            }
+            catch(InterruptedException e)
+            {
+            }
+         }
+      }
+      return new ReceivedFile(file, status);
+   }
+
+   /**
+    * Register receiver that will write data of file with given ID directly to given output stream instead of temporary file.
+    * Must be called before request that causes file transfer is sent.
+    *
+    * @param id message ID
+    * @param out destination stream
+    */
+   private void registerFileReceiver(final long id, OutputStream out)
+   {
+      synchronized(receivedFiles)
+      {
+         receivedFiles.put(id, new NXCReceivedFile(id, out));
+      }
+   }
+
+   /**
+    * Wait for file previously registered with <code>registerFileReceiver</code> to arrive. Registration is removed when this
+    * method returns.
+    *
+    * @param id message ID
+    * @param timeout timeout (since arrival of last received file part) in milliseconds
+    * @param errorCode error code to use if file transfer fails on remote side
+    * @throws IOException if received data cannot be written to destination stream
+    * @throws NXCException if file transfer fails or times out
+    */
+   private void waitForStreamedFile(final long id, final int timeout, int errorCode) throws IOException, NXCException
+   {
+      ReceivedFile rf = waitForFile(id, timeout);
+      NXCReceivedFile file;
+      synchronized(receivedFiles)
+      {
+         file = receivedFiles.remove(id);
+      }
+      if (rf.getStatus() == ReceivedFile.TIMEOUT)
+         throw new NXCException(RCC.TIMEOUT);
+      if (rf.isFailed())
+      {
+         if ((file != null) && file.isWriteFailed())
+            throw file.getException();
+         throw new NXCException(errorCode);
+      }
+   }
+
+   /**
+    * Wait for update from specific file monitor. All data received since last call is returned as single string. If some data
+    * was dropped because of file monitor buffer overflow, only most recent data is returned.
+    *
+    * @param monitorId file monitor ID (previously returned by <code>downloadFileFromAgent</code>
+    * @param timeout Wait timeout in milliseconds
+    * @return Received tail string or null in case of failure
+    */
+   public String waitForFileUpdate(UUID monitorId, final int timeout)
+   {
+      final StringBuilder sb = new StringBuilder();
+      boolean received = waitForFileUpdate(monitorId, timeout, new FileMonitorDataConsumer() {
+         @Override
+         public void dataDiscarded(long characters)
+         {
+         }
+
+         @Override
+         public void dataReceived(String data)
+         {
+            sb.append(data);
+         }
+      });
+      return received ? sb.toString() : null;
+   }
+
+   /**
+    * Wait for update from specific file monitor and pass all data received since last call to given consumer. Consumer is
+    * called on calling thread after data is taken from session buffer, so slow consumer does not block processing of incoming
+    * updates. If some data was dropped because of file monitor buffer overflow (see {@link #setFileMonitorBufferSize(int)}),
+    * consumer will be informed about amount of dropped data before receiving remaining chunks.
+    *
+    * @param monitorId file monitor ID (previously returned by <code>downloadFileFromAgent</code>
+    * @param timeout Wait timeout in milliseconds
+    * @param consumer data consumer
+    * @return true if any data was received and passed to consumer, false on timeout
+    */
+   public boolean waitForFileUpdate(UUID monitorId, final int timeout, FileMonitorDataConsumer consumer)
+   {
+      int timeRemaining = timeout;
+      List<String> chunks = new ArrayList<String>();
+      long discarded = 0;
+
+      synchronized(receivedFileUpdates)
+      {
+         while(true)
          {
-            data = receivedFileUpdates.get(monitorId);
-            if (data != null)
+            FileMonitorBuffer buffer = receivedFileUpdates.get(monitorId);
+            if ((buffer != null) && !buffer.isEmpty())
             {
-               receivedFileUpdates.remove(monitorId);
+               discarded = buffer.drainTo(chunks);
                break;
             }
 
+            if (timeRemaining <= 0)
+               return false;
+
             long startTime = System.currentTimeMillis();
             try
             {
@@ -2183,7 +2479,15 @@ public String waitForFileUpdate(UUID monitorId, final int timeout)
             timeRemaining -= System.currentTimeMillis() - startTime;
          }
       }
-      return data;
+
+      if (discarded > 0)
+      {
+         logger.debug("File monitor " + monitorId + ": " + discarded + " characters discarded due to buffer overflow");
+         consumer.dataDiscarded(discarded);
+      }
+      for(String s : chunks)
+         consumer.dataReceived(s);
+      return true;
    }
 
    /**
@@ -2261,9 +2565,10 @@ public void connect(int[] componentVersions) throws IOException, UnknownHostExce
          socket = new Socket();
          socket.connect(new InetSocketAddress(connAddress, connPort), connectTimeout);
          msgWaitQueue = new NXCPMsgWaitQueue(commandTimeout);
+         fileDataWriter.start();
          recvThread = new ReceiverThread();
          housekeeperThread = new HousekeeperThread();
-         new NotificationProcessor();
+         notificationDispatcher.start();
          new BackgroundUserSync();
 
          // get server information
@@ -2724,10 +3029,7 @@ private synchronized void disconnect(int reason)
       }
 
       // cause notification processing thread to stop
-      notificationQueue.clear();
-      if (reason != SessionNotification.USER_DISCONNECT)
-         notificationQueue.offer(new SessionNotification(reason));
-      notificationQueue.offer(new SessionNotification(SessionNotification.STOP_PROCESSING_THREAD));
+      notificationDispatcher.shutdown((reason != SessionNotification.USER_DISCONNECT) ? new SessionNotification(reason) : null);
 
       // cause user sync thrad to stop
       synchronized(userSyncList)
@@ -2751,6 +3053,8 @@ private synchronized void disconnect(int reason)
          recvThread = null;
       }
 
+      fileDataWriter.shutdown();
+
       if (housekeeperThread != null)
       {
          logger.debug("Waiting for housekeepeer thread shutdown");
@@ -2774,19 +3078,20 @@ private synchronized void disconnect(int reason)
          msgWaitQueue.shutdown();
          msgWaitQueue = null;
       }
+      failAsyncRequests();
+
+      alarmsSynchronized = false;
+      alarmCache.reset();
 
       connected = false;
       socket = null;
 
-      listeners.clear();
+      notificationDispatcher.clearListeners();
       consoleListeners.clear();
       messageSubscriptions.clear();
       receivedFiles.clear();
       receivedFileUpdates.clear();
-      objectList.clear();
-      objectListGUID.clear();
-      partialObjectList.clear();
-      zoneList.clear();
+      objectCache.clear();
       eventTemplates.clear();
       userDatabase.clear();
       userDatabaseGUID.clear();
@@ -2869,6 +3174,10 @@ private void reconnect()
             login(authenticationToken);
             logger.debug("Reconnect completed");
 
+            // Alarm subscription is lost with old server session, cache will be re-synchronized on next use
+            alarmsSynchronized = false;
+            alarmCache.reset();
+
             synchronized(this)
             {
                reconnectThread = null;
@@ -3014,6 +3323,91 @@ public void setRecvBufferSize(int defaultBufferSize, int maxBufferSize)
       this.maxRecvBufferSize = maxBufferSize;
    }
 
+   /**
+    * Get compression level used for outgoing messages and file transfers.
+    *
+    * @return compression level (1 to 9)
+    */
+   public int getCompressionLevel()
+   {
+      return compressionLevel;
+   }
+
+   /**
+    * Set compression level used for outgoing messages and file transfers (if compression is negotiated with the server).
+    * Lower levels are significantly faster and are better suited for fast networks, higher levels produce smaller messages.
+    *
+    * @param level compression level (1 to 9)
+    */
+   public synchronized void setCompressionLevel(int level)
+   {
+      messageWriter.setCompressionLevel(level);
+      compressionLevel = level;
+   }
+
+   /**
+    * Get size of data chunk used for file uploads.
+    *
+    * @return chunk size in bytes
+    */
+   public int getFileTransferChunkSize()
+   {
+      return fileTransferChunkSize;
+   }
+
+   /**
+    * Set size of data chunk used for file uploads. Larger chunks reduce per-message overhead on fast networks. Chunk size should
+    * not exceed maximum message size accepted by server. Chunks of compressed streams are always limited to 64KB of source data.
+    *
+    * @param size chunk size in bytes (minimum 4096)
+    */
+   public void setFileTransferChunkSize(int size)
+   {
+      fileTransferChunkSize = Math.max(size, 4096);
+   }
+
+   /**
+    * Get number of file upload chunks that can be prepared ahead of sending.
+    *
+    * @return upload window size
+    */
+   public int getFileTransferWindowSize()
+   {
+      return fileTransferWindowSize;
+   }
+
+   /**
+    * Set number of file upload chunks that can be read and compressed ahead of sending. Larger window uses more memory
+    * (window size multiplied by chunk size) but better hides disk and compression latency.
+    *
+    * @param size upload window size (minimum 1)
+    */
+   public void setFileTransferWindowSize(int size)
+   {
+      fileTransferWindowSize = Math.max(size, 1);
+   }
+
+   /**
+    * Get size of per-monitor buffer for file monitor updates.
+    *
+    * @return buffer size in characters
+    */
+   public int getFileMonitorBufferSize()
+   {
+      return fileMonitorBufferSize;
+   }
+
+   /**
+    * Set size of per-monitor buffer for file monitor updates. If consumer does not take updates in time and amount of pending
+    * data exceeds this limit, oldest data is dropped. New size applies to monitors started after the change.
+    *
+    * @param size buffer size in characters
+    */
+   public void setFileMonitorBufferSize(int size)
+   {
+      fileMonitorBufferSize = Math.max(size, 1024);
+   }
+
    /**
     * Get server address
     *
@@ -3504,49 +3898,211 @@ public void syncObjects(boolean syncNodeComponents) throws IOException, NXCExcep
    {
       syncObjectCategories();
 
+      // Load local snapshot if enabled, so only objects changed since snapshot was taken will be requested
+      ObjectSnapshot snapshot = null;
+      long baseTimestamp = 0;
+      if ((objectSnapshotDirectory != null) && (objectSnapshot == null))
+      {
+         snapshot = new ObjectSnapshot(objectSnapshotDirectory, serverId, userId, syncNodeComponents);
+         if (snapshot.load())
+         {
+            for(NXCPMessage m : snapshot.getMessages())
+            {
+               AbstractObject object = createObjectFromMessage(m);
+               if (!object.isPartialObject())
+                  objectCache.put(object);
+            }
+            baseTimestamp = snapshot.getTimestamp();
+            snapshotObjectsWithoutCredentials = ConcurrentHashMap.newKeySet();
+            snapshotObjectsWithoutCredentials.addAll(snapshot.getObjectsWithoutCredentials());
+         }
+         objectSnapshot = snapshot;
+      }
+      long syncStartTime = getServerTime() / 1000 - OBJECT_SNAPSHOT_TIME_MARGIN;
+
       syncObjects.acquireUninterruptibly();
 
       NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_OBJECTS);
       msg.setField(NXCPCodes.VID_SYNC_NODE_COMPONENTS, syncNodeComponents);
+      if (baseTimestamp != 0)
+         msg.setFieldInt64(NXCPCodes.VID_TIMESTAMP, baseTimestamp);
       sendMessage(msg);
       waitForRCC(msg.getMessageId());
 
       waitForSync(syncObjects, commandTimeout * 10);
       objectsSynchronized = objectsSynchronized || syncNodeComponents;
+
+      if (snapshot != null)
+      {
+         if (baseTimestamp != 0)
+         {
+            removeStaleSnapshotObjects();
+            reloadSnapshotObjectsWithoutCredentials();
+         }
+         snapshot.setTimestamp(syncStartTime);
+         try
+         {
+            snapshot.save();
+         }
+         catch(IOException e)
+         {
+            logger.warn("Cannot save object snapshot", e);
+         }
+      }
       sendNotification(new SessionNotification(SessionNotification.OBJECT_SYNC_COMPLETED));
       subscribe(CHANNEL_OBJECTS);
    }
 
    /**
-    * Synchronizes selected object set with the server.
+    * Re-read from server objects loaded from snapshot without credentials and not updated by incremental synchronization.
+    * Snapshot does not store credentials, and such objects would otherwise appear to have empty credentials (which then could
+    * be written back to server by object property editors).
     *
-    * @param objects      identifiers of objects need to be synchronized
-    * @throws IOException  if socket I/O error occurs
+    * @throws IOException if socket I/O error occurs
     * @throws NXCException if NetXMS server returns an error or operation was timed out
     */
-   public void syncObjectSet(long[] objects) throws IOException, NXCException
+   private void reloadSnapshotObjectsWithoutCredentials() throws IOException, NXCException
    {
-      syncObjectSet(objects, 0, 0);
+      final Set<Long> restoredObjects = snapshotObjectsWithoutCredentials;
+      if (restoredObjects == null)
+         return;
+
+      try
+      {
+         List<Long> objects = new ArrayList<Long>(restoredObjects.size());
+         for(Long id : restoredObjects)
+         {
+            if (objectCache.get(id) != null)
+               objects.add(id);
+         }
+         if (!objects.isEmpty())
+         {
+            logger.debug("Reading " + objects.size() + " objects restored from snapshot without credentials");
+            syncObjectSet(objects, 0, OBJECT_SYNC_WAIT);
+         }
+      }
+      finally
+      {
+         snapshotObjectsWithoutCredentials = null;
+      }
    }
 
    /**
-    * Synchronizes selected object set with the server. The following options are accepted:<br>
-    * <code>OBJECT_SYNC_NOTIFY</code> - send object update notification for each received object<br>
-    * <code>OBJECT_SYNC_WAIT</code> - wait until all requested objects received<br>
-    *
-    * @param objects identifiers of objects need to be synchronized
-    * @param options sync options (see above)
-    * @throws IOException if socket I/O error occurs
-    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    * Remove objects loaded from snapshot that were deleted on server since snapshot was taken. Incremental synchronization only
+    * returns changed objects, so deleted objects are detected by their parents no longer referring to them (parent objects are
+    * updated on server when child is deleted).
     */
-   public void syncObjectSet(long[] objects, int options) throws IOException, NXCException
+   private void removeStaleSnapshotObjects()
    {
-      syncObjectSet(objects, 0, options);
-   }
+      List<Long> staleObjects = new ArrayList<Long>();
+      Map<Long, long[]> childLists = new HashMap<Long, long[]>();
+      for(AbstractObject object : objectCache.values())
+      {
+         long[] parents = object.getParentIdList();
+         if (parents.length == 0)
+            continue;
 
-   /**
-    * Synchronizes selected object set with the server. The following options are accepted:<br>
-    * <code>OBJECT_SYNC_NOTIFY</code> - send object update notification for each received object<br>
+         boolean stale = true;
+         for(long parentId : parents)
+         {
+            long[] children = childLists.get(parentId);
+            if (children == null)
+            {
+               AbstractObject parent = objectCache.get(parentId);
+               if (parent != null)
+               {
+                  children = parent.getChildIdList();
+                  Arrays.sort(children);
+                  childLists.put(parentId, children);
+               }
+            }
+            if ((children == null) || (Arrays.binarySearch(children, object.getObjectId()) >= 0))
+            {
+               stale = false; // parent is not accessible or still refers to this object
+               break;
+            }
+         }
+         if (stale)
+            staleObjects.add(object.getObjectId());
+      }
+
+      for(Long id : staleObjects)
+      {
+         objectCache.removeWithOrphans(id);
+         objectSnapshot.remove(id);
+      }
+      if (!staleObjects.isEmpty())
+         logger.debug(staleObjects.size() + " stale objects removed after incremental synchronization");
+   }
+
+   /**
+    * Set directory for persistent object snapshot. If set, object set synchronized by <code>syncObjects</code> is saved to
+    * snapshot file (separate for each server and user), and subsequent synchronization by new session with same directory will
+    * load objects from snapshot and request only objects changed since snapshot was taken. Must be called before
+    * <code>syncObjects</code>. Objects that become inaccessible because of access rights change are not detected by incremental
+    * synchronization; delete snapshot file to force full synchronization. Credentials are not stored in snapshot, so objects
+    * that have them (like nodes for users with modify access) are always read again from server during synchronization.
+    *
+    * @param directory directory for snapshot files or null to disable snapshot
+    */
+   public void setObjectSnapshotDirectory(File directory)
+   {
+      objectSnapshotDirectory = directory;
+   }
+
+   /**
+    * Get directory for persistent object snapshot.
+    *
+    * @return directory for persistent object snapshot or null if snapshot is disabled
+    */
+   public File getObjectSnapshotDirectory()
+   {
+      return objectSnapshotDirectory;
+   }
+
+   /**
+    * Save current object snapshot (if enabled). Snapshot is saved automatically after <code>syncObjects</code> call; this method
+    * can be used to persist updates received since then, for example before disconnecting.
+    *
+    * @throws IOException if snapshot cannot be written
+    */
+   public void saveObjectSnapshot() throws IOException
+   {
+      final ObjectSnapshot snapshot = objectSnapshot;
+      if (snapshot != null)
+         snapshot.save();
+   }
+
+   /**
+    * Synchronizes selected object set with the server.
+    *
+    * @param objects      identifiers of objects need to be synchronized
+    * @throws IOException  if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public void syncObjectSet(long[] objects) throws IOException, NXCException
+   {
+      syncObjectSet(objects, 0, 0);
+   }
+
+   /**
+    * Synchronizes selected object set with the server. The following options are accepted:<br>
+    * <code>OBJECT_SYNC_NOTIFY</code> - send object update notification for each received object<br>
+    * <code>OBJECT_SYNC_WAIT</code> - wait until all requested objects received<br>
+    *
+    * @param objects identifiers of objects need to be synchronized
+    * @param options sync options (see above)
+    * @throws IOException if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public void syncObjectSet(long[] objects, int options) throws IOException, NXCException
+   {
+      syncObjectSet(objects, 0, options);
+   }
+
+   /**
+    * Synchronizes selected object set with the server. The following options are accepted:<br>
+    * <code>OBJECT_SYNC_NOTIFY</code> - send object update notification for each received object<br>
     * <code>OBJECT_SYNC_WAIT</code> - wait until all requested objects received<br>
     * <code>OBJECT_SYNC_ALLOW_PARTIAL</code> - allow reading partial object information (map ID should be set to get partial access to objects)
     *
@@ -3636,15 +4192,12 @@ public void syncMissingObjects(long[] objects, long mapId, int options) throws I
    {
       final long[] syncList = Arrays.copyOf(objects, objects.length);
       int count = syncList.length;
-      synchronized(objectList)
+      for(int i = 0; i < syncList.length; i++)
       {
-         for(int i = 0; i < syncList.length; i++)
+         if (objectCache.contains(syncList[i]))
          {
-            if (objectList.containsKey(syncList[i]))
-            {
-               syncList[i] = 0;
-               count--;
-            }
+            syncList[i] = 0;
+            count--;
          }
       }
 
@@ -3682,13 +4235,10 @@ public void syncMissingObjects(Collection<Long> objects, long mapId, int options
    {
       long[] syncList = new long[objects.size()];
       int count = 0;
-      synchronized(objectList)
+      for(Long id : objects)
       {
-         for(Long id : objects)
-         {
-            if (!objectList.containsKey(id))
-               syncList[count++] = id;
-         }
+         if (!objectCache.contains(id))
+            syncList[count++] = id;
       }
 
       if (count > 0)
@@ -3750,14 +4300,11 @@ public List<AbstractObject> findObjectByRegex(String regex)
       List<AbstractObject> objects = new ArrayList<AbstractObject>();
       Matcher matcher = Pattern.compile(regex).matcher("");
 
-      synchronized(objectList)
+      for(AbstractObject o : getNamePatternCandidates(regex))
       {
-         for(AbstractObject o : objectList.values())
-         {
-            matcher.reset(o.getObjectName());
-            if (matcher.matches())
-               objects.add(o);
-         }
+         matcher.reset(o.getObjectName());
+         if (matcher.matches())
+            objects.add(o);
       }
 
       return objects;
@@ -3771,10 +4318,7 @@ public List<AbstractObject> findObjectByRegex(String regex)
     */
    public AbstractObject findObjectById(final long id)
    {
-      synchronized(objectList)
-      {
-         return objectList.get(id);
-      }
+      return objectCache.get(id);
    }
 
    /**
@@ -3786,11 +4330,8 @@ public AbstractObject findObjectById(final long id)
     */
    public AbstractObject findObjectById(final long id, boolean allowPartial)
    {
-      synchronized(objectList)
-      {
-         AbstractObject object = objectList.get(id);
-         return ((object != null) || !allowPartial) ? object : partialObjectList.get(id);
-      }
+      AbstractObject object = objectCache.get(id);
+      return ((object != null) || !allowPartial) ? object : objectCache.getPartial(id);
    }
 
    /**
@@ -3801,32 +4342,36 @@ public AbstractObject findObjectById(final long id, boolean allowPartial)
     */
    public FutureObject findFutureObjectById(final long id)
    {
-      final FutureObject object;
-      synchronized(objectList)
-      {
-         AbstractObject result = objectList.get(id);
-         if (result == null)
+      AbstractObject result = objectCache.get(id);
+      if (result != null)
+         return new FutureObject(result);
+
+      // Register listener before second lookup, so object update received in between will not be missed
+      final FutureObject object = new FutureObject();
+      final SessionListener listener = new SessionListener() {
+         @Override
+         public void notificationHandler(SessionNotification n)
          {
-            object = new FutureObject();   
-            addListener(new SessionListener() {               
-               @Override
-               public void notificationHandler(SessionNotification n)
+            if (n.code == SessionNotification.OBJECT_CHANGED && n.subCode == id)
+            {
+               synchronized(object)
                {
-                  if (n.code == SessionNotification.OBJECT_CHANGED && n.subCode == id)
-                  {
-                     synchronized(object)
-                     {
-                        object.setObject((AbstractObject)n.object);
-                        object.notifyAll();
-                     }
-                     removeListener(this);
-                  }
+                  object.setObject((AbstractObject)n.object);
+                  object.notifyAll();
                }
-            });
+               removeListener(this);
+            }
          }
-         else
+      };
+      addListener(listener);
+      result = objectCache.get(id);
+      if (result != null)
+      {
+         removeListener(listener);
+         synchronized(object)
          {
-            object = new FutureObject(result);
+            object.setObject(result);
+            object.notifyAll();
          }
       }
       return object;
@@ -3843,27 +4388,34 @@ public void findObjectAsync(final long id, ObjectCreationListener callback)
       if (callback == null)
          return;
 
-      synchronized(objectList)
+      AbstractObject object = objectCache.get(id);
+      if (object != null)
       {
-         AbstractObject object = objectList.get(id);
-         if (object == null)
-         { 
-            addListener(new SessionListener() {
-               @Override
-               public void notificationHandler(SessionNotification n)
-               {
-                  if (n.code == SessionNotification.OBJECT_CHANGED && n.subCode == id)
-                  {
-                     callback.objectCreated(findObjectById(id));
-                     removeListener(this);
-                  }
-               }
-            });
-         }
-         else
+         callback.objectCreated(object);
+         return;
+      }
+
+      // Register listener before second lookup, so object update received in between will not be missed
+      final AtomicBoolean completed = new AtomicBoolean(false);
+      final SessionListener listener = new SessionListener() {
+         @Override
+         public void notificationHandler(SessionNotification n)
          {
-            callback.objectCreated((AbstractObject)object);
+            if (n.code == SessionNotification.OBJECT_CHANGED && n.subCode == id)
+            {
+               removeListener(this);
+               if (completed.compareAndSet(false, true))
+                  callback.objectCreated(findObjectById(id));
+            }
          }
+      };
+      addListener(listener);
+      object = objectCache.get(id);
+      if (object != null)
+      {
+         removeListener(listener);
+         if (completed.compareAndSet(false, true))
+            callback.objectCreated(object);
       }
    }
 
@@ -3906,19 +4458,16 @@ public List<AbstractObject> findMultipleObjects(final long[] idList, Class<? ext
    {
       List<AbstractObject> result = new ArrayList<AbstractObject>(idList.length);
 
-      synchronized(objectList)
+      for(int i = 0; i < idList.length; i++)
       {
-         for(int i = 0; i < idList.length; i++)
+         final AbstractObject object = objectCache.get(idList[i]);
+         if ((object != null) && ((classFilter == null) || classFilter.isInstance(object)))
          {
-            final AbstractObject object = objectList.get(idList[i]);
-            if ((object != null) && ((classFilter == null) || classFilter.isInstance(object)))
-            {
-               result.add(object);
-            }
-            else if (returnUnknown)
-            {
-               result.add(new UnknownObject(idList[i], this));
-            }
+            result.add(object);
+         }
+         else if (returnUnknown)
+         {
+            result.add(new UnknownObject(idList[i], this));
          }
       }
 
@@ -3949,19 +4498,16 @@ public List<AbstractObject> findMultipleObjects(final Collection<Long> idList, C
    {
       List<AbstractObject> result = new ArrayList<AbstractObject>(idList.size());
 
-      synchronized(objectList)
+      for(Long id : idList)
       {
-         for(Long id : idList)
+         final AbstractObject object = objectCache.get(id);
+         if ((object != null) && ((classFilter == null) || classFilter.isInstance(object)))
          {
-            final AbstractObject object = objectList.get(id);
-            if ((object != null) && ((classFilter == null) || classFilter.isInstance(object)))
-            {
-               result.add(object);
-            }
-            else if (returnUnknown)
-            {
-               result.add(new UnknownObject(id, this));
-            }
+            result.add(object);
+         }
+         else if (returnUnknown)
+         {
+            result.add(new UnknownObject(id, this));
          }
       }
 
@@ -3976,10 +4522,7 @@ else if (returnUnknown)
     */
    public AbstractObject findObjectByGUID(final UUID guid)
    {
-      synchronized(objectList)
-      {
-         return objectListGUID.get(guid);
-      }
+      return objectCache.getByGUID(guid);
    }
 
    /**
@@ -4005,10 +4548,7 @@ public <T extends AbstractObject> T findObjectByGUID(final UUID guid, final Clas
     */
    public Zone findZone(int zoneUIN)
    {
-      synchronized(objectList)
-      {
-         return zoneList.get(zoneUIN);
-      }
+      return objectCache.getZone(zoneUIN);
    }
 
    /**
@@ -4018,10 +4558,7 @@ public Zone findZone(int zoneUIN)
     */
    public List<Zone> getAllZones()
    {
-      synchronized(objectList)
-      {
-         return new ArrayList<Zone>(zoneList.values());
-      }
+      return objectCache.getZones();
    }
 
    /**
@@ -4034,19 +4571,7 @@ public List<Zone> getAllZones()
     */
    public AbstractObject findObjectByName(final String name)
    {
-      AbstractObject result = null;
-      synchronized(objectList)
-      {
-         for(AbstractObject object : objectList.values())
-         {
-            if (object.getObjectName().equalsIgnoreCase(name))
-            {
-               result = object;
-               break;
-            }
-         }
-      }
-      return result;
+      return objectCache.getAnyByName(name);
    }
 
    /**
@@ -4060,15 +4585,12 @@ public AbstractObject findObjectByName(final String name)
    public AbstractObject findObjectByName(final String name, ObjectFilter filter)
    {
       AbstractObject result = null;
-      synchronized(objectList)
+      for(AbstractObject object : objectCache.getByName(name))
       {
-         for(AbstractObject object : objectList.values())
+         if (filter.accept(object))
          {
-            if (object.getObjectName().equalsIgnoreCase(name) && filter.accept(object))
-            {
-               result = object;
-               break;
-            }
+            result = object;
+            break;
          }
       }
       return result;
@@ -4085,16 +4607,13 @@ public AbstractObject findObjectByNamePattern(final String pattern)
    {
       AbstractObject result = null;
       Matcher matcher = Pattern.compile(pattern).matcher("");
-      synchronized(objectList)
+      for(AbstractObject object : getNamePatternCandidates(pattern))
       {
-         for(AbstractObject object : objectList.values())
+         matcher.reset(object.getObjectName());
+         if (matcher.matches())
          {
-            matcher.reset(object.getObjectName());
-            if (matcher.matches())
-            {
-               result = object;
-               break;
-            }
+            result = object;
+            break;
          }
       }
       return result;
@@ -4109,15 +4628,12 @@ public AbstractObject findObjectByNamePattern(final String pattern)
    public AbstractObject findObject(ObjectFilter filter)
    {
       AbstractObject result = null;
-      synchronized(objectList)
+      for(AbstractObject object : objectCache.values())
       {
-         for(AbstractObject object : objectList.values())
+         if (filter.accept(object))
          {
-            if (filter.accept(object))
-            {
-               result = object;
-               break;
-            }
+            result = object;
+            break;
          }
       }
       return result;
@@ -4132,14 +4648,11 @@ public AbstractObject findObject(ObjectFilter filter)
    public List<AbstractObject> filterObjects(ObjectFilter filter)
    {
       List<AbstractObject> result = new ArrayList<AbstractObject>();
-      synchronized(objectList)
+      for(AbstractObject object : objectCache.values())
       {
-         for(AbstractObject object : objectList.values())
+         if (filter.accept(object))
          {
-            if (filter.accept(object))
-            {
-               result.add(object);
-            }
+            result.add(object);
          }
       }
       return result;
@@ -4152,47 +4665,56 @@ public List<AbstractObject> filterObjects(ObjectFilter filter)
     * @return List of all matching top level objects (either without parents or with inaccessible parents)
     */
    public AbstractObject[] getTopLevelObjects(ObjectFilter objectFilter)
+   {
+      return getTopLevelObjects(objectCache.values(), objectFilter);
+   }
+
+   /**
+    * Get top-level objects from given set of candidates.
+    *
+    * @param candidates candidate objects
+    * @param objectFilter filter for objects (may be null)
+    * @return all matching top level objects (either without parents or with inaccessible parents)
+    */
+   private AbstractObject[] getTopLevelObjects(Collection<AbstractObject> candidates, ObjectFilter objectFilter)
    {
       HashSet<AbstractObject> list = new HashSet<AbstractObject>();
-      synchronized(objectList)
+      for(AbstractObject object : candidates)
       {
-         for(AbstractObject object : objectList.values())
-         {
-            if ((objectFilter != null) && !objectFilter.accept(object))
-               continue;
+         if ((objectFilter != null) && !objectFilter.accept(object))
+            continue;
 
-            if (!object.hasParents())
-            {
-               list.add(object);
-            }
-            else
+         if (!object.hasParents())
+         {
+            list.add(object);
+         }
+         else
+         {
+            boolean hasParents = false;
+            Iterator<Long> it = object.getParents();
+            while(it.hasNext())
             {
-               boolean hasParents = false;
-               Iterator<Long> it = object.getParents();
-               while(it.hasNext())
+               Long parent = it.next();
+               if (objectFilter != null)
                {
-                  Long parent = it.next();
-                  if (objectFilter != null)
+                  AbstractObject p = objectCache.get(parent);
+                  if ((p != null) && objectFilter.accept(p))
                   {
-                     AbstractObject p = objectList.get(parent);
-                     if ((p != null) && objectFilter.accept(p))
-                     {
-                        hasParents = true;
-                        break;
-                     }
+                     hasParents = true;
+                     break;
                   }
-                  else
+               }
+               else
+               {
+                  if (objectCache.contains(parent))
                   {
-                     if (objectList.containsKey(parent))
-                     {
-                        hasParents = true;
-                        break;
-                     }
+                     hasParents = true;
+                     break;
                   }
                }
-               if (!hasParents)
-                  list.add(object);
             }
+            if (!hasParents)
+               list.add(object);
          }
       }
       return list.toArray(AbstractObject[]::new);
@@ -4208,7 +4730,10 @@ public AbstractObject[] getTopLevelObjects(Set<Integer> classFilter)
    {
       if (classFilter == null)
          return getTopLevelObjects((ObjectFilter)null);
-      return getTopLevelObjects((AbstractObject o) -> classFilter.contains(o.getObjectClass()));
+      List<AbstractObject> candidates = new ArrayList<AbstractObject>();
+      for(Integer c : classFilter)
+         candidates.addAll(objectCache.getByClass(c));
+      return getTopLevelObjects(candidates, (AbstractObject o) -> classFilter.contains(o.getObjectClass()));
    }
 
    /**
@@ -4228,10 +4753,88 @@ public AbstractObject[] getTopLevelObjects()
     */
    public List<AbstractObject> getAllObjects()
    {
-      synchronized(objectList)
-      {
-         return new ArrayList<AbstractObject>(objectList.values());
-      }
+      return new ArrayList<AbstractObject>(objectCache.values());
+   }
+
+   /**
+    * Get candidate objects for matching name against given regular expression. If regular expression starts with literal
+    * prefix, only objects with names starting with that prefix (case-insensitive) are returned, otherwise all objects.
+    *
+    * @param regex regular expression for object name
+    * @return candidate objects
+    */
+   private Collection<AbstractObject> getNamePatternCandidates(String regex)
+   {
+      String prefix = ObjectCache.getLiteralPrefix(regex);
+      return prefix.isEmpty() ? objectCache.values() : objectCache.getByNamePrefix(prefix);
+   }
+
+   /**
+    * Find all objects of given class. Uses class index and does not scan entire object cache.
+    *
+    * @param objectClass object class (one of AbstractObject.OBJECT_xxx constants)
+    * @return list of objects of given class (empty list if nothing found)
+    */
+   public List<AbstractObject> findObjectsByClass(int objectClass)
+   {
+      return objectCache.getByClass(objectClass);
+   }
+
+   /**
+    * Find all objects with given name. Name comparison is case-insensitive.
+    *
+    * @param name object name
+    * @return list of objects with given name (empty list if nothing found)
+    */
+   public List<AbstractObject> findObjectsByName(String name)
+   {
+      return objectCache.getByName(name);
+   }
+
+   /**
+    * Find all objects with name starting with given prefix. Name comparison is case-insensitive.
+    *
+    * @param prefix object name prefix
+    * @return list of objects with matching names (empty list if nothing found)
+    */
+   public List<AbstractObject> findObjectsByNamePrefix(String prefix)
+   {
+      return objectCache.getByNamePrefix(prefix);
+   }
+
+   /**
+    * Find all nodes, interfaces, and access points with given IP address. For nodes primary IP address is checked, for
+    * interfaces all assigned addresses are checked.
+    *
+    * @param address IP address
+    * @return list of objects with given IP address (empty list if nothing found)
+    */
+   public List<AbstractObject> findObjectsByIpAddress(InetAddress address)
+   {
+      return objectCache.getByAddress(address);
+   }
+
+   /**
+    * Find all nodes, interfaces, and access points with given MAC address. For nodes primary MAC address is checked.
+    *
+    * @param macAddress MAC address
+    * @return list of objects with given MAC address (empty list if nothing found)
+    */
+   public List<AbstractObject> findObjectsByMacAddress(MacAddress macAddress)
+   {
+      return objectCache.getByMacAddress(macAddress);
+   }
+
+   /**
+    * Get all known objects that have given object as parent. Unlike AbstractObject.getChildrenAsArray() this method works
+    * even if parent object itself is not available in local object cache.
+    *
+    * @param parentId parent object ID
+    * @return list of child objects (empty list if nothing found)
+    */
+   public List<AbstractObject> findChildObjects(long parentId)
+   {
+      return objectCache.getChildren(parentId);
    }
 
    /**
@@ -4325,6 +4928,21 @@ public List<AbstractObject> queryObjects(String query, Consumer<Integer> progres
       return queryObjects(query, 0L, progressCallback);
    }
 
+   /**
+    * Query objects on server side asynchronously, optionally only those located below given root object.
+    *
+    * @param query query to execute
+    * @param rootObjectId root object ID or 0 to query all objects
+    * @return future for list of matching objects
+    */
+   public CompletableFuture<List<AbstractObject>> queryObjectsAsync(String query, long rootObjectId)
+   {
+      NXCPMessage request = newMessage(NXCPCodes.CMD_QUERY_OBJECTS);
+      request.setField(NXCPCodes.VID_QUERY, query);
+      request.setFieldUInt32(NXCPCodes.VID_ROOT, rootObjectId);
+      return thenApplyCancellable(sendRequestAsync(request), (response) -> findMultipleObjects(response.getFieldAsUInt32Array(NXCPCodes.VID_OBJECT_LIST), false));
+   }
+
    /**
     * Query objects on server side and read certain object properties. Available properties are the same as in corresponding NXSL
     * objects or computed properties set using "with" statement in query. If <code>readAllComputedProperties</code> is set to
@@ -4478,7 +5096,148 @@ public HashMap<Long, Alarm> getAlarms() throws IOException, NXCException
          alarmList.put(alarmId, new Alarm(request));
       }
 
-      return alarmList;
+      return alarmList;
+   }
+
+   /**
+    * Get list of active alarms asynchronously. See {@link #getAlarms()} for details.
+    *
+    * @return future for map of alarms
+    */
+   public CompletableFuture<HashMap<Long, Alarm>> getAlarmsAsync()
+   {
+      NXCPMessage request = newMessage(NXCPCodes.CMD_GET_ALL_ALARMS);
+      return thenApplyCancellable(sendRequestAsync(request, false, NXCPCodes.CMD_ALARM_DATA, (m) -> m.getFieldAsInt32(NXCPCodes.VID_ALARM_ID) == 0), (messages) -> {
+         final HashMap<Long, Alarm> alarmList = new HashMap<Long, Alarm>(messages.size());
+         for(NXCPMessage m : messages)
+         {
+            long alarmId = m.getFieldAsInt32(NXCPCodes.VID_ALARM_ID);
+            if (alarmId != 0)
+               alarmList.put(alarmId, new Alarm(m));
+         }
+         return alarmList;
+      });
+   }
+
+   /**
+    * Synchronize local alarm cache and subscribe to alarm change notifications. After synchronization cache is kept current
+    * from notifications and can be queried with {@link #findAlarmById(long)}, {@link #getCachedAlarms()} and
+    * {@link #findAlarms(Set, int, int)} without further server requests. Calling this method again will reload cache
+    * completely. If synchronization is already running in another thread, this method waits for it to complete instead of
+    * starting new one.
+    *
+    * @throws IOException  if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public void syncAlarms() throws IOException, NXCException
+   {
+      CompletableFuture<Void> sync;
+      boolean owner = false;
+      synchronized(alarmSyncLock)
+      {
+         sync = alarmSyncInProgress;
+         if (sync == null)
+         {
+            sync = new CompletableFuture<Void>();
+            alarmSyncInProgress = sync;
+            owner = true;
+         }
+      }
+
+      if (!owner)
+      {
+         try
+         {
+            sync.get();
+         }
+         catch(InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            throw new NXCException(RCC.OPERATION_CANCELLED);
+         }
+         catch(ExecutionException e)
+         {
+            Throwable cause = e.getCause();
+            if (cause instanceof NXCException)
+               throw (NXCException)cause;
+            if (cause instanceof IOException)
+               throw (IOException)cause;
+            throw new NXCException(RCC.INTERNAL_ERROR, cause);
+         }
+         return;
+      }
+
+      try
+      {
+         alarmCache.beginSync();
+         try
+         {
+            if (!alarmsSynchronized)
+               subscribe(CHANNEL_ALARMS);
+            alarmCache.completeSync(getAlarms().values());
+         }
+         catch(IOException | NXCException | RuntimeException e)
+         {
+            alarmCache.reset();
+            alarmsSynchronized = false;
+            sync.completeExceptionally(e);
+            throw e;
+         }
+         alarmsSynchronized = true;
+         sync.complete(null);
+      }
+      finally
+      {
+         synchronized(alarmSyncLock)
+         {
+            alarmSyncInProgress = null;
+         }
+      }
+   }
+
+   /**
+    * Check if local alarm cache is synchronized.
+    *
+    * @return true if alarm cache is synchronized
+    */
+   public boolean areAlarmsSynchronized()
+   {
+      return alarmsSynchronized;
+   }
+
+   /**
+    * Find alarm in local cache by ID. Alarms should be synchronized with {@link #syncAlarms()} first.
+    *
+    * @param alarmId alarm ID
+    * @return alarm or null if not found
+    */
+   public Alarm findAlarmById(long alarmId)
+   {
+      return alarmCache.get(alarmId);
+   }
+
+   /**
+    * Get all alarms from local cache. Alarms should be synchronized with {@link #syncAlarms()} first.
+    *
+    * @return list of cached alarms
+    */
+   public List<Alarm> getCachedAlarms()
+   {
+      return alarmCache.getAll();
+   }
+
+   /**
+    * Find alarms in local cache matching given criteria. Alarms should be synchronized with {@link #syncAlarms()} first.
+    *
+    * @param sourceObjects set of source object IDs (null to match any source object)
+    * @param stateMask mask of alarm state bits ({@link Alarm#STATE_BIT_OUTSTANDING} etc.) to match (0 to match any state)
+    * @param severityMask mask of current severities to match, where each severity is represented by bit
+    *           <code>1 &lt;&lt; severity.getValue()</code> (0 to match any severity)
+    * @return list of matching alarms
+    */
+   public List<Alarm> findAlarms(Set<Long> sourceObjects, int stateMask, int severityMask)
+   {
+      return alarmCache.find(sourceObjects, stateMask, severityMask);
    }
 
    /**
@@ -5543,9 +6302,17 @@ public DciValue[] getDataCollectionSummary(final long nodeId, final long mapId,
       msg.setField(NXCPCodes.VID_INCLUDE_NOVALUE_OBJECTS, includeNoValueObjects);
       msg.setFieldUInt32(NXCPCodes.VID_MAP_ID, mapId);
       sendMessage(msg);
+      return parseDataCollectionSummary(waitForRCC(msg.getMessageId()));
+   }
 
-      final NXCPMessage response = waitForRCC(msg.getMessageId());
-
+   /**
+    * Parse DCI values from data collection summary response.
+    *
+    * @param response response message
+    * @return list of DCI values
+    */
+   private static DciValue[] parseDataCollectionSummary(NXCPMessage response)
+   {
       int count = response.getFieldAsInt32(NXCPCodes.VID_NUM_ITEMS);
       DciValue[] list = new DciValue[count];
       long base = NXCPCodes.VID_DCI_VALUES_BASE;
@@ -5553,7 +6320,6 @@ public DciValue[] getDataCollectionSummary(final long nodeId, final long mapId,
       {
          list[i] = DciValue.createFromMessage(response, base);
       }
-
       return list;
    }
 
@@ -5569,6 +6335,23 @@ public DciValue[] getLastValues(final long nodeId) throws IOException, NXCExcept
    {
       return getDataCollectionSummary(nodeId, 0, false, false, false);
    }
+
+   /**
+    * Get last DCI values for given node asynchronously.
+    *
+    * @param nodeId ID of the node to get DCI values for
+    * @return future for list of DCI values
+    */
+   public CompletableFuture<DciValue[]> getLastValuesAsync(final long nodeId)
+   {
+      final NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_DATA_COLLECTION_SUMMARY);
+      msg.setFieldUInt32(NXCPCodes.VID_OBJECT_ID, nodeId);
+      msg.setField(NXCPCodes.VID_OBJECT_TOOLTIP_ONLY, false);
+      msg.setField(NXCPCodes.VID_OVERVIEW_ONLY, false);
+      msg.setField(NXCPCodes.VID_INCLUDE_NOVALUE_OBJECTS, false);
+      msg.setFieldUInt32(NXCPCodes.VID_MAP_ID, 0);
+      return thenApplyCancellable(sendRequestAsync(msg), (response) -> parseDataCollectionSummary(response));
+   }
    
    /**
     * Get tooltip last values for all objects 
@@ -5655,6 +6438,25 @@ public DciValue[] getLastValues(List<SingleDciConfig> dciConfig) throws IOExcept
       return doLastValuesRequest(msg);
    }
 
+   /**
+    * Get last DCI values for given Single Dci Config list asynchronously.
+    *
+    * @param dciConfig List with Single Dci Configs
+    * @return future for list of DCI values
+    */
+   public CompletableFuture<DciValue[]> getLastValuesAsync(List<SingleDciConfig> dciConfig)
+   {
+      final NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_DCI_VALUES);
+      long base = NXCPCodes.VID_DCI_VALUES_BASE;
+      msg.setFieldInt32(NXCPCodes.VID_NUM_ITEMS, dciConfig.size());
+      for(SingleDciConfig c : dciConfig)
+      {
+         c.fillMessage(msg, base);
+         base += 10;
+      }
+      return thenApplyCancellable(sendRequestAsync(msg), (response) -> parseLastValues(response));
+   }
+
    /**
     * Send request for last values using prepared message
     *
@@ -5666,9 +6468,17 @@ public DciValue[] getLastValues(List<SingleDciConfig> dciConfig) throws IOExcept
    private DciValue[] doLastValuesRequest(NXCPMessage msg) throws IOException, NXCException
    {
       sendMessage(msg);
+      return parseLastValues(waitForRCC(msg.getMessageId()));
+   }
 
-      final NXCPMessage response = waitForRCC(msg.getMessageId());
-
+   /**
+    * Parse DCI values from last values response.
+    *
+    * @param response response message
+    * @return list of DCI values
+    */
+   private static DciValue[] parseLastValues(NXCPMessage response)
+   {
       int count = response.getFieldAsInt32(NXCPCodes.VID_NUM_ITEMS);
       DciValue[] list = new DciValue[count];
       long fieldId = NXCPCodes.VID_DCI_VALUES_BASE;
@@ -5676,7 +6486,6 @@ private DciValue[] doLastValuesRequest(NXCPMessage msg) throws IOException, NXCE
       {
          list[i] = (DciValue)new SimpleDciValue(response, fieldId);
       }
-
       return list;
    }
 
@@ -5733,6 +6542,21 @@ public Table getTableLastValues(final long nodeId, final long dciId) throws IOEx
       return new Table(response);
    }
 
+   /**
+    * Get last value for given table DCI on given node asynchronously.
+    *
+    * @param nodeId ID of the node to get DCI values for
+    * @param dciId DCI ID
+    * @return future for table object with last values for table DCI
+    */
+   public CompletableFuture<Table> getTableLastValuesAsync(final long nodeId, final long dciId)
+   {
+      final NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_TABLE_LAST_VALUE);
+      msg.setFieldUInt32(NXCPCodes.VID_OBJECT_ID, nodeId);
+      msg.setFieldUInt32(NXCPCodes.VID_DCI_ID, dciId);
+      return thenApplyCancellable(sendRequestAsync(msg), (response) -> new Table(response));
+   }
+
    /**
     * Get last value for given table or single valued DCI on given node
     *
@@ -5818,62 +6642,75 @@ public List<ThresholdViolationSummary> getThresholdSummary(final long objectId)
     */
    public int parseDataRows(final byte[] input, DciData data)
    {
-      final NXCPDataInputStream inputStream = new NXCPDataInputStream(input);
+      final ByteBuffer in = ByteBuffer.wrap(input);
       int rows = 0;
-      DciDataRow row = null;
-
       try
       {
-         rows = inputStream.readInt();
-         final DataType dataType = DataType.getByValue(inputStream.readShort());
+         rows = in.getInt();
+         final DataType dataType = DataType.getByValue(in.getShort());
          data.setDataType(dataType);
-         short flags = inputStream.readShort();
+         final boolean hasRawValues = (in.getShort() & 0x01) != 0;
+
+         // Validate row count against block size to avoid huge allocations on malformed input (each row has at least 4 bytes)
+         if ((rows < 0) || (rows > in.remaining() / 4))
+            throw new BufferUnderflowException();
+         data.ensureCapacity(data.size() + rows);
 
          for(int i = 0; i < rows; i++)
          {
-            long timestamp = inputStream.readUnsignedInt() * 1000; // convert to milliseconds
-            Object value;
+            long timestamp = ((long)in.getInt() & 0xFFFFFFFFL) * 1000; // convert to milliseconds
             switch(dataType)
             {
                case INT32:
-                  value = Long.valueOf(inputStream.readInt());
+                  data.addValue(timestamp, (long)in.getInt());
                   break;
                case UINT32:
                case COUNTER32:
-                  value = Long.valueOf(inputStream.readUnsignedInt());
+                  data.addValue(timestamp, (long)in.getInt() & 0xFFFFFFFFL);
                   break;
                case INT64:
                case UINT64:
                case COUNTER64:
-                  value = Long.valueOf(inputStream.readLong());
+                  data.addValue(timestamp, in.getLong());
                   break;
                case FLOAT:
-                  value = Double.valueOf(inputStream.readDouble());
+                  data.addValue(timestamp, in.getDouble());
                   break;
                case STRING:
-                  value = inputStream.readUTF();
+                  data.addValue(timestamp, (Object)readUTF(in));
                   break;
                default:
-                  value = null;
+                  data.addValue(timestamp, (Object)null);
                   break;
             }
-            row = new DciDataRow(new Date(timestamp), value);
-            data.addDataRow(row);
-            if ((flags & 0x01) != 0) // raw value present
-            {
-               row.setRawValue(inputStream.readUTF());
-            }
+            if (hasRawValues)
+               data.setLastRawValue(readUTF(in));
          }
       }
-      catch(IOException e)
+      catch(BufferUnderflowException | IOException e)
       {
          logger.debug("Internal error in parseDataRows", e);
       }
-
-      inputStream.close();
       return rows;
    }
 
+   /**
+    * Read string in modified UTF-8 encoding (as written by DataOutput.writeUTF) from byte buffer.
+    *
+    * @param in input buffer
+    * @return decoded string
+    * @throws IOException if string cannot be decoded
+    */
+   private static String readUTF(ByteBuffer in) throws IOException
+   {
+      final int length = in.getShort(in.position()) & 0xFFFF;
+      if (in.remaining() < length + 2)
+         throw new BufferUnderflowException();
+      final String s = new DataInputStream(new ByteArrayInputStream(in.array(), in.arrayOffset() + in.position(), length + 2)).readUTF();
+      in.position(in.position() + length + 2);
+      return s;
+   }
+
    /**
     * Get collected DCI data from server. Please note that you should specify
     * either row count limit or time from/to limit.
@@ -5925,56 +6762,495 @@ private DciData getCollectedDataInternal(long nodeId, long dciId, String instanc
 
          waitForRCC(msg.getMessageId());
 
-         while(true)
-         {
-            NXCPMessage response = waitForMessage(NXCPCodes.CMD_DCI_DATA, msg.getMessageId());
-            long timestamp = response.getFieldAsInt64(NXCPCodes.VID_TIMESTAMP) * 1000L; // Convert to milliseconds
-            if (timestamp == 0)
-               break; // End of value list indicator
+         while(true)
+         {
+            NXCPMessage response = waitForMessage(NXCPCodes.CMD_DCI_DATA, msg.getMessageId());
+            long timestamp = response.getFieldAsInt64(NXCPCodes.VID_TIMESTAMP) * 1000L; // Convert to milliseconds
+            if (timestamp == 0)
+               break; // End of value list indicator
+
+            data.addValue(timestamp, (Object)new Table(response));
+         }
+      }
+      else
+      {
+         int rowsReceived, rowsRemaining = maxRows;
+         do
+         {
+            msg.setMessageId(requestId.getAndIncrement());
+            msg.setFieldInt32(NXCPCodes.VID_MAX_ROWS, maxRows);
+            msg.setFieldInt32(NXCPCodes.VID_TIME_FROM, timeFrom);
+            msg.setFieldInt32(NXCPCodes.VID_TIME_TO, timeTo);
+            sendMessage(msg);
+
+            waitForRCC(msg.getMessageId());
+
+            NXCPMessage response = waitForMessage(NXCPCodes.CMD_DCI_DATA, msg.getMessageId());
+            if (!response.isBinaryMessage())
+               throw new NXCException(RCC.INTERNAL_ERROR);
+
+            rowsReceived = parseDataRows(response.getBinaryData(), data);
+            if (((rowsRemaining == 0) || (rowsRemaining > MAX_DCI_DATA_ROWS)) && (rowsReceived == MAX_DCI_DATA_ROWS))
+            {
+               // adjust boundaries for next request
+               if (rowsRemaining > 0)
+                  rowsRemaining -= rowsReceived;
+
+               // Rows goes in newest to oldest order, so if we need to
+               // retrieve additional data, we should update timeTo limit
+               if (to != null)
+               {
+                  if (!data.isEmpty())
+                  {
+                     // There should be only one value per second, so we set
+                     // last row's timestamp - 1 second as new boundary
+                     timeTo = (int)(data.getTimestamp(data.size() - 1) / 1000) - 1;
+                  }
+               }
+            }
+         } while(rowsReceived == MAX_DCI_DATA_ROWS);
+      }
+      return data;
+   }
+
+   /**
+    * Get collected DCI data from server asynchronously. Large result sets are retrieved page by page, exactly as with
+    * {@link #getCollectedData(long, long, Date, Date, int, HistoricalDataType)}, but no thread is blocked while waiting for
+    * server responses.
+    *
+    * @param nodeId Node ID
+    * @param dciId DCI ID
+    * @param from Start of time range or null for no limit
+    * @param to End of time range or null for no limit
+    * @param maxRows Maximum number of rows to retrieve or 0 for no limit
+    * @param valueType value type
+    * @return future for DCI data set
+    */
+   public CompletableFuture<DciData> getCollectedDataAsync(long nodeId, long dciId, Date from, Date to, int maxRows, HistoricalDataType valueType)
+   {
+      final NXCPMessage msg = newMessage((valueType == HistoricalDataType.FULL_TABLE) ? NXCPCodes.CMD_GET_TABLE_DCI_DATA : NXCPCodes.CMD_GET_DCI_DATA);
+      msg.setFieldUInt32(NXCPCodes.VID_OBJECT_ID, nodeId);
+      msg.setFieldUInt32(NXCPCodes.VID_DCI_ID, dciId);
+      msg.setFieldInt16(NXCPCodes.VID_HISTORICAL_DATA_TYPE, valueType.getValue());
+      msg.setFieldUInt32(NXCPCodes.VID_DELEGATE_OBJECT_ID, 0);
+
+      final DciData data = new DciData(nodeId, dciId);
+      final int timeFrom = (from != null) ? (int)(from.getTime() / 1000) : 0;
+      final int timeTo = (to != null) ? (int)(to.getTime() / 1000) : 0;
+
+      if (valueType != HistoricalDataType.FULL_TABLE)
+         return requestCollectedDataPageAsync(msg, data, timeFrom, timeTo, maxRows);
+
+      // Full table values are sent in separate messages, value with zero timestamp indicates end of list
+      msg.setFieldInt32(NXCPCodes.VID_MAX_ROWS, maxRows);
+      msg.setFieldInt32(NXCPCodes.VID_TIME_FROM, timeFrom);
+      msg.setFieldInt32(NXCPCodes.VID_TIME_TO, timeTo);
+      return thenApplyCancellable(sendRequestAsync(msg, true, NXCPCodes.CMD_DCI_DATA, (m) -> m.getFieldAsInt64(NXCPCodes.VID_TIMESTAMP) == 0), (messages) -> {
+         for(NXCPMessage m : messages)
+         {
+            long timestamp = m.getFieldAsInt64(NXCPCodes.VID_TIMESTAMP) * 1000L;
+            if (timestamp != 0)
+               data.addValue(timestamp, (Object)new Table(m));
+         }
+         return data;
+      });
+   }
+
+   /**
+    * Request next page of collected data asynchronously and chain request for following page if needed.
+    *
+    * @param msg request message
+    * @param data data set to add received rows to
+    * @param timeFrom start of time range
+    * @param timeTo end of time range
+    * @param rowsRemaining number of rows still to be retrieved or 0 for no limit
+    * @return future for DCI data set
+    */
+   private CompletableFuture<DciData> requestCollectedDataPageAsync(final NXCPMessage msg, final DciData data, final int timeFrom, int timeTo, final int rowsRemaining)
+   {
+      msg.setMessageId(requestId.getAndIncrement());
+      msg.setFieldInt32(NXCPCodes.VID_MAX_ROWS, rowsRemaining);
+      msg.setFieldInt32(NXCPCodes.VID_TIME_FROM, timeFrom);
+      msg.setFieldInt32(NXCPCodes.VID_TIME_TO, timeTo);
+      return sendRequestAsync(msg, true, NXCPCodes.CMD_DCI_DATA, null).thenCompose((messages) -> {
+         NXCPMessage response = messages.get(0);
+         if (!response.isBinaryMessage())
+            throw new CompletionException(new NXCException(RCC.INTERNAL_ERROR));
+
+         int rowsReceived = parseDataRows(response.getBinaryData(), data);
+         boolean hasMoreData = (rowsReceived == MAX_DCI_DATA_ROWS) && !data.isEmpty();
+         int remaining = rowsRemaining;
+         if (hasMoreData && (remaining > 0))
+         {
+            remaining -= rowsReceived;
+            hasMoreData = (remaining > 0);
+         }
+         if (hasMoreData)
+         {
+            // Rows go in newest to oldest order, so next page ends one second before oldest received value
+            int nextTimeTo = (int)(data.getTimestamp(data.size() - 1) / 1000) - 1;
+            if (nextTimeTo >= timeFrom)
+               return requestCollectedDataPageAsync(msg, data, timeFrom, nextTimeTo, remaining);
+         }
+         return CompletableFuture.completedFuture(data);
+      });
+   }
+
+   /**
+    * State of single time range request within parallel collected data retrieval.
+    */
+   private static class CollectedDataRange
+   {
+      final int timeFrom;
+      int timeTo;
+      long requestId = 0;
+      boolean completed = false;
+      List<DciData> pages = new ArrayList<DciData>(1);
+
+      CollectedDataRange(int timeFrom, int timeTo)
+      {
+         this.timeFrom = timeFrom;
+         this.timeTo = timeTo;
+      }
+   }
+
+   /**
+    * Send request for next page of collected data within given range.
+    *
+    * @param msg request message template
+    * @param range range to request
+    * @throws IOException if socket I/O error occurs
+    * @throws NXCException if request cannot be sent
+    */
+   private void requestCollectedDataRange(NXCPMessage msg, CollectedDataRange range) throws IOException, NXCException
+   {
+      range.requestId = requestId.getAndIncrement();
+      msg.setMessageId(range.requestId);
+      msg.setFieldInt32(NXCPCodes.VID_MAX_ROWS, 0);
+      msg.setFieldInt32(NXCPCodes.VID_TIME_FROM, range.timeFrom);
+      msg.setFieldInt32(NXCPCodes.VID_TIME_TO, range.timeTo);
+      sendMessage(msg);
+   }
+
+   /**
+    * Get collected DCI data from server using several parallel requests and deliver it to given handler page by page. Requested
+    * time range is split into sub-ranges, and up to <code>parallelism</code> sub-ranges are requested concurrently, so retrieval
+    * time is not dominated by network round trip time. Pages are delivered to handler in order (from newest to oldest value),
+    * as soon as all preceding pages are received; only pages of sub-ranges that are still waiting for preceding ones are
+    * kept in memory.
+    *
+    * @param nodeId node ID
+    * @param dciId DCI ID
+    * @param from start of time range or null for no limit
+    * @param to end of time range or null for current time
+    * @param valueType value type (full table values are not supported)
+    * @param parallelism maximum number of requests in flight
+    * @param handler handler for received data pages
+    * @return true if all data was retrieved, false if retrieval was cancelled by handler
+    * @throws IOException if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public boolean getCollectedData(long nodeId, long dciId, Date from, Date to, HistoricalDataType valueType, int parallelism, CollectedDataHandler handler)
+         throws IOException, NXCException
+   {
+      if (valueType == HistoricalDataType.FULL_TABLE)
+         throw new IllegalArgumentException("Full table values cannot be retrieved in parallel mode");
+      if (parallelism < 1)
+         throw new IllegalArgumentException("Parallelism should be at least 1");
+
+      final int timeFrom = (from != null) ? (int)(from.getTime() / 1000) : 0;
+      final int timeTo = (int)(((to != null) ? to.getTime() : getServerTime()) / 1000);
+      if (timeTo < timeFrom)
+         return true;
+
+      // Split time range into sub-ranges, newest first. Use more sub-ranges than parallelism to limit amount of data
+      // buffered for sub-ranges waiting for preceding ones.
+      final long span = (long)timeTo - (long)timeFrom + 1;
+      final int rangeCount = (int)Math.min(span, (long)parallelism * 4);
+      final long rangeSize = (span + rangeCount - 1) / rangeCount;
+      final List<CollectedDataRange> ranges = new ArrayList<CollectedDataRange>(rangeCount);
+      for(long end = timeTo; end >= timeFrom; end -= rangeSize)
+         ranges.add(new CollectedDataRange((int)Math.max(timeFrom, end - rangeSize + 1), (int)end));
+
+      final NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_DCI_DATA);
+      msg.setFieldUInt32(NXCPCodes.VID_OBJECT_ID, nodeId);
+      msg.setFieldUInt32(NXCPCodes.VID_DCI_ID, dciId);
+      msg.setFieldInt16(NXCPCodes.VID_HISTORICAL_DATA_TYPE, valueType.getValue());
+      msg.setFieldUInt32(NXCPCodes.VID_DELEGATE_OBJECT_ID, 0);
+
+      int head = 0; // first range not yet delivered to handler
+      int next = 0; // next range to be started
+      boolean finished = false;
+      try
+      {
+         while(head < ranges.size())
+         {
+            // Keep up to "parallelism" ranges in flight
+            while((next < ranges.size()) && (next - head < parallelism))
+               requestCollectedDataRange(msg, ranges.get(next++));
+
+            // Wait for response for each active range in turn and immediately request next page if needed
+            for(int i = head; i < next; i++)
+            {
+               CollectedDataRange range = ranges.get(i);
+               if (range.completed)
+                  continue;
+
+               waitForRCC(range.requestId);
+               NXCPMessage response = waitForMessage(NXCPCodes.CMD_DCI_DATA, range.requestId);
+               if (!response.isBinaryMessage())
+                  throw new NXCException(RCC.INTERNAL_ERROR);
+
+               DciData page = new DciData(nodeId, dciId);
+               int rowsReceived = parseDataRows(response.getBinaryData(), page);
+               if (!page.isEmpty())
+                  range.pages.add(page);
+               if ((rowsReceived == MAX_DCI_DATA_ROWS) && !page.isEmpty())
+               {
+                  // Rows go in newest to oldest order, so next page ends one second before oldest received value
+                  range.timeTo = (int)(page.getTimestamp(page.size() - 1) / 1000) - 1;
+                  if (range.timeTo >= range.timeFrom)
+                     requestCollectedDataRange(msg, range);
+                  else
+                     range.completed = true;
+               }
+               else
+               {
+                  range.completed = true;
+               }
+            }
+
+            // Deliver pages for ranges at the head of the list
+            while(head < next)
+            {
+               CollectedDataRange range = ranges.get(head);
+               for(DciData page : range.pages)
+               {
+                  if (!handler.processDataPage(page))
+                     return false;
+               }
+               range.pages.clear();
+               if (!range.completed)
+                  break;
+               head++;
+            }
+         }
+         finished = true;
+         return true;
+      }
+      finally
+      {
+         // Retrieval cancelled by handler or failed
+         if (!finished)
+            discardCollectedDataRequests(ranges, head, next);
+      }
+   }
+
+   /**
+    * Discard responses to outstanding collected data requests after retrieval was cancelled or failed, so late responses do
+    * not stay in message wait queue.
+    *
+    * @param ranges all ranges
+    * @param start first active range
+    * @param end end of active ranges (exclusive)
+    */
+   private void discardCollectedDataRequests(List<CollectedDataRange> ranges, int start, int end)
+   {
+      for(int i = start; i < end; i++)
+      {
+         CollectedDataRange range = ranges.get(i);
+         if (!range.completed)
+            discardResponses(range.requestId, NXCPCodes.CMD_DCI_DATA);
+      }
+   }
+
+   /**
+    * Get collected DCI data from server using several parallel requests. Requested time range is split into sub-ranges, and up
+    * to <code>parallelism</code> sub-ranges are requested concurrently. Result is identical to result of
+    * {@link #getCollectedData(long, long, Date, Date, int, HistoricalDataType)} without row limit.
+    *
+    * @param nodeId node ID
+    * @param dciId DCI ID
+    * @param from start of time range or null for no limit
+    * @param to end of time range or null for current time
+    * @param valueType value type (full table values are not supported)
+    * @param parallelism maximum number of requests in flight
+    * @return DCI data set
+    * @throws IOException if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public DciData getCollectedData(long nodeId, long dciId, Date from, Date to, HistoricalDataType valueType, int parallelism)
+         throws IOException, NXCException
+   {
+      final DciData data = new DciData(nodeId, dciId);
+      getCollectedData(nodeId, dciId, from, to, valueType, parallelism, (page) -> {
+         data.setDataType(page.getDataType());
+         data.addAll(page);
+         return true;
+      });
+      return data;
+   }
+
+   /**
+    * State of single request within batch collected data retrieval.
+    */
+   private static class CollectedDataRequestState
+   {
+      final CollectedDataRequest request;
+      final NXCPMessage msg;
+      final DciData data;
+      final int timeFrom;
+      int timeTo;
+      int rowsRemaining;
+      long requestId = 0;
+
+      CollectedDataRequestState(CollectedDataRequest request, NXCPMessage msg)
+      {
+         this.request = request;
+         this.msg = msg;
+         this.data = new DciData(request.getNodeId(), request.getDciId());
+         this.timeFrom = (request.getFrom() != null) ? (int)(request.getFrom().getTime() / 1000) : 0;
+         this.timeTo = (request.getTo() != null) ? (int)(request.getTo().getTime() / 1000) : 0;
+         this.rowsRemaining = request.getMaxRows();
+      }
+   }
+
+   /**
+    * Send request for next page of collected data for given batch request.
+    *
+    * @param state request state
+    * @throws IOException if socket I/O error occurs
+    * @throws NXCException if request cannot be sent
+    */
+   private void sendCollectedDataRequest(CollectedDataRequestState state) throws IOException, NXCException
+   {
+      state.requestId = requestId.getAndIncrement();
+      state.msg.setMessageId(state.requestId);
+      state.msg.setFieldInt32(NXCPCodes.VID_MAX_ROWS, state.rowsRemaining);
+      state.msg.setFieldInt32(NXCPCodes.VID_TIME_FROM, state.timeFrom);
+      state.msg.setFieldInt32(NXCPCodes.VID_TIME_TO, state.timeTo);
+      sendMessage(state.msg);
+   }
+
+   /**
+    * Get collected data for multiple DCIs (or table DCI columns) in one batch. Requests are pipelined over the session - up to
+    * <code>maxInFlight</code> requests are sent to server before waiting for responses, so total retrieval time is not
+    * dominated by network round trip time. Each request is completed exactly as with
+    * {@link #getCollectedData(long, long, Date, Date, int, HistoricalDataType, long)} (including paging of large result sets).
+    * If any request fails, responses for other outstanding requests are discarded and exception is thrown.
+    *
+    * @param requests list of requests
+    * @param maxInFlight maximum number of requests in flight
+    * @param listener optional listener to be called as soon as each request is completed (may be null)
+    * @return map of retrieved data sets keyed by request, in request order
+    * @throws IOException if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public Map<CollectedDataRequest, DciData> getCollectedData(List<CollectedDataRequest> requests, int maxInFlight, CollectedDataListener listener)
+         throws IOException, NXCException
+   {
+      if (maxInFlight < 1)
+         throw new IllegalArgumentException("Number of requests in flight should be at least 1");
+
+      final Map<CollectedDataRequest, DciData> results = new LinkedHashMap<CollectedDataRequest, DciData>();
+      for(CollectedDataRequest r : requests)
+         results.put(r, null); // preserve request order
 
-            data.addDataRow(new DciDataRow(new Date(timestamp), new Table(response)));
-         }
-      }
-      else
+      final List<CollectedDataRequestState> active = new ArrayList<CollectedDataRequestState>(Math.min(maxInFlight, requests.size()));
+      int next = 0;
+      boolean finished = false;
+      try
       {
-         int rowsReceived, rowsRemaining = maxRows;
-         do
+         while((next < requests.size()) || !active.isEmpty())
          {
-            msg.setMessageId(requestId.getAndIncrement());
-            msg.setFieldInt32(NXCPCodes.VID_MAX_ROWS, maxRows);
-            msg.setFieldInt32(NXCPCodes.VID_TIME_FROM, timeFrom);
-            msg.setFieldInt32(NXCPCodes.VID_TIME_TO, timeTo);
-            sendMessage(msg);
-
-            waitForRCC(msg.getMessageId());
-
-            NXCPMessage response = waitForMessage(NXCPCodes.CMD_DCI_DATA, msg.getMessageId());
-            if (!response.isBinaryMessage())
-               throw new NXCException(RCC.INTERNAL_ERROR);
+            while((next < requests.size()) && (active.size() < maxInFlight))
+            {
+               CollectedDataRequest r = requests.get(next++);
+               NXCPMessage msg;
+               if (r.getInstance() != null)
+               {
+                  msg = newMessage(NXCPCodes.CMD_GET_TABLE_DCI_DATA);
+                  msg.setField(NXCPCodes.VID_INSTANCE, r.getInstance());
+                  msg.setField(NXCPCodes.VID_DATA_COLUMN, r.getDataColumn());
+               }
+               else
+               {
+                  msg = newMessage(NXCPCodes.CMD_GET_DCI_DATA);
+               }
+               msg.setFieldUInt32(NXCPCodes.VID_OBJECT_ID, r.getNodeId());
+               msg.setFieldUInt32(NXCPCodes.VID_DCI_ID, r.getDciId());
+               msg.setFieldInt16(NXCPCodes.VID_HISTORICAL_DATA_TYPE, r.getValueType().getValue());
+               msg.setFieldUInt32(NXCPCodes.VID_DELEGATE_OBJECT_ID, r.getDelegateReadObject());
+
+               CollectedDataRequestState state = new CollectedDataRequestState(r, msg);
+               sendCollectedDataRequest(state);
+               active.add(state);
+            }
 
-            rowsReceived = parseDataRows(response.getBinaryData(), data);
-            if (((rowsRemaining == 0) || (rowsRemaining > MAX_DCI_DATA_ROWS)) && (rowsReceived == MAX_DCI_DATA_ROWS))
+            Iterator<CollectedDataRequestState> it = active.iterator();
+            while(it.hasNext())
             {
-               // adjust boundaries for next request
-               if (rowsRemaining > 0)
-                  rowsRemaining -= rowsReceived;
+               CollectedDataRequestState state = it.next();
+               waitForRCC(state.requestId);
+               NXCPMessage response = waitForMessage(NXCPCodes.CMD_DCI_DATA, state.requestId);
+               if (!response.isBinaryMessage())
+                  throw new NXCException(RCC.INTERNAL_ERROR);
+
+               int rowsReceived = parseDataRows(response.getBinaryData(), state.data);
+               boolean hasMoreData = (rowsReceived == MAX_DCI_DATA_ROWS) && !state.data.isEmpty();
+               if (hasMoreData && (state.rowsRemaining > 0))
+               {
+                  state.rowsRemaining -= rowsReceived;
+                  hasMoreData = (state.rowsRemaining > 0);
+               }
+               if (hasMoreData)
+               {
+                  // Rows go in newest to oldest order, so next page ends one second before oldest received value
+                  state.timeTo = (int)(state.data.getTimestamp(state.data.size() - 1) / 1000) - 1;
+                  hasMoreData = (state.timeTo >= state.timeFrom);
+               }
 
-               // Rows goes in newest to oldest order, so if we need to
-               // retrieve additional data, we should update timeTo limit
-               if (to != null)
+               if (hasMoreData)
                {
-                  DciDataRow row = data.getLastValue();
-                  if (row != null)
-                  {
-                     // There should be only one value per second, so we set
-                     // last row's timestamp - 1 second as new boundary
-                     timeTo = (int)(row.getTimestamp().getTime() / 1000) - 1;
-                  }
+                  sendCollectedDataRequest(state);
+               }
+               else
+               {
+                  it.remove();
+                  results.put(state.request, state.data);
+                  if (listener != null)
+                     listener.onRequestCompleted(state.request, state.data);
                }
             }
-         } while(rowsReceived == MAX_DCI_DATA_ROWS);
+         }
+         finished = true;
       }
-      return data;
+      finally
+      {
+         // Discard responses to requests still in flight if loop was terminated by exception
+         if (!finished)
+         {
+            for(CollectedDataRequestState state : active)
+               discardResponses(state.requestId, NXCPCodes.CMD_DCI_DATA);
+         }
+      }
+      return results;
+   }
+
+   /**
+    * Get collected data for multiple DCIs (or table DCI columns) in one batch, using default number of requests in flight. See
+    * {@link #getCollectedData(List, int, CollectedDataListener)} for details.
+    *
+    * @param requests list of requests
+    * @param listener optional listener to be called as soon as each request is completed (may be null)
+    * @return map of retrieved data sets keyed by request, in request order
+    * @throws IOException if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public Map<CollectedDataRequest, DciData> getCollectedData(List<CollectedDataRequest> requests, CollectedDataListener listener)
+         throws IOException, NXCException
+   {
+      return getCollectedData(requests, DEFAULT_COLLECTED_DATA_REQUESTS_IN_FLIGHT, listener);
    }
 
    /**
@@ -6166,18 +7442,88 @@ public Threshold[] getThresholds(final long nodeId, final long dciId, long deleg
       msg.setFieldUInt32(NXCPCodes.VID_DCI_ID, dciId);
       msg.setFieldUInt32(NXCPCodes.VID_DELEGATE_OBJECT_ID, delegateReadObject);
       sendMessage(msg);
+      return parseThresholds(waitForRCC(msg.getMessageId()));
+   }
 
-      final NXCPMessage response = waitForRCC(msg.getMessageId());
+   /**
+    * Get list of thresholds configured for given DCI asynchronously.
+    *
+    * @param nodeId Node object ID
+    * @param dciId  DCI ID
+    * @param delegateReadObject delegate object read access should be provided thought
+    * @return future for list of configured thresholds
+    */
+   public CompletableFuture<Threshold[]> getThresholdsAsync(final long nodeId, final long dciId, long delegateReadObject)
+   {
+      final NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_DCI_THRESHOLDS);
+      msg.setFieldUInt32(NXCPCodes.VID_OBJECT_ID, nodeId);
+      msg.setFieldUInt32(NXCPCodes.VID_DCI_ID, dciId);
+      msg.setFieldUInt32(NXCPCodes.VID_DELEGATE_OBJECT_ID, delegateReadObject);
+      return thenApplyCancellable(sendRequestAsync(msg), (response) -> parseThresholds(response));
+   }
+
+   /**
+    * Get lists of thresholds for multiple DCIs. All requests are sent to server without waiting for responses, so this
+    * method takes approximately one round trip regardless of number of DCIs. Elements with DCI ID 0 are skipped and
+    * corresponding result element is set to null.
+    *
+    * @param nodeIds node object IDs
+    * @param dciIds DCI IDs (length must match length of node IDs list)
+    * @param delegateReadObject delegate object read access should be provided thought
+    * @return array of threshold lists, in same order as DCI IDs
+    * @throws IOException  if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public Threshold[][] getThresholds(final long[] nodeIds, final long[] dciIds, long delegateReadObject) throws IOException, NXCException
+   {
+      List<CompletableFuture<Threshold[]>> futures = new ArrayList<CompletableFuture<Threshold[]>>(dciIds.length);
+      for(int i = 0; i < dciIds.length; i++)
+         futures.add((dciIds[i] != 0) ? getThresholdsAsync(nodeIds[i], dciIds[i], delegateReadObject) : null);
+
+      final Threshold[][] result = new Threshold[dciIds.length][];
+      for(int i = 0; i < dciIds.length; i++)
+      {
+         CompletableFuture<Threshold[]> f = futures.get(i);
+         if (f == null)
+            continue;
+         try
+         {
+            result[i] = f.get();
+         }
+         catch(InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            throw new NXCException(RCC.OPERATION_CANCELLED);
+         }
+         catch(ExecutionException e)
+         {
+            Throwable cause = e.getCause();
+            if (cause instanceof NXCException)
+               throw (NXCException)cause;
+            if (cause instanceof IOException)
+               throw (IOException)cause;
+            throw new NXCException(RCC.INTERNAL_ERROR, cause);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Parse list of thresholds from server response.
+    *
+    * @param response server response
+    * @return list of thresholds
+    */
+   private static Threshold[] parseThresholds(NXCPMessage response)
+   {
       int count = response.getFieldAsInt32(NXCPCodes.VID_NUM_THRESHOLDS);
       final Threshold[] list = new Threshold[count];
-
       long fieldId = NXCPCodes.VID_DCI_THRESHOLD_BASE;
       for(int i = 0; i < count; i++)
       {
          list[i] = new Threshold(response, fieldId);
          fieldId += 20;
       }
-
       return list;
    }
 
@@ -6524,43 +7870,10 @@ public void deleteObject(final long objectId) throws IOException, NXCException
 
       // If server reports success, delete object from cache and generate
       // appropriate notification without waiting for actual server update
-      synchronized(objectList)
-      {
-         AbstractObject object = objectList.get(objectId);
-         if (object != null)
-         {
-            objectList.remove(objectId);
-            objectListGUID.remove(object.getGuid());
-            if (object instanceof Zone)
-               zoneList.remove(((Zone)object).getUIN());
-            removeOrphanedObjects(object);
-         }
-      }
+      objectCache.removeWithOrphans(objectId);
       sendNotification(new SessionNotification(SessionNotification.OBJECT_DELETED, objectId));
    }
 
-   /**
-    * Remove orphaned objects (with last parent left)
-    *
-    * @param parent
-    */
-   private void removeOrphanedObjects(AbstractObject parent)
-   {
-      Iterator<Long> it = parent.getChildren();
-      while(it.hasNext())
-      {
-         AbstractObject object = objectList.get(it.next());
-         if ((object != null) && (object.getParentCount() == 1))
-         {
-            objectList.remove(object.getObjectId());
-            objectListGUID.remove(object.getGuid());
-            if (object instanceof Zone)
-               zoneList.remove(((Zone)object).getUIN());
-            removeOrphanedObjects(object);
-         }
-      }
-   }
-
    /**
     * Hook method to populate NXCP message with custom object's data on object modification.
     * Default implementation does nothing.
@@ -8698,6 +10011,57 @@ public void executeScript(long objectId, String script, List<String> parameterLi
       processScriptExecution(msg, listener, false);
    }
 
+   /**
+    * Execute script asynchronously. Returned future is completed when script execution is finished.
+    *
+    * @param objectId ID of the object to execute script on
+    * @param script script source code
+    * @param parameterList script parameter list (can be null)
+    * @param listener script output listener (can be null)
+    * @return future for script completion
+    */
+   public CompletableFuture<Void> executeScriptAsync(long objectId, String script, List<String> parameterList, final TextOutputListener listener)
+   {
+      NXCPMessage msg = newMessage(NXCPCodes.CMD_EXECUTE_SCRIPT);
+      msg.setFieldInt32(NXCPCodes.VID_OBJECT_ID, (int)objectId);
+      msg.setField(NXCPCodes.VID_SCRIPT, script);
+      msg.setField(NXCPCodes.VID_DEVELOPMENT_MODE, false);
+      msg.setField(NXCPCodes.VID_RESULT_AS_MAP, false);
+      if (parameterList != null)
+      {
+         msg.setFieldInt16(NXCPCodes.VID_NUM_FIELDS, parameterList.size());
+         long fieldId = NXCPCodes.VID_FIELD_LIST_BASE;
+         for(String param : parameterList)
+         {
+            msg.setField(fieldId++, param);
+         }
+      }
+
+      final long scriptRequestId = msg.getMessageId();
+      final ScriptExecutionUpdateHandler handler = new ScriptExecutionUpdateHandler(listener);
+      handler.setMessageWaitTimeout(commandTimeout);
+      final CompletableFuture<Void> completion = new CompletableFuture<Void>();
+      handler.onCompletion(() -> completion.complete(null));
+      addMessageSubscription(NXCPCodes.CMD_EXECUTE_SCRIPT_UPDATE, scriptRequestId, handler);
+
+      return sendRequestAsync(msg).thenCompose((response) -> {
+         if (listener != null)
+            listener.setStreamId(response.getFieldAsInt32(NXCPCodes.VID_PROCESS_ID));
+         return completion;
+      }).handleAsync((v, e) -> {
+         if (e != null)
+         {
+            removeMessageSubscription(NXCPCodes.CMD_EXECUTE_SCRIPT_UPDATE, scriptRequestId);
+            throw (e instanceof CompletionException) ? (CompletionException)e : new CompletionException(e);
+         }
+         if (handler.isExpired())
+            throw new CompletionException(new NXCException(RCC.TIMEOUT));
+         if (handler.isFailure())
+            throw new CompletionException(new NXCException(handler.getErrorCode(), handler.getErrorMessage()));
+         return null;
+      }, asyncExecutor);
+   }
+
    /**
     * Stop running NXSL script. VM identifier is provided via output listener's method <code>setStreamId</code>.
     *
@@ -11329,6 +12693,8 @@ void removeProgressListener(long id)
    /**
     * Download file from remote host via agent. If <code>maxFileSize</code> is set to non-zero value then last
     * <code>maxFileSize</code> bytes will be retrieved.
+    * Received data is written to local file by session's file writer threads; if writing falls more than 16 MB behind
+    * receiving and does not catch up within 10 seconds, download fails with IOException.
     *
     * @param nodeId node object ID
     * @param remoteFileName fully qualified file name on remote system
@@ -11348,6 +12714,8 @@ public AgentFileData downloadFileFromAgent(long nodeId, String remoteFileName, l
    /**
     * Download file from remote host via agent. If <code>maxFileSize</code> is set to non-zero value then last
     * <code>maxFileSize</code> bytes will be retrieved.
+    * Received data is written to local file by session's file writer threads; if writing falls more than 16 MB behind
+    * receiving and does not catch up within 10 seconds, download fails with IOException.
     *
     * @param nodeId node object ID
     * @param remoteFileName fully qualified file name on remote system
@@ -11363,6 +12731,70 @@ public AgentFileData downloadFileFromAgent(long nodeId, String remoteFileName, l
     */
    public AgentFileData downloadFileFromAgent(long nodeId, String remoteFileName, boolean expandMacros, long alarmId,
          Map<String, String> inputValues, long maxFileSize, boolean follow, ProgressListener listener) throws IOException, NXCException
+   {
+      return downloadFileFromAgent(nodeId, remoteFileName, expandMacros, alarmId, inputValues, maxFileSize, follow, null, listener);
+   }
+
+   /**
+    * Download file from remote host via agent directly into given output stream, without creating temporary file. Received
+    * data is written to the stream by session's file writer threads; stream is flushed but not closed when transfer completes.
+    * If writing falls more than 16 MB behind receiving and does not catch up within 10 seconds, download fails with
+    * IOException.
+    * If <code>maxFileSize</code> is set to non-zero value then last <code>maxFileSize</code> bytes will be retrieved.
+    *
+    * @param nodeId node object ID
+    * @param remoteFileName fully qualified file name on remote system
+    * @param maxFileSize maximum download size, 0 == UNLIMITED
+    * @param out destination stream
+    * @param listener progress listener (can be null)
+    * @return agent file handle which contains server assigned ID (local file is always null)
+    * @throws IOException if socket I/O error occurs or received data cannot be written to destination stream
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public AgentFileData downloadFileFromAgent(long nodeId, String remoteFileName, long maxFileSize, OutputStream out,
+         ProgressListener listener) throws IOException, NXCException
+   {
+      return downloadFileFromAgent(nodeId, remoteFileName, false, 0, null, maxFileSize, false, out, listener);
+   }
+
+   /**
+    * Download file from remote host via agent directly into given channel, without creating temporary file. If
+    * <code>maxFileSize</code> is set to non-zero value then last <code>maxFileSize</code> bytes will be retrieved.
+    *
+    * @param nodeId node object ID
+    * @param remoteFileName fully qualified file name on remote system
+    * @param maxFileSize maximum download size, 0 == UNLIMITED
+    * @param channel destination channel (not closed when transfer completes)
+    * @param listener progress listener (can be null)
+    * @return agent file handle which contains server assigned ID (local file is always null)
+    * @throws IOException if socket I/O error occurs or received data cannot be written to destination channel
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public AgentFileData downloadFileFromAgent(long nodeId, String remoteFileName, long maxFileSize, WritableByteChannel channel,
+         ProgressListener listener) throws IOException, NXCException
+   {
+      return downloadFileFromAgent(nodeId, remoteFileName, maxFileSize, Channels.newOutputStream(channel), listener);
+   }
+
+   /**
+    * Download file from remote host via agent. If <code>out</code> is not null, received data is written to that stream,
+    * otherwise to temporary file.
+    *
+    * @param nodeId node object ID
+    * @param remoteFileName fully qualified file name on remote system
+    * @param expandMacros if true, macros in remote file name will be expanded on server side
+    * @param alarmId alarm ID used for macro expansion
+    * @param inputValues input field values for macro expansion (can be null if none provided)
+    * @param maxFileSize maximum download size, 0 == UNLIMITED
+    * @param follow if set to true, server will send file updates as they appear (like for tail -f command)
+    * @param out destination stream or null
+    * @param listener progress listener (can be null)
+    * @return agent file handle which contains server assigned ID and handle for local file
+    * @throws IOException if socket or file I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   private AgentFileData downloadFileFromAgent(long nodeId, String remoteFileName, boolean expandMacros, long alarmId,
+         Map<String, String> inputValues, long maxFileSize, boolean follow, OutputStream out, ProgressListener listener) throws IOException, NXCException
    {
       final NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_AGENT_FILE);
       msg.setFieldInt32(NXCPCodes.VID_OBJECT_ID, (int)nodeId);
@@ -11381,38 +12813,73 @@ public AgentFileData downloadFileFromAgent(long nodeId, String remoteFileName, b
             msg.setField(varId++, e.getValue());
          }
       }
-      sendMessage(msg);
-
-      final NXCPMessage response = waitForRCC(msg.getMessageId()); // first confirmation - server job started
-      if (listener != null)
+      if (out != null)
+         registerFileReceiver(msg.getMessageId(), out);
+      try
+      {
+         sendMessage(msg);
+      }
+      catch(IOException e)
       {
-         final long fileSize = response.getFieldAsInt64(NXCPCodes.VID_FILE_SIZE);
-         listener.setTotalWorkAmount(fileSize);
-         synchronized(progressListeners)
+         if (out != null)
          {
-            progressListeners.put(msg.getMessageId(), listener);
+            synchronized(receivedFiles)
+            {
+               receivedFiles.remove(msg.getMessageId());
+            }
          }
+         throw e;
       }
 
-      ReceivedFile remoteFile = waitForFile(msg.getMessageId(), 120000); // 120 seconds timeout for file content
-      if (remoteFile.isFailed())
-         throw new NXCException(RCC.AGENT_FILE_DOWNLOAD_ERROR);
-
+      final NXCPMessage response;
+      File localFile = null;
       try
       {
+         response = waitForRCC(msg.getMessageId()); // first confirmation - server job started
+         if (listener != null)
+         {
+            final long fileSize = response.getFieldAsInt64(NXCPCodes.VID_FILE_SIZE);
+            listener.setTotalWorkAmount(fileSize);
+            synchronized(progressListeners)
+            {
+               progressListeners.put(msg.getMessageId(), listener);
+            }
+         }
+
+         if (out != null)
+         {
+            waitForStreamedFile(msg.getMessageId(), 120000, RCC.AGENT_FILE_DOWNLOAD_ERROR); // 120 seconds timeout for file content
+         }
+         else
+         {
+            ReceivedFile remoteFile = waitForFile(msg.getMessageId(), 120000); // 120 seconds timeout for file content
+            if (remoteFile.isFailed())
+               throw new NXCException(RCC.AGENT_FILE_DOWNLOAD_ERROR);
+            localFile = remoteFile.getFile();
+         }
+
          waitForRCC(msg.getMessageId()); // second confirmation - file transfered from agent to console
       }
       finally
       {
          removeProgressListener(msg.getMessageId());
+         if (out != null)
+         {
+            synchronized(receivedFiles)
+            {
+               receivedFiles.remove(msg.getMessageId());
+            }
+         }
       }
 
-      return new AgentFileData(response.getFieldAsString(NXCPCodes.VID_NAME), response.getFieldAsString(NXCPCodes.VID_FILE_NAME), remoteFile.getFile(),
+      return new AgentFileData(response.getFieldAsString(NXCPCodes.VID_NAME), response.getFieldAsString(NXCPCodes.VID_FILE_NAME), localFile,
             response.getFieldAsUUID(NXCPCodes.VID_MONITOR_ID));
    }
 
    /**
     * Download file from server file storage.
+    * Received data is written to local file by session's file writer threads; if writing falls more than 16 MB behind
+    * receiving and does not catch up within 10 seconds, download fails with IOException.
     *
     * @param remoteFileName fully qualified file name on remote system
     * @return The downloaded file
@@ -11428,6 +12895,51 @@ public File downloadFileFromServer(String remoteFileName) throws IOException, NX
       return waitForFile(msg.getMessageId(), 60000).getFile();
    }
 
+   /**
+    * Download file from server file storage directly into given output stream, without creating temporary file. Received data
+    * is written to the stream by session's file writer threads; stream is flushed but not closed when transfer completes.
+    * If writing falls more than 16 MB behind receiving and does not catch up within 10 seconds, download fails with
+    * IOException.
+    *
+    * @param remoteFileName file name in server's file storage
+    * @param out destination stream
+    * @throws IOException if socket I/O error occurs or received data cannot be written to destination stream
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public void downloadFileFromServer(String remoteFileName, OutputStream out) throws IOException, NXCException
+   {
+      final NXCPMessage msg = newMessage(NXCPCodes.CMD_GET_SERVER_FILE);
+      msg.setField(NXCPCodes.VID_FILE_NAME, remoteFileName);
+      registerFileReceiver(msg.getMessageId(), out);
+      try
+      {
+         sendMessage(msg);
+         waitForRCC(msg.getMessageId());
+      }
+      catch(IOException | NXCException e)
+      {
+         synchronized(receivedFiles)
+         {
+            receivedFiles.remove(msg.getMessageId());
+         }
+         throw e;
+      }
+      waitForStreamedFile(msg.getMessageId(), 60000, RCC.IO_ERROR);
+   }
+
+   /**
+    * Download file from server file storage directly into given channel, without creating temporary file.
+    *
+    * @param remoteFileName file name in server's file storage
+    * @param channel destination channel (not closed when transfer completes)
+    * @throws IOException if socket I/O error occurs or received data cannot be written to destination channel
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public void downloadFileFromServer(String remoteFileName, WritableByteChannel channel) throws IOException, NXCException
+   {
+      downloadFileFromServer(remoteFileName, Channels.newOutputStream(channel));
+   }
+
    /**
     * Cancel file monitoring
     *
@@ -11441,6 +12953,10 @@ public void cancelFileMonitoring(UUID monitorId) throws IOException, NXCExceptio
       msg.setField(NXCPCodes.VID_MONITOR_ID, monitorId);
       sendMessage(msg);
       waitForRCC(msg.getMessageId());
+      synchronized(receivedFileUpdates)
+      {
+         receivedFileUpdates.remove(monitorId);
+      }
    }
 
    /**
@@ -12236,16 +13752,9 @@ public String getShortTimeFormat()
     */
    public void handover(NXCSession target)
    {
-      target.objectList = objectList;
-      target.objectListGUID = objectListGUID;
-      target.zoneList = zoneList;
-      for(AbstractObject o : objectList.values())
-      {
-         o.setSession(target);
-      }
-      objectList = null;
-      objectListGUID = null;
-      zoneList = null;
+      objectCache.setSession(target);
+      target.objectCache = objectCache;
+      objectCache = null;
    }
 
    /**
@@ -13156,12 +14665,11 @@ public DciData getPredictedData(long nodeId, long dciId, Date from, Date to) thr
          {
             // Rows goes in newest to oldest order, so if we need to
             // retrieve additional data, we should update timeTo limit
-            DciDataRow row = data.getLastValue();
-            if (row != null)
+            if (!data.isEmpty())
             {
                // There should be only one value per second, so we set
                // last row's timestamp - 1 second as new boundary
-               timeTo = (int)(row.getTimestamp().getTime() / 1000) - 1;
+               timeTo = (int)(data.getTimestamp(data.size() - 1) / 1000) - 1;
             }
          }
       } while((rowsReceived == MAX_DCI_DATA_ROWS) && (timeTo > timeFrom));
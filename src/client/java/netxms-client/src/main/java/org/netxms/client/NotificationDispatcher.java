@@ -0,0 +1,483 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.netxms.client.events.Alarm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatcher for session notifications. Notifications are queued by the caller without blocking and delivered to listeners by
+ * dedicated thread. Repeated OBJECT_CHANGED and ALARM_CHANGED notifications for the same object or alarm are coalesced while
+ * waiting in the queue (only most recent one is delivered, at the position of the first one). Listeners can be registered with
+ * their own executor, in which case slow listener does not delay delivery to others; number of notifications pending for such
+ * listener is limited.
+ */
+final class NotificationDispatcher
+{
+   private static final Logger logger = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+   private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>();
+   private final AtomicInteger queueSize = new AtomicInteger(0);
+   private final Map<Long, Entry> pendingObjectChanges = new HashMap<Long, Entry>();
+   private final Map<Long, Entry> pendingAlarmChanges = new HashMap<Long, Entry>();
+   private final Map<SessionListener, ListenerEntry> listeners = new LinkedHashMap<SessionListener, ListenerEntry>();
+   private final AtomicLong droppedCount = new AtomicLong(0);
+   private final AtomicLong coalescedCount = new AtomicLong(0);
+   private final AtomicLong deliveredCount = new AtomicLong(0);
+   private volatile int queueCapacity;
+   private volatile int listenerQueueCapacity;
+   private volatile int coalescingWindow = 0;
+   private Thread thread = null;
+
+   /**
+    * Queue entry. For coalescible notifications entry is updated in place while it is still in the queue.
+    */
+   private static final class Entry
+   {
+      SessionNotification notification;
+      final long timestamp;
+
+      Entry(SessionNotification notification)
+      {
+         this.notification = notification;
+         this.timestamp = System.currentTimeMillis();
+      }
+   }
+
+   /**
+    * Registered listener
+    */
+   private static final class ListenerEntry
+   {
+      final SessionListener listener;
+      final Executor executor;
+      final AtomicInteger pending = new AtomicInteger(0);
+
+      ListenerEntry(SessionListener listener, Executor executor)
+      {
+         this.listener = listener;
+         this.executor = executor;
+      }
+   }
+
+   /**
+    * Create new dispatcher.
+    *
+    * @param queueCapacity maximum number of notifications waiting in the queue
+    * @param listenerQueueCapacity maximum number of notifications pending for each listener with executor
+    */
+   NotificationDispatcher(int queueCapacity, int listenerQueueCapacity)
+   {
+      this.queueCapacity = queueCapacity;
+      this.listenerQueueCapacity = listenerQueueCapacity;
+   }
+
+   /**
+    * Start dispatcher thread.
+    */
+   synchronized void start()
+   {
+      if (thread != null)
+         return;
+      thread = new Thread(() -> run(), "Session Notification Processor");
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   /**
+    * Add listener.
+    *
+    * @param listener listener to add
+    * @param executor executor for calling listener or null to call it directly from dispatcher thread
+    * @return true if listener was added
+    */
+   boolean addListener(SessionListener listener, Executor executor)
+   {
+      synchronized(listeners)
+      {
+         if (listeners.containsKey(listener))
+            return false;
+         listeners.put(listener, new ListenerEntry(listener, executor));
+      }
+      enqueue(new Entry(new SessionNotification(SessionNotification.UPDATE_LISTENER_LIST)));
+      return true;
+   }
+
+   /**
+    * Remove listener.
+    *
+    * @param listener listener to remove
+    * @return true if listener was removed
+    */
+   boolean removeListener(SessionListener listener)
+   {
+      synchronized(listeners)
+      {
+         if (listeners.remove(listener) == null)
+            return false;
+      }
+      enqueue(new Entry(new SessionNotification(SessionNotification.UPDATE_LISTENER_LIST)));
+      return true;
+   }
+
+   /**
+    * Remove all listeners. Listeners already known to dispatcher thread will still receive notifications queued before this call.
+    */
+   void clearListeners()
+   {
+      synchronized(listeners)
+      {
+         listeners.clear();
+      }
+   }
+
+   /**
+    * Submit notification for delivery. This method never blocks; if queue is full notification is dropped.
+    *
+    * @param n notification
+    * @return true if notification was queued or coalesced with already queued one
+    */
+   boolean submit(SessionNotification n)
+   {
+      synchronized(this)
+      {
+         Map<Long, Entry> pendingChanges = getPendingChanges(n.getCode());
+         if (pendingChanges != null)
+         {
+            Long key = getCoalescingKey(n);
+            Entry e = pendingChanges.get(key);
+            if (e != null)
+            {
+               e.notification = n;
+               coalescedCount.incrementAndGet();
+               return true;
+            }
+            if (queueSize.get() >= queueCapacity)
+            {
+               droppedCount.incrementAndGet();
+               return false;
+            }
+            e = new Entry(n);
+            pendingChanges.put(key, e);
+            enqueue(e);
+            return true;
+         }
+
+         // Any further change should not be merged into change queued before deletion
+         switch(n.getCode())
+         {
+            case SessionNotification.OBJECT_DELETED:
+               pendingObjectChanges.remove(n.getSubCode());
+               break;
+            case SessionNotification.ALARM_DELETED:
+            case SessionNotification.ALARM_TERMINATED:
+               if (n.getObject() instanceof Alarm)
+                  pendingAlarmChanges.remove(((Alarm)n.getObject()).getId());
+               break;
+         }
+
+         if (queueSize.get() >= queueCapacity)
+         {
+            droppedCount.incrementAndGet();
+            return false;
+         }
+         enqueue(new Entry(n));
+         return true;
+      }
+   }
+
+   /**
+    * Discard all queued notifications, queue given final notification (if any) and stop dispatcher thread after delivering it.
+    *
+    * @param finalNotification final notification to deliver or null
+    */
+   void shutdown(SessionNotification finalNotification)
+   {
+      synchronized(this)
+      {
+         queue.clear();
+         queueSize.set(0);
+         pendingObjectChanges.clear();
+         pendingAlarmChanges.clear();
+         if (finalNotification != null)
+            enqueue(new Entry(finalNotification));
+         enqueue(new Entry(new SessionNotification(SessionNotification.STOP_PROCESSING_THREAD)));
+      }
+   }
+
+   /**
+    * Add entry to queue without capacity check.
+    *
+    * @param e entry to add
+    */
+   private void enqueue(Entry e)
+   {
+      queueSize.incrementAndGet();
+      queue.offer(e);
+   }
+
+   /**
+    * Get map of pending changes for given notification code.
+    *
+    * @param code notification code
+    * @return map of pending changes or null if notifications with given code are not coalescible
+    */
+   private Map<Long, Entry> getPendingChanges(int code)
+   {
+      switch(code)
+      {
+         case SessionNotification.OBJECT_CHANGED:
+            return pendingObjectChanges;
+         case SessionNotification.ALARM_CHANGED:
+            return pendingAlarmChanges;
+         default:
+            return null;
+      }
+   }
+
+   /**
+    * Get coalescing key for notification.
+    *
+    * @param n notification
+    * @return coalescing key
+    */
+   private static Long getCoalescingKey(SessionNotification n)
+   {
+      return (n.getCode() == SessionNotification.ALARM_CHANGED) ? ((Alarm)n.getObject()).getId() : n.getSubCode();
+   }
+
+   /**
+    * Take next entry from queue and extract notification from it.
+    *
+    * @return next notification
+    * @throws InterruptedException if thread was interrupted while waiting
+    */
+   private SessionNotification take() throws InterruptedException
+   {
+      Entry e = queue.take();
+      Map<Long, Entry> pendingChanges = getPendingChanges(e.notification.getCode());
+      if (pendingChanges == null)
+      {
+         dequeued();
+         return e.notification;
+      }
+
+      // Give more changes a chance to be merged into this one
+      long delay = e.timestamp + coalescingWindow - System.currentTimeMillis();
+      if (delay > 0)
+         Thread.sleep(delay);
+
+      synchronized(this)
+      {
+         SessionNotification n = e.notification;
+         Long key = getCoalescingKey(n);
+         if (pendingChanges.get(key) == e)
+            pendingChanges.remove(key);
+         dequeued();
+         return n;
+      }
+   }
+
+   /**
+    * Update queue size after taking entry from the queue. Queue size is never decremented below zero because queue could be
+    * reset by shutdown() while entry was being processed.
+    */
+   private void dequeued()
+   {
+      queueSize.updateAndGet((v) -> (v > 0) ? v - 1 : 0);
+   }
+
+   /**
+    * Dispatcher thread main loop
+    */
+   private void run()
+   {
+      ListenerEntry[] cachedListenerList = new ListenerEntry[0];
+      while(true)
+      {
+         SessionNotification n;
+         try
+         {
+            n = take();
+         }
+         catch(InterruptedException e)
+         {
+            continue;
+         }
+
+         if (n.getCode() == SessionNotification.STOP_PROCESSING_THREAD)
+            break;
+
+         if (n.getCode() == SessionNotification.UPDATE_LISTENER_LIST)
+         {
+            synchronized(listeners)
+            {
+               cachedListenerList = listeners.values().toArray(new ListenerEntry[listeners.size()]);
+            }
+            continue;
+         }
+
+         // loop must be on listeners set copy to prevent 
+         // possible deadlock when one of the listeners calls 
+         // syncExec on UI thread while UI thread trying to add
+         // new listener and stays locked inside addListener
+         for(ListenerEntry l : cachedListenerList)
+            deliver(l, n);
+         deliveredCount.incrementAndGet();
+      }
+      logger.debug("Client session notification processor stopped");
+   }
+
+   /**
+    * Deliver notification to single listener.
+    *
+    * @param l listener entry
+    * @param n notification
+    */
+   private void deliver(final ListenerEntry l, final SessionNotification n)
+   {
+      if (l.executor == null)
+      {
+         callListener(l.listener, n);
+         return;
+      }
+
+      if (l.pending.incrementAndGet() > listenerQueueCapacity)
+      {
+         l.pending.decrementAndGet();
+         droppedCount.incrementAndGet();
+         return;
+      }
+      try
+      {
+         l.executor.execute(() -> {
+            try
+            {
+               callListener(l.listener, n);
+            }
+            finally
+            {
+               l.pending.decrementAndGet();
+            }
+         });
+      }
+      catch(RejectedExecutionException e)
+      {
+         l.pending.decrementAndGet();
+         droppedCount.incrementAndGet();
+      }
+   }
+
+   /**
+    * Call listener's notification handler.
+    *
+    * @param listener listener
+    * @param n notification
+    */
+   private static void callListener(SessionListener listener, SessionNotification n)
+   {
+      try
+      {
+         listener.notificationHandler(n);
+      }
+      catch(Exception e)
+      {
+         logger.error("Unhandled exception in notification handler", e);
+      }
+   }
+
+   /**
+    * Get number of notifications currently waiting in the queue.
+    *
+    * @return number of queued notifications
+    */
+   int getQueueSize()
+   {
+      return queueSize.get();
+   }
+
+   /**
+    * Get total number of dropped notifications (because of full queue or full listener queue).
+    *
+    * @return number of dropped notifications
+    */
+   long getDroppedCount()
+   {
+      return droppedCount.get();
+   }
+
+   /**
+    * Get total number of notifications merged into already queued ones.
+    *
+    * @return number of coalesced notifications
+    */
+   long getCoalescedCount()
+   {
+      return coalescedCount.get();
+   }
+
+   /**
+    * Get total number of notifications processed by dispatcher thread.
+    *
+    * @return number of delivered notifications
+    */
+   long getDeliveredCount()
+   {
+      return deliveredCount.get();
+   }
+
+   /**
+    * Set maximum number of notifications waiting in the queue.
+    *
+    * @param queueCapacity new queue capacity
+    */
+   void setQueueCapacity(int queueCapacity)
+   {
+      this.queueCapacity = queueCapacity;
+   }
+
+   /**
+    * Set maximum number of notifications pending for each listener with executor.
+    *
+    * @param listenerQueueCapacity new listener queue capacity
+    */
+   void setListenerQueueCapacity(int listenerQueueCapacity)
+   {
+      this.listenerQueueCapacity = listenerQueueCapacity;
+   }
+
+   /**
+    * Set coalescing window - minimal time coalescible notification is held in the queue waiting for further changes.
+    *
+    * @param coalescingWindow coalescing window in milliseconds (0 to deliver without additional delay)
+    */
+   void setCoalescingWindow(int coalescingWindow)
+   {
+      this.coalescingWindow = coalescingWindow;
+   }
+}
@@ -0,0 +1,469 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.netxms.base.InetAddressEx;
+import org.netxms.base.MacAddress;
+import org.netxms.client.objects.AbstractNode;
+import org.netxms.client.objects.AbstractObject;
+import org.netxms.client.objects.AccessPoint;
+import org.netxms.client.objects.Interface;
+import org.netxms.client.objects.Zone;
+
+/**
+ * Client-side object cache. Objects are stored in concurrent hash maps, so lookups and iterations never block, even while
+ * large batch of object updates is being applied. Modifications that touch more than one map (object by ID, by GUID, zone
+ * by UIN) are serialized by separate writer lock, so concurrent writers cannot leave maps inconsistent. Readers may observe
+ * object in one map slightly before it appears in another.
+ * <p>
+ * Cache also maintains secondary indexes by object class, lower case object name (sorted, for prefix search), IP address, MAC
+ * address and parent object ID. Indexes are updated incrementally as objects are added, replaced or removed.
+ */
+final class ObjectCache
+{
+   private final ConcurrentHashMap<Long, AbstractObject> objects = new ConcurrentHashMap<Long, AbstractObject>(1024);
+   private final ConcurrentHashMap<UUID, AbstractObject> objectsByGUID = new ConcurrentHashMap<UUID, AbstractObject>(1024);
+   private final ConcurrentHashMap<Long, AbstractObject> partialObjects = new ConcurrentHashMap<Long, AbstractObject>();
+   private final ConcurrentHashMap<Integer, Zone> zones = new ConcurrentHashMap<Integer, Zone>();
+   private final ObjectIndex<Integer> classIndex = new ObjectIndex<Integer>(false);
+   private final ObjectIndex<String> nameIndex = new ObjectIndex<String>(true);
+   private final ObjectIndex<InetAddress> addressIndex = new ObjectIndex<InetAddress>(false);
+   private final ObjectIndex<MacAddress> macAddressIndex = new ObjectIndex<MacAddress>(false);
+   private final ObjectIndex<Long> parentIndex = new ObjectIndex<Long>(false);
+   private final Object writeLock = new Object();
+
+   /**
+    * Convert object name to name index key.
+    *
+    * @param name object name
+    * @return index key
+    */
+   static String nameKey(String name)
+   {
+      return (name != null) ? name.toLowerCase(Locale.ROOT) : "";
+   }
+
+   /**
+    * Get literal prefix of regular expression, i.e. sequence of characters any matching string should start with. Returns
+    * empty string if such prefix cannot be determined (for example, if expression contains alternatives).
+    *
+    * @param regex regular expression
+    * @return literal prefix (may be empty)
+    */
+   static String getLiteralPrefix(String regex)
+   {
+      if (regex.indexOf('|') != -1)
+         return "";
+      int i = 0;
+      while((i < regex.length()) && ("\\[](){}.*+?^$".indexOf(regex.charAt(i)) == -1))
+         i++;
+      // Quantifier applies to last literal character, so it cannot be part of prefix
+      if ((i < regex.length()) && (i > 0) && ("*?{".indexOf(regex.charAt(i)) != -1))
+         i--;
+      return regex.substring(0, i);
+   }
+
+   /**
+    * Add IP address to address index.
+    *
+    * @param address address to add (may be null)
+    * @param object object to index
+    * @param add true to add, false to remove
+    */
+   private void indexAddress(InetAddressEx address, AbstractObject object, boolean add)
+   {
+      if ((address == null) || !address.isValidAddress())
+         return;
+      if (add)
+         addressIndex.add(address.getAddress(), object);
+      else
+         addressIndex.remove(address.getAddress(), object);
+   }
+
+   /**
+    * Add MAC address to MAC address index.
+    *
+    * @param macAddress MAC address to add (may be null)
+    * @param object object to index
+    * @param add true to add, false to remove
+    */
+   private void indexMacAddress(MacAddress macAddress, AbstractObject object, boolean add)
+   {
+      if ((macAddress == null) || macAddress.isNull())
+         return;
+      if (add)
+         macAddressIndex.add(macAddress, object);
+      else
+         macAddressIndex.remove(macAddress, object);
+   }
+
+   /**
+    * Add object to secondary indexes or remove it from them. Must be called with writer lock held.
+    *
+    * @param object object to process
+    * @param add true to add object to indexes, false to remove
+    */
+   private void updateIndexes(AbstractObject object, boolean add)
+   {
+      if (add)
+      {
+         classIndex.add(object.getObjectClass(), object);
+         nameIndex.add(nameKey(object.getObjectName()), object);
+      }
+      else
+      {
+         classIndex.remove(object.getObjectClass(), object);
+         nameIndex.remove(nameKey(object.getObjectName()), object);
+      }
+
+      if (object instanceof AbstractNode)
+      {
+         indexAddress(((AbstractNode)object).getPrimaryIP(), object, add);
+         indexMacAddress(((AbstractNode)object).getPrimaryMAC(), object, add);
+      }
+      else if (object instanceof Interface)
+      {
+         for(InetAddressEx a : ((Interface)object).getIpAddressList())
+            indexAddress(a, object, add);
+         indexMacAddress(((Interface)object).getMacAddress(), object, add);
+      }
+      else if (object instanceof AccessPoint)
+      {
+         indexAddress(((AccessPoint)object).getIpAddress(), object, add);
+         indexMacAddress(((AccessPoint)object).getMacAddress(), object, add);
+      }
+
+      for(long parentId : object.getParentIdList())
+      {
+         if (add)
+            parentIndex.add(parentId, object);
+         else
+            parentIndex.remove(parentId, object);
+      }
+   }
+
+   /**
+    * Add or replace object.
+    *
+    * @param object object to add
+    * @return true if object was not in cache before
+    */
+   boolean put(AbstractObject object)
+   {
+      synchronized(writeLock)
+      {
+         final AbstractObject prev = objects.put(object.getObjectId(), object);
+         if (prev != null)
+            updateIndexes(prev, false);
+         updateIndexes(object, true);
+         if ((prev != null) && (prev.getGuid() != null) && !prev.getGuid().equals(object.getGuid()))
+            objectsByGUID.remove(prev.getGuid(), prev);
+         if (object.getGuid() != null)
+            objectsByGUID.put(object.getGuid(), object);
+         if ((prev instanceof Zone) && (!(object instanceof Zone) || (((Zone)prev).getUIN() != ((Zone)object).getUIN())))
+            zones.remove(((Zone)prev).getUIN(), prev);
+         if (object instanceof Zone)
+            zones.put(((Zone)object).getUIN(), (Zone)object);
+         return prev == null;
+      }
+   }
+
+   /**
+    * Add or replace partial object (object with only partial data available).
+    *
+    * @param object partial object to add
+    */
+   void putPartial(AbstractObject object)
+   {
+      partialObjects.put(object.getObjectId(), object);
+   }
+
+   /**
+    * Remove object with given ID.
+    *
+    * @param id object ID
+    * @return removed object or null if object was not in cache
+    */
+   AbstractObject remove(long id)
+   {
+      synchronized(writeLock)
+      {
+         return removeInternal(id);
+      }
+   }
+
+   /**
+    * Remove object with given ID and all its children that have no other parents (recursively).
+    *
+    * @param id object ID
+    * @return removed object or null if object was not in cache
+    */
+   AbstractObject removeWithOrphans(long id)
+   {
+      synchronized(writeLock)
+      {
+         final AbstractObject object = removeInternal(id);
+         if (object != null)
+            removeOrphanedObjects(object);
+         return object;
+      }
+   }
+
+   /**
+    * Remove object from all maps. Must be called with writer lock held.
+    *
+    * @param id object ID
+    * @return removed object or null
+    */
+   private AbstractObject removeInternal(long id)
+   {
+      final AbstractObject object = objects.remove(id);
+      if (object != null)
+      {
+         updateIndexes(object, false);
+         if (object.getGuid() != null)
+            objectsByGUID.remove(object.getGuid(), object);
+         if (object instanceof Zone)
+            zones.remove(((Zone)object).getUIN(), object);
+      }
+      return object;
+   }
+
+   /**
+    * Remove orphaned objects (with last parent left). Must be called with writer lock held.
+    *
+    * @param parent parent object being removed
+    */
+   private void removeOrphanedObjects(AbstractObject parent)
+   {
+      Iterator<Long> it = parent.getChildren();
+      while(it.hasNext())
+      {
+         AbstractObject object = objects.get(it.next());
+         if ((object != null) && (object.getParentCount() == 1))
+         {
+            removeInternal(object.getObjectId());
+            removeOrphanedObjects(object);
+         }
+      }
+   }
+
+   /**
+    * Get object by ID.
+    *
+    * @param id object ID
+    * @return object or null if not found
+    */
+   AbstractObject get(long id)
+   {
+      return objects.get(id);
+   }
+
+   /**
+    * Get partial object by ID.
+    *
+    * @param id object ID
+    * @return partial object or null if not found
+    */
+   AbstractObject getPartial(long id)
+   {
+      return partialObjects.get(id);
+   }
+
+   /**
+    * Check if object with given ID is in cache.
+    *
+    * @param id object ID
+    * @return true if object with given ID is in cache
+    */
+   boolean contains(long id)
+   {
+      return objects.containsKey(id);
+   }
+
+   /**
+    * Get object by GUID.
+    *
+    * @param guid object GUID
+    * @return object or null if not found
+    */
+   AbstractObject getByGUID(UUID guid)
+   {
+      return objectsByGUID.get(guid);
+   }
+
+   /**
+    * Get zone by UIN.
+    *
+    * @param uin zone UIN
+    * @return zone object or null if not found
+    */
+   Zone getZone(int uin)
+   {
+      return zones.get(uin);
+   }
+
+   /**
+    * Get all zones.
+    *
+    * @return list of all zones
+    */
+   List<Zone> getZones()
+   {
+      return new ArrayList<Zone>(zones.values());
+   }
+
+   /**
+    * Get all objects of given class.
+    *
+    * @param objectClass object class
+    * @return list of objects of given class
+    */
+   List<AbstractObject> getByClass(int objectClass)
+   {
+      return classIndex.get(objectClass);
+   }
+
+   /**
+    * Get all objects with given name (case-insensitive).
+    *
+    * @param name object name
+    * @return list of objects with given name
+    */
+   List<AbstractObject> getByName(String name)
+   {
+      return nameIndex.get(nameKey(name));
+   }
+
+   /**
+    * Get any object with given name (case-insensitive).
+    *
+    * @param name object name
+    * @return object with given name or null
+    */
+   AbstractObject getAnyByName(String name)
+   {
+      return nameIndex.getAny(nameKey(name));
+   }
+
+   /**
+    * Get all objects with name starting with given prefix (case-insensitive).
+    *
+    * @param prefix name prefix
+    * @return list of objects with matching name
+    */
+   List<AbstractObject> getByNamePrefix(String prefix)
+   {
+      return nameIndex.getByPrefix(nameKey(prefix));
+   }
+
+   /**
+    * Get all objects (nodes, interfaces, access points) with given IP address.
+    *
+    * @param address IP address
+    * @return list of objects with given IP address
+    */
+   List<AbstractObject> getByAddress(InetAddress address)
+   {
+      return addressIndex.get(address);
+   }
+
+   /**
+    * Get all objects (nodes, interfaces, access points) with given MAC address.
+    *
+    * @param macAddress MAC address
+    * @return list of objects with given MAC address
+    */
+   List<AbstractObject> getByMacAddress(MacAddress macAddress)
+   {
+      return macAddressIndex.get(macAddress);
+   }
+
+   /**
+    * Get all cached objects that have given object as parent. Parent object itself may not be in cache.
+    *
+    * @param parentId parent object ID
+    * @return list of child objects
+    */
+   List<AbstractObject> getChildren(long parentId)
+   {
+      return parentIndex.get(parentId);
+   }
+
+   /**
+    * Get view of all objects in cache. Returned collection is weakly consistent: it can be iterated while cache is being
+    * updated, and may or may not reflect updates made after iteration started.
+    *
+    * @return view of all objects
+    */
+   Collection<AbstractObject> values()
+   {
+      return objects.values();
+   }
+
+   /**
+    * Get number of objects in cache (not including partial objects).
+    *
+    * @return number of objects in cache
+    */
+   int size()
+   {
+      return objects.size();
+   }
+
+   /**
+    * Set session for all objects in cache.
+    *
+    * @param session new session
+    */
+   void setSession(NXCSession session)
+   {
+      for(AbstractObject o : objects.values())
+         o.setSession(session);
+      for(AbstractObject o : partialObjects.values())
+         o.setSession(session);
+   }
+
+   /**
+    * Remove all objects from cache.
+    */
+   void clear()
+   {
+      synchronized(writeLock)
+      {
+         objects.clear();
+         objectsByGUID.clear();
+         partialObjects.clear();
+         zones.clear();
+         classIndex.clear();
+         nameIndex.clear();
+         addressIndex.clear();
+         macAddressIndex.clear();
+         parentIndex.clear();
+      }
+   }
+}
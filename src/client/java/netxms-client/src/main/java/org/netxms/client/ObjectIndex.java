@@ -0,0 +1,137 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.netxms.client.objects.AbstractObject;
+
+/**
+ * Secondary index for object cache. Maps key to set of objects having that key. Index can be read without locking; updates
+ * are expected to be serialized by object cache's writer lock.
+ *
+ * @param <K> key type
+ */
+final class ObjectIndex<K>
+{
+   private final ConcurrentMap<K, ConcurrentHashMap<Long, AbstractObject>> entries;
+
+   /**
+    * Create new index.
+    *
+    * @param sorted true to keep keys sorted (allows range queries)
+    */
+   ObjectIndex(boolean sorted)
+   {
+      entries = sorted ? new ConcurrentSkipListMap<K, ConcurrentHashMap<Long, AbstractObject>>() : new ConcurrentHashMap<K, ConcurrentHashMap<Long, AbstractObject>>();
+   }
+
+   /**
+    * Add object to index under given key.
+    *
+    * @param key index key
+    * @param object object to add
+    */
+   void add(K key, AbstractObject object)
+   {
+      ConcurrentHashMap<Long, AbstractObject> set = entries.get(key);
+      if (set == null)
+      {
+         set = new ConcurrentHashMap<Long, AbstractObject>(4);
+         entries.put(key, set);
+      }
+      set.put(object.getObjectId(), object);
+   }
+
+   /**
+    * Remove object from index under given key. Object is only removed if it is the same instance that was indexed.
+    *
+    * @param key index key
+    * @param object object to remove
+    */
+   void remove(K key, AbstractObject object)
+   {
+      ConcurrentHashMap<Long, AbstractObject> set = entries.get(key);
+      if (set == null)
+         return;
+      set.remove(object.getObjectId(), object);
+      if (set.isEmpty())
+         entries.remove(key, set);
+   }
+
+   /**
+    * Get all objects with given key.
+    *
+    * @param key index key
+    * @return list of objects (empty list if none found)
+    */
+   List<AbstractObject> get(K key)
+   {
+      ConcurrentHashMap<Long, AbstractObject> set = entries.get(key);
+      return (set != null) ? new ArrayList<AbstractObject>(set.values()) : Collections.<AbstractObject>emptyList();
+   }
+
+   /**
+    * Get any object with given key.
+    *
+    * @param key index key
+    * @return object with given key or null
+    */
+   AbstractObject getAny(K key)
+   {
+      ConcurrentHashMap<Long, AbstractObject> set = entries.get(key);
+      if (set == null)
+         return null;
+      for(AbstractObject o : set.values())
+         return o;
+      return null;
+   }
+
+   /**
+    * Get all objects with string key starting with given prefix. Only valid for sorted index with string keys.
+    *
+    * @param prefix key prefix
+    * @return list of objects (empty list if none found)
+    */
+   @SuppressWarnings("unchecked")
+   List<AbstractObject> getByPrefix(String prefix)
+   {
+      if (!(entries instanceof ConcurrentNavigableMap))
+         throw new UnsupportedOperationException("Prefix search is only supported by sorted index");
+      final ConcurrentNavigableMap<String, ConcurrentHashMap<Long, AbstractObject>> map = (ConcurrentNavigableMap<String, ConcurrentHashMap<Long, AbstractObject>>)entries;
+      final List<AbstractObject> result = new ArrayList<AbstractObject>();
+      for(Map<Long, AbstractObject> set : map.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values())
+         result.addAll(set.values());
+      return result;
+   }
+
+   /**
+    * Remove all entries from index.
+    */
+   void clear()
+   {
+      entries.clear();
+   }
+}
@@ -0,0 +1,351 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.netxms.base.DeflateCodec;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPException;
+import org.netxms.base.NXCPMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent snapshot of synchronized object set. Snapshot keeps encoded (and compressed) object messages as received from
+ * server, keyed by object ID. Snapshot file is specific to server and user, because set of visible objects depends on user's
+ * access rights. Snapshot timestamp is server time of last successful synchronization, and is used for requesting only objects
+ * changed since that time.
+ * <p>
+ * File format (all numbers in network byte order): magic (4 bytes), format version (4 bytes), server ID (8 bytes), user ID (4
+ * bytes), node components flag (1 byte), timestamp (8 bytes), number of objects (4 bytes), and then for each object: object ID
+ * (4 bytes), record flags (1 byte), message length (4 bytes), encoded NXCP message.
+ * <p>
+ * Credentials (agent shared secret, SNMP, SSH and VNC credentials) are removed from object messages before they are stored, and
+ * snapshot file is created with access for owner only where file system supports POSIX permissions. Objects stored without
+ * credentials are marked, so that they can be re-read from server after snapshot is loaded (see
+ * {@link #getObjectsWithoutCredentials()}).
+ */
+final class ObjectSnapshot
+{
+   private static final Logger logger = LoggerFactory.getLogger(ObjectSnapshot.class);
+
+   private static final int MAGIC = 0x4E584F53; // "NXOS"
+   private static final int VERSION = 2;
+
+   /**
+    * Record flag: credentials were removed from stored object message
+    */
+   private static final int RECORD_CREDENTIALS_REMOVED = 0x01;
+
+   /**
+    * Fields that should never be stored in snapshot file
+    */
+   private static final long[] SECRET_FIELDS = {
+      NXCPCodes.VID_SHARED_SECRET, NXCPCodes.VID_SNMP_AUTH_OBJECT, NXCPCodes.VID_SNMP_AUTH_PASSWORD, NXCPCodes.VID_SNMP_PRIV_PASSWORD,
+      NXCPCodes.VID_SSH_PASSWORD, NXCPCodes.VID_VNC_PASSWORD
+   };
+
+   private final File file;
+   private final long serverId;
+   private final int userId;
+   private final boolean nodeComponents;
+   private final Map<Long, byte[]> objects = new ConcurrentHashMap<Long, byte[]>();
+   private final Set<Long> objectsWithoutCredentials = ConcurrentHashMap.newKeySet();
+   private final DeflateCodec codec = new DeflateCodec(DeflateCodec.LEVEL_FASTEST);
+   private long timestamp = 0;
+
+   /**
+    * Create new snapshot.
+    *
+    * @param directory directory for snapshot files
+    * @param serverId server ID
+    * @param userId user ID
+    * @param nodeComponents true if snapshot includes node components (interfaces, network services, VPN connectors)
+    */
+   ObjectSnapshot(File directory, long serverId, int userId, boolean nodeComponents)
+   {
+      this.file = new File(directory, String.format("objects-%016x-%d.snapshot", serverId, userId));
+      this.serverId = serverId;
+      this.userId = userId;
+      this.nodeComponents = nodeComponents;
+   }
+
+   /**
+    * Load snapshot from file. Snapshot is rejected if it was created for different server or user, or without node components when
+    * they are required.
+    *
+    * @return true if snapshot was loaded successfully
+    */
+   boolean load()
+   {
+      if (!file.isFile())
+         return false;
+
+      objects.clear();
+      objectsWithoutCredentials.clear();
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536)))
+      {
+         if ((in.readInt() != MAGIC) || (in.readInt() != VERSION) || (in.readLong() != serverId) || (in.readInt() != userId))
+         {
+            logger.debug("Object snapshot " + file.getName() + " is incompatible");
+            return false;
+         }
+         boolean hasNodeComponents = in.readBoolean();
+         if (nodeComponents && !hasNodeComponents)
+         {
+            logger.debug("Object snapshot " + file.getName() + " does not include node components");
+            return false;
+         }
+         long ts = in.readLong();
+         int count = in.readInt();
+         for(int i = 0; i < count; i++)
+         {
+            long id = (long)in.readInt() & 0xFFFFFFFFL;
+            int flags = in.readUnsignedByte();
+            int length = in.readInt();
+            if ((length <= 0) || (length > 16 * 1024 * 1024))
+               throw new IOException("Invalid object record length " + length);
+            byte[] data = new byte[length];
+            in.readFully(data);
+            objects.put(id, data);
+            if ((flags & RECORD_CREDENTIALS_REMOVED) != 0)
+               objectsWithoutCredentials.add(id);
+         }
+         timestamp = ts;
+         logger.debug("Loaded object snapshot " + file.getName() + " (" + count + " objects)");
+         return true;
+      }
+      catch(IOException e)
+      {
+         logger.warn("Cannot load object snapshot " + file.getName(), e);
+         objects.clear();
+         objectsWithoutCredentials.clear();
+         return false;
+      }
+   }
+
+   /**
+    * Save snapshot to file. Data is written to temporary file (accessible by owner only) first, which then replaces existing
+    * snapshot file.
+    *
+    * @throws IOException if snapshot cannot be written
+    */
+   void save() throws IOException
+   {
+      File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+      createPrivateFile(tempFile.toPath());
+      int count = 0;
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536)))
+      {
+         List<Map.Entry<Long, byte[]>> entries = new ArrayList<Map.Entry<Long, byte[]>>(objects.entrySet());
+         out.writeInt(MAGIC);
+         out.writeInt(VERSION);
+         out.writeLong(serverId);
+         out.writeInt(userId);
+         out.writeBoolean(nodeComponents);
+         out.writeLong(timestamp);
+         out.writeInt(entries.size());
+         for(Map.Entry<Long, byte[]> e : entries)
+         {
+            out.writeInt(e.getKey().intValue());
+            out.writeByte(objectsWithoutCredentials.contains(e.getKey()) ? RECORD_CREDENTIALS_REMOVED : 0);
+            out.writeInt(e.getValue().length);
+            out.write(e.getValue());
+         }
+         count = entries.size();
+      }
+      catch(IOException e)
+      {
+         tempFile.delete();
+         throw e;
+      }
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      logger.debug("Saved object snapshot " + file.getName() + " (" + count + " objects)");
+   }
+
+   /**
+    * Create new empty file accessible by owner only. Existing file is deleted first, so its permissions are not inherited.
+    *
+    * @param path file path
+    * @throws IOException if file cannot be created
+    */
+   private static void createPrivateFile(Path path) throws IOException
+   {
+      Files.deleteIfExists(path);
+      try
+      {
+         Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+      }
+      catch(UnsupportedOperationException e)
+      {
+         // Non-POSIX file system
+         Files.createFile(path);
+         File f = path.toFile();
+         f.setReadable(false, false);
+         f.setReadable(true, true);
+         f.setWritable(false, false);
+         f.setWritable(true, true);
+      }
+   }
+
+   /**
+    * Update object in snapshot. Credentials are removed from stored copy of object message.
+    *
+    * @param objectId object ID
+    * @param msg object message as received from server
+    */
+   void update(long objectId, NXCPMessage msg)
+   {
+      boolean credentialsRemoved = false;
+      for(long fieldId : SECRET_FIELDS)
+      {
+         if (msg.isFieldPresent(fieldId))
+         {
+            msg = new NXCPMessage(msg);
+            for(long id : SECRET_FIELDS)
+               msg.removeField(id);
+            credentialsRemoved = true;
+            break;
+         }
+      }
+
+      try
+      {
+         byte[] data;
+         synchronized(codec)
+         {
+            data = msg.createNXCPMessage(codec);
+         }
+         objects.put(objectId, data);
+         if (credentialsRemoved)
+            objectsWithoutCredentials.add(objectId);
+         else
+            objectsWithoutCredentials.remove(objectId);
+      }
+      catch(IOException e)
+      {
+         logger.debug("Cannot encode object " + objectId + " for snapshot", e);
+         objects.remove(objectId);
+         objectsWithoutCredentials.remove(objectId);
+      }
+   }
+
+   /**
+    * Remove object from snapshot.
+    *
+    * @param objectId object ID
+    */
+   void remove(long objectId)
+   {
+      objects.remove(objectId);
+      objectsWithoutCredentials.remove(objectId);
+   }
+
+   /**
+    * Get identifiers of objects stored without credentials. Such objects should not be used as is after loading snapshot,
+    * because they will appear to have empty credentials.
+    *
+    * @return set of identifiers of objects stored without credentials
+    */
+   Set<Long> getObjectsWithoutCredentials()
+   {
+      return new HashSet<Long>(objectsWithoutCredentials);
+   }
+
+   /**
+    * Decode all object messages stored in snapshot. Records that cannot be decoded are removed from snapshot.
+    *
+    * @return list of object messages
+    */
+   List<NXCPMessage> getMessages()
+   {
+      List<NXCPMessage> messages = new ArrayList<NXCPMessage>(objects.size());
+      for(Map.Entry<Long, byte[]> e : objects.entrySet())
+      {
+         try
+         {
+            messages.add(new NXCPMessage(e.getValue(), null));
+         }
+         catch(IOException | NXCPException ex)
+         {
+            logger.debug("Cannot decode object " + e.getKey() + " from snapshot", ex);
+            objects.remove(e.getKey());
+            objectsWithoutCredentials.remove(e.getKey());
+         }
+      }
+      return messages;
+   }
+
+   /**
+    * Get snapshot timestamp (server time of last successful synchronization).
+    *
+    * @return snapshot timestamp in seconds since epoch or 0 if snapshot was never synchronized
+    */
+   long getTimestamp()
+   {
+      return timestamp;
+   }
+
+   /**
+    * Set snapshot timestamp.
+    *
+    * @param timestamp new timestamp in seconds since epoch
+    */
+   void setTimestamp(long timestamp)
+   {
+      this.timestamp = timestamp;
+   }
+
+   /**
+    * Get number of objects in snapshot.
+    *
+    * @return number of objects in snapshot
+    */
+   int size()
+   {
+      return objects.size();
+   }
+
+   /**
+    * Get snapshot file.
+    *
+    * @return snapshot file
+    */
+   File getFile()
+   {
+      return file;
+   }
+}
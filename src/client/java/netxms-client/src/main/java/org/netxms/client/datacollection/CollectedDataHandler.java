@@ -0,0 +1,34 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client.datacollection;
+
+/**
+ * Handler for collected DCI data received in pages (see NXCSession.getCollectedData with handler argument). Pages are
+ * delivered in the same order as they would appear in complete data set (from newest to oldest value).
+ */
+public interface CollectedDataHandler
+{
+   /**
+    * Process received page of collected data.
+    *
+    * @param page page of collected data
+    * @return true to continue retrieval, false to cancel it
+    */
+   public boolean processDataPage(DciData page);
+}
@@ -0,0 +1,187 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client.datacollection;
+
+import java.util.Date;
+import org.netxms.client.constants.HistoricalDataType;
+
+/**
+ * Single request within batch collected data retrieval (see NXCSession.getCollectedData with list of requests). Requests are
+ * compared by identity, so the same instance should be used to look up retrieval result.
+ */
+public class CollectedDataRequest
+{
+   private final long nodeId;
+   private final long dciId;
+   private final String instance;
+   private final String dataColumn;
+   private final Date from;
+   private final Date to;
+   private final int maxRows;
+   private final HistoricalDataType valueType;
+   private final long delegateReadObject;
+
+   /**
+    * Create request for collected data of single-value DCI.
+    *
+    * @param nodeId node ID
+    * @param dciId DCI ID
+    * @param from start of time range or null for no limit
+    * @param to end of time range or null for no limit
+    * @param maxRows maximum number of rows to retrieve or 0 for no limit
+    * @param valueType value type (full table values are not supported)
+    * @param delegateReadObject delegate object read access should be provided through or 0
+    */
+   public CollectedDataRequest(long nodeId, long dciId, Date from, Date to, int maxRows, HistoricalDataType valueType, long delegateReadObject)
+   {
+      this(nodeId, dciId, null, null, from, to, maxRows, valueType, delegateReadObject);
+   }
+
+   /**
+    * Create request for processed collected data of single-value DCI.
+    *
+    * @param nodeId node ID
+    * @param dciId DCI ID
+    * @param from start of time range or null for no limit
+    * @param to end of time range or null for no limit
+    * @param maxRows maximum number of rows to retrieve or 0 for no limit
+    */
+   public CollectedDataRequest(long nodeId, long dciId, Date from, Date to, int maxRows)
+   {
+      this(nodeId, dciId, null, null, from, to, maxRows, HistoricalDataType.PROCESSED, 0);
+   }
+
+   /**
+    * Create request for collected data of table DCI column.
+    *
+    * @param nodeId node ID
+    * @param dciId DCI ID
+    * @param instance instance value
+    * @param dataColumn name of column to retrieve data from
+    * @param from start of time range or null for no limit
+    * @param to end of time range or null for no limit
+    * @param maxRows maximum number of rows to retrieve or 0 for no limit
+    * @param delegateReadObject delegate object read access should be provided through or 0
+    */
+   public CollectedDataRequest(long nodeId, long dciId, String instance, String dataColumn, Date from, Date to, int maxRows, long delegateReadObject)
+   {
+      this(nodeId, dciId, instance, dataColumn, from, to, maxRows, HistoricalDataType.PROCESSED, delegateReadObject);
+   }
+
+   /**
+    * Internal constructor.
+    */
+   private CollectedDataRequest(long nodeId, long dciId, String instance, String dataColumn, Date from, Date to, int maxRows,
+         HistoricalDataType valueType, long delegateReadObject)
+   {
+      if (valueType == HistoricalDataType.FULL_TABLE)
+         throw new IllegalArgumentException("Full table values cannot be retrieved in batch mode");
+      this.nodeId = nodeId;
+      this.dciId = dciId;
+      this.instance = instance;
+      this.dataColumn = dataColumn;
+      this.from = from;
+      this.to = to;
+      this.maxRows = maxRows;
+      this.valueType = valueType;
+      this.delegateReadObject = delegateReadObject;
+   }
+
+   /**
+    * @return the nodeId
+    */
+   public long getNodeId()
+   {
+      return nodeId;
+   }
+
+   /**
+    * @return the dciId
+    */
+   public long getDciId()
+   {
+      return dciId;
+   }
+
+   /**
+    * @return table instance or null for single-value DCI
+    */
+   public String getInstance()
+   {
+      return instance;
+   }
+
+   /**
+    * @return table column name or null for single-value DCI
+    */
+   public String getDataColumn()
+   {
+      return dataColumn;
+   }
+
+   /**
+    * @return start of time range or null for no limit
+    */
+   public Date getFrom()
+   {
+      return from;
+   }
+
+   /**
+    * @return end of time range or null for no limit
+    */
+   public Date getTo()
+   {
+      return to;
+   }
+
+   /**
+    * @return maximum number of rows to retrieve or 0 for no limit
+    */
+   public int getMaxRows()
+   {
+      return maxRows;
+   }
+
+   /**
+    * @return the valueType
+    */
+   public HistoricalDataType getValueType()
+   {
+      return valueType;
+   }
+
+   /**
+    * @return delegate object ID or 0
+    */
+   public long getDelegateReadObject()
+   {
+      return delegateReadObject;
+   }
+
+   /**
+    * @see java.lang.Object#toString()
+    */
+   @Override
+   public String toString()
+   {
+      return "CollectedDataRequest [nodeId=" + nodeId + ", dciId=" + dciId + ", instance=" + instance + ", dataColumn=" + dataColumn +
+            ", from=" + from + ", to=" + to + ", maxRows=" + maxRows + ", valueType=" + valueType + "]";
+   }
+}
@@ -1,6 +1,6 @@
 /**
  * NetXMS - open source network management system
- * Copyright (C) 2003-2021 Victor Kirhenshtein
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -18,98 +18,514 @@
  */
 package org.netxms.client.datacollection;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import org.netxms.client.constants.DataType;
 
 /**
- * Class to hold series of collected DCI data
+ * Class to hold series of collected DCI data. Data is stored in columnar form: timestamps in primitive array, and values in
+ * primitive array of longs or doubles (for numeric data types) or in array of objects (for strings, tables, and mixed
+ * content). Raw values are stored only if present. Use indexed accessors ({@link #size()}, {@link #getTimestamp(int)},
+ * {@link #getValueAsDouble(int)}, etc.) to process large data sets without creating per-sample objects; {@link #getValues()}
+ * is provided for code that works with {@link DciDataRow} objects.
  */
 public class DciData
 {
-	private long nodeId;
-	private long dciId;
-	private DataType dataType;
-	private ArrayList<DciDataRow> values = new ArrayList<DciDataRow>();
-
-	/**
-	 * @param nodeId The node ID
-	 * @param dciId The dci ID
-	 */
-	public DciData(long nodeId, long dciId)
-	{
-		this.nodeId = nodeId;
-		this.dciId = dciId;
-		this.dataType = DataType.INT32;
-	}
-
-	/**
-	 * @return the nodeId
-	 */
-	public long getNodeId()
-	{
-		return nodeId;
-	}
-
-	/**
-	 * @return the dciId
-	 */
-	public long getDciId()
-	{
-		return dciId;
-	}
-
-	/**
-	 * @return the values
-	 */
-	public DciDataRow[] getValues()
-	{
-		return values.toArray(new DciDataRow[values.size()]);
-	}
-		
-	/**
-	 * Get last added value
-	 * 
-	 * @return last added value
-	 */
-	public DciDataRow getLastValue()
-	{
-		return (values.size() > 0) ? values.get(values.size() - 1) : null;
-	}
-	
-	/**
-	 * Add new value
-	 * 
-	 * @param row DciDataRow
-	 */
-	public void addDataRow(DciDataRow row)
-	{
-		values.add(row);
-	}
-
-	/**
-	 * @return the dataType
-	 */
-	public DataType getDataType()
-	{
-		return dataType;
-	}
-
-	/**
-	 * @param dataType the dataType to set
-	 */
-	public void setDataType(DataType dataType)
-	{
-		this.dataType = dataType;
-	}
-	
-	/**
-	 * Invert values
-	 */
-	public void invert()
-	{
-	   for(DciDataRow r : values)
-	      r.invert();
-	}
+   private static final int STORAGE_LONG = 0;
+   private static final int STORAGE_DOUBLE = 1;
+   private static final int STORAGE_OBJECT = 2;
+
+   private long nodeId;
+   private long dciId;
+   private DataType dataType;
+   private int size = 0;
+   private int storage = -1;
+   private long[] timestamps = new long[16];
+   private long[] longValues = null;
+   private double[] doubleValues = null;
+   private Object[] objectValues = null;
+   private String[] rawValues = null;
+
+   /**
+    * @param nodeId The node ID
+    * @param dciId The dci ID
+    */
+   public DciData(long nodeId, long dciId)
+   {
+      this.nodeId = nodeId;
+      this.dciId = dciId;
+      this.dataType = DataType.INT32;
+   }
+
+   /**
+    * @return the nodeId
+    */
+   public long getNodeId()
+   {
+      return nodeId;
+   }
+
+   /**
+    * @return the dciId
+    */
+   public long getDciId()
+   {
+      return dciId;
+   }
+
+   /**
+    * Get all values as array of row objects. New row objects are created on each call, so for large data sets indexed accessors
+    * should be preferred.
+    *
+    * @return the values
+    */
+   public DciDataRow[] getValues()
+   {
+      DciDataRow[] rows = new DciDataRow[size];
+      for(int i = 0; i < size; i++)
+         rows[i] = getRow(i);
+      return rows;
+   }
+
+   /**
+    * Get value at given position as row object.
+    *
+    * @param index value index
+    * @return row object
+    * @throws IndexOutOfBoundsException if index is out of range
+    */
+   public DciDataRow getRow(int index)
+   {
+      checkIndex(index);
+      DciDataRow row = new DciDataRow(new Date(timestamps[index]), getValue(index));
+      if (rawValues != null)
+         row.setRawValue(rawValues[index]);
+      return row;
+   }
+
+   /**
+    * Get last added value
+    *
+    * @return last added value
+    */
+   public DciDataRow getLastValue()
+   {
+      return (size > 0) ? getRow(size - 1) : null;
+   }
+
+   /**
+    * Get number of values.
+    *
+    * @return number of values
+    */
+   public int size()
+   {
+      return size;
+   }
+
+   /**
+    * Check if data set is empty.
+    *
+    * @return true if data set is empty
+    */
+   public boolean isEmpty()
+   {
+      return size == 0;
+   }
+
+   /**
+    * Check that given index is valid.
+    *
+    * @param index index to check
+    */
+   private void checkIndex(int index)
+   {
+      if ((index < 0) || (index >= size))
+         throw new IndexOutOfBoundsException("Index " + index + " out of range [0.." + size + ")");
+   }
+
+   /**
+    * Get timestamp of value at given position.
+    *
+    * @param index value index
+    * @return timestamp in milliseconds since epoch
+    */
+   public long getTimestamp(int index)
+   {
+      checkIndex(index);
+      return timestamps[index];
+   }
+
+   /**
+    * Get value at given position.
+    *
+    * @param index value index
+    * @return value as object (Long, Double, String, Table, or null)
+    */
+   public Object getValue(int index)
+   {
+      checkIndex(index);
+      switch(storage)
+      {
+         case STORAGE_LONG:
+            return Long.valueOf(longValues[index]);
+         case STORAGE_DOUBLE:
+            return Double.valueOf(doubleValues[index]);
+         default:
+            return objectValues[index];
+      }
+   }
+
+   /**
+    * Get value at given position as double. Non-numeric values are parsed if possible, otherwise 0 is returned.
+    *
+    * @param index value index
+    * @return value as double
+    */
+   public double getValueAsDouble(int index)
+   {
+      checkIndex(index);
+      switch(storage)
+      {
+         case STORAGE_LONG:
+            return longValues[index];
+         case STORAGE_DOUBLE:
+            return doubleValues[index];
+         default:
+            return new DciDataRow(null, objectValues[index]).getValueAsDouble();
+      }
+   }
+
+   /**
+    * Get value at given position as long. Non-numeric values are parsed if possible, otherwise 0 is returned.
+    *
+    * @param index value index
+    * @return value as long
+    */
+   public long getValueAsLong(int index)
+   {
+      checkIndex(index);
+      switch(storage)
+      {
+         case STORAGE_LONG:
+            return longValues[index];
+         case STORAGE_DOUBLE:
+            return (long)doubleValues[index];
+         default:
+            return new DciDataRow(null, objectValues[index]).getValueAsLong();
+      }
+   }
+
+   /**
+    * Get value at given position as string.
+    *
+    * @param index value index
+    * @return value as string (empty string for null values)
+    */
+   public String getValueAsString(int index)
+   {
+      Object value = getValue(index);
+      return (value != null) ? value.toString() : "";
+   }
+
+   /**
+    * Get raw value at given position.
+    *
+    * @param index value index
+    * @return raw value or null if not available
+    */
+   public String getRawValue(int index)
+   {
+      checkIndex(index);
+      return (rawValues != null) ? rawValues[index] : null;
+   }
+
+   /**
+    * Check if raw values are present in this data set.
+    *
+    * @return true if raw values are present
+    */
+   public boolean hasRawValues()
+   {
+      return rawValues != null;
+   }
+
+   /**
+    * Get copy of all timestamps.
+    *
+    * @return array of timestamps in milliseconds since epoch
+    */
+   public long[] getTimestamps()
+   {
+      return Arrays.copyOf(timestamps, size);
+   }
+
+   /**
+    * Get copy of all values as doubles. Non-numeric values are converted as in {@link #getValueAsDouble(int)}.
+    *
+    * @return array of values
+    */
+   public double[] getValuesAsDouble()
+   {
+      if (storage == STORAGE_DOUBLE)
+         return Arrays.copyOf(doubleValues, size);
+      double[] result = new double[size];
+      for(int i = 0; i < size; i++)
+         result[i] = getValueAsDouble(i);
+      return result;
+   }
+
+   /**
+    * Get copy of all values as longs. Non-numeric values are converted as in {@link #getValueAsLong(int)}.
+    *
+    * @return array of values
+    */
+   public long[] getValuesAsLong()
+   {
+      if (storage == STORAGE_LONG)
+         return Arrays.copyOf(longValues, size);
+      long[] result = new long[size];
+      for(int i = 0; i < size; i++)
+         result[i] = getValueAsLong(i);
+      return result;
+   }
+
+   /**
+    * Ensure that data set can hold given number of values without re-allocation.
+    *
+    * @param capacity required capacity
+    */
+   public void ensureCapacity(int capacity)
+   {
+      if (capacity <= timestamps.length)
+         return;
+      int newCapacity = Math.max(capacity, timestamps.length + (timestamps.length >> 1));
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      if (longValues != null)
+         longValues = Arrays.copyOf(longValues, newCapacity);
+      if (doubleValues != null)
+         doubleValues = Arrays.copyOf(doubleValues, newCapacity);
+      if (objectValues != null)
+         objectValues = Arrays.copyOf(objectValues, newCapacity);
+      if (rawValues != null)
+         rawValues = Arrays.copyOf(rawValues, newCapacity);
+   }
+
+   /**
+    * Switch value storage to object array, preserving existing values.
+    */
+   private void convertToObjectStorage()
+   {
+      Object[] values = new Object[timestamps.length];
+      for(int i = 0; i < size; i++)
+         values[i] = getValue(i);
+      objectValues = values;
+      longValues = null;
+      doubleValues = null;
+      storage = STORAGE_OBJECT;
+   }
+
+   /**
+    * Prepare storage for adding value of given storage type.
+    *
+    * @param type storage type for new value
+    */
+   private void prepareStorage(int type)
+   {
+      ensureCapacity(size + 1);
+      if (storage == type)
+         return;
+      if (storage == -1)
+      {
+         storage = type;
+         if (type == STORAGE_LONG)
+            longValues = new long[timestamps.length];
+         else if (type == STORAGE_DOUBLE)
+            doubleValues = new double[timestamps.length];
+         else
+            objectValues = new Object[timestamps.length];
+      }
+      else if (storage != STORAGE_OBJECT)
+      {
+         convertToObjectStorage();
+      }
+   }
+
+   /**
+    * Add new integer value.
+    *
+    * @param timestamp value timestamp in milliseconds since epoch
+    * @param value value
+    */
+   public void addValue(long timestamp, long value)
+   {
+      prepareStorage(STORAGE_LONG);
+      timestamps[size] = timestamp;
+      if (storage == STORAGE_LONG)
+         longValues[size] = value;
+      else
+         objectValues[size] = Long.valueOf(value);
+      size++;
+   }
+
+   /**
+    * Add new floating point value.
+    *
+    * @param timestamp value timestamp in milliseconds since epoch
+    * @param value value
+    */
+   public void addValue(long timestamp, double value)
+   {
+      prepareStorage(STORAGE_DOUBLE);
+      timestamps[size] = timestamp;
+      if (storage == STORAGE_DOUBLE)
+         doubleValues[size] = value;
+      else
+         objectValues[size] = Double.valueOf(value);
+      size++;
+   }
+
+   /**
+    * Add new value of arbitrary type. Long and Double values are stored in primitive form if possible.
+    *
+    * @param timestamp value timestamp in milliseconds since epoch
+    * @param value value
+    */
+   public void addValue(long timestamp, Object value)
+   {
+      if (value instanceof Long)
+      {
+         addValue(timestamp, ((Long)value).longValue());
+      }
+      else if (value instanceof Double)
+      {
+         addValue(timestamp, ((Double)value).doubleValue());
+      }
+      else
+      {
+         prepareStorage(STORAGE_OBJECT);
+         timestamps[size] = timestamp;
+         objectValues[size] = value;
+         size++;
+      }
+   }
+
+   /**
+    * Set raw value for last added value.
+    *
+    * @param rawValue raw value
+    */
+   public void setLastRawValue(String rawValue)
+   {
+      if (size == 0)
+         throw new IllegalStateException("Data set is empty");
+      if (rawValues == null)
+      {
+         if (rawValue == null)
+            return;
+         rawValues = new String[timestamps.length];
+      }
+      rawValues[size - 1] = rawValue;
+   }
+
+   /**
+    * Append all values from another data set.
+    *
+    * @param other data set to append
+    */
+   public void addAll(DciData other)
+   {
+      if (other.size == 0)
+         return;
+      ensureCapacity(size + other.size);
+      if ((storage == -1) && (other.storage != STORAGE_OBJECT))
+      {
+         storage = other.storage;
+         if (storage == STORAGE_LONG)
+            longValues = new long[timestamps.length];
+         else
+            doubleValues = new double[timestamps.length];
+      }
+      if ((storage == other.storage) && (storage != STORAGE_OBJECT))
+      {
+         System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+         if (storage == STORAGE_LONG)
+            System.arraycopy(other.longValues, 0, longValues, size, other.size);
+         else
+            System.arraycopy(other.doubleValues, 0, doubleValues, size, other.size);
+         if (other.rawValues != null)
+         {
+            if (rawValues == null)
+               rawValues = new String[timestamps.length];
+            System.arraycopy(other.rawValues, 0, rawValues, size, other.size);
+         }
+         size += other.size;
+      }
+      else
+      {
+         for(int i = 0; i < other.size; i++)
+         {
+            addValue(other.timestamps[i], other.getValue(i));
+            if (other.rawValues != null)
+               setLastRawValue(other.rawValues[i]);
+         }
+      }
+   }
+
+   /**
+    * Add new value
+    *
+    * @param row DciDataRow
+    */
+   public void addDataRow(DciDataRow row)
+   {
+      addValue(row.getTimestamp().getTime(), row.getValue());
+      if (row.getRawValue() != null)
+         setLastRawValue(row.getRawValue());
+   }
+
+   /**
+    * @return the dataType
+    */
+   public DataType getDataType()
+   {
+      return dataType;
+   }
+
+   /**
+    * @param dataType the dataType to set
+    */
+   public void setDataType(DataType dataType)
+   {
+      this.dataType = dataType;
+   }
+
+   /**
+    * Invert values
+    */
+   public void invert()
+   {
+      switch(storage)
+      {
+         case STORAGE_LONG:
+            for(int i = 0; i < size; i++)
+               longValues[i] = -longValues[i];
+            break;
+         case STORAGE_DOUBLE:
+            for(int i = 0; i < size; i++)
+               doubleValues[i] = -doubleValues[i];
+            break;
+         case STORAGE_OBJECT:
+            for(int i = 0; i < size; i++)
+            {
+               if (objectValues[i] instanceof Long)
+                  objectValues[i] = -((Long)objectValues[i]);
+               else if (objectValues[i] instanceof Double)
+                  objectValues[i] = -((Double)objectValues[i]);
+            }
+            break;
+      }
+   }
 
    /**
     * @see java.lang.Object#toString()
@@ -117,6 +533,6 @@ public void invert()
    @Override
    public String toString()
    {
-      return "DciData [nodeId=" + nodeId + ", dciId=" + dciId + ", dataType=" + dataType + ", valuesSize=" + values.size() + "]";
+      return "DciData [nodeId=" + nodeId + ", dciId=" + dciId + ", dataType=" + dataType + ", valuesSize=" + size + "]";
    }
 }
@@ -113,6 +113,43 @@ public Alarm(NXCPMessage msg)
       ruleDescription = msg.getFieldAsString(NXCPCodes.VID_RULE_DESCRIPTION);
    }
 
+   /**
+    * Create copy of given alarm.
+    *
+    * @param src source alarm
+    */
+   public Alarm(Alarm src)
+   {
+      id = src.id;
+      parentId = src.parentId;
+      currentSeverity = src.currentSeverity;
+      originalSeverity = src.originalSeverity;
+      repeatCount = src.repeatCount;
+      state = src.state;
+      sticky = src.sticky;
+      acknowledgedByUser = src.acknowledgedByUser;
+      resolvedByUser = src.resolvedByUser;
+      terminatedByUser = src.terminatedByUser;
+      sourceEventId = src.sourceEventId;
+      sourceEventCode = src.sourceEventCode;
+      sourceObjectId = src.sourceObjectId;
+      dciId = src.dciId;
+      creationTime = src.creationTime;
+      lastChangeTime = src.lastChangeTime;
+      message = src.message;
+      key = src.key;
+      helpdeskState = src.helpdeskState;
+      helpdeskReference = src.helpdeskReference;
+      timeout = src.timeout;
+      timeoutEvent = src.timeoutEvent;
+      commentsCount = src.commentsCount;
+      ackTime = src.ackTime;
+      categories = (src.categories != null) ? Arrays.copyOf(src.categories, src.categories.length) : null;
+      subordinateAlarms = (src.subordinateAlarms != null) ? Arrays.copyOf(src.subordinateAlarms, src.subordinateAlarms.length) : null;
+      ruleId = src.ruleId;
+      ruleDescription = src.ruleDescription;
+   }
+
    /**
     * Mark alarm as resolved. This call only updates local object state and do not change
     * actual alarm state on server. It can be used to update local alarm objects after
@@ -0,0 +1,105 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+import org.netxms.client.constants.Severity;
+import org.netxms.client.events.Alarm;
+
+/**
+ * Tests for client alarm cache
+ */
+public class AlarmCacheTest
+{
+   private static Alarm createAlarm(long id, long sourceId, int state, Severity severity)
+   {
+      NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_ALARM_DATA, 1);
+      msg.setFieldUInt32(NXCPCodes.VID_ALARM_ID, id);
+      msg.setFieldUInt32(NXCPCodes.VID_OBJECT_ID, sourceId);
+      msg.setFieldInt16(NXCPCodes.VID_STATE, state);
+      msg.setFieldInt16(NXCPCodes.VID_CURRENT_SEVERITY, severity.getValue());
+      msg.setField(NXCPCodes.VID_ALARM_MESSAGE, "alarm " + id);
+      return new Alarm(msg);
+   }
+
+   @Test
+   public void testQueries()
+   {
+      AlarmCache cache = new AlarmCache();
+      cache.update(createAlarm(1, 10, Alarm.STATE_OUTSTANDING, Severity.MAJOR));
+      assertEquals(0, cache.size()); // inactive until synchronized
+
+      cache.beginSync();
+      cache.completeSync(Arrays.asList(createAlarm(1, 10, Alarm.STATE_OUTSTANDING, Severity.MAJOR),
+            createAlarm(2, 10, Alarm.STATE_ACKNOWLEDGED, Severity.CRITICAL), createAlarm(3, 20, Alarm.STATE_OUTSTANDING, Severity.WARNING)));
+      assertEquals(3, cache.size());
+      assertEquals(2, cache.find(new HashSet<Long>(Arrays.asList(10L)), 0, 0).size());
+      assertEquals(2, cache.find(null, Alarm.STATE_BIT_OUTSTANDING, 0).size());
+      assertEquals(1, cache.find(null, 0, 1 << Severity.CRITICAL.getValue()).size());
+      assertEquals(1, cache.find(new HashSet<Long>(Arrays.asList(10L, 20L)), Alarm.STATE_BIT_OUTSTANDING, 1 << Severity.WARNING.getValue()).size());
+      assertEquals(3, cache.find(null, 0, 0).size());
+
+      // State and severity changes must move alarm between index buckets
+      cache.update(createAlarm(1, 10, Alarm.STATE_ACKNOWLEDGED, Severity.CRITICAL));
+      assertEquals(1, cache.find(null, Alarm.STATE_BIT_OUTSTANDING, 0).size());
+      assertEquals(2, cache.find(null, 0, 1 << Severity.CRITICAL.getValue()).size());
+
+      Alarm before = cache.get(3);
+      cache.setResolved(Arrays.asList(1L, 3L), 5, new Date());
+      List<Alarm> resolved = cache.find(null, Alarm.STATE_BIT_RESOLVED, 0);
+      assertEquals(2, resolved.size());
+      assertEquals(5, cache.get(3).getResolvedByUser());
+      assertEquals(Alarm.STATE_OUTSTANDING, before.getState()); // instances already returned to readers are not modified
+      assertEquals("alarm 3", cache.get(3).getMessage());
+      assertTrue(cache.find(null, Alarm.STATE_BIT_OUTSTANDING, 0).isEmpty());
+
+      cache.remove(Arrays.asList(1L, 2L));
+      assertNull(cache.get(1));
+      assertTrue(cache.find(new HashSet<Long>(Arrays.asList(10L)), 0, 0).isEmpty());
+      assertEquals(1, cache.size());
+   }
+
+   @Test
+   public void testUpdatesDuringSync()
+   {
+      AlarmCache cache = new AlarmCache();
+      cache.beginSync();
+      cache.update(createAlarm(1, 10, Alarm.STATE_ACKNOWLEDGED, Severity.MAJOR));
+      cache.remove(2);
+      cache.completeSync(Arrays.asList(createAlarm(1, 10, Alarm.STATE_OUTSTANDING, Severity.MAJOR),
+            createAlarm(2, 10, Alarm.STATE_OUTSTANDING, Severity.MAJOR), createAlarm(3, 10, Alarm.STATE_OUTSTANDING, Severity.MAJOR)));
+      assertEquals(2, cache.size());
+      assertEquals(Alarm.STATE_ACKNOWLEDGED, cache.get(1).getState()); // notification is newer than downloaded list
+      assertNull(cache.get(2));
+
+      cache.reset();
+      assertEquals(0, cache.size());
+      cache.update(createAlarm(4, 10, Alarm.STATE_OUTSTANDING, Severity.MAJOR));
+      assertEquals(0, cache.size());
+   }
+}
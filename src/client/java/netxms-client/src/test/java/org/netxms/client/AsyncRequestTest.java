@@ -0,0 +1,119 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+import org.netxms.client.constants.RCC;
+
+/**
+ * Tests for asynchronous request correlation
+ */
+public class AsyncRequestTest
+{
+   private static NXCPMessage createRCC(long id, int rcc)
+   {
+      NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_REQUEST_COMPLETED, id);
+      msg.setFieldInt32(NXCPCodes.VID_RCC, rcc);
+      return msg;
+   }
+
+   private static NXCPMessage createAlarmData(long id, int alarmId)
+   {
+      NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_ALARM_DATA, id);
+      msg.setFieldInt32(NXCPCodes.VID_ALARM_ID, alarmId);
+      return msg;
+   }
+
+   @Test
+   public void testSequence() throws Exception
+   {
+      AsyncRequest r = new AsyncRequest(10, true, NXCPCodes.CMD_ALARM_DATA, (m) -> m.getFieldAsInt32(NXCPCodes.VID_ALARM_ID) == 0, 1000);
+      assertFalse(r.processMessage(createAlarmData(10, 1))); // data before completion message is not accepted
+      assertFalse(r.processMessage(new NXCPMessage(NXCPCodes.CMD_PROGRESS_REPORT, 10)));
+      assertTrue(r.processMessage(createRCC(10, RCC.SUCCESS)));
+      assertTrue(r.processMessage(createAlarmData(10, 1)));
+      assertTrue(r.processMessage(createAlarmData(10, 2)));
+      assertFalse(r.isDone());
+      assertTrue(r.processMessage(createAlarmData(10, 0)));
+      assertTrue(r.isDone());
+      List<NXCPMessage> messages = r.getFuture().get();
+      assertEquals(3, messages.size());
+      assertEquals(2, messages.get(1).getFieldAsInt32(NXCPCodes.VID_ALARM_ID));
+   }
+
+   @Test
+   public void testErrors() throws Exception
+   {
+      AsyncRequest r = new AsyncRequest(11, true, 0, null, 1000);
+      assertTrue(r.processMessage(createRCC(11, RCC.ACCESS_DENIED)));
+      assertTrue(r.isDone());
+      ExecutionException e = assertThrows(ExecutionException.class, () -> r.getFuture().get());
+      assertEquals(RCC.ACCESS_DENIED, ((NXCException)e.getCause()).getErrorCode());
+
+      AsyncRequest r2 = new AsyncRequest(12, true, 0, null, 1000);
+      assertFalse(r2.isTimedOut(System.currentTimeMillis()));
+      assertTrue(r2.isTimedOut(System.currentTimeMillis() + 2000));
+      r2.fail(new NXCException(RCC.TIMEOUT));
+      assertTrue(r2.isDone());
+      assertFalse(r2.processMessage(createRCC(12, RCC.SUCCESS)));
+   }
+
+   /**
+    * Create session that does not send messages anywhere.
+    */
+   private static NXCSession createOfflineSession()
+   {
+      return new NXCSession("127.0.0.1") {
+         @Override
+         public synchronized void sendMessage(NXCPMessage msg)
+         {
+         }
+      };
+   }
+
+   @Test
+   public void testCancellation() throws Exception
+   {
+      NXCSession session = createOfflineSession();
+
+      NXCPMessage request = new NXCPMessage(NXCPCodes.CMD_GET_ALL_ALARMS, 20);
+      CompletableFuture<List<NXCPMessage>> f = session.sendRequestAsync(request, false, NXCPCodes.CMD_ALARM_DATA, null);
+      assertTrue(session.isAsyncRequestPending(20));
+      assertTrue(f.cancel(false));
+      assertFalse(session.isAsyncRequestPending(20));
+
+      // Cancellation of future derived from request future also releases request
+      NXCPMessage request2 = new NXCPMessage(NXCPCodes.CMD_GET_DCI_THRESHOLDS, 21);
+      CompletableFuture<NXCPMessage> f2 = session.sendRequestAsync(request2);
+      assertTrue(session.isAsyncRequestPending(21));
+      assertTrue(f2.cancel(false));
+      assertFalse(session.isAsyncRequestPending(21));
+      assertThrows(CancellationException.class, () -> f2.get());
+   }
+}
@@ -0,0 +1,149 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.Date;
+import org.junit.jupiter.api.Test;
+import org.netxms.client.constants.DataType;
+import org.netxms.client.datacollection.DciData;
+import org.netxms.client.datacollection.DciDataRow;
+
+/**
+ * Tests for columnar DCI data representation
+ */
+public class DciDataTest
+{
+   private static byte[] createDataBlock(DataType dataType, boolean rawValues, int rows) throws Exception
+   {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(buffer);
+      out.writeInt(rows);
+      out.writeShort(dataType.getValue());
+      out.writeShort(rawValues ? 1 : 0);
+      for(int i = 0; i < rows; i++)
+      {
+         out.writeInt(0xF0000000 - i * 60); // timestamp above 2^31 to check unsigned handling
+         switch(dataType)
+         {
+            case INT32:
+               out.writeInt(-i);
+               break;
+            case FLOAT:
+               out.writeDouble(i * 0.5);
+               break;
+            case STRING:
+               out.writeUTF("value " + i);
+               break;
+            default:
+               break;
+         }
+         if (rawValues)
+            out.writeUTF("raw " + i);
+      }
+      out.close();
+      return buffer.toByteArray();
+   }
+
+   @Test
+   public void testDecoding() throws Exception
+   {
+      NXCSession session = new NXCSession("127.0.0.1");
+
+      DciData data = new DciData(1, 2);
+      assertEquals(1000, session.parseDataRows(createDataBlock(DataType.INT32, false, 1000), data));
+      assertEquals(DataType.INT32, data.getDataType());
+      assertEquals(1000, data.size());
+      assertEquals(0xF0000000L * 1000, data.getTimestamp(0));
+      assertEquals(-999, data.getValueAsLong(999));
+      assertEquals(Long.valueOf(-5), data.getValue(5));
+      assertFalse(data.hasRawValues());
+
+      data = new DciData(1, 2);
+      session.parseDataRows(createDataBlock(DataType.FLOAT, true, 10), data);
+      assertEquals(4.5, data.getValueAsDouble(9));
+      assertEquals("raw 3", data.getRawValue(3));
+      DciDataRow row = data.getLastValue();
+      assertEquals(Double.valueOf(4.5), row.getValue());
+      assertEquals("raw 9", row.getRawValue());
+
+      data = new DciData(1, 2);
+      session.parseDataRows(createDataBlock(DataType.STRING, false, 3), data);
+      assertEquals("value 2", data.getValueAsString(2));
+      assertEquals(0, data.getValueAsLong(2));
+
+      // Malformed block should not cause exception
+      data = new DciData(1, 2);
+      byte[] block = createDataBlock(DataType.INT32, false, 10);
+      block[3] = 100;
+      session.parseDataRows(block, data);
+      assertTrue(data.size() < 100);
+   }
+
+   @Test
+   public void testRowAdapter()
+   {
+      DciData data = new DciData(1, 2);
+      data.addValue(1000, 10L);
+      data.addValue(2000, 11L);
+      data.addDataRow(new DciDataRow(new Date(3000), Double.valueOf(1.5)));
+      assertEquals(3, data.size());
+      assertEquals(Long.valueOf(11), data.getValue(1)); // type of earlier values preserved after switching storage
+      assertEquals(Double.valueOf(1.5), data.getValue(2));
+
+      data.invert();
+      DciDataRow[] rows = data.getValues();
+      assertEquals(3, rows.length);
+      assertEquals(-10L, rows[0].getValueAsLong());
+      assertEquals(-1.5, rows[2].getValueAsDouble());
+      assertEquals(3000, rows[2].getTimestamp().getTime());
+      assertNull(rows[0].getRawValue());
+
+      long[] timestamps = data.getTimestamps();
+      assertEquals(3, timestamps.length);
+      assertEquals(2000, timestamps[1]);
+      assertEquals(-11.0, data.getValuesAsDouble()[1]);
+   }
+
+   @Test
+   public void testAddAll()
+   {
+      DciData result = new DciData(1, 2);
+      DciData page = new DciData(1, 2);
+      for(int i = 0; i < 100; i++)
+         page.addValue(100000 - i * 1000, (long)i);
+      result.addAll(page);
+      result.addAll(page);
+      assertEquals(200, result.size());
+      assertEquals(99, result.getValueAsLong(199));
+      assertEquals(100000, result.getTimestamp(100));
+
+      DciData mixed = new DciData(1, 2);
+      mixed.addValue(1, 0.5);
+      mixed.addAll(page);
+      assertEquals(101, mixed.size());
+      assertEquals(Double.valueOf(0.5), mixed.getValue(0));
+      assertEquals(Long.valueOf(3), mixed.getValue(4));
+   }
+}
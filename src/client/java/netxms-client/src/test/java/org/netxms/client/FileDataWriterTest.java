@@ -0,0 +1,303 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for asynchronous received file writer
+ */
+public class FileDataWriterTest
+{
+   /**
+    * Create writer listener that counts written bytes and signals completion.
+    */
+   private static FileDataWriter.Listener createListener(final AtomicLong written, final CountDownLatch completed)
+   {
+      return new FileDataWriter.Listener() {
+         @Override
+         public void onDataWritten(NXCReceivedFile file, int bytes)
+         {
+            written.addAndGet(bytes);
+         }
+
+         @Override
+         public void onTransferCompleted(NXCReceivedFile file)
+         {
+            completed.countDown();
+         }
+      };
+   }
+
+   /**
+    * Build compressed stream chunk in the same format as used by NXCP.
+    */
+   private static byte[] compressChunk(Deflater deflater, byte[] data)
+   {
+      deflater.setInput(data);
+      byte[] buffer = new byte[data.length + 64];
+      int length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+      byte[] chunk = new byte[length + 4];
+      chunk[0] = 2; // DEFLATE
+      chunk[2] = (byte)(data.length >> 8);
+      chunk[3] = (byte)data.length;
+      System.arraycopy(buffer, 0, chunk, 4, length);
+      return chunk;
+   }
+
+   @Test
+   public void testStreamDelivery() throws Exception
+   {
+      final AtomicLong written = new AtomicLong(0);
+      final CountDownLatch completed = new CountDownLatch(1);
+      FileDataWriter writer = new FileDataWriter(1024 * 1024, 1000, createListener(written, completed));
+      writer.start();
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      NXCReceivedFile file = new NXCReceivedFile(1, out);
+      writer.submitData(file, "first ".getBytes(StandardCharsets.UTF_8), false);
+      writer.submitData(file, "second ".getBytes(StandardCharsets.UTF_8), false);
+      writer.submitData(file, "third".getBytes(StandardCharsets.UTF_8), false);
+      writer.submitEndOfFile(file);
+
+      assertTrue(completed.await(10, TimeUnit.SECONDS));
+      assertEquals(NXCReceivedFile.RECEIVED, file.getStatus());
+      assertNull(file.getFile());
+      assertEquals("first second third", new String(out.toByteArray(), StandardCharsets.UTF_8));
+      assertEquals(18, written.get());
+      assertEquals(0, writer.getQueuedBytes());
+      writer.shutdown();
+   }
+
+   @Test
+   public void testCompressedStream() throws Exception
+   {
+      final AtomicLong written = new AtomicLong(0);
+      final CountDownLatch completed = new CountDownLatch(1);
+      FileDataWriter writer = new FileDataWriter(1024 * 1024, 1000, createListener(written, completed));
+      writer.start();
+
+      byte[] part1 = new byte[4000];
+      Arrays.fill(part1, (byte)'a');
+      byte[] part2 = "tail of compressed file".getBytes(StandardCharsets.UTF_8);
+      Deflater deflater = new Deflater();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      NXCReceivedFile file = new NXCReceivedFile(2, out);
+      writer.submitData(file, compressChunk(deflater, part1), true);
+      writer.submitData(file, compressChunk(deflater, part2), true);
+      writer.submitEndOfFile(file);
+
+      assertTrue(completed.await(10, TimeUnit.SECONDS));
+      assertEquals(NXCReceivedFile.RECEIVED, file.getStatus());
+      byte[] expected = new byte[part1.length + part2.length];
+      System.arraycopy(part1, 0, expected, 0, part1.length);
+      System.arraycopy(part2, 0, expected, part1.length, part2.length);
+      assertArrayEquals(expected, out.toByteArray());
+      assertEquals(expected.length, written.get());
+      writer.shutdown();
+   }
+
+   @Test
+   public void testAbortAfterData() throws Exception
+   {
+      final CountDownLatch completed = new CountDownLatch(1);
+      FileDataWriter writer = new FileDataWriter(1024 * 1024, 1000, createListener(new AtomicLong(), completed));
+      writer.start();
+
+      NXCReceivedFile file = new NXCReceivedFile(3);
+      writer.submitData(file, new byte[100], false);
+      writer.submitAbort(file, true);
+
+      assertTrue(completed.await(10, TimeUnit.SECONDS));
+      assertEquals(NXCReceivedFile.CANCELLED, file.getStatus());
+      assertFalse(file.isWriteFailed());
+      assertEquals(100, file.getSize());
+      file.discard();
+      assertFalse(file.getFile().exists());
+      writer.shutdown();
+   }
+
+   @Test
+   public void testWriteError() throws Exception
+   {
+      final CountDownLatch completed = new CountDownLatch(1);
+      FileDataWriter writer = new FileDataWriter(1024 * 1024, 1000, createListener(new AtomicLong(), completed));
+      writer.start();
+
+      NXCReceivedFile file = new NXCReceivedFile(4, new OutputStream() {
+         @Override
+         public void write(int b) throws IOException
+         {
+            throw new IOException("disk full");
+         }
+      });
+      writer.submitData(file, new byte[10], false);
+      writer.submitEndOfFile(file);
+
+      assertTrue(completed.await(10, TimeUnit.SECONDS));
+      assertEquals(NXCReceivedFile.FAILED, file.getStatus());
+      assertTrue(file.isWriteFailed());
+      assertEquals("disk full", file.getException().getMessage());
+      writer.shutdown();
+   }
+
+   /**
+    * Create output stream that blocks on first write until released.
+    */
+   private static OutputStream createBlockingStream(final CountDownLatch writeStarted, final CountDownLatch releaseWrite)
+   {
+      return new OutputStream() {
+         @Override
+         public void write(int b) throws IOException
+         {
+         }
+
+         @Override
+         public void write(byte[] b, int off, int len) throws IOException
+         {
+            writeStarted.countDown();
+            try
+            {
+               releaseWrite.await();
+            }
+            catch(InterruptedException e)
+            {
+               throw new IOException(e);
+            }
+         }
+      };
+   }
+
+   @Test
+   public void testSlowStreamDoesNotBlockOtherTransfers() throws Exception
+   {
+      final CountDownLatch completed = new CountDownLatch(2);
+      final CountDownLatch writeStarted = new CountDownLatch(1);
+      final CountDownLatch releaseWrite = new CountDownLatch(1);
+      FileDataWriter writer = new FileDataWriter(1024 * 1024, 1000, createListener(new AtomicLong(), completed));
+      writer.start();
+
+      NXCReceivedFile slowFile = new NXCReceivedFile(5, createBlockingStream(writeStarted, releaseWrite));
+      writer.submitData(slowFile, new byte[80], false);
+      assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+      writer.submitData(slowFile, new byte[80], false);
+      writer.submitEndOfFile(slowFile);
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      NXCReceivedFile file = new NXCReceivedFile(6, out);
+      writer.submitData(file, "data".getBytes(StandardCharsets.UTF_8), false);
+      writer.submitEndOfFile(file);
+
+      // Second transfer completes while first one is still blocked
+      long timeout = System.currentTimeMillis() + 10000;
+      while((file.getStatus() == NXCReceivedFile.OPEN) && (System.currentTimeMillis() < timeout))
+         Thread.sleep(10);
+      assertEquals(NXCReceivedFile.RECEIVED, file.getStatus());
+      assertEquals("data", new String(out.toByteArray(), StandardCharsets.UTF_8));
+      assertEquals(NXCReceivedFile.OPEN, slowFile.getStatus());
+
+      releaseWrite.countDown();
+      assertTrue(completed.await(10, TimeUnit.SECONDS));
+      assertEquals(NXCReceivedFile.RECEIVED, slowFile.getStatus());
+      assertEquals(160, slowFile.getSize());
+      assertEquals(0, writer.getQueuedBytes());
+      writer.shutdown();
+   }
+
+   @Test
+   public void testBackpressure() throws Exception
+   {
+      final CountDownLatch completed = new CountDownLatch(1);
+      final CountDownLatch writeStarted = new CountDownLatch(1);
+      final CountDownLatch releaseWrite = new CountDownLatch(1);
+      final FileDataWriter writer = new FileDataWriter(100, 10000, createListener(new AtomicLong(), completed));
+      writer.start();
+
+      final NXCReceivedFile file = new NXCReceivedFile(8, createBlockingStream(writeStarted, releaseWrite));
+      writer.submitData(file, new byte[80], false);
+      assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+
+      // Second chunk does not fit while first one is still being written - caller waits until writer catches up
+      final CountDownLatch submitted = new CountDownLatch(1);
+      Thread producer = new Thread(() -> {
+         writer.submitData(file, new byte[80], false);
+         writer.submitEndOfFile(file);
+         submitted.countDown();
+      });
+      producer.start();
+      assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+      assertEquals(80, writer.getQueuedBytes());
+
+      releaseWrite.countDown();
+      assertTrue(submitted.await(10, TimeUnit.SECONDS));
+      assertTrue(completed.await(10, TimeUnit.SECONDS));
+      assertEquals(NXCReceivedFile.RECEIVED, file.getStatus());
+      assertEquals(160, file.getSize());
+      writer.shutdown();
+   }
+
+   @Test
+   public void testQuotaOverflow() throws Exception
+   {
+      final CountDownLatch completed = new CountDownLatch(1);
+      final CountDownLatch writeStarted = new CountDownLatch(1);
+      final CountDownLatch releaseWrite = new CountDownLatch(1);
+      FileDataWriter writer = new FileDataWriter(100, 200, createListener(new AtomicLong(), completed));
+      writer.start();
+
+      NXCReceivedFile file = new NXCReceivedFile(7, createBlockingStream(writeStarted, releaseWrite));
+      writer.submitData(file, new byte[80], false);
+      assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+
+      // Second chunk exceeds quota while first one is still being written - transfer fails after maximum wait time
+      long startTime = System.currentTimeMillis();
+      writer.submitData(file, new byte[80], false);
+      long elapsed = System.currentTimeMillis() - startTime;
+      assertTrue((elapsed >= 150) && (elapsed < 5000));
+      writer.submitData(file, new byte[10], false);
+      writer.submitEndOfFile(file);
+      assertEquals(80, writer.getQueuedBytes());
+
+      releaseWrite.countDown();
+      assertTrue(completed.await(10, TimeUnit.SECONDS));
+      assertEquals(NXCReceivedFile.FAILED, file.getStatus());
+      assertTrue(file.isWriteFailed());
+      assertEquals(80, file.getSize());
+
+      long timeout = System.currentTimeMillis() + 10000;
+      while((writer.getQueuedBytes() > 0) && (System.currentTimeMillis() < timeout))
+         Thread.sleep(10);
+      assertEquals(0, writer.getQueuedBytes());
+      writer.shutdown();
+   }
+}
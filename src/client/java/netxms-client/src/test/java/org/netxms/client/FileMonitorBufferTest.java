@@ -0,0 +1,86 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for file monitor update buffer
+ */
+public class FileMonitorBufferTest
+{
+   @Test
+   public void testAppendAndDrain()
+   {
+      FileMonitorBuffer buffer = new FileMonitorBuffer(100);
+      assertTrue(buffer.isEmpty());
+      buffer.append("line 1\n");
+      buffer.append("");
+      buffer.append(null);
+      buffer.append("line 2\n");
+      assertFalse(buffer.isEmpty());
+      assertEquals(14, buffer.getSize());
+
+      List<String> chunks = new ArrayList<String>();
+      assertEquals(0, buffer.drainTo(chunks));
+      assertEquals(Arrays.asList("line 1\n", "line 2\n"), chunks);
+      assertTrue(buffer.isEmpty());
+      assertEquals(0, buffer.getSize());
+   }
+
+   @Test
+   public void testOverflow()
+   {
+      FileMonitorBuffer buffer = new FileMonitorBuffer(20);
+      buffer.append("aaaaaaaaaa");
+      buffer.append("bbbbbbbbbb");
+      buffer.append("cccccccccc");
+      assertEquals(20, buffer.getSize());
+
+      List<String> chunks = new ArrayList<String>();
+      assertEquals(10, buffer.drainTo(chunks));
+      assertEquals(Arrays.asList("bbbbbbbbbb", "cccccccccc"), chunks);
+
+      // Discarded counter is reset after drain, total is kept
+      buffer.append("dddddddddd");
+      chunks.clear();
+      assertEquals(0, buffer.drainTo(chunks));
+      assertEquals(Arrays.asList("dddddddddd"), chunks);
+      assertEquals(10, buffer.getTotalDiscarded());
+   }
+
+   @Test
+   public void testOversizedChunk()
+   {
+      FileMonitorBuffer buffer = new FileMonitorBuffer(10);
+      buffer.append("12345");
+      buffer.append("abcdefghijklmnopqrstuvwxyz");
+      assertEquals(10, buffer.getSize());
+
+      List<String> chunks = new ArrayList<String>();
+      assertEquals(21, buffer.drainTo(chunks));
+      assertEquals(Arrays.asList("qrstuvwxyz"), chunks);
+   }
+}
@@ -0,0 +1,159 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+
+/**
+ * Tests for pipelined file uploader
+ */
+public class FileUploaderTest
+{
+   /**
+    * Receiving side - decodes sent chunks using received file implementation.
+    */
+   private static class Receiver implements FileUploader.MessageSender
+   {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final NXCReceivedFile file = new NXCReceivedFile(1, out);
+      int messages = 0;
+      int compressedMessages = 0;
+      int maxChunkSize = 0;
+      boolean endOfFile = false;
+
+      @Override
+      public void sendMessage(NXCPMessage msg) throws IOException, NXCException
+      {
+         assertEquals(NXCPCodes.CMD_FILE_DATA, msg.getMessageCode());
+         assertFalse(endOfFile);
+         byte[] data = Arrays.copyOf(msg.getBinaryData(), msg.getBinaryDataLength());
+         file.writeData(data, msg.isCompressedStream());
+         messages++;
+         if (msg.isCompressedStream())
+            compressedMessages++;
+         maxChunkSize = Math.max(maxChunkSize, data.length);
+         endOfFile = msg.isEndOfFile();
+      }
+   }
+
+   @Test
+   public void testUncompressed() throws Exception
+   {
+      byte[] data = new byte[1000000];
+      new Random(1).nextBytes(data);
+
+      Receiver receiver = new Receiver();
+      FileUploader uploader = new FileUploader(262144, 4, 6);
+      uploader.upload(1, new ByteArrayInputStream(data), null, false, receiver);
+
+      assertTrue(receiver.endOfFile);
+      assertEquals(4, receiver.messages);
+      assertEquals(0, receiver.compressedMessages);
+      assertEquals(262144, receiver.maxChunkSize);
+      assertEquals(data.length, uploader.getBytesSent());
+      assertArrayEquals(data, receiver.out.toByteArray());
+   }
+
+   @Test
+   public void testCompressed() throws Exception
+   {
+      byte[] data = new byte[500000];
+      for(int i = 0; i < data.length; i++)
+         data[i] = (byte)('a' + (i / 100) % 26);
+
+      Receiver receiver = new Receiver();
+      FileUploader uploader = new FileUploader(262144, 4, 6);
+      uploader.upload(1, new ByteArrayInputStream(data), null, true, receiver);
+
+      assertTrue(receiver.endOfFile);
+      assertFalse(uploader.isCompressionDisabled());
+      assertEquals(receiver.messages, receiver.compressedMessages);
+      assertTrue(receiver.maxChunkSize < FileUploader.MAX_COMPRESSED_CHUNK_SIZE);
+      assertArrayEquals(data, receiver.out.toByteArray());
+   }
+
+   @Test
+   public void testAdaptiveCompression() throws Exception
+   {
+      byte[] data = new byte[2000000];
+      new Random(2).nextBytes(data);
+
+      Receiver receiver = new Receiver();
+      FileUploader uploader = new FileUploader(262144, 4, 6);
+      uploader.upload(1, new ByteArrayInputStream(data), null, true, receiver);
+
+      assertTrue(receiver.endOfFile);
+      assertTrue(uploader.isCompressionDisabled());
+      assertTrue(receiver.compressedMessages > 0);
+      assertTrue(receiver.compressedMessages < receiver.messages);
+      assertEquals(262144, receiver.maxChunkSize);
+      assertArrayEquals(data, receiver.out.toByteArray());
+   }
+
+   @Test
+   public void testExactChunkMultiple() throws Exception
+   {
+      byte[] data = new byte[8192];
+      new Random(3).nextBytes(data);
+
+      Receiver receiver = new Receiver();
+      FileUploader uploader = new FileUploader(4096, 2, 6);
+      uploader.upload(1, new ByteArrayInputStream(data), null, false, receiver);
+
+      // Last message is empty and carries end of file flag
+      assertEquals(3, receiver.messages);
+      assertTrue(receiver.endOfFile);
+      assertArrayEquals(data, receiver.out.toByteArray());
+   }
+
+   @Test
+   public void testReadError() throws Exception
+   {
+      InputStream in = new InputStream() {
+         private int count = 0;
+
+         @Override
+         public int read() throws IOException
+         {
+            if (++count > 10000)
+               throw new IOException("read error");
+            return 0;
+         }
+      };
+
+      Receiver receiver = new Receiver();
+      FileUploader uploader = new FileUploader(4096, 2, 6);
+      IOException e = assertThrows(IOException.class, () -> uploader.upload(1, in, null, false, receiver));
+      assertEquals("read error", e.getMessage());
+      assertFalse(receiver.endOfFile);
+   }
+}
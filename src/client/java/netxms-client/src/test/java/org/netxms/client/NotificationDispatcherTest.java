@@ -0,0 +1,96 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for session notification dispatcher
+ */
+public class NotificationDispatcherTest
+{
+   @Test
+   public void testCoalescing() throws Exception
+   {
+      NotificationDispatcher dispatcher = new NotificationDispatcher(100, 100);
+      final List<SessionNotification> received = Collections.synchronizedList(new ArrayList<SessionNotification>());
+      final CountDownLatch done = new CountDownLatch(1);
+      dispatcher.addListener((n) -> {
+         received.add(n);
+         if (n.getCode() == SessionNotification.SERVER_SHUTDOWN)
+            done.countDown();
+      }, null);
+
+      dispatcher.submit(new SessionNotification(SessionNotification.OBJECT_CHANGED, 1, "a"));
+      dispatcher.submit(new SessionNotification(SessionNotification.OBJECT_CHANGED, 2, "b"));
+      dispatcher.submit(new SessionNotification(SessionNotification.OBJECT_CHANGED, 1, "c"));
+      dispatcher.submit(new SessionNotification(SessionNotification.OBJECT_CHANGED, 1, "d"));
+      dispatcher.submit(new SessionNotification(SessionNotification.OBJECT_DELETED, 1));
+      dispatcher.submit(new SessionNotification(SessionNotification.OBJECT_CHANGED, 1, "e"));
+      dispatcher.submit(new SessionNotification(SessionNotification.SERVER_SHUTDOWN));
+      assertEquals(2, dispatcher.getCoalescedCount());
+      assertEquals(6, dispatcher.getQueueSize()); // including listener list update
+
+      dispatcher.start();
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      assertEquals(5, received.size());
+      assertEquals("d", received.get(0).getObject());
+      assertEquals("b", received.get(1).getObject());
+      assertEquals(SessionNotification.OBJECT_DELETED, received.get(2).getCode());
+      assertEquals("e", received.get(3).getObject());
+      assertEquals(0, dispatcher.getQueueSize());
+      assertEquals(0, dispatcher.getDroppedCount());
+      dispatcher.shutdown(null);
+   }
+
+   @Test
+   public void testBackpressure() throws Exception
+   {
+      NotificationDispatcher dispatcher = new NotificationDispatcher(3, 2);
+      final List<Runnable> tasks = Collections.synchronizedList(new ArrayList<Runnable>());
+      final CountDownLatch done = new CountDownLatch(1);
+      dispatcher.addListener((n) -> {}, (r) -> tasks.add(r)); // executor that never runs submitted tasks
+      dispatcher.addListener((n) -> done.countDown(), null);
+
+      // Two listener list updates are already in the queue
+      assertTrue(dispatcher.submit(new SessionNotification(SessionNotification.NEW_ALARM, 1)));
+      assertFalse(dispatcher.submit(new SessionNotification(SessionNotification.NEW_ALARM, 2)));
+      assertEquals(1, dispatcher.getDroppedCount());
+
+      dispatcher.start();
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      dispatcher.submit(new SessionNotification(SessionNotification.NEW_ALARM, 3));
+      dispatcher.submit(new SessionNotification(SessionNotification.NEW_ALARM, 4));
+      for(int i = 0; (i < 200) && (dispatcher.getDeliveredCount() < 3); i++)
+         Thread.sleep(50);
+      dispatcher.shutdown(null);
+
+      assertEquals(2, tasks.size()); // third notification dropped because of listener queue limit
+      assertEquals(2, dispatcher.getDroppedCount());
+      tasks.get(0).run();
+   }
+}
@@ -0,0 +1,205 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.net.InetAddress;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.netxms.base.InetAddressEx;
+import org.netxms.base.MacAddress;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+import org.netxms.client.constants.ObjectStatus;
+import org.netxms.client.objects.AbstractObject;
+import org.netxms.client.objects.GenericObject;
+import org.netxms.client.objects.Node;
+import org.netxms.client.objects.Zone;
+
+/**
+ * Tests for client object cache
+ */
+public class ObjectCacheTest
+{
+   private static NXCPMessage createObjectMessage(long id, long[] parents, long[] children)
+   {
+      NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_OBJECT, 1);
+      msg.setFieldUInt32(NXCPCodes.VID_OBJECT_ID, id);
+      msg.setField(NXCPCodes.VID_GUID, UUID.randomUUID());
+      msg.setField(NXCPCodes.VID_OBJECT_NAME, "object-" + id);
+      msg.setFieldInt16(NXCPCodes.VID_OBJECT_STATUS, ObjectStatus.NORMAL.getValue());
+      msg.setFieldInt32(NXCPCodes.VID_PARENT_CNT, parents.length);
+      for(int i = 0; i < parents.length; i++)
+         msg.setFieldUInt32(NXCPCodes.VID_PARENT_ID_BASE + i, parents[i]);
+      msg.setFieldInt32(NXCPCodes.VID_CHILD_CNT, children.length);
+      for(int i = 0; i < children.length; i++)
+         msg.setFieldUInt32(NXCPCodes.VID_CHILD_ID_BASE + i, children[i]);
+      return msg;
+   }
+
+   private static AbstractObject createObject(long id, long[] parents, long[] children)
+   {
+      return new GenericObject(createObjectMessage(id, parents, children), null);
+   }
+
+   @Test
+   public void testLookups()
+   {
+      ObjectCache cache = new ObjectCache();
+      AbstractObject object = createObject(10, new long[0], new long[0]);
+      assertTrue(cache.put(object));
+      assertSame(object, cache.get(10));
+      assertSame(object, cache.getByGUID(object.getGuid()));
+      assertTrue(cache.contains(10));
+
+      AbstractObject update = createObject(10, new long[0], new long[0]);
+      assertFalse(cache.put(update));
+      assertSame(update, cache.get(10));
+      assertNull(cache.getByGUID(object.getGuid()));
+      assertSame(update, cache.getByGUID(update.getGuid()));
+
+      NXCPMessage msg = createObjectMessage(20, new long[0], new long[0]);
+      msg.setFieldInt32(NXCPCodes.VID_ZONE_UIN, 5);
+      Zone zone = new Zone(msg, null);
+      cache.put(zone);
+      assertSame(zone, cache.getZone(5));
+      assertEquals(1, cache.getZones().size());
+
+      assertSame(zone, cache.remove(20));
+      assertNull(cache.getZone(5));
+      assertEquals(1, cache.size());
+
+      cache.clear();
+      assertEquals(0, cache.size());
+      assertNull(cache.getByGUID(update.getGuid()));
+   }
+
+   @Test
+   public void testRemoveWithOrphans()
+   {
+      ObjectCache cache = new ObjectCache();
+      cache.put(createObject(1, new long[0], new long[] { 2, 3 }));
+      cache.put(createObject(2, new long[] { 1 }, new long[] { 4 }));
+      cache.put(createObject(3, new long[] { 1, 5 }, new long[0]));
+      cache.put(createObject(4, new long[] { 2 }, new long[0]));
+      cache.put(createObject(5, new long[0], new long[] { 3 }));
+
+      cache.removeWithOrphans(1);
+      assertFalse(cache.contains(1));
+      assertFalse(cache.contains(2));
+      assertFalse(cache.contains(4));
+      assertTrue(cache.contains(3)); // still has parent 5
+      assertTrue(cache.contains(5));
+   }
+
+   @Test
+   public void testReadsDuringUpdates() throws Exception
+   {
+      final ObjectCache cache = new ObjectCache();
+      for(long id = 1; id <= 1000; id++)
+         cache.put(createObject(id, new long[0], new long[0]));
+
+      final AtomicBoolean running = new AtomicBoolean(true);
+      final AtomicInteger failures = new AtomicInteger(0);
+      Thread writer = new Thread(() -> {
+         while(running.get())
+         {
+            for(long id = 1; id <= 1000; id++)
+               cache.put(createObject(id, new long[0], new long[0]));
+         }
+      });
+      writer.start();
+      try
+      {
+         for(int i = 0; i < 200; i++)
+         {
+            int count = 0;
+            for(AbstractObject o : cache.values())
+            {
+               if (cache.get(o.getObjectId()) == null)
+                  failures.incrementAndGet();
+               count++;
+            }
+            if (count != 1000)
+               failures.incrementAndGet();
+         }
+      }
+      finally
+      {
+         running.set(false);
+         writer.join();
+      }
+      assertEquals(0, failures.get());
+   }
+
+   @Test
+   public void testSecondaryIndexes() throws Exception
+   {
+      ObjectCache cache = new ObjectCache();
+      cache.put(createObject(1, new long[0], new long[] { 2, 3 }));
+      cache.put(createObject(2, new long[] { 1 }, new long[0]));
+      cache.put(createObject(3, new long[] { 1 }, new long[0]));
+
+      NXCPMessage msg = createObjectMessage(4, new long[] { 100 }, new long[0]);
+      msg.setFieldInt16(NXCPCodes.VID_OBJECT_CLASS, AbstractObject.OBJECT_NODE);
+      msg.setField(NXCPCodes.VID_OBJECT_NAME, "Router-Core");
+      msg.setField(NXCPCodes.VID_IP_ADDRESS, new InetAddressEx(InetAddress.getByName("10.0.0.1"), 24));
+      msg.setField(NXCPCodes.VID_MAC_ADDR, new byte[] { 0, 1, 2, 3, 4, 5 });
+      cache.put(new Node(msg, null));
+
+      assertEquals(1, cache.getByClass(AbstractObject.OBJECT_NODE).size());
+      assertEquals(3, cache.getByClass(AbstractObject.OBJECT_GENERIC).size());
+      assertEquals(4, cache.getByName("router-core").get(0).getObjectId());
+      assertEquals(4, cache.getAnyByName("ROUTER-CORE").getObjectId());
+      assertEquals(3, cache.getByNamePrefix("Object-").size());
+      assertEquals(1, cache.getByNamePrefix("router").size());
+      assertEquals(4, cache.getByAddress(InetAddress.getByName("10.0.0.1")).get(0).getObjectId());
+      assertEquals(4, cache.getByMacAddress(new MacAddress(new byte[] { 0, 1, 2, 3, 4, 5 })).get(0).getObjectId());
+      assertEquals(2, cache.getChildren(1).size());
+      assertEquals(1, cache.getChildren(100).size());
+
+      // Rename and remove must update indexes
+      msg.setField(NXCPCodes.VID_OBJECT_NAME, "Router-Edge");
+      cache.put(new Node(msg, null));
+      assertTrue(cache.getByName("router-core").isEmpty());
+      assertEquals(1, cache.getByNamePrefix("router-e").size());
+      assertEquals(1, cache.getByAddress(InetAddress.getByName("10.0.0.1")).size());
+      cache.remove(4);
+      assertTrue(cache.getByNamePrefix("router").isEmpty());
+      assertTrue(cache.getByAddress(InetAddress.getByName("10.0.0.1")).isEmpty());
+      assertTrue(cache.getChildren(100).isEmpty());
+   }
+
+   @Test
+   public void testLiteralPrefix()
+   {
+      assertEquals("node", ObjectCache.getLiteralPrefix("node.*"));
+      assertEquals("nod", ObjectCache.getLiteralPrefix("node?"));
+      assertEquals("node", ObjectCache.getLiteralPrefix("node+"));
+      assertEquals("", ObjectCache.getLiteralPrefix("node|switch"));
+      assertEquals("", ObjectCache.getLiteralPrefix("(?i)node"));
+      assertEquals("srv-", ObjectCache.getLiteralPrefix("srv-[0-9]+"));
+   }
+}
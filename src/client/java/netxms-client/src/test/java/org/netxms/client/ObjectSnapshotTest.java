@@ -0,0 +1,166 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+import org.netxms.client.objects.AbstractObject;
+import org.netxms.client.objects.GenericObject;
+
+/**
+ * Tests for persistent object snapshot
+ */
+public class ObjectSnapshotTest
+{
+   @TempDir
+   File directory;
+
+   private static NXCPMessage createObjectMessage(long id)
+   {
+      NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_OBJECT, 1);
+      msg.setFieldUInt32(NXCPCodes.VID_OBJECT_ID, id);
+      msg.setField(NXCPCodes.VID_GUID, UUID.randomUUID());
+      msg.setField(NXCPCodes.VID_OBJECT_NAME, "object-" + id);
+      msg.setField(NXCPCodes.VID_COMMENTS, "Comments for object " + id);
+      msg.setFieldInt32(NXCPCodes.VID_PARENT_CNT, 1);
+      msg.setFieldUInt32(NXCPCodes.VID_PARENT_ID_BASE, 1);
+      msg.setFieldInt32(NXCPCodes.VID_CHILD_CNT, 0);
+      return msg;
+   }
+
+   @Test
+   public void testSaveAndLoad() throws Exception
+   {
+      ObjectSnapshot snapshot = new ObjectSnapshot(directory, 0x1234ABCDL, 5, true);
+      for(long id = 100; id < 1100; id++)
+         snapshot.update(id, createObjectMessage(id));
+      snapshot.remove(100);
+      snapshot.setTimestamp(1700000000L);
+      snapshot.save();
+      assertTrue(snapshot.getFile().isFile());
+
+      ObjectSnapshot loaded = new ObjectSnapshot(directory, 0x1234ABCDL, 5, false);
+      assertTrue(loaded.load());
+      assertEquals(999, loaded.size());
+      assertEquals(1700000000L, loaded.getTimestamp());
+      List<NXCPMessage> messages = loaded.getMessages();
+      assertEquals(999, messages.size());
+      for(NXCPMessage m : messages)
+      {
+         AbstractObject object = new GenericObject(m, null);
+         assertEquals("object-" + object.getObjectId(), object.getObjectName());
+         assertEquals(1, object.getParentIdList()[0]);
+      }
+   }
+
+   @Test
+   public void testCompatibility() throws Exception
+   {
+      ObjectSnapshot snapshot = new ObjectSnapshot(directory, 1, 5, false);
+      snapshot.update(10, createObjectMessage(10));
+      snapshot.setTimestamp(1);
+      snapshot.save();
+
+      assertFalse(new ObjectSnapshot(directory, 1, 5, true).load()); // node components required but not present
+      assertFalse(new ObjectSnapshot(directory, 2, 5, false).load()); // different server
+      assertFalse(new ObjectSnapshot(directory, 1, 6, false).load()); // different user
+      assertTrue(new ObjectSnapshot(directory, 1, 5, false).load());
+   }
+
+   @Test
+   public void testSecretsNotStored() throws Exception
+   {
+      NXCPMessage msg = createObjectMessage(10);
+      msg.setField(NXCPCodes.VID_SHARED_SECRET, "agent-secret");
+      msg.setField(NXCPCodes.VID_SNMP_AUTH_PASSWORD, "snmp-auth");
+      msg.setField(NXCPCodes.VID_SSH_PASSWORD, "ssh-password");
+
+      ObjectSnapshot snapshot = new ObjectSnapshot(directory, 1, 5, false);
+      snapshot.update(10, msg);
+      snapshot.save();
+      assertEquals("agent-secret", msg.getFieldAsString(NXCPCodes.VID_SHARED_SECRET)); // original message is not modified
+
+      byte[] content = Files.readAllBytes(snapshot.getFile().toPath());
+      assertFalse(new String(content, "ISO-8859-1").contains("agent-secret"));
+
+      ObjectSnapshot loaded = new ObjectSnapshot(directory, 1, 5, false);
+      assertTrue(loaded.load());
+      NXCPMessage m = loaded.getMessages().get(0);
+      assertEquals("object-10", m.getFieldAsString(NXCPCodes.VID_OBJECT_NAME));
+      assertNull(m.findField(NXCPCodes.VID_SHARED_SECRET));
+      assertNull(m.findField(NXCPCodes.VID_SNMP_AUTH_PASSWORD));
+      assertNull(m.findField(NXCPCodes.VID_SSH_PASSWORD));
+
+      assertTrue(loaded.getObjectsWithoutCredentials().contains(10L));
+
+      if (Files.getFileStore(directory.toPath()).supportsFileAttributeView("posix"))
+         assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE), Files.getPosixFilePermissions(snapshot.getFile().toPath()));
+   }
+
+   @Test
+   public void testObjectsWithoutCredentials() throws Exception
+   {
+      NXCPMessage node = createObjectMessage(10);
+      node.setField(NXCPCodes.VID_SHARED_SECRET, "agent-secret");
+      node.setField(NXCPCodes.VID_SNMP_AUTH_OBJECT, "public");
+
+      ObjectSnapshot snapshot = new ObjectSnapshot(directory, 1, 5, false);
+      snapshot.update(10, node);
+      snapshot.update(11, createObjectMessage(11));
+      snapshot.update(12, createObjectMessage(12));
+      snapshot.update(12, node); // object gets credentials
+      snapshot.update(13, node);
+      snapshot.update(13, createObjectMessage(13)); // object no longer has credentials
+      snapshot.update(14, node);
+      snapshot.remove(14);
+      snapshot.setTimestamp(1);
+      snapshot.save();
+
+      // Objects restored from snapshot must be marked as incomplete, so session reads them again instead of using empty credentials
+      ObjectSnapshot loaded = new ObjectSnapshot(directory, 1, 5, false);
+      assertTrue(loaded.load());
+      assertEquals(4, loaded.size());
+      assertEquals(new HashSet<Long>(Arrays.asList(10L, 12L)), loaded.getObjectsWithoutCredentials());
+
+      // Updated object is stored without credentials again and keeps the mark across save and load
+      NXCPMessage update = createObjectMessage(10);
+      update.setField(NXCPCodes.VID_SHARED_SECRET, "new-secret");
+      loaded.update(10, update);
+      loaded.save();
+      ObjectSnapshot reloaded = new ObjectSnapshot(directory, 1, 5, false);
+      assertTrue(reloaded.load());
+      assertEquals(new HashSet<Long>(Arrays.asList(10L, 12L)), reloaded.getObjectsWithoutCredentials());
+      for(NXCPMessage m : reloaded.getMessages())
+         assertNull(m.findField(NXCPCodes.VID_SHARED_SECRET));
+   }
+}
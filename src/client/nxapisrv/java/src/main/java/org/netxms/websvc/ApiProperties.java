@@ -32,6 +32,10 @@
    private int port = 4701;
    private boolean enableCompression;
    private long sessionTimeout = 300000;
+   private long dciMetadataCacheTimeout = 300000;
+   private long graphDataCacheTimeout = 10000;
+   private boolean enableSessionPool = false;
+   private long sessionPoolCredentialsTimeout = 300000;
 
    /**
     * Class for reading API properties file
@@ -50,6 +54,10 @@ public ApiProperties()
             port = getIntProperty("netxms.server.port", 4701);
             enableCompression = getBooleanProperty("netxms.server.enableCompression", true);
             sessionTimeout = getIntProperty("session.timeout", 300) * 1000;
+            dciMetadataCacheTimeout = getIntProperty("cache.dciMetadata.timeout", 300) * 1000;
+            graphDataCacheTimeout = getIntProperty("cache.graphData.timeout", 10) * 1000;
+            enableSessionPool = getBooleanProperty("session.pool.enable", false);
+            sessionPoolCredentialsTimeout = getIntProperty("session.pool.credentialsTimeout", 300) * 1000;
          }
       }
       catch(Exception e)
@@ -145,4 +153,44 @@ public long getSessionTimeout()
    {
       return sessionTimeout;
    }
+
+   /**
+    * Check if server sessions should be shared between API tokens of same user.
+    *
+    * @return true if session pool is enabled
+    */
+   public boolean isSessionPoolEnabled()
+   {
+      return enableSessionPool;
+   }
+
+   /**
+    * Get time in milliseconds during which credentials verified for pooled session can be reused without server login.
+    *
+    * @return credentials verification timeout in milliseconds
+    */
+   public long getSessionPoolCredentialsTimeout()
+   {
+      return sessionPoolCredentialsTimeout;
+   }
+
+   /**
+    * Get time to live for entries in DCI metadata cache in milliseconds.
+    *
+    * @return time to live for DCI metadata cache entries in milliseconds
+    */
+   public long getDciMetadataCacheTimeout()
+   {
+      return dciMetadataCacheTimeout;
+   }
+
+   /**
+    * Get time to live for entries in graph data cache in milliseconds.
+    *
+    * @return time to live for graph data cache entries in milliseconds
+    */
+   public long getGraphDataCacheTimeout()
+   {
+      return graphDataCacheTimeout;
+   }
 }
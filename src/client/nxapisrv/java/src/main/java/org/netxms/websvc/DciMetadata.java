@@ -0,0 +1,146 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc;
+
+import org.netxms.client.constants.DataType;
+import org.netxms.client.datacollection.DataCollectionItem;
+import org.netxms.client.datacollection.DataCollectionObject;
+import org.netxms.client.datacollection.DciValue;
+import org.netxms.client.datacollection.MeasurementUnit;
+
+/**
+ * Immutable metadata of single data collection object, as kept by DCI metadata cache.
+ */
+public class DciMetadata
+{
+   private long objectId;
+   private long dciId;
+   private int dcObjectType;
+   private String name;
+   private String description;
+   private DataType dataType;
+   private String unitName;
+
+   /**
+    * Create metadata from last value record.
+    *
+    * @param value last value record
+    */
+   protected DciMetadata(DciValue value)
+   {
+      objectId = value.getNodeId();
+      dciId = value.getId();
+      dcObjectType = value.getDcObjectType();
+      name = value.getName();
+      description = value.getDescription();
+      dataType = value.getDataType();
+      MeasurementUnit unit = value.getMeasurementUnit();
+      unitName = (unit != null) ? unit.getName() : null;
+   }
+
+   /**
+    * Create metadata from data collection object received in DCI change notification.
+    *
+    * @param objectId owning object ID
+    * @param dco data collection object
+    */
+   protected DciMetadata(long objectId, DataCollectionObject dco)
+   {
+      this.objectId = objectId;
+      dciId = dco.getId();
+      name = dco.getName();
+      description = dco.getDescription();
+      if (dco instanceof DataCollectionItem)
+      {
+         dcObjectType = DataCollectionObject.DCO_TYPE_ITEM;
+         dataType = ((DataCollectionItem)dco).getDataType();
+         unitName = ((DataCollectionItem)dco).getUnitName();
+      }
+      else
+      {
+         dcObjectType = DataCollectionObject.DCO_TYPE_TABLE;
+         dataType = null;
+         unitName = null;
+      }
+   }
+
+   /**
+    * @return owning object ID
+    */
+   public long getObjectId()
+   {
+      return objectId;
+   }
+
+   /**
+    * @return DCI ID
+    */
+   public long getDciId()
+   {
+      return dciId;
+   }
+
+   /**
+    * @return data collection object type (one of DataCollectionObject.DCO_TYPE_xxx constants)
+    */
+   public int getDcObjectType()
+   {
+      return dcObjectType;
+   }
+
+   /**
+    * @return true if this is table DCI
+    */
+   public boolean isTable()
+   {
+      return dcObjectType == DataCollectionObject.DCO_TYPE_TABLE;
+   }
+
+   /**
+    * @return DCI name
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * @return DCI description
+    */
+   public String getDescription()
+   {
+      return description;
+   }
+
+   /**
+    * @return data type (null for table DCIs)
+    */
+   public DataType getDataType()
+   {
+      return dataType;
+   }
+
+   /**
+    * @return measurement unit name (may be null)
+    */
+   public String getUnitName()
+   {
+      return unitName;
+   }
+}
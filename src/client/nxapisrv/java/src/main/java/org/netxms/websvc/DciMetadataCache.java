@@ -0,0 +1,296 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.netxms.client.NXCException;
+import org.netxms.client.NXCSession;
+import org.netxms.client.SessionListener;
+import org.netxms.client.SessionNotification;
+import org.netxms.client.datacollection.DataCollectionObject;
+import org.netxms.client.datacollection.DciValue;
+
+/**
+ * Per-session cache of DCI metadata (type, name, description, data type, and unit). Metadata for all DCIs of an object is
+ * loaded at once from DCI summary, which does not require opening (and locking) data collection configuration on server.
+ * Entries are updated by DCI change notifications and expire after configured time to live, because server sends DCI change
+ * notifications only to sessions which have data collection configuration for the object open.
+ */
+public class DciMetadataCache
+{
+   /**
+    * Minimal age of object entry before it can be reloaded because of lookup for unknown DCI
+    */
+   private static final long MIN_RELOAD_INTERVAL = 10000;
+
+   private NXCSession session;
+   private long timeToLive;
+   private Map<Long, ObjectEntry> entries = new ConcurrentHashMap<Long, ObjectEntry>();
+   private Map<Long, CompletableFuture<ObjectEntry>> pendingLoads = new ConcurrentHashMap<Long, CompletableFuture<ObjectEntry>>();
+   private AtomicLong invalidationCount = new AtomicLong(0);
+
+   /**
+    * Create DCI metadata cache for given session.
+    *
+    * @param session client session
+    * @param timeToLive time to live for cache entries in milliseconds
+    */
+   public DciMetadataCache(NXCSession session, long timeToLive)
+   {
+      this.session = session;
+      this.timeToLive = timeToLive;
+      session.addListener(new SessionListener() {
+         @Override
+         public void notificationHandler(SessionNotification n)
+         {
+            processNotification(n);
+         }
+      });
+   }
+
+   /**
+    * Process session notification.
+    *
+    * @param n notification
+    */
+   private void processNotification(SessionNotification n)
+   {
+      switch(n.getCode())
+      {
+         case SessionNotification.DCI_UPDATE:
+            if (n.getObject() instanceof DataCollectionObject)
+            {
+               invalidationCount.incrementAndGet();
+               ObjectEntry e = entries.get(n.getSubCode());
+               if (e != null)
+               {
+                  DataCollectionObject dco = (DataCollectionObject)n.getObject();
+                  e.dciMetadata.put(dco.getId(), new DciMetadata(n.getSubCode(), dco));
+               }
+            }
+            break;
+         case SessionNotification.DCI_DELETE:
+            if (n.getObject() instanceof Long)
+            {
+               invalidationCount.incrementAndGet();
+               ObjectEntry e = entries.get(n.getSubCode());
+               if (e != null)
+                  e.dciMetadata.remove(n.getObject());
+            }
+            break;
+         case SessionNotification.OBJECT_DELETED:
+            invalidationCount.incrementAndGet();
+            entries.remove(n.getSubCode());
+            break;
+         case SessionNotification.CONNECTION_BROKEN:
+         case SessionNotification.SERVER_SHUTDOWN:
+         case SessionNotification.SESSION_KILLED:
+            invalidationCount.incrementAndGet();
+            entries.clear();
+            break;
+      }
+   }
+
+   /**
+    * Get metadata for given DCI. If DCI is not known, metadata for owning object will be reloaded from server (but not more
+    * often than once in 10 seconds), so newly created DCIs are visible without waiting for entry expiration.
+    *
+    * @param objectId owning object ID
+    * @param dciId DCI ID
+    * @return DCI metadata or null if DCI not found
+    * @throws IOException if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public DciMetadata get(long objectId, long dciId) throws IOException, NXCException
+   {
+      ObjectEntry e = getObjectEntry(objectId, false);
+      DciMetadata m = e.dciMetadata.get(dciId);
+      if ((m == null) && e.isReloadAllowed())
+         m = getObjectEntry(objectId, true).dciMetadata.get(dciId);
+      return m;
+   }
+
+   /**
+    * Find DCI by name. Names are compared case-insensitively, as in DCI name lookup on server.
+    *
+    * @param objectId owning object ID
+    * @param name DCI name
+    * @return DCI metadata or null if DCI not found
+    * @throws IOException if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   public DciMetadata findByName(long objectId, String name) throws IOException, NXCException
+   {
+      if ((name == null) || name.isEmpty())
+         return null;
+
+      ObjectEntry e = getObjectEntry(objectId, false);
+      DciMetadata m = e.findByName(name);
+      if ((m == null) && e.isReloadAllowed())
+         m = getObjectEntry(objectId, true).findByName(name);
+      return m;
+   }
+
+   /**
+    * Invalidate all cached metadata for given object.
+    *
+    * @param objectId object ID
+    */
+   public void invalidate(long objectId)
+   {
+      invalidationCount.incrementAndGet();
+      entries.remove(objectId);
+   }
+
+   /**
+    * Get entry for given object, loading it from server if needed. Concurrent requests for same object share single load.
+    *
+    * @param objectId object ID
+    * @param forceReload true to reload entry even if it is not expired
+    * @return object entry
+    * @throws IOException if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   private ObjectEntry getObjectEntry(long objectId, boolean forceReload) throws IOException, NXCException
+   {
+      ObjectEntry e = entries.get(objectId);
+      if ((e != null) && !forceReload && !e.isExpired())
+         return e;
+
+      CompletableFuture<ObjectEntry> load = new CompletableFuture<ObjectEntry>();
+      CompletableFuture<ObjectEntry> running = pendingLoads.putIfAbsent(objectId, load);
+      if (running != null)
+         return waitForLoad(running);
+
+      try
+      {
+         long invalidations = invalidationCount.get();
+         e = new ObjectEntry(session.getDataCollectionSummary(objectId, 0, false, false, true));
+         // Do not cache data that may already be outdated by notification received while loading
+         if (invalidationCount.get() == invalidations)
+            entries.put(objectId, e);
+         load.complete(e);
+         return e;
+      }
+      catch(IOException | NXCException | RuntimeException ex)
+      {
+         load.completeExceptionally(ex);
+         throw ex;
+      }
+      finally
+      {
+         pendingLoads.remove(objectId, load);
+      }
+   }
+
+   /**
+    * Wait for load started by another thread.
+    *
+    * @param load pending load
+    * @return loaded entry
+    * @throws IOException if socket I/O error occurs
+    * @throws NXCException if NetXMS server returns an error or operation was timed out
+    */
+   private static ObjectEntry waitForLoad(CompletableFuture<ObjectEntry> load) throws IOException, NXCException
+   {
+      try
+      {
+         return load.get();
+      }
+      catch(ExecutionException e)
+      {
+         Throwable cause = e.getCause();
+         if (cause instanceof NXCException)
+            throw (NXCException)cause;
+         if (cause instanceof IOException)
+            throw (IOException)cause;
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+         throw new IOException(cause);
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while waiting for DCI metadata", e);
+      }
+   }
+
+   /**
+    * Cached metadata for single object
+    */
+   private class ObjectEntry
+   {
+      long timestamp;
+      Map<Long, DciMetadata> dciMetadata;
+
+      /**
+       * Create entry from DCI summary.
+       *
+       * @param values DCI summary
+       */
+      ObjectEntry(DciValue[] values)
+      {
+         timestamp = System.currentTimeMillis();
+         dciMetadata = new ConcurrentHashMap<Long, DciMetadata>(values.length * 2);
+         for(DciValue v : values)
+            dciMetadata.put(v.getId(), new DciMetadata(v));
+      }
+
+      /**
+       * Check if this entry is expired.
+       *
+       * @return true if entry is expired
+       */
+      boolean isExpired()
+      {
+         return System.currentTimeMillis() - timestamp > timeToLive;
+      }
+
+      /**
+       * Check if this entry can be reloaded because of lookup for unknown DCI.
+       *
+       * @return true if reload is allowed
+       */
+      boolean isReloadAllowed()
+      {
+         return System.currentTimeMillis() - timestamp > MIN_RELOAD_INTERVAL;
+      }
+
+      /**
+       * Find DCI by name (case-insensitive).
+       *
+       * @param name DCI name
+       * @return DCI metadata or null
+       */
+      DciMetadata findByName(String name)
+      {
+         for(DciMetadata m : dciMetadata.values())
+         {
+            if (name.equalsIgnoreCase(m.getName()))
+               return m;
+         }
+         return null;
+      }
+   }
+}
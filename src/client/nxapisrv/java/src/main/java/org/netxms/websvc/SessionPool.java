@@ -0,0 +1,268 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.netxms.client.NXCSession;
+import org.netxms.client.SessionListener;
+import org.netxms.client.SessionNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of server sessions shared between API tokens. All tokens created for same server user share one authenticated
+ * session, and with it single object cache, alarm cache, user database copy, and DCI metadata cache. Client session
+ * multiplexes concurrent requests over single connection, so requests from different tokens do not wait for each other.
+ * <p>
+ * New token is attached to existing session only after its credentials are verified. Salted hash of password used for
+ * last successful login is kept for limited time; when it expires or password does not match, credentials are verified
+ * by actual login to server (new connection is closed immediately after successful verification).
+ */
+public class SessionPool
+{
+   private static final SecureRandom random = new SecureRandom();
+
+   private Logger log = LoggerFactory.getLogger(SessionPool.class);
+   private SessionStore store;
+   private long credentialsTimeout;
+   private Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+   private Map<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+   /**
+    * Create session pool.
+    *
+    * @param store owning session store
+    * @param credentialsTimeout time in milliseconds during which verified credentials can be reused without server login
+    */
+   public SessionPool(SessionStore store, long credentialsTimeout)
+   {
+      this.store = store;
+      this.credentialsTimeout = credentialsTimeout;
+   }
+
+   /**
+    * Create token attached to shared session for given user, creating and authenticating new session if needed.
+    *
+    * @param login login name
+    * @param password password
+    * @param clientAddress address of API client
+    * @param dciMetadataCacheTimeout time to live for DCI metadata cache entries in milliseconds
+    * @return new token
+    * @throws Exception if authentication fails
+    */
+   public SessionToken acquire(String login, String password, String clientAddress, long dciMetadataCacheTimeout) throws Exception
+   {
+      synchronized(getLock(login))
+      {
+         Entry e = entries.get(login);
+         if ((e != null) && !e.verifyCredentials(password, credentialsTimeout))
+         {
+            // Verify credentials by actual login; existing session is kept because it already has all caches populated
+            NXCSession session = SessionStore.connect(login, password, clientAddress);
+            session.disconnect();
+            e.setCredentials(password);
+            log.debug("Credentials for pooled session of user " + login + " re-verified by server login");
+         }
+
+         if (e == null)
+         {
+            NXCSession session = SessionStore.connect(login, password, clientAddress);
+            e = new Entry(login, session, new DciMetadataCache(session, dciMetadataCacheTimeout));
+            e.setCredentials(password);
+            final Entry entry = e;
+            session.addListener(new SessionListener() {
+               @Override
+               public void notificationHandler(SessionNotification n)
+               {
+                  if ((n.getCode() == SessionNotification.CONNECTION_BROKEN) ||
+                      (n.getCode() == SessionNotification.SERVER_SHUTDOWN) ||
+                      (n.getCode() == SessionNotification.SESSION_KILLED))
+                  {
+                     log.info("Received disconnect notification for pooled session of user " + entry.key);
+                     invalidate(entry);
+                  }
+               }
+            });
+            entries.put(login, e);
+            log.info("Created pooled session for user " + login);
+         }
+
+         SessionToken token = new SessionToken(e.session, e.dciMetadataCache, login);
+         e.tokens.add(token.getSessionHandle());
+         return token;
+      }
+   }
+
+   /**
+    * Release token attached to shared session. Session is disconnected when last token is released.
+    *
+    * @param token token to release
+    */
+   public void release(SessionToken token)
+   {
+      String key = token.getPoolKey();
+      synchronized(getLock(key))
+      {
+         Entry e = entries.get(key);
+         if ((e == null) || (e.session != token.getSession()))
+            return;
+         e.tokens.remove(token.getSessionHandle());
+         if (e.tokens.isEmpty())
+         {
+            entries.remove(key);
+            e.session.disconnect();
+            log.info("Pooled session for user " + key + " closed (no more tokens)");
+         }
+      }
+   }
+
+   /**
+    * Invalidate pool entry (when session is disconnected by server or fails health check). All tokens attached to the
+    * session are unregistered.
+    *
+    * @param session failed session
+    */
+   public void invalidate(NXCSession session)
+   {
+      for(Entry e : entries.values())
+      {
+         if (e.session == session)
+         {
+            invalidate(e);
+            break;
+         }
+      }
+   }
+
+   /**
+    * Invalidate pool entry.
+    *
+    * @param e pool entry
+    */
+   private void invalidate(Entry e)
+   {
+      List<UUID> tokens;
+      synchronized(getLock(e.key))
+      {
+         entries.remove(e.key, e);
+         tokens = new ArrayList<UUID>(e.tokens);
+         e.tokens.clear();
+      }
+      e.session.disconnect();
+      for(UUID t : tokens)
+         store.unregisterSession(t);
+   }
+
+   /**
+    * Get lock object for given pool key.
+    *
+    * @param key pool key
+    * @return lock object
+    */
+   private Object getLock(String key)
+   {
+      return locks.computeIfAbsent(key, (k) -> new Object());
+   }
+
+   /**
+    * Calculate salted hash of password.
+    *
+    * @param salt salt
+    * @param password password
+    * @return hash
+    */
+   private static byte[] hashPassword(byte[] salt, String password)
+   {
+      try
+      {
+         MessageDigest md = MessageDigest.getInstance("SHA-256");
+         md.update(salt);
+         md.update(((password != null) ? password : "").getBytes(StandardCharsets.UTF_8));
+         return md.digest();
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   /**
+    * Pool entry
+    */
+   private static class Entry
+   {
+      final String key;
+      final NXCSession session;
+      final DciMetadataCache dciMetadataCache;
+      final Set<UUID> tokens = ConcurrentHashMap.newKeySet();
+      byte[] salt;
+      byte[] passwordHash;
+      long verificationTime;
+
+      /**
+       * Create entry.
+       *
+       * @param key pool key (login name)
+       * @param session server session
+       * @param dciMetadataCache DCI metadata cache for session
+       */
+      Entry(String key, NXCSession session, DciMetadataCache dciMetadataCache)
+      {
+         this.key = key;
+         this.session = session;
+         this.dciMetadataCache = dciMetadataCache;
+      }
+
+      /**
+       * Remember credentials verified by server.
+       *
+       * @param password verified password
+       */
+      void setCredentials(String password)
+      {
+         salt = new byte[16];
+         random.nextBytes(salt);
+         passwordHash = hashPassword(salt, password);
+         verificationTime = System.currentTimeMillis();
+      }
+
+      /**
+       * Check if given password matches last verified one and verification is still valid.
+       *
+       * @param password password to check
+       * @param timeout verification timeout in milliseconds
+       * @return true if password can be accepted without server login
+       */
+      boolean verifyCredentials(String password, long timeout)
+      {
+         if (System.currentTimeMillis() - verificationTime > timeout)
+            return false;
+         return MessageDigest.isEqual(passwordHash, hashPassword(salt, password));
+      }
+   }
+}
@@ -19,10 +19,17 @@
 package org.netxms.websvc;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.ServletContext;
 import org.netxms.client.NXCSession;
 import org.netxms.client.SessionListener;
@@ -31,15 +38,20 @@
 import org.slf4j.LoggerFactory;
 
 /**
- * Session store
+ * Session store. Request path (token lookup, registration, and removal) does not take any locks. Background session
+ * manager checks connections of all registered sessions in parallel.
  */
 public class SessionStore
 {
+   private static final int HEALTH_CHECK_THREADS = 8;
+
    private static ApiProperties properties = new ApiProperties();
 
-   private Map<UUID, SessionToken> sessions = new HashMap<UUID, SessionToken>();
+   private Map<UUID, SessionToken> sessions = new ConcurrentHashMap<UUID, SessionToken>();
    private Logger log = LoggerFactory.getLogger(SessionStore.class);
-   private Thread sessionManager = null;
+   private volatile Thread sessionManager = null;
+   private ExecutorService healthCheckExecutor = null;
+   private SessionPool sessionPool = properties.isSessionPoolEnabled() ? new SessionPool(this, properties.getSessionPoolCredentialsTimeout()) : null;
 
    /**
     * Get session store instance for servlet
@@ -47,13 +59,19 @@
     * @param context servlet context
     * @return session store instance
     */
-   public static synchronized SessionStore getInstance(ServletContext context)
+   public static SessionStore getInstance(ServletContext context)
    {
       SessionStore s = (SessionStore)context.getAttribute("org.netxms.webui.sessionStore");
-      if (s == null)
+      if (s != null)
+         return s;
+      synchronized(SessionStore.class)
       {
-         s = new SessionStore();
-         context.setAttribute("org.netxms.webui.sessionStore", s);
+         s = (SessionStore)context.getAttribute("org.netxms.webui.sessionStore");
+         if (s == null)
+         {
+            s = new SessionStore();
+            context.setAttribute("org.netxms.webui.sessionStore", s);
+         }
       }
       return s;
    }
@@ -64,7 +82,7 @@ public static synchronized SessionStore getInstance(ServletContext context)
     * @param guid token UUID
     * @return session token or null
     */
-   public synchronized SessionToken getSessionToken(UUID guid)
+   public SessionToken getSessionToken(UUID guid)
    {
       SessionToken s = sessions.get(guid);
       if (s != null)
@@ -73,27 +91,68 @@ public synchronized SessionToken getSessionToken(UUID guid)
    }
 
    /**
-    * Register session.
+    * Connect to NetXMS server and login.
+    *
+    * @param login login name
+    * @param password password
+    * @param clientAddress address of API client
+    * @return connected session
+    * @throws Exception if connection or authentication fails
+    */
+   static NXCSession connect(String login, String password, String clientAddress) throws Exception
+   {
+      NXCSession session = new NXCSession(properties.getServerAddress(), properties.getServerPort(), properties.isCompressionEnabled());
+      session.setClientType(NXCSession.WEB_CLIENT);
+      session.setClientAddress(clientAddress);
+      session.connect();
+      try
+      {
+         session.login(login, (password == null) ? "" : password);
+      }
+      catch(Exception e)
+      {
+         session.disconnect();
+         throw e;
+      }
+      return session;
+   }
+
+   /**
+    * Create new session token for given user. If session pooling is enabled, token will be attached to session shared with
+    * other tokens of same user, otherwise new dedicated session is created.
+    *
+    * @param login login name
+    * @param password password
+    * @param clientAddress address of API client
+    * @return new session token
+    * @throws Exception if connection or authentication fails
+    */
+   public SessionToken createSession(String login, String password, String clientAddress) throws Exception
+   {
+      if (sessionPool == null)
+         return registerSession(connect(login, password, clientAddress));
+
+      if (sessionManager == null)
+         startSessionManager();
+
+      SessionToken token = sessionPool.acquire(login, password, clientAddress, properties.getDciMetadataCacheTimeout());
+      sessions.put(token.getSessionHandle(), token);
+      log.info("Session " + token.getSessionHandle() + " registered (shared session for user " + login + ")");
+      return token;
+   }
+
+   /**
+    * Register dedicated session.
     *
     * @param session session to register
     * @return token assigned to provided session
     */
-   public synchronized SessionToken registerSession(final NXCSession session)
+   public SessionToken registerSession(final NXCSession session)
    {
       if (sessionManager == null)
-      {
-         sessionManager = new Thread(new Runnable() {
-            @Override
-            public void run()
-            {
-               sessionManagerThread();
-            }
-         }, "Session Manager");
-         sessionManager.setDaemon(true);
-         sessionManager.start();
-      }
+         startSessionManager();
 
-      final SessionToken token = new SessionToken(session);
+      final SessionToken token = new SessionToken(session, new DciMetadataCache(session, properties.getDciMetadataCacheTimeout()), null);
       sessions.put(token.getSessionHandle(), token);
       session.addListener(new SessionListener() {
          @Override
@@ -104,7 +163,6 @@ public void notificationHandler(SessionNotification n)
                 (n.getCode() == SessionNotification.SESSION_KILLED))
             {
                log.info("Received disconnect notification for session " + token.getSessionHandle());
-               session.disconnect();
                unregisterSession(token.getSessionHandle());
             }
          }
@@ -114,16 +172,56 @@ public void notificationHandler(SessionNotification n)
    }
 
    /**
-    * Unregister session.
+    * Unregister session. Dedicated server session is disconnected, shared session is released and disconnected only
+    * when no other tokens use it.
     *
     * @param guid session token UUID
     */
-   public synchronized void unregisterSession(UUID guid)
+   public void unregisterSession(UUID guid)
    {
-      sessions.remove(guid);
+      SessionToken token = sessions.remove(guid);
+      if (token == null)
+         return;
+
+      token.removeSessionListeners();
+      if (token.getPoolKey() != null)
+         sessionPool.release(token);
+      else
+         token.getSession().disconnect();
       log.info("Session " + guid + " unregistered");
    }
 
+   /**
+    * Start session manager thread if it is not started yet.
+    */
+   private synchronized void startSessionManager()
+   {
+      if (sessionManager != null)
+         return;
+
+      final AtomicInteger threadNumber = new AtomicInteger(0);
+      healthCheckExecutor = Executors.newFixedThreadPool(HEALTH_CHECK_THREADS, new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable r)
+         {
+            Thread t = new Thread(r, "Session Health Check #" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+         }
+      });
+
+      Thread t = new Thread(new Runnable() {
+         @Override
+         public void run()
+         {
+            sessionManagerThread();
+         }
+      }, "Session Manager");
+      t.setDaemon(true);
+      t.start();
+      sessionManager = t;
+   }
+
    /**
     * Session manager background thread
     */
@@ -143,29 +241,59 @@ private void sessionManagerThread()
    }
 
    /**
-    * Check active sessions
+    * Check active sessions. Sessions with expired inactivity timeout are disconnected immediately, connection checks for
+    * other sessions are executed in parallel (once per server session, even if it is shared by multiple tokens). Store is
+    * not locked during check, so requests are served as usual.
     */
-   private synchronized void checkSessions()
+   private void checkSessions()
    {
       long now = System.currentTimeMillis();
-      List<UUID> disconnectedSessions = new ArrayList<UUID>();
+      Map<NXCSession, List<SessionToken>> activeSessions = new IdentityHashMap<NXCSession, List<SessionToken>>();
       for(SessionToken s : sessions.values())
       {
          if (now - s.getActivityTimestamp() > properties.getSessionTimeout())
          {
             log.info("Session " + s.getSessionHandle() + " disconnected by inactivity timeout");
-            s.getSession().disconnect();
-            disconnectedSessions.add(s.getSessionHandle());
+            unregisterSession(s.getSessionHandle());
+         }
+         else
+         {
+            activeSessions.computeIfAbsent(s.getSession(), (k) -> new ArrayList<SessionToken>()).add(s);
+         }
+      }
+
+      List<Future<?>> checks = new ArrayList<Future<?>>();
+      for(final Entry<NXCSession, List<SessionToken>> e : activeSessions.entrySet())
+      {
+         checks.add(healthCheckExecutor.submit(new Runnable() {
+            @Override
+            public void run()
+            {
+               if (!e.getKey().checkConnection())
+               {
+                  for(SessionToken s : e.getValue())
+                  {
+                     log.info("Session " + s.getSessionHandle() + " removed due to communication failure");
+                     unregisterSession(s.getSessionHandle());
+                  }
+                  if (sessionPool != null)
+                     sessionPool.invalidate(e.getKey());
+               }
+            }
+         }));
+      }
+
+      // Wait for all checks to complete so that next sweep does not overlap with this one
+      for(Future<?> f : checks)
+      {
+         try
+         {
+            f.get();
          }
-         else if (!s.getSession().checkConnection())
+         catch(Exception e)
          {
-            log.info("Session " + s.getSessionHandle() + " removed due to communication failure");
-            s.getSession().disconnect();
-            disconnectedSessions.add(s.getSessionHandle());
+            log.debug("Exception in session health check", e);
          }
       }
-      
-      for(UUID u : disconnectedSessions)
-         unregisterSession(u);
    }
 }
@@ -21,10 +21,12 @@
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import org.netxms.base.annotations.Internal;
 import org.netxms.client.NXCSession;
+import org.netxms.client.SessionListener;
 import org.netxms.client.SessionNotification;
 
 /**
@@ -34,21 +36,28 @@
 {
    private UUID sessionHandle;
    private NXCSession session;
-   @Internal private long activityTimestamp;
+   @Internal private volatile long activityTimestamp;
    @Internal private LinkedBlockingQueue<SessionNotification> notificationQueue = new LinkedBlockingQueue<SessionNotification>(8192);
+   @Internal private DciMetadataCache dciMetadataCache;
+   @Internal private String poolKey;
+   @Internal private List<SessionListener> listeners = new CopyOnWriteArrayList<SessionListener>();
    
    /**
     * Create new session object
     * 
     * @param session
+    * @param dciMetadataCache DCI metadata cache for given session
+    * @param poolKey key of session pool entry if session is shared with other tokens, or null for dedicated session
     */
-   public SessionToken(NXCSession session)
+   public SessionToken(NXCSession session, DciMetadataCache dciMetadataCache, String poolKey)
    {
       sessionHandle = UUID.randomUUID();
       activityTimestamp = System.currentTimeMillis();
       this.session = session;
+      this.dciMetadataCache = dciMetadataCache;
+      this.poolKey = poolKey;
    }
-   
+
    /**
     * Update last activity timestamp
     */
@@ -73,6 +82,48 @@ public NXCSession getSession()
       return session;
    }
 
+   /**
+    * Get key of session pool entry for shared session.
+    *
+    * @return pool entry key or null if session is dedicated to this token
+    */
+   public String getPoolKey()
+   {
+      return poolKey;
+   }
+
+   /**
+    * Add listener to underlying session on behalf of this token. Listener will be removed from session when token is
+    * released, so listeners do not leak into sessions shared with other tokens.
+    *
+    * @param listener listener to add
+    */
+   public void addSessionListener(SessionListener listener)
+   {
+      listeners.add(listener);
+      session.addListener(listener);
+   }
+
+   /**
+    * Remove all listeners added to underlying session by this token.
+    */
+   public void removeSessionListeners()
+   {
+      for(SessionListener l : listeners)
+         session.removeListener(l);
+      listeners.clear();
+   }
+
+   /**
+    * Get DCI metadata cache for this session.
+    *
+    * @return DCI metadata cache
+    */
+   public DciMetadataCache getDciMetadataCache()
+   {
+      return dciMetadataCache;
+   }
+
    /**
     * @return
     */
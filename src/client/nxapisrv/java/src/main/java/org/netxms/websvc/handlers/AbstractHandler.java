@@ -19,6 +19,7 @@
 package org.netxms.websvc.handlers;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.Date;
 import java.util.HashSet;
@@ -33,17 +34,20 @@
 import org.netxms.client.constants.RCC;
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.websvc.ApiProperties;
+import org.netxms.websvc.DciMetadataCache;
 import org.netxms.websvc.SessionStore;
 import org.netxms.websvc.SessionToken;
 import org.netxms.websvc.WebSvcStatusService;
 import org.netxms.websvc.json.JsonTools;
 import org.restlet.Application;
+import org.restlet.data.CharacterSet;
 import org.restlet.data.CookieSetting;
 import org.restlet.data.Header;
 import org.restlet.data.MediaType;
 import org.restlet.ext.json.JsonRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
+import org.restlet.representation.WriterRepresentation;
 import org.restlet.resource.Delete;
 import org.restlet.resource.Get;
 import org.restlet.resource.Post;
@@ -78,7 +82,7 @@ public Representation onGet() throws Exception
       {
          Map<String, String> query = getRequest().getResourceRef().getQueryAsForm().getValuesMap();
          Object response = (id == null) ? getCollection(query) : get(id, query);
-         return new StringRepresentation(JsonTools.jsonFromObject(response, getRequestedFields()), MediaType.APPLICATION_JSON);
+         return createJsonRepresentation(response, getRequestedFields());
       }
       else
       {
@@ -106,7 +110,7 @@ public Representation onPost(Representation entity) throws Exception
       if (attachToSession())
       {
          String command = getRequest().getResourceRef().getQueryAsForm().getValuesMap().get("command");
-         return new StringRepresentation(JsonTools.jsonFromObject((command != null) ? executeCommand(command, data) : create(data), null), MediaType.APPLICATION_JSON);
+         return createJsonRepresentation((command != null) ? executeCommand(command, data) : create(data), null);
       }
       else
       {
@@ -135,7 +139,7 @@ public Representation onPut(Representation entity) throws Exception
       if (attachToSession())
       {
          Object response = (id != null) ? update(id, data) : createErrorResponse(RCC.INCOMPATIBLE_OPERATION);
-         return new StringRepresentation(JsonTools.jsonFromObject(response, null), MediaType.APPLICATION_JSON);
+         return createJsonRepresentation(response, null);
       }
       else
       {
@@ -157,7 +161,7 @@ public Representation onDelete(Representation entity) throws Exception
       if (attachToSession())
       {    	 
          Object response = (id != null) ? delete(id) : createErrorResponse(RCC.INCOMPATIBLE_OPERATION);
-         return new StringRepresentation(JsonTools.jsonFromObject(response, null), MediaType.APPLICATION_JSON);
+         return createJsonRepresentation(response, null);
       }
       else
       {
@@ -165,6 +169,30 @@ public Representation onDelete(Representation entity) throws Exception
       }
    }
 
+   /**
+    * Create representation that writes JSON code for given response object directly to response stream. Response is
+    * serialized while being sent, so complete JSON document is never built in memory.
+    *
+    * @param response response object
+    * @param fields set of requested fields or null
+    * @return streaming JSON representation
+    */
+   protected static Representation createJsonRepresentation(final Object response, final Set<String> fields)
+   {
+      if (response instanceof Representation)
+         return (Representation)response;
+
+      Representation representation = new WriterRepresentation(MediaType.APPLICATION_JSON) {
+         @Override
+         public void write(Writer writer) throws IOException
+         {
+            JsonTools.writeJson(response, fields, writer);
+         }
+      };
+      representation.setCharacterSet(CharacterSet.UTF_8);
+      return representation;
+   }
+
    /**
     * Get entity ID
     * 
@@ -216,6 +244,7 @@ protected boolean attachToSession() throws Exception
          String password = value.substring(value.indexOf(':') + 1, value.length());
          log.debug("Cannot find session token - re-authenticating (login=" + login + ")");
          token = login(login, password);
+         sessionToken = token;
          getCookieSettings().add(new CookieSetting(0, "session_handle", token.getSessionHandle().toString(), "/", null));
          getResponse().getHeaders().add(new Header("Session-Id", token.getSessionHandle().toString()));
       }
@@ -278,6 +307,16 @@ protected SessionToken getSessionToken()
    {
       return sessionToken;
    }
+
+   /**
+    * Get DCI metadata cache of attached session
+    *
+    * @return DCI metadata cache
+    */
+   protected DciMetadataCache getDciMetadataCache()
+   {
+      return sessionToken.getDciMetadataCache();
+   }
    
    /**
     * Get servlet context
@@ -399,20 +438,9 @@ protected SessionToken login(String login, String password) throws Exception
    {
       String clientAddress = getRequest().getClientInfo().getUpstreamAddress();
       log.debug("Performing login to " + properties.getServerAddress() + ":" + properties.getServerPort() + " for client at " + clientAddress);
-      session = new NXCSession(properties.getServerAddress(), properties.getServerPort(), properties.isCompressionEnabled());
-      session.setClientType(NXCSession.WEB_CLIENT);
-      session.setClientAddress(clientAddress);
-      session.connect();
-      try
-      {
-         session.login(login, (password == null) ? "" : password);
-      }
-      catch(Exception e)
-      {
-         session.disconnect();
-         throw e;
-      }
-      return SessionStore.getInstance(getServletContext()).registerSession(session);
+      SessionToken token = SessionStore.getInstance(getServletContext()).createSession(login, password, clientAddress);
+      session = token.getSession();
+      return token;
    }
 
    /**
@@ -0,0 +1,180 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.handlers;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.netxms.base.Glob;
+import org.netxms.client.events.Alarm;
+
+/**
+ * Compiled alarm filter for alarm collection requests. Source object filter is not part of compiled filter because it
+ * depends on current object tree. Filter is immutable and can be shared between requests.
+ */
+final class AlarmQueryFilter implements Predicate<Alarm>
+{
+   private static final FilterPlanCache<AlarmQueryFilter> cache = new FilterPlanCache<AlarmQueryFilter>(256);
+
+   private final int stateMask;
+   private final boolean invalidState;
+   private final Date createdBefore;
+   private final Date createdAfter;
+   private final Date updatedBefore;
+   private final Date updatedAfter;
+   private final String keyFilter;
+   private final Pattern keyPattern;
+   private final Pattern messagePattern;
+   private final boolean empty;
+
+   /**
+    * Get filter for given query parameters. Compiled filters are cached.
+    *
+    * @param query query parameters
+    * @return compiled filter
+    */
+   static AlarmQueryFilter get(Map<String, String> query)
+   {
+      String key = FilterPlanCache.createKey(query, (name) -> isFilterParameter(name));
+      AlarmQueryFilter filter = cache.get(key);
+      if (filter == null)
+      {
+         filter = new AlarmQueryFilter(query);
+         cache.put(key, filter);
+      }
+      return filter;
+   }
+
+   /**
+    * Check if given query parameter affects alarm filter.
+    *
+    * @param name parameter name
+    * @return true if parameter affects alarm filter
+    */
+   private static boolean isFilterParameter(String name)
+   {
+      return name.equals("state") || name.equals("createdBefore") || name.equals("createdAfter") || name.equals("updatedBefore") ||
+            name.equals("updatedAfter") || name.equals("key") || name.equals("keyRegex") || name.equals("message");
+   }
+
+   /**
+    * Compile filter from query parameters.
+    *
+    * @param query query parameters
+    */
+   private AlarmQueryFilter(Map<String, String> query)
+   {
+      int mask = 0;
+      String stateFilter = query.get("state");
+      if (stateFilter != null)
+      {
+         for(String s : stateFilter.split(","))
+         {
+            try
+            {
+               int n = Integer.parseInt(s);
+               if ((n >= Alarm.STATE_OUTSTANDING) && (n <= Alarm.STATE_TERMINATED))
+                  mask |= 1 << n;
+            }
+            catch(NumberFormatException e)
+            {
+               if (s.equalsIgnoreCase("outstanding"))
+                  mask |= Alarm.STATE_BIT_OUTSTANDING;
+               else if (s.equalsIgnoreCase("acknowledged"))
+                  mask |= Alarm.STATE_BIT_ACKNOWLEDGED;
+               else if (s.equalsIgnoreCase("resolved"))
+                  mask |= Alarm.STATE_BIT_RESOLVED;
+               else if (s.equalsIgnoreCase("terminated"))
+                  mask |= Alarm.STATE_BIT_TERMINATED;
+            }
+         }
+      }
+      stateMask = mask;
+      invalidState = (stateFilter != null) && (mask == 0);
+
+      createdBefore = AbstractHandler.parseTimestamp(query.get("createdBefore"));
+      createdAfter = AbstractHandler.parseTimestamp(query.get("createdAfter"));
+      updatedBefore = AbstractHandler.parseTimestamp(query.get("updatedBefore"));
+      updatedAfter = AbstractHandler.parseTimestamp(query.get("updatedAfter"));
+
+      keyFilter = query.get("key");
+      String keyRegexFilter = query.get("keyRegex");
+      String messageFilter = query.get("message");
+      keyPattern = (keyRegexFilter != null) ? Pattern.compile(keyRegexFilter, Pattern.CASE_INSENSITIVE) : null;
+      messagePattern = (messageFilter != null) ? Pattern.compile(messageFilter, Pattern.CASE_INSENSITIVE) : null;
+
+      empty = (createdBefore == null) && (createdAfter == null) && (updatedBefore == null) && (updatedAfter == null) &&
+            (keyFilter == null) && (keyPattern == null) && (messagePattern == null);
+   }
+
+   /**
+    * Get mask of requested alarm states (as combination of Alarm.STATE_BIT_xxx values).
+    *
+    * @return mask of requested alarm states or 0 if state filter is not set
+    */
+   int getStateMask()
+   {
+      return stateMask;
+   }
+
+   /**
+    * Check if state filter was set but does not contain any valid state (so no alarms can match).
+    *
+    * @return true if state filter is invalid
+    */
+   boolean isStateFilterInvalid()
+   {
+      return invalidState;
+   }
+
+   /**
+    * Check if this filter accepts all alarms (state filter is handled separately by alarm cache).
+    *
+    * @return true if this filter accepts all alarms
+    */
+   boolean isEmpty()
+   {
+      return empty;
+   }
+
+   /**
+    * @see java.util.function.Predicate#test(java.lang.Object)
+    */
+   @Override
+   public boolean test(Alarm alarm)
+   {
+      if (((createdBefore != null) && alarm.getCreationTime().after(createdBefore)) ||
+          ((createdAfter != null) && alarm.getCreationTime().before(createdAfter)) ||
+          ((updatedBefore != null) && alarm.getLastChangeTime().after(updatedBefore)) ||
+          ((updatedAfter != null) && alarm.getLastChangeTime().before(updatedAfter)))
+         return false;
+
+      if ((keyFilter != null) && (alarm.getKey() != null) && !Glob.matchIgnoreCase(keyFilter, alarm.getKey()))
+         return false;
+
+      if ((keyPattern != null) && (alarm.getKey() != null) && !keyPattern.matcher(alarm.getKey()).matches())
+         return false;
+
+      if ((messagePattern != null) && !messagePattern.matcher(alarm.getMessage()).matches())
+         return false;
+
+      return true;
+   }
+}
@@ -19,16 +19,13 @@
 package org.netxms.websvc.handlers;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Set;
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.netxms.base.Glob;
 import org.netxms.client.NXCException;
 import org.netxms.client.NXCSession;
 import org.netxms.client.constants.RCC;
@@ -63,104 +60,32 @@ public class Alarms extends AbstractHandler
    protected Object getCollection(Map<String, String> query) throws Exception
    {
       NXCSession session = getSession();
-      Collection<Alarm> alarms = session.getAlarms().values();
+      if (!session.areAlarmsSynchronized())
+         session.syncAlarms();
 
       AbstractObject rootObject = getObjectFromQuery(query);
 
-      final boolean[] stateMask;
-      String stateFilter = query.get("state");
-      if (stateFilter != null)
-      {
-         stateMask = new boolean[] { false, false, false, false };
-         for(String s : stateFilter.split(","))
-         {
-            try
-            {
-               int n = Integer.parseInt(s);
-               if ((n >= Alarm.STATE_OUTSTANDING) && (n <= Alarm.STATE_TERMINATED))
-                  stateMask[n] = true;
-            }
-            catch(NumberFormatException e)
-            {
-               if (s.equalsIgnoreCase("outstanding"))
-                  stateMask[Alarm.STATE_OUTSTANDING] = true;
-               else if (s.equalsIgnoreCase("acknowledged"))
-                  stateMask[Alarm.STATE_ACKNOWLEDGED] = true;
-               else if (s.equalsIgnoreCase("resolved"))
-                  stateMask[Alarm.STATE_RESOLVED] = true;
-               else if (s.equalsIgnoreCase("terminated"))
-                  stateMask[Alarm.STATE_TERMINATED] = true;
-            }
-         }
-      }
-      else
-      {
-         stateMask = new boolean[] { true, true, true, true };
-      }
-
-      Date createdBefore = parseTimestamp(query.get("createdBefore"));
-      Date createdAfter = parseTimestamp(query.get("createdAfter"));
-      Date updatedBefore = parseTimestamp(query.get("updatedBefore"));
-      Date updatedAfter = parseTimestamp(query.get("updatedAfter"));
-
-      String keyFilter = query.get("key");
-      String keyRegexFilter = query.get("keyRegex");
-      String messageFilter = query.get("message");
+      AlarmQueryFilter filter = AlarmQueryFilter.get(query);
+      if (filter.isStateFilterInvalid())
+         return new ResponseContainer("alarms", new ArrayList<Alarm>(0)); // no valid states requested
 
-      if ((rootObject != null) || (stateFilter != null) || (createdBefore != null) ||
-          (createdAfter != null) || (updatedBefore != null) || (updatedAfter != null) ||
-          (keyFilter != null) || (keyRegexFilter != null) || (messageFilter != null))
+      Set<Long> sourceFilter = null;
+      if (rootObject != null)
       {
-         boolean includeChildren = Boolean.parseBoolean(query.getOrDefault("includeChildObjects", "false"));
-         Pattern keyPattern = (keyRegexFilter != null) ? Pattern.compile(keyRegexFilter, Pattern.CASE_INSENSITIVE) : null;
-         Pattern messagePattern = (messageFilter != null) ? Pattern.compile(messageFilter, Pattern.CASE_INSENSITIVE) : null;
-
-         Iterator<Alarm> iterator =  alarms.iterator();
-         while(iterator.hasNext())
+         sourceFilter = new HashSet<Long>();
+         sourceFilter.add(rootObject.getObjectId());
+         if (Boolean.parseBoolean(query.getOrDefault("includeChildObjects", "false")))
          {
-            Alarm alarm = iterator.next();
-
-            if (!stateMask[alarm.getState() & Alarm.STATE_MASK])
-            {
-               iterator.remove();
-               continue;
-            }
-
-            if (((createdBefore != null) && alarm.getCreationTime().after(createdBefore)) ||
-                ((createdAfter != null) && alarm.getCreationTime().before(createdAfter)) ||
-                ((updatedBefore != null) && alarm.getLastChangeTime().after(updatedBefore)) ||
-                ((updatedAfter != null) && alarm.getLastChangeTime().before(updatedAfter)))
-            {
-               iterator.remove();
-               continue;
-            }
-
-            if ((rootObject != null) &&
-                (alarm.getSourceObjectId() != rootObject.getObjectId()) &&
-                (!includeChildren || !rootObject.isParentOf(alarm.getSourceObjectId())))
-            {
-               iterator.remove();
-            }
-
-            if ((keyFilter != null) && (alarm.getKey() != null) && !Glob.matchIgnoreCase(keyFilter, alarm.getKey()))
-            {
-               iterator.remove();
-            }
-
-            if ((keyPattern != null) && (alarm.getKey() != null) && !keyPattern.matcher(alarm.getKey()).matches())
-            {
-               iterator.remove();
-            }
-
-            if ((messagePattern != null) && !messagePattern.matcher(alarm.getMessage()).matches())
-            {
-               iterator.remove();
-            }
+            for(AbstractObject o : rootObject.getAllChildren((int[])null))
+               sourceFilter.add(o.getObjectId());
          }
       }
 
+      Page<Alarm> page = Page.select(session.findAlarms(sourceFilter, filter.getStateMask(), 0), (a) -> a.getId(), filter.isEmpty() ? null : filter, query);
+      List<Alarm> alarms = page.getElements();
+
       if (!Boolean.parseBoolean(query.getOrDefault("resolveReferences", "false")) || alarms.isEmpty())
-         return new ResponseContainer("alarms", alarms);
+         return new ResponseContainer("alarms", alarms, page.getNextCursor());
 
       if (!session.areObjectsSynchronized())
          session.syncObjects();
@@ -233,7 +158,7 @@ else if (s.equalsIgnoreCase("terminated"))
 
          serializedAlarms.add(json);
       }
-      return new ResponseContainer("alarms", serializedAlarms);
+      return new ResponseContainer("alarms", serializedAlarms, page.getNextCursor());
    }
 
    /**
@@ -332,7 +257,9 @@ protected Object get(String id, Map<String, String> query) throws Exception
       try
       {
          long alarmId = Long.parseLong(id);
-         alarm = session.getAlarm(alarmId);
+         alarm = session.areAlarmsSynchronized() ? session.findAlarmById(alarmId) : null;
+         if (alarm == null)
+            alarm = session.getAlarm(alarmId);
       }
       catch(NumberFormatException e)
       {
@@ -0,0 +1,123 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.handlers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Bounded LRU cache of compiled filter plans. Plans are keyed by canonical form of query parameters they were compiled
+ * from, so repeated requests with same filter (typical for dashboards and integrations polling API) do not compile regular
+ * expressions and parse filter values again. Cached plans must be immutable.
+ *
+ * @param <T> filter plan type
+ */
+final class FilterPlanCache<T>
+{
+   private final int capacity;
+   private final LinkedHashMap<String, T> plans;
+
+   /**
+    * Create new cache.
+    *
+    * @param capacity maximum number of cached plans
+    */
+   FilterPlanCache(final int capacity)
+   {
+      this.capacity = capacity;
+      plans = new LinkedHashMap<String, T>(capacity, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Entry<String, T> eldest)
+         {
+            return size() > FilterPlanCache.this.capacity;
+         }
+      };
+   }
+
+   /**
+    * Build cache key from query parameters. Parameters not accepted by given selector are ignored, so paging and
+    * projection parameters do not create separate cache entries.
+    *
+    * @param query query parameters
+    * @param selector parameter name selector
+    * @return cache key
+    */
+   static String createKey(Map<String, String> query, ParameterSelector selector)
+   {
+      StringBuilder sb = new StringBuilder();
+      for(Entry<String, String> e : new TreeMap<String, String>(query).entrySet())
+      {
+         if (!selector.isFilterParameter(e.getKey()))
+            continue;
+         sb.append(e.getKey().length());
+         sb.append(':');
+         sb.append(e.getKey());
+         sb.append('=');
+         if (e.getValue() != null)
+         {
+            sb.append(e.getValue().length());
+            sb.append(':');
+            sb.append(e.getValue());
+         }
+         sb.append(';');
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Get cached plan.
+    *
+    * @param key cache key
+    * @return cached plan or null
+    */
+   synchronized T get(String key)
+   {
+      return plans.get(key);
+   }
+
+   /**
+    * Add plan to cache.
+    *
+    * @param key cache key
+    * @param plan compiled plan
+    */
+   synchronized void put(String key, T plan)
+   {
+      plans.put(key, plan);
+   }
+
+   /**
+    * Selector for query parameters relevant to filter
+    */
+   @FunctionalInterface
+   interface ParameterSelector
+   {
+      /**
+       * Check if given query parameter affects filter.
+       *
+       * @param name parameter name
+       * @return true if parameter affects filter
+       */
+      boolean isFilterParameter(String name);
+   }
+}
@@ -20,8 +20,10 @@
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.json.JSONException;
@@ -91,49 +93,47 @@ public Object getCollection(Map<String, String> query) throws Exception
          return new JsonArray();
 
       JsonArray targets = element.getAsJsonArray();
-      JsonObject alarmSource;
-      long sourceId = 0;
-      Map<Long, Alarm> alarms = getSession().getAlarms();
+      if (!getSession().areAlarmsSynchronized())
+         getSession().syncAlarms();
 
       for(JsonElement e : targets)
       {
-         for( Alarm a : alarms.values())
+         long sourceId = 0;
+         if (e.getAsJsonObject().has("alarmSource"))
          {
-            if (e.getAsJsonObject().has("alarmSource"))
-            {
-               alarmSource = e.getAsJsonObject().getAsJsonObject("alarmSource");
-               if (alarmSource.size() > 0)
-                  sourceId = Long.parseLong(alarmSource.get("id").getAsString());
-            }
-            
-            if (sourceId == 0 || a.getSourceObjectId() == sourceId)
-            {            
-               r.add(a.getCurrentSeverity().name());
-               r.add(STATES[a.getState()]);
-               
-               object = getSession().findObjectById(a.getSourceObjectId());
-               if (object == null)
-                  r.add(a.getSourceObjectId());
-               else
-                  r.add(object.getObjectName());
-               
-               r.add(a.getMessage());
-               r.add(a.getRepeatCount());
-               r.add(a.getHelpdeskReference());
-               
-               user = getSession().findUserDBObjectById(a.getAcknowledgedByUser(), null);
-               if (user == null)
-                  r.add("");
-               else
-                  r.add(user.getName());
-               
-               r.add(df.format(a.getCreationTime()));
-               r.add(df.format(a.getLastChangeTime()));
-               rows.add(r);
-               r = new JsonArray();
-            }               
+            JsonObject alarmSource = e.getAsJsonObject().getAsJsonObject("alarmSource");
+            if (alarmSource.size() > 0)
+               sourceId = Long.parseLong(alarmSource.get("id").getAsString());
          }
-      }      
+
+         List<Alarm> alarms = getSession().findAlarms((sourceId != 0) ? Collections.singleton(sourceId) : null, 0, 0);
+         for(Alarm a : alarms)
+         {
+            r.add(a.getCurrentSeverity().name());
+            r.add(STATES[a.getState()]);
+
+            object = getSession().findObjectById(a.getSourceObjectId());
+            if (object == null)
+               r.add(a.getSourceObjectId());
+            else
+               r.add(object.getObjectName());
+
+            r.add(a.getMessage());
+            r.add(a.getRepeatCount());
+            r.add(a.getHelpdeskReference());
+
+            user = getSession().findUserDBObjectById(a.getAcknowledgedByUser(), null);
+            if (user == null)
+               r.add("");
+            else
+               r.add(user.getName());
+
+            r.add(df.format(a.getCreationTime()));
+            r.add(df.format(a.getLastChangeTime()));
+            rows.add(r);
+            r = new JsonArray();
+         }
+      }
       root.add("rows", rows);      
       root.addProperty("type", "table");
 
@@ -18,24 +18,27 @@
  */
 package org.netxms.websvc.handlers;
 
-import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.netxms.client.NXCException;
 import org.netxms.client.NXCSession;
 import org.netxms.client.constants.HistoricalDataType;
-import org.netxms.client.datacollection.DciData;
-import org.netxms.client.datacollection.DciDataRow;
 import org.netxms.client.datacollection.DciValue;
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.client.objects.DataCollectionTarget;
+import org.netxms.websvc.handlers.SeriesDownsampler.Aggregation;
+import org.netxms.websvc.handlers.SeriesDownsampler.Series;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.gson.JsonArray;
@@ -43,6 +46,8 @@
 
 public class GrafanaDataCollection extends AbstractHandler
 {
+   private static GraphDataCache graphDataCache = new GraphDataCache(1024, properties.getGraphDataCacheTimeout());
+
    private List<AbstractObject> objects;
    private Logger log = LoggerFactory.getLogger(GrafanaDataCollection.class);
    
@@ -69,7 +74,10 @@ else if (query.containsKey("target"))
    }
    
    /**
-    * Get query data
+    * Get query data. Data for all matched DCIs is requested from server concurrently, and each series is downsampled to
+    * resolution requested by Grafana ("maxDataPoints" and "intervalMs" parameters) before serialization. Aggregation
+    * method can be set for whole query with "aggregation" parameter or for individual target with "aggregation" field
+    * (one of "avg", "min", "max", "lttb"; default is "avg").
     * 
     * @param query
     * @return data
@@ -83,7 +91,12 @@ private JsonArray getGraphData(Map<String, String> query) throws Exception
       Date from = format.parse(query.get("from").substring(1, query.get("from").length()-1));
       Date to = format.parse(query.get("to").substring(1, query.get("to").length()-1));
 
-      JsonArray result = new JsonArray();
+      int maxPoints = parseInt(query.get("maxDataPoints"), 0);
+      long intervalMs = parseLong(query.get("intervalMs"), 0);
+      Aggregation defaultAggregation = Aggregation.getByName(query.get("aggregation"), Aggregation.AVG);
+
+      List<String> legends = new ArrayList<String>();
+      List<CompletableFuture<Series>> series = new ArrayList<CompletableFuture<Series>>();
       for(Object o : targets)
       {
          if (o instanceof JSONObject)
@@ -98,6 +111,7 @@ private JsonArray getGraphData(Map<String, String> query) throws Exception
 
             long dciTargetId = dciTarget.optLong("id", 0);
             long dciId = dci.optLong("id", 0);
+            Aggregation aggregation = Aggregation.getByName(object.optString("aggregation", null), defaultAggregation);
 
             String dciName = dci.getString("name").isEmpty() ? ".*" : dci.getString("name");
             if (dciId == 0)
@@ -118,44 +132,84 @@ private JsonArray getGraphData(Map<String, String> query) throws Exception
                      .findMatchingDCI(dciTargetId, dciTargetName, dciName, searchByName ? NXCSession.DCI_RES_SEARCH_NAME : 0);
                for(DciValue v : values)
                {
-                  result.add(fillGraphData(v.getNodeId(), v.getId(), v.getDescription(), from, to));
+                  legends.add(v.getDescription());
+                  series.add(requestGraphData(v.getNodeId(), v.getId(), from, to, maxPoints, intervalMs, aggregation));
                }
             }
             else if (dciTargetId != 0 && dciId != 0)
             {
-               String legend = object.getString("legend").isEmpty() ? dciName : object.getString("legend");
-               result.add(fillGraphData(dciTargetId, dciId, legend, from, to));
+               legends.add(object.getString("legend").isEmpty() ? dciName : object.getString("legend"));
+               series.add(requestGraphData(dciTargetId, dciId, from, to, maxPoints, intervalMs, aggregation));
             }
          }
       }
+
+      JsonArray result = new JsonArray();
+      for(int i = 0; i < series.size(); i++)
+         result.add(fillGraphData(legends.get(i), waitForGraphData(series.get(i))));
       return result;
    }
 
+   /**
+    * Request graph data from server (or get it from cache) and downsample it to requested resolution.
+    *
+    * @param objectId object ID
+    * @param dciId DCI ID
+    * @param from start of time range
+    * @param to end of time range
+    * @param maxPoints maximum number of points (0 if not set)
+    * @param intervalMs minimal interval between points in milliseconds (0 if not set)
+    * @param aggregation aggregation method
+    * @return future for downsampled series
+    */
+   private CompletableFuture<Series> requestGraphData(long objectId, long dciId, Date from, Date to, int maxPoints, long intervalMs, Aggregation aggregation)
+   {
+      NXCSession session = getSession();
+      String key = GraphDataCache.createKey(session.getUserId(), objectId, dciId, from.getTime(), to.getTime(), maxPoints, intervalMs, aggregation);
+      return graphDataCache.get(key, () -> session.getCollectedDataAsync(objectId, dciId, from, to, 0, HistoricalDataType.PROCESSED)
+            .thenApply((data) -> SeriesDownsampler.downsample(SeriesDownsampler.fromData(data), from.getTime(), to.getTime(), maxPoints, intervalMs, aggregation)));
+   }
+
+   /**
+    * Wait for graph data request to complete.
+    *
+    * @param future graph data future
+    * @return graph data
+    * @throws Exception if request failed
+    */
+   private static Series waitForGraphData(CompletableFuture<Series> future) throws Exception
+   {
+      try
+      {
+         return future.get();
+      }
+      catch(ExecutionException e)
+      {
+         Throwable cause = e.getCause();
+         while((cause instanceof CompletionException) && (cause.getCause() != null))
+            cause = cause.getCause();
+         if (cause instanceof Exception)
+            throw (Exception)cause;
+         throw e;
+      }
+   }
+
    /**
     * Fill graph data
     *
-    * @param objectId
-    * @param dciId
     * @param legend
-    * @param from
-    * @param to
+    * @param series
     * @return
-    * @throws IOException
-    * @throws NXCException
     */
-   private JsonObject fillGraphData(Long objectId, Long dciId, String legend, Date from, Date to) throws IOException, NXCException
+   private static JsonObject fillGraphData(String legend, Series series)
    {
-      DciData data = getSession().getCollectedData(objectId, dciId, from, to, 0, HistoricalDataType.PROCESSED);
-
       JsonObject root = new JsonObject();
-      JsonArray datapoints = new JsonArray();
-      DciDataRow[] values = data.getValues();
-      for(int i = values.length - 1; i >= 0; i--)
+      JsonArray datapoints = new JsonArray(series.size());
+      for(int i = 0; i < series.size(); i++)
       {
-         DciDataRow r = values[i];
-         JsonArray datapoint = new JsonArray();
-         datapoint.add(r.getValueAsDouble());
-         datapoint.add(r.getTimestamp().getTime());
+         JsonArray datapoint = new JsonArray(2);
+         datapoint.add(series.getValue(i));
+         datapoint.add(series.getTimestamp(i));
          datapoints.add(datapoint);
       }
 
@@ -0,0 +1,151 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.handlers;
+
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import org.netxms.websvc.handlers.SeriesDownsampler.Series;
+
+/**
+ * Short-living cache of downsampled graph data. Dashboards usually refresh all panels at once and several users often
+ * look at same dashboard, so identical queries arrive within short time. Cache holds futures, so identical query
+ * arriving while first one is still running waits for its result instead of requesting same data from server again.
+ * Failed queries are not cached.
+ */
+final class GraphDataCache
+{
+   private final int capacity;
+   private final long timeToLive;
+   private final LinkedHashMap<String, CacheEntry> entries;
+
+   /**
+    * Create new cache.
+    *
+    * @param capacity maximum number of cached queries
+    * @param timeToLive time to live for cached queries in milliseconds
+    */
+   GraphDataCache(final int capacity, long timeToLive)
+   {
+      this.capacity = capacity;
+      this.timeToLive = timeToLive;
+      entries = new LinkedHashMap<String, CacheEntry>(capacity, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Entry<String, CacheEntry> eldest)
+         {
+            return size() > GraphDataCache.this.capacity;
+         }
+      };
+   }
+
+   /**
+    * Build cache key for graph data query. User ID is part of the key because results depend on user's access rights.
+    *
+    * @param userId user ID
+    * @param objectId object ID
+    * @param dciId DCI ID
+    * @param from start of time range in milliseconds
+    * @param to end of time range in milliseconds
+    * @param maxPoints maximum number of points
+    * @param intervalMs minimal interval between points
+    * @param aggregation aggregation method
+    * @return cache key
+    */
+   static String createKey(int userId, long objectId, long dciId, long from, long to, int maxPoints, long intervalMs, SeriesDownsampler.Aggregation aggregation)
+   {
+      StringBuilder sb = new StringBuilder();
+      sb.append(userId).append(':').append(objectId).append(':').append(dciId).append(':').append(from).append(':').append(to)
+            .append(':').append(maxPoints).append(':').append(intervalMs).append(':').append(aggregation.name());
+      return sb.toString();
+   }
+
+   /**
+    * Get cached result for given query or start new query using provided supplier.
+    *
+    * @param key cache key
+    * @param query query supplier (called only if there is no valid cached result)
+    * @return future for query result
+    */
+   CompletableFuture<Series> get(String key, Supplier<CompletableFuture<Series>> query)
+   {
+      long now = System.currentTimeMillis();
+      CompletableFuture<Series> future;
+      synchronized(this)
+      {
+         CacheEntry e = entries.get(key);
+         if ((e != null) && (now - e.timestamp <= timeToLive) && !e.future.isCompletedExceptionally())
+            return e.future;
+         if (timeToLive <= 0)
+            return query.get();
+         future = new CompletableFuture<Series>();
+         entries.put(key, new CacheEntry(future, now));
+      }
+
+      CompletableFuture<Series> source;
+      try
+      {
+         source = query.get();
+      }
+      catch(RuntimeException e)
+      {
+         source = CompletableFuture.failedFuture(e);
+      }
+      source.whenComplete((series, exception) -> {
+         if (exception != null)
+         {
+            synchronized(GraphDataCache.this)
+            {
+               CacheEntry e = entries.get(key);
+               if ((e != null) && (e.future == future))
+                  entries.remove(key);
+            }
+            future.completeExceptionally(exception);
+         }
+         else
+         {
+            future.complete(series);
+         }
+      });
+      return future;
+   }
+
+   /**
+    * Cache entry
+    */
+   private static final class CacheEntry
+   {
+      final CompletableFuture<Series> future;
+      final long timestamp;
+
+      /**
+       * Create entry.
+       *
+       * @param future query result future
+       * @param timestamp entry creation time
+       */
+      CacheEntry(CompletableFuture<Series> future, long timestamp)
+      {
+         this.future = future;
+         this.timestamp = timestamp;
+      }
+   }
+}
@@ -32,13 +32,12 @@
 import org.netxms.client.constants.HistoricalDataType;
 import org.netxms.client.constants.RCC;
 import org.netxms.client.constants.TimeUnit;
-import org.netxms.client.datacollection.DataCollectionConfiguration;
-import org.netxms.client.datacollection.DataCollectionObject;
-import org.netxms.client.datacollection.DataCollectionTable;
 import org.netxms.client.datacollection.DciData;
 import org.netxms.client.datacollection.DciDataRow;
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.client.objects.DataCollectionTarget;
+import org.netxms.websvc.DciMetadata;
+import org.netxms.websvc.DciMetadataCache;
 import org.netxms.websvc.json.ResponseContainer;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -56,17 +55,27 @@ protected Object get(String id, Map<String, String> query) throws Exception
    {
       NXCSession session = getSession();
       AbstractObject object = getObject();
-      long dciId = 0;
+      if (!(object instanceof DataCollectionTarget))
+         throw new NXCException(RCC.INVALID_OBJECT_ID);
+
+      DciMetadataCache metadataCache = getDciMetadataCache();
+      DciMetadata metadata;
+      long dciId;
       try
       {
          dciId = Long.parseLong(id);
+         metadata = metadataCache.get(object.getObjectId(), dciId);
+         // Without metadata DCI type is unknown, and table DCI would be read as single value DCI
+         if (metadata == null)
+            throw new NXCException(RCC.INVALID_DCI_ID);
       }
       catch(NumberFormatException e)
       {
-         dciId = session.dciNameToId(object.getObjectId(), id);
+         metadata = metadataCache.findByName(object.getObjectId(), id);
+         dciId = (metadata != null) ? metadata.getDciId() : 0;
       }
 
-      if ((object == null) || (dciId == 0) || !(object instanceof DataCollectionTarget))
+      if (dciId == 0)
          throw new NXCException(RCC.INVALID_OBJECT_ID);
 
       String timeFrom = query.get("from");
@@ -75,14 +84,8 @@ protected Object get(String id, Map<String, String> query) throws Exception
       String itemCount = query.get("itemCount");
 
       DciData data = null;
-      DataCollectionConfiguration dataCollectionConfiguration = session.openDataCollectionConfiguration(getObjectId());
-      DataCollectionObject dataCollectionObject = dataCollectionConfiguration.findItem(dciId);
-      HistoricalDataType valueType = HistoricalDataType.PROCESSED;
-
-      if (dataCollectionObject instanceof DataCollectionTable)
-      {
-         valueType = HistoricalDataType.FULL_TABLE;
-      }
+      boolean isTable = metadata.isTable();
+      HistoricalDataType valueType = isTable ? HistoricalDataType.FULL_TABLE : HistoricalDataType.PROCESSED;
 
       if (timeFrom != null || timeTo != null)
       {
@@ -106,7 +109,7 @@ else if (itemCount != null)
          data = session.getCollectedData(object.getObjectId(), dciId, new Date(from), now, parseInt(itemCount, 0), valueType);
       }
 
-      return (dataCollectionObject instanceof DataCollectionTable) ? transformTableDataOutput(data, query.get("outputFormat")) : data;
+      return isTable ? transformTableDataOutput(data, query.get("outputFormat")) : data;
    }
 
    /**
@@ -0,0 +1,361 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.handlers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.netxms.base.Glob;
+import org.netxms.client.constants.RCC;
+import org.netxms.client.objects.AbstractNode;
+import org.netxms.client.objects.AbstractObject;
+import org.netxms.client.objects.AccessPoint;
+import org.netxms.client.objects.Interface;
+import org.netxms.client.objects.NetworkService;
+import org.netxms.client.objects.Subnet;
+import org.netxms.client.objects.VPNConnector;
+import org.netxms.websvc.WebSvcException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled object filter for object collection requests. Filter is immutable and can be shared between requests.
+ */
+final class ObjectQueryFilter implements Predicate<AbstractObject>
+{
+   private static final Logger log = LoggerFactory.getLogger(ObjectQueryFilter.class);
+   private static final FilterPlanCache<ObjectQueryFilter> cache = new FilterPlanCache<ObjectQueryFilter>(256);
+
+   private final boolean useRegex;
+   private final double[] area;
+   private final String[] classes;
+   private final String nameFilter;
+   private final Pattern nameFilterRegex;
+   private final long parentId;
+   private final String primaryNameFilter;
+   private final Pattern primaryNameFilterRegex;
+   private final Integer stateFilterValue;
+   private final long[] zones;
+   private final Map<String, Object> customAttributes;
+   private final boolean empty;
+
+   /**
+    * Get filter for given query parameters. Compiled filters are cached.
+    *
+    * @param query query parameters
+    * @return compiled filter
+    * @throws WebSvcException if filter parameters are invalid
+    */
+   static ObjectQueryFilter get(Map<String, String> query) throws WebSvcException
+   {
+      String key = FilterPlanCache.createKey(query, (name) -> isFilterParameter(name));
+      ObjectQueryFilter filter = cache.get(key);
+      if (filter == null)
+      {
+         filter = new ObjectQueryFilter(query);
+         cache.put(key, filter);
+      }
+      return filter;
+   }
+
+   /**
+    * Check if given query parameter affects object filter.
+    *
+    * @param name parameter name
+    * @return true if parameter affects object filter
+    */
+   private static boolean isFilterParameter(String name)
+   {
+      return name.startsWith("@") || name.equals("area") || name.equals("class") || name.equals("name") || name.equals("parent") ||
+            name.equals("primaryName") || name.equals("regex") || name.equals("state") || name.equals("zone");
+   }
+
+   /**
+    * Compile filter from query parameters.
+    *
+    * @param query query parameters
+    * @throws WebSvcException if filter parameters are invalid
+    */
+   private ObjectQueryFilter(Map<String, String> query) throws WebSvcException
+   {
+      useRegex = (query.get("regex") != null) ? Boolean.parseBoolean(query.get("regex")) : false;
+
+      String areaFilter = query.get("area");
+      String classFilter = query.get("class");
+      nameFilter = query.get("name");
+      String parentFilter = query.get("parent");
+      primaryNameFilter = query.get("primaryName");
+      String stateFilter = query.get("state");
+      String zoneFilter = query.get("zone");
+
+      nameFilterRegex = ((nameFilter != null) && !nameFilter.isEmpty()) ? Pattern.compile(nameFilter, Pattern.CASE_INSENSITIVE) : null;
+      primaryNameFilterRegex = ((primaryNameFilter != null) && !primaryNameFilter.isEmpty()) ? Pattern.compile(primaryNameFilter, Pattern.CASE_INSENSITIVE) : null;
+
+      Integer stateValue = null;
+      if ((stateFilter != null) && !stateFilter.isEmpty())
+      {
+         try
+         {
+            stateValue = stateFilter.startsWith("0x") ? Integer.parseInt(stateFilter.substring(2), 16) : Integer.parseInt(stateFilter);
+         }
+         catch(NumberFormatException e)
+         {
+            log.debug("Invalid state filter " + stateFilter);
+         }
+      }
+      stateFilterValue = stateValue;
+
+      Map<String, Object> attributes = null;
+      for(String k : query.keySet())
+      {
+         if (!k.startsWith("@"))
+            continue;
+
+         if (attributes == null)
+            attributes = new HashMap<String, Object>();
+         if (useRegex)
+            attributes.put(k.substring(1), Pattern.compile(query.get(k), Pattern.CASE_INSENSITIVE));
+         else
+            attributes.put(k.substring(1), query.get(k));
+      }
+      customAttributes = attributes;
+
+      double[] areaValue = null;
+      if (areaFilter != null)
+      {
+         String[] parts = areaFilter.split(",");
+         if (parts.length == 4)
+         {
+            try
+            {
+               areaValue = new double[4];
+               for(int i = 0; i < 4; i++)
+                  areaValue[i] = Double.parseDouble(parts[i]);
+            }
+            catch(NumberFormatException e)
+            {
+               log.warn("Invalid area filter " + areaFilter);
+            }
+         }
+         else
+         {
+            log.warn("Invalid area filter " + areaFilter);
+         }
+      }
+      area = areaValue;
+
+      classes = ((classFilter != null) && !classFilter.isEmpty()) ? classFilter.split(",") : null;
+
+      if (parentFilter != null)
+      {
+         try
+         {
+            parentId = Long.parseLong(parentFilter);
+         }
+         catch(NumberFormatException e)
+         {
+            throw new WebSvcException(RCC.INVALID_ARGUMENT);
+         }
+      }
+      else
+      {
+         parentId = 0;
+      }
+
+      long[] zoneList = null;
+      if (zoneFilter != null)
+      {
+         String[] parts = zoneFilter.split(",");
+         try
+         {
+            zoneList = new long[parts.length];
+            for(int i = 0; i < parts.length; i++)
+               zoneList[i] = Long.parseLong(parts[i]);
+         }
+         catch(NumberFormatException e)
+         {
+            log.warn("Invalid zone filter " + zoneFilter);
+         }
+      }
+      zones = zoneList;
+
+      empty = (areaFilter == null) && (classFilter == null) && (customAttributes == null) && (nameFilter == null) &&
+            (parentFilter == null) && (primaryNameFilter == null) && (stateFilterValue == null) && (zoneFilter == null);
+   }
+
+   /**
+    * Check if this filter accepts all objects.
+    *
+    * @return true if this filter accepts all objects
+    */
+   boolean isEmpty()
+   {
+      return empty;
+   }
+
+   /**
+    * @see java.util.function.Predicate#test(java.lang.Object)
+    */
+   @Override
+   public boolean test(AbstractObject o)
+   {
+      // Filter by state
+      if (stateFilterValue != null)
+      {
+         if (!(o instanceof AbstractNode))
+            return false; // FIXME: check state for all objects
+         if ((stateFilterValue & ((AbstractNode)o).getStateFlags()) == 0)
+            return false;
+      }
+
+      // Filter by zone
+      if (zones != null)
+      {
+         long zoneUin = getZoneUin(o);
+         if (zoneUin == -1)
+            return false;
+
+         boolean match = false;
+         for(long z : zones)
+         {
+            if (zoneUin == z)
+            {
+               match = true;
+               break;
+            }
+         }
+         if (!match)
+            return false;
+      }
+
+      // Filter by name
+      if (useRegex)
+      {
+         if ((nameFilterRegex != null) && !nameFilterRegex.matcher(o.getObjectName()).matches())
+            return false;
+      }
+      else
+      {
+         if ((nameFilter != null) && !nameFilter.isEmpty() && !Glob.matchIgnoreCase(nameFilter, o.getObjectName()))
+            return false;
+      }
+
+      // Filter by class
+      if (classes != null)
+      {
+         boolean match = false;
+         for(String c : classes)
+         {
+            if (o.getObjectClassName().equalsIgnoreCase(c))
+            {
+               match = true;
+               break;
+            }
+         }
+         if (!match)
+            return false;
+      }
+
+      // Filter by parent
+      if ((parentId != 0) && !o.isChildOf(parentId))
+         return false;
+
+      // Filter by geographical area
+      if (area != null)
+      {
+         if (!o.getGeolocation().isWithinArea(area[0], area[1], area[2], area[3]))
+            return false;
+      }
+
+      // Filter by custom attribute
+      if (customAttributes != null)
+      {
+         if (o.getCustomAttributes().isEmpty())
+            return false;
+         for(Entry<String, Object> e : customAttributes.entrySet())
+         {
+            String value = o.getCustomAttributeValue(e.getKey());
+            if (value == null)
+               return false;
+            if (useRegex ? !((Pattern)e.getValue()).matcher(value).matches() : !Glob.matchIgnoreCase((String)e.getValue(), value))
+               return false;
+         }
+      }
+
+      // Filter by primary name
+      if (primaryNameFilter != null)
+      {
+         // If we want to filter by primary name this implies that we are only looking
+         // for nodes.
+         if (!(o instanceof AbstractNode))
+            return false;
+
+         AbstractNode node = (AbstractNode)o;
+         if (useRegex)
+         {
+            if ((primaryNameFilterRegex != null) && !primaryNameFilterRegex.matcher(node.getPrimaryName()).matches())
+               return false;
+         }
+         else
+         {
+            if (!primaryNameFilter.isEmpty() && !Glob.matchIgnoreCase(primaryNameFilter, node.getPrimaryName()))
+               return false;
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * Get zoneUIN depending on object class
+    * 
+    * @param obj
+    * @return
+    */
+   private static long getZoneUin(AbstractObject obj)
+   {
+      if (obj instanceof AbstractNode)
+      {
+         return ((AbstractNode)obj).getZoneId();
+      }
+      if (obj instanceof Subnet)
+      {
+         return ((Subnet)obj).getZoneId();
+      }
+      if (obj instanceof Interface)
+      {
+         return ((Interface)obj).getZoneId();
+      }
+      if (obj instanceof NetworkService)
+      {
+         return ((NetworkService)obj).getParentNode().getZoneId();
+      }
+      if (obj instanceof VPNConnector)
+      {
+         return ((VPNConnector)obj).getParentNode().getZoneId();
+      }
+      if (obj instanceof AccessPoint)
+      {
+         return ((AccessPoint)obj).getParentNode().getZoneId();
+      }
+      return -1;
+   }
+}
@@ -18,40 +18,24 @@
  */
 package org.netxms.websvc.handlers;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.regex.Pattern;
 import org.json.JSONObject;
-import org.netxms.base.Glob;
 import org.netxms.client.NXCObjectCreationData;
 import org.netxms.client.NXCObjectModificationData;
 import org.netxms.client.NXCSession;
 import org.netxms.client.constants.RCC;
 import org.netxms.client.maps.MapType;
-import org.netxms.client.objects.AbstractNode;
 import org.netxms.client.objects.AbstractObject;
-import org.netxms.client.objects.AccessPoint;
-import org.netxms.client.objects.Interface;
-import org.netxms.client.objects.NetworkService;
-import org.netxms.client.objects.Subnet;
-import org.netxms.client.objects.VPNConnector;
-import org.netxms.websvc.WebSvcException;
 import org.netxms.websvc.json.JsonTools;
 import org.netxms.websvc.json.ResponseContainer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Objects request handler
  */
 public class Objects extends AbstractObjectHandler
 {
-   private Logger log = LoggerFactory.getLogger(AbstractHandler.class);
-
    /**
     * @see org.netxms.websvc.handlers.AbstractHandler#getCollection(java.util.Map)
     */
@@ -65,286 +49,9 @@ protected Object getCollection(Map<String, String> query) throws Exception
       boolean topLevelOnly = (query.get("topLevelOnly") != null) ? Boolean.parseBoolean(query.get("topLevelOnly")) : false;
       List<AbstractObject> objects = topLevelOnly ? Arrays.asList(session.getTopLevelObjects()) : session.getAllObjects();
 
-      boolean useRegex = (query.get("regex") != null) ? Boolean.parseBoolean(query.get("regex")) : false;
-
-      String areaFilter = query.get("area");
-      String classFilter = query.get("class");
-      String nameFilter = query.get("name");
-      String parentFilter = query.get("parent");
-      String primaryNameFilter = query.get("primaryName");
-      String stateFilter = query.get("state");
-      String zoneFilter = query.get("zone");
-
-      Pattern nameFilterRegex = null;
-      if ((nameFilter != null) && !nameFilter.isEmpty())
-         nameFilterRegex = Pattern.compile(nameFilter, Pattern.CASE_INSENSITIVE);
-
-      Pattern primaryNameFilterRegex = null;
-      if ((primaryNameFilter != null) && !primaryNameFilter.isEmpty())
-         primaryNameFilterRegex = Pattern.compile(primaryNameFilter, Pattern.CASE_INSENSITIVE);
-
-      Integer stateFilterValue = null;
-      if ((stateFilter != null) && !stateFilter.isEmpty())
-      {
-         try
-         {
-            stateFilterValue = stateFilter.startsWith("0x") ? Integer.parseInt(stateFilter.substring(2), 16) : Integer.parseInt(stateFilter);
-         }
-         catch(NumberFormatException e)
-         {
-            log.debug("Invalid state filter " + stateFilter);
-         }
-      }
-      Map<String, Object> customAttributes = null;
-      for(String k : query.keySet())
-      {
-         if (!k.startsWith("@"))
-            continue;
-
-         if (customAttributes == null)
-            customAttributes = new HashMap<String, Object>();
-         if (useRegex)
-            customAttributes.put(k.substring(1), Pattern.compile(query.get(k), Pattern.CASE_INSENSITIVE));
-         else
-            customAttributes.put(k.substring(1), query.get(k));
-      }
-
-      if ((areaFilter != null) || (classFilter != null) || (customAttributes != null) || (nameFilter != null) ||
-          (parentFilter != null) || (primaryNameFilter != null) || (stateFilterValue != null) || (zoneFilter != null))
-      {
-         double[] area = null;
-         if (areaFilter != null)
-         {
-            String[] parts = areaFilter.split(",");
-            if (parts.length == 4)
-            {
-               try
-               {
-                  area = new double[4];
-                  for(int i = 0; i < 4; i++)
-                     area[i] = Double.parseDouble(parts[i]);
-               }
-               catch(NumberFormatException e)
-               {
-                  log.warn("Invalid area filter " + areaFilter);
-               }
-            }
-            else
-            {
-               log.warn("Invalid area filter " + areaFilter);
-            }
-         }
-
-         String[] classes = null;
-         if ((classFilter != null) && !classFilter.isEmpty())
-         {
-            classes = classFilter.split(",");
-         }
-
-         long parentId;
-         if (parentFilter != null)
-         {
-            try
-            {
-               parentId = Long.parseLong(parentFilter);
-            }
-            catch(NumberFormatException e)
-            {
-               throw new WebSvcException(RCC.INVALID_ARGUMENT);
-            }
-         }
-         else
-         {
-            parentId = 0;
-         }
-
-         long[] zones = null;
-         if (zoneFilter != null)
-         {
-            String[] parts = zoneFilter.split(",");
-            try
-            {
-               zones = new long[parts.length];
-               for(int i = 0; i < parts.length; i++)
-                  zones[i] = Long.parseLong(parts[i]);
-            }
-            catch(NumberFormatException e)
-            {
-               log.warn("Invalid zone filter " + zoneFilter);
-            }
-         }
-
-         List<AbstractObject> filteredObjects = new ArrayList<AbstractObject>();
-         for(AbstractObject o : objects)
-         {
-            // Filter by state
-            if (stateFilterValue != null)
-            {
-               if (!(o instanceof AbstractNode))
-                  continue; // FIXME: check state for all objects
-               if ((stateFilterValue & ((AbstractNode)o).getStateFlags()) == 0)
-                  continue;
-            }
-
-            // Filter by zone
-            if (zones != null)
-            {
-               long zoneUin = getZoneUin(o);
-               if (zoneUin == -1)
-                  continue;
-
-               boolean match = false;
-               for(long z : zones)
-               {
-                  if (zoneUin == z)
-                  {
-                     match = true;
-                     break;
-                  }
-               }
-               if (!match)
-                  continue;
-            }
-
-            // Filter by name
-            if (useRegex)
-            {
-               if ((nameFilterRegex != null) && !nameFilterRegex.matcher(o.getObjectName()).matches())
-                  continue;
-            }
-            else
-            {
-               if ((nameFilter != null) && !nameFilter.isEmpty() && !Glob.matchIgnoreCase(nameFilter, o.getObjectName()))
-                  continue;
-            }
-
-            // Filter by class
-            if (classes != null)
-            {
-               boolean match = false;
-               for(String c : classes)
-               {
-                  if (o.getObjectClassName().equalsIgnoreCase(c))
-                  {
-                     match = true;
-                     break;
-                  }
-               }
-               if (!match)
-                  continue;
-            }
-
-            // Filter by parent
-            if ((parentId != 0) && !o.isChildOf(parentId))
-               continue;
-
-            // Filter by geographical area
-            if (area != null)
-            {
-               if (!o.getGeolocation().isWithinArea(area[0], area[1], area[2], area[3]))
-                  continue;
-            }
-
-            // Filter by custom attribute
-            if (customAttributes != null)
-            {
-               if (o.getCustomAttributes().isEmpty())
-                  continue;
-               boolean match = true;
-               if (useRegex)
-               {
-                  for(Entry<String, Object> e : customAttributes.entrySet())
-                  {
-                     String value = o.getCustomAttributeValue(e.getKey());
-                     if ((value == null) || !((Pattern)e.getValue()).matcher(value).matches())
-                     {
-                        match = false;
-                        break;
-                     }
-                  }
-               }
-               else
-               {
-                  for(Entry<String, Object> e : customAttributes.entrySet())
-                  {
-                     String value = o.getCustomAttributeValue(e.getKey());
-                     if ((value == null) || !Glob.matchIgnoreCase((String)e.getValue(), value))
-                     {
-                        match = false;
-                        break;
-                     }
-                  }
-               }
-               if (!match)
-                  continue;
-            }
-
-            // Filter by primary name
-            if (primaryNameFilter != null)
-            {
-               // If we want to filter by primary name this implies that we are only looking
-               // for nodes.
-               if (o instanceof AbstractNode)
-               {
-                  AbstractNode node = (AbstractNode)o;
-                  if (useRegex)
-                  {
-                     if ((primaryNameFilterRegex != null) && !primaryNameFilterRegex.matcher(node.getPrimaryName()).matches())
-                        continue;
-                  }
-                  else
-                  {
-                     if ((primaryNameFilter != null) && !primaryNameFilter.isEmpty() && !Glob.matchIgnoreCase(primaryNameFilter, node.getPrimaryName()))
-                        continue;
-                  }
-               }
-               else
-               {
-                  continue;
-               }
-            }
-
-            filteredObjects.add(o);
-         }
-         objects = filteredObjects;
-      }
-
-      return new ResponseContainer("objects", objects);
-   }
-
-   /**
-    * Get zoneUIN depending on object class
-    * 
-    * @param obj
-    * @return
-    */
-   private static long getZoneUin(AbstractObject obj)
-   {
-      if (obj instanceof AbstractNode)
-      {
-         return ((AbstractNode)obj).getZoneId();
-      }
-      if (obj instanceof Subnet)
-      {
-         return ((Subnet)obj).getZoneId();
-      }
-      if (obj instanceof Interface)
-      {
-         return ((Interface)obj).getZoneId();
-      }
-      if (obj instanceof NetworkService)
-      {
-         return ((NetworkService)obj).getParentNode().getZoneId();
-      }
-      if (obj instanceof VPNConnector)
-      {
-         return ((VPNConnector)obj).getParentNode().getZoneId();
-      }
-      if (obj instanceof AccessPoint)
-      {
-         return ((AccessPoint)obj).getParentNode().getZoneId();
-      }
-      return -1;
+      ObjectQueryFilter filter = ObjectQueryFilter.get(query);
+      Page<AbstractObject> page = Page.select(objects, (o) -> o.getObjectId(), filter.isEmpty() ? null : filter, query);
+      return new ResponseContainer("objects", page.getElements(), page.getNextCursor());
    }
 
    /**
@@ -0,0 +1,129 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.handlers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Single page of collection selected with cursor-based paging. Elements are ordered by numeric ID, and cursor is ID of last
+ * element on previous page, so paging is stable when elements are added or removed between requests.
+ *
+ * @param <T> element type
+ */
+public final class Page<T>
+{
+   private final List<T> elements;
+   private final Long nextCursor;
+
+   /**
+    * Create page.
+    *
+    * @param elements page elements
+    * @param nextCursor cursor for next page or null if this is last page
+    */
+   private Page(List<T> elements, Long nextCursor)
+   {
+      this.elements = elements;
+      this.nextCursor = nextCursor;
+   }
+
+   /**
+    * Select page from collection using "limit" and "cursor" query parameters. If limit is not set, all matching elements
+    * are returned in collection order. Otherwise at most <code>limit</code> matching elements with ID above cursor are
+    * selected in ID order. Selection keeps only <code>limit + 1</code> candidates in memory and does not sort whole
+    * collection.
+    *
+    * @param source source collection
+    * @param idFunction function for getting element ID
+    * @param filter element filter (null to accept all elements)
+    * @param query query parameters
+    * @return selected page
+    */
+   public static <T> Page<T> select(Iterable<T> source, ToLongFunction<T> idFunction, Predicate<? super T> filter, Map<String, String> query)
+   {
+      int limit = AbstractHandler.parseInt(query.get("limit"), 0);
+      long cursor = AbstractHandler.parseLong(query.get("cursor"), Long.MIN_VALUE);
+
+      if (limit <= 0)
+      {
+         List<T> elements = new ArrayList<T>();
+         for(T e : source)
+         {
+            if ((cursor != Long.MIN_VALUE) && (idFunction.applyAsLong(e) <= cursor))
+               continue;
+            if ((filter == null) || filter.test(e))
+               elements.add(e);
+         }
+         return new Page<T>(elements, null);
+      }
+
+      Comparator<T> order = Comparator.comparingLong(idFunction);
+      PriorityQueue<T> candidates = new PriorityQueue<T>(limit + 2, order.reversed());
+      for(T e : source)
+      {
+         long id = idFunction.applyAsLong(e);
+         if (id <= cursor)
+            continue;
+         if ((candidates.size() > limit) && (id >= idFunction.applyAsLong(candidates.peek())))
+            continue;
+         if ((filter != null) && !filter.test(e))
+            continue;
+         candidates.add(e);
+         if (candidates.size() > limit + 1)
+            candidates.poll();
+      }
+
+      List<T> elements = new ArrayList<T>(candidates);
+      Collections.sort(elements, order);
+      Long nextCursor = null;
+      if (elements.size() > limit)
+      {
+         elements = elements.subList(0, limit);
+         nextCursor = idFunction.applyAsLong(elements.get(limit - 1));
+      }
+      return new Page<T>(elements, nextCursor);
+   }
+
+   /**
+    * Get page elements.
+    *
+    * @return page elements
+    */
+   public List<T> getElements()
+   {
+      return elements;
+   }
+
+   /**
+    * Get cursor for next page.
+    *
+    * @return cursor for next page or null if this is last page
+    */
+   public Long getNextCursor()
+   {
+      return nextCursor;
+   }
+}
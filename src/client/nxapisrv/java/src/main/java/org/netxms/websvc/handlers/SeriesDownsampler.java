@@ -0,0 +1,283 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.handlers;
+
+import java.util.Arrays;
+import org.netxms.client.datacollection.DciData;
+
+/**
+ * Reduces time series to number of points that can be meaningfully displayed by dashboard panel. Time range is split into
+ * buckets of equal width, and each non-empty bucket is reduced to single point (minimum, maximum, or average value), or
+ * points are selected with Largest-Triangle-Three-Buckets algorithm, which keeps visual shape of the series.
+ */
+final class SeriesDownsampler
+{
+   /**
+    * Aggregation method
+    */
+   enum Aggregation
+   {
+      AVG, MIN, MAX, LTTB;
+
+      /**
+       * Get aggregation method by name (case-insensitive).
+       *
+       * @param name method name
+       * @param defaultValue default method if name is null, empty, or unknown
+       * @return aggregation method
+       */
+      static Aggregation getByName(String name, Aggregation defaultValue)
+      {
+         if ((name == null) || name.isEmpty())
+            return defaultValue;
+         for(Aggregation a : values())
+         {
+            if (a.name().equalsIgnoreCase(name))
+               return a;
+         }
+         return defaultValue;
+      }
+   }
+
+   /**
+    * Private constructor to prevent instantiation
+    */
+   private SeriesDownsampler()
+   {
+   }
+
+   /**
+    * Convert collected data to series in ascending time order. Server returns data newest first.
+    *
+    * @param data collected data
+    * @return series in ascending time order
+    */
+   static Series fromData(DciData data)
+   {
+      int size = data.size();
+      long[] timestamps = new long[size];
+      double[] values = new double[size];
+      for(int i = 0, j = size - 1; j >= 0; i++, j--)
+      {
+         timestamps[i] = data.getTimestamp(j);
+         values[i] = data.getValueAsDouble(j);
+      }
+      return new Series(timestamps, values, size);
+   }
+
+   /**
+    * Downsample series. Resolution is defined by maximum number of points and minimal interval between points; either can be
+    * 0 if not set. If both are 0 or series already fits requested resolution, it is returned unchanged.
+    *
+    * @param series source series in ascending time order
+    * @param from start of time range in milliseconds
+    * @param to end of time range in milliseconds
+    * @param maxPoints maximum number of points (0 if not set)
+    * @param intervalMs minimal interval between points in milliseconds (0 if not set)
+    * @param aggregation aggregation method
+    * @return downsampled series
+    */
+   static Series downsample(Series series, long from, long to, int maxPoints, long intervalMs, Aggregation aggregation)
+   {
+      long range = Math.max(to - from, 1);
+      long width = Math.max(intervalMs, (maxPoints > 0) ? (range + maxPoints - 1) / maxPoints : 0);
+      if (width <= 0)
+         return series;
+
+      int threshold = (int)Math.min((range + width - 1) / width, Integer.MAX_VALUE);
+      if (series.size() <= threshold)
+         return series;
+
+      if (aggregation == Aggregation.LTTB)
+         return largestTriangleThreeBuckets(series, threshold);
+      return aggregate(series, from, width, aggregation);
+   }
+
+   /**
+    * Aggregate values in fixed-width buckets aligned to start of time range. Each non-empty bucket produces one point with
+    * bucket start time as timestamp.
+    *
+    * @param series source series
+    * @param from start of time range
+    * @param width bucket width in milliseconds
+    * @param aggregation aggregation method (AVG, MIN, or MAX)
+    * @return aggregated series
+    */
+   private static Series aggregate(Series series, long from, long width, Aggregation aggregation)
+   {
+      long[] timestamps = new long[Math.min(series.size(), 1024)];
+      double[] values = new double[timestamps.length];
+      int count = 0;
+
+      int i = 0;
+      while(i < series.size())
+      {
+         long bucket = Math.floorDiv(series.timestamps[i] - from, width);
+         double result = series.values[i];
+         int samples = 1;
+         for(i++; (i < series.size()) && (Math.floorDiv(series.timestamps[i] - from, width) == bucket); i++)
+         {
+            double v = series.values[i];
+            switch(aggregation)
+            {
+               case MIN:
+                  if (v < result)
+                     result = v;
+                  break;
+               case MAX:
+                  if (v > result)
+                     result = v;
+                  break;
+               default:
+                  result += v;
+                  break;
+            }
+            samples++;
+         }
+
+         if (count == timestamps.length)
+         {
+            timestamps = Arrays.copyOf(timestamps, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+         }
+         timestamps[count] = from + bucket * width;
+         values[count] = (aggregation == Aggregation.AVG) ? result / samples : result;
+         count++;
+      }
+      return new Series(timestamps, values, count);
+   }
+
+   /**
+    * Select points using Largest-Triangle-Three-Buckets algorithm. First and last points are always kept; from each
+    * intermediate bucket the point forming largest triangle with previously selected point and average of next bucket is
+    * selected.
+    *
+    * @param series source series
+    * @param threshold number of points to select (values below 3 are treated as 3)
+    * @return downsampled series
+    */
+   private static Series largestTriangleThreeBuckets(Series series, int threshold)
+   {
+      int size = series.size();
+      threshold = Math.max(threshold, 3);
+      if (size <= threshold)
+         return series;
+
+      long[] timestamps = new long[threshold];
+      double[] values = new double[threshold];
+      timestamps[0] = series.timestamps[0];
+      values[0] = series.values[0];
+      int count = 1;
+
+      double bucketSize = (double)(size - 2) / (threshold - 2);
+      int selected = 0;
+      for(int b = 0; b < threshold - 2; b++)
+      {
+         // Average of next bucket (last point for last bucket)
+         int nextStart = (int)((b + 1) * bucketSize) + 1;
+         int nextEnd = Math.min((int)((b + 2) * bucketSize) + 1, size);
+         if (nextStart >= nextEnd)
+            nextStart = nextEnd - 1;
+         double avgX = 0, avgY = 0;
+         for(int i = nextStart; i < nextEnd; i++)
+         {
+            avgX += series.timestamps[i];
+            avgY += series.values[i];
+         }
+         avgX /= (nextEnd - nextStart);
+         avgY /= (nextEnd - nextStart);
+
+         int start = (int)(b * bucketSize) + 1;
+         int end = (int)((b + 1) * bucketSize) + 1;
+         double ax = series.timestamps[selected];
+         double ay = series.values[selected];
+         double maxArea = -1;
+         int maxIndex = start;
+         for(int i = start; i < end; i++)
+         {
+            double area = Math.abs((ax - avgX) * (series.values[i] - ay) - (ax - series.timestamps[i]) * (avgY - ay));
+            if (area > maxArea)
+            {
+               maxArea = area;
+               maxIndex = i;
+            }
+         }
+
+         timestamps[count] = series.timestamps[maxIndex];
+         values[count] = series.values[maxIndex];
+         count++;
+         selected = maxIndex;
+      }
+
+      timestamps[count] = series.timestamps[size - 1];
+      values[count] = series.values[size - 1];
+      count++;
+      return new Series(timestamps, values, count);
+   }
+
+   /**
+    * Immutable time series in ascending time order
+    */
+   static final class Series
+   {
+      private final long[] timestamps;
+      private final double[] values;
+      private final int size;
+
+      /**
+       * Create series.
+       *
+       * @param timestamps timestamps in milliseconds
+       * @param values values
+       * @param size number of valid elements in arrays
+       */
+      Series(long[] timestamps, double[] values, int size)
+      {
+         this.timestamps = timestamps;
+         this.values = values;
+         this.size = size;
+      }
+
+      /**
+       * @return number of points
+       */
+      int size()
+      {
+         return size;
+      }
+
+      /**
+       * @param index point index
+       * @return timestamp of given point in milliseconds
+       */
+      long getTimestamp(int index)
+      {
+         return timestamps[index];
+      }
+
+      /**
+       * @param index point index
+       * @return value of given point
+       */
+      double getValue(int index)
+      {
+         return values[index];
+      }
+   }
+}
@@ -133,7 +133,6 @@ protected Object delete(String id) throws Exception
       if (getSessionToken().getSessionHandle().toString().equals(id) || "self".equals(id))
       {
          log.info("Logout request for session " + id);
-         getSession().disconnect();
          SessionStore.getInstance(getServletContext()).unregisterSession(getSessionToken().getSessionHandle());
          return new JSONObject();
       }
@@ -156,7 +155,7 @@ public void notificationHandler(SessionNotification n)
             token.addNotificationToQueue(n);
          }
       };
-      token.getSession().addListener(listener);
+      token.addSessionListener(listener);
       token.getSession().subscribe(NXCSession.CHANNEL_ALARMS);
    }
 }
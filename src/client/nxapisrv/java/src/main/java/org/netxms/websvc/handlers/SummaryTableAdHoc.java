@@ -25,13 +25,13 @@
 import org.json.JSONObject;
 import org.netxms.client.NXCSession;
 import org.netxms.client.Table;
-import org.netxms.client.TableRow;
 import org.netxms.client.constants.AggregationFunction;
 import org.netxms.client.constants.RCC;
 import org.netxms.client.datacollection.DciSummaryTableColumn;
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.websvc.json.JsonTools;
 import org.netxms.websvc.json.ResponseContainer;
+import org.netxms.websvc.json.TableResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -96,23 +96,6 @@ protected Object create(JSONObject data) throws Exception
       
       Table table = session.queryAdHocDciSummaryTable(baseObjectId, columns, agrFunc, startDate, endDate, multiInstance);
       
-      JSONObject root = new JSONObject();
-      JSONArray resultColumns = new JSONArray();
-      JSONArray resultRows = new JSONArray();
-      String names[] = table.getColumnDisplayNames();
-      for(int i = 0; i < names.length; i++)
-         resultColumns.put(names[i]);
-      root.put("columns", resultColumns);
-
-      TableRow rows[] = table.getAllRows();
-      for(int i = 0; i < rows.length; i++)
-      {
-         JSONArray row = new JSONArray();
-         for(int j = 0; j < rows[i].size(); j++)
-            row.put(rows[i].get(j).getValue());
-         resultRows.put(row);
-      }
-      root.put("rows", resultRows);
-      return new ResponseContainer("table", root);
+      return new ResponseContainer("table", new TableResponse(table));
    }
 }
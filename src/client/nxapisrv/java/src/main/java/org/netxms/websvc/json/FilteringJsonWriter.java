@@ -0,0 +1,221 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * JSON writer that drops object members with names not in given field set. Applies same rules as {@link JsonFilter}
+ * (filter is applied to members of objects at any nesting level), but works while JSON is being written, so serialized
+ * object tree does not have to be built and copied.
+ */
+public class FilteringJsonWriter extends JsonWriter
+{
+   private final Set<String> fields;
+   private boolean skipping = false;
+   private int skipDepth = 0;
+
+   /**
+    * Create new filtering writer.
+    *
+    * @param out underlying writer
+    * @param fields set of member names to include
+    */
+   public FilteringJsonWriter(Writer out, Set<String> fields)
+   {
+      super(out);
+      this.fields = fields;
+   }
+
+   /**
+    * Consume primitive value if it belongs to skipped member.
+    *
+    * @return true if value should be skipped
+    */
+   private boolean skipValue()
+   {
+      if (!skipping)
+         return false;
+      if (skipDepth == 0)
+         skipping = false;
+      return true;
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#name(java.lang.String)
+    */
+   @Override
+   public JsonWriter name(String name) throws IOException
+   {
+      if (skipping)
+         return this;
+      if (!fields.contains(name))
+      {
+         skipping = true;
+         skipDepth = 0;
+         return this;
+      }
+      return super.name(name);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#beginObject()
+    */
+   @Override
+   public JsonWriter beginObject() throws IOException
+   {
+      if (skipping)
+      {
+         skipDepth++;
+         return this;
+      }
+      return super.beginObject();
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#endObject()
+    */
+   @Override
+   public JsonWriter endObject() throws IOException
+   {
+      if (skipping)
+      {
+         if (--skipDepth == 0)
+            skipping = false;
+         return this;
+      }
+      return super.endObject();
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#beginArray()
+    */
+   @Override
+   public JsonWriter beginArray() throws IOException
+   {
+      if (skipping)
+      {
+         skipDepth++;
+         return this;
+      }
+      return super.beginArray();
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#endArray()
+    */
+   @Override
+   public JsonWriter endArray() throws IOException
+   {
+      if (skipping)
+      {
+         if (--skipDepth == 0)
+            skipping = false;
+         return this;
+      }
+      return super.endArray();
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(java.lang.String)
+    */
+   @Override
+   public JsonWriter value(String value) throws IOException
+   {
+      return skipValue() ? this : super.value(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#jsonValue(java.lang.String)
+    */
+   @Override
+   public JsonWriter jsonValue(String value) throws IOException
+   {
+      return skipValue() ? this : super.jsonValue(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#nullValue()
+    */
+   @Override
+   public JsonWriter nullValue() throws IOException
+   {
+      return skipValue() ? this : super.nullValue();
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(boolean)
+    */
+   @Override
+   public JsonWriter value(boolean value) throws IOException
+   {
+      return skipValue() ? this : super.value(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(java.lang.Boolean)
+    */
+   @Override
+   public JsonWriter value(Boolean value) throws IOException
+   {
+      return skipValue() ? this : super.value(value);
+   }
+
+   /**
+    * Write float value. Declared without override annotation because not all GSON versions have this method in base class.
+    *
+    * @param value value to write
+    * @return this writer
+    * @throws IOException if write fails
+    */
+   public JsonWriter value(float value) throws IOException
+   {
+      return skipValue() ? this : super.value((double)value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(double)
+    */
+   @Override
+   public JsonWriter value(double value) throws IOException
+   {
+      return skipValue() ? this : super.value(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(long)
+    */
+   @Override
+   public JsonWriter value(long value) throws IOException
+   {
+      return skipValue() ? this : super.value(value);
+   }
+
+   /**
+    * @see com.google.gson.stream.JsonWriter#value(java.lang.Number)
+    */
+   @Override
+   public JsonWriter value(Number value) throws IOException
+   {
+      return skipValue() ? this : super.value(value);
+   }
+}
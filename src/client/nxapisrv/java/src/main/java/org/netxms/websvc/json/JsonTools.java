@@ -18,10 +18,14 @@
  */
 package org.netxms.websvc.json;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.net.InetAddress;
 import java.util.Date;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -30,11 +34,13 @@
 import org.netxms.base.annotations.Internal;
 import org.netxms.client.NXCSession;
 import org.netxms.client.datacollection.DataCollectionObject;
+import org.netxms.client.datacollection.DciData;
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.websvc.json.adapters.AbstractObjectSerializer;
 import org.netxms.websvc.json.adapters.DataCollectionObjectDeserializer;
 import org.netxms.websvc.json.adapters.DataCollectionObjectSerializer;
 import org.netxms.websvc.json.adapters.DateAdapter;
+import org.netxms.websvc.json.adapters.DciDataAdapter;
 import org.netxms.websvc.json.adapters.InetAddressAdapter;
 import org.netxms.websvc.json.adapters.InetAddressExAdapter;
 import org.netxms.websvc.json.adapters.MacAddressAdapter;
@@ -43,32 +49,50 @@
 import com.google.gson.FieldAttributes;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Collection of JSON tools
  */
 public class JsonTools
 {
+   private static final Gson gsonInstance = buildGsonInstance(null);
+   private static final ConcurrentHashMap<Class<?>, Gson> gsonInstancesWithExclusion = new ConcurrentHashMap<Class<?>, Gson>();
+
    /**
-    * Create correctly configured GSON instance.
+    * Get correctly configured GSON instance. GSON instances are thread safe, so single shared instance is returned.
     *
     * @return GSON instance
     */
    public static Gson createGsonInstance()
    {
-      return createGsonInstance(null);
+      return gsonInstance;
    }
 
    /**
-    * Create correctly configured GSON instance with specific type adapter excluded.
+    * Get correctly configured GSON instance with specific type adapter excluded. Instances are created once for each excluded
+    * adapter class and shared.
     *
     * @param adapterExclusion adapter class to be excluded
     * @return GSON instance
     */
    public static Gson createGsonInstance(Class<?> adapterExclusion)
+   {
+      if (adapterExclusion == null)
+         return gsonInstance;
+      return gsonInstancesWithExclusion.computeIfAbsent(adapterExclusion, (c) -> buildGsonInstance(c));
+   }
+
+   /**
+    * Build new GSON instance with specific type adapter excluded.
+    *
+    * @param adapterExclusion adapter class to be excluded (null to include all adapters)
+    * @return new GSON instance
+    */
+   private static Gson buildGsonInstance(Class<?> adapterExclusion)
    {
       GsonBuilder builder = new GsonBuilder();
       builder.setPrettyPrinting();  // FIXME: remove for production
@@ -77,6 +101,7 @@ public static Gson createGsonInstance(Class<?> adapterExclusion)
       registerTypeAdapter(builder, InetAddressEx.class, new InetAddressExAdapter(), adapterExclusion);
       registerTypeAdapter(builder, MacAddress.class, new MacAddressAdapter(), adapterExclusion);
       registerTypeAdapter(builder, NXCSession.class, new NXCSessionAdapter(), adapterExclusion);
+      registerTypeAdapter(builder, DciData.class, new DciDataAdapter(), adapterExclusion);
       registerTypeHierarchyAdapter(builder, AbstractObject.class, new AbstractObjectSerializer(), adapterExclusion);
       registerTypeHierarchyAdapter(builder, DataCollectionObject.class, new DataCollectionObjectSerializer(), adapterExclusion);
       registerTypeHierarchyAdapter(builder, DataCollectionObject.class, new DataCollectionObjectDeserializer(), adapterExclusion);
@@ -130,28 +155,56 @@ private static GsonBuilder registerTypeHierarchyAdapter(GsonBuilder builder, Cla
     * Create JSON representation for given object
     *
     * @param object object to serialize
+    * @param fields set of fields to include (null to include all fields)
     * @return JSON code
     */
    public static String jsonFromObject(Object object, Set<String> fields)
+   {
+      StringWriter writer = new StringWriter();
+      try
+      {
+         writeJson(object, fields, writer);
+      }
+      catch(IOException e)
+      {
+         throw new JsonIOException(e); // should not happen with StringWriter
+      }
+      return writer.toString();
+   }
+
+   /**
+    * Write JSON representation of given object directly to given writer. Field filter is applied while writing, so
+    * complete JSON tree is never built in memory for objects serialized by GSON.
+    *
+    * @param object object to serialize
+    * @param fields set of fields to include (null to include all fields)
+    * @param writer output writer
+    * @throws IOException if write fails
+    */
+   public static void writeJson(Object object, Set<String> fields, Writer writer) throws IOException
    {
       if (object == null)
-         return "{ }"; 
+      {
+         writer.write("{ }");
+         return;
+      }
 
-      if ((object instanceof JsonObject) || 
-          (object instanceof JsonArray) ||
-          (object instanceof JSONObject) ||
-          (object instanceof JSONArray))
-         return JsonFilter.createFilter(object, fields).filter().toString();
+      if ((object instanceof JSONObject) || (object instanceof JSONArray))
+      {
+         writer.write(JsonFilter.createFilter(object, fields).filter().toString());
+         return;
+      }
 
       if (object instanceof ResponseContainer)
-         return ((ResponseContainer)object).toJson(fields);
-
-      Gson gson = createGsonInstance();
-      if ((fields != null) && !fields.isEmpty())
       {
-         return JsonFilter.createFilter(gson.toJsonTree(object), fields).filter().toString();
+         ((ResponseContainer)object).writeJson(writer, fields);
+         return;
       }
-      return gson.toJson(object);
+
+      JsonWriter jsonWriter = ((fields != null) && !fields.isEmpty()) ? new FilteringJsonWriter(writer, fields) : new JsonWriter(writer);
+      jsonWriter.setIndent("  ");
+      gsonInstance.toJson(object, object.getClass(), jsonWriter);
+      jsonWriter.flush();
    }
 
    /**
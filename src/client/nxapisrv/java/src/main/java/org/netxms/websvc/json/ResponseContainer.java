@@ -18,6 +18,8 @@
  */
 package org.netxms.websvc.json;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Set;
 
 /**
@@ -27,6 +29,7 @@
 {
    private String name;
    private Object value;
+   private Long nextCursor;
 
    /**
     * Create container.
@@ -35,9 +38,22 @@
     * @param value
     */
    public ResponseContainer(String name, Object value)
+   {
+      this(name, value, null);
+   }
+
+   /**
+    * Create container for single page of paged collection.
+    *
+    * @param name response name
+    * @param value response value
+    * @param nextCursor cursor for next page (null if there are no more pages)
+    */
+   public ResponseContainer(String name, Object value, Long nextCursor)
    {
       this.name = name;
       this.value = value;
+      this.nextCursor = nextCursor;
    }
 
    /**
@@ -55,6 +71,14 @@ public Object getValue()
    {
       return value;
    }
+
+   /**
+    * @return cursor for next page or null
+    */
+   public Long getNextCursor()
+   {
+      return nextCursor;
+   }
    
    /**
     * Create JSON code from container.
@@ -63,11 +87,32 @@ public Object getValue()
     */
    public String toJson(Set<String> fields)
    {
-      StringBuilder sb = new StringBuilder("{ \"");
-      sb.append(name);
-      sb.append("\":");
-      sb.append((value != null) ? JsonTools.jsonFromObject(value, fields) : "null");
-      sb.append(" }");
-      return sb.toString();
+      return JsonTools.jsonFromObject(this, fields);
+   }
+
+   /**
+    * Write JSON code for container to given writer. Value is serialized directly to the writer (collection elements are
+    * written one by one), so complete JSON document for large collections is never held in memory. Field filter is applied
+    * to value only.
+    *
+    * @param writer output writer
+    * @param fields set of fields to include (null to include all fields)
+    * @throws IOException if write fails
+    */
+   public void writeJson(Writer writer, Set<String> fields) throws IOException
+   {
+      writer.write("{ \"");
+      writer.write(name);
+      writer.write("\":");
+      if (value != null)
+         JsonTools.writeJson(value, fields, writer);
+      else
+         writer.write("null");
+      if (nextCursor != null)
+      {
+         writer.write(", \"nextCursor\":");
+         writer.write(nextCursor.toString());
+      }
+      writer.write(" }");
    }
 }
@@ -0,0 +1,105 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.json;
+
+import java.io.IOException;
+import org.netxms.client.Table;
+import org.netxms.client.TableRow;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Compact table representation for API responses: list of column display names and rows as arrays of cell values. Cells
+ * are written directly from source table while response is serialized.
+ */
+@JsonAdapter(TableResponse.Adapter.class)
+public class TableResponse
+{
+   private final Table table;
+
+   /**
+    * Create table response.
+    *
+    * @param table source table
+    */
+   public TableResponse(Table table)
+   {
+      this.table = table;
+   }
+
+   /**
+    * Get source table.
+    *
+    * @return source table
+    */
+   public Table getTable()
+   {
+      return table;
+   }
+
+   /**
+    * Type adapter for table response
+    */
+   public static class Adapter extends TypeAdapter<TableResponse>
+   {
+      /**
+       * @see com.google.gson.TypeAdapter#write(com.google.gson.stream.JsonWriter, java.lang.Object)
+       */
+      @Override
+      public void write(JsonWriter writer, TableResponse value) throws IOException
+      {
+         if (value == null)
+         {
+            writer.nullValue();
+            return;
+         }
+
+         Table table = value.getTable();
+         writer.beginObject();
+         writer.name("columns");
+         writer.beginArray();
+         for(String name : table.getColumnDisplayNames())
+            writer.value(name);
+         writer.endArray();
+         writer.name("rows");
+         writer.beginArray();
+         for(TableRow row : table.getAllRows())
+         {
+            writer.beginArray();
+            for(int j = 0; j < row.size(); j++)
+               writer.value(row.get(j).getValue());
+            writer.endArray();
+         }
+         writer.endArray();
+         writer.endObject();
+      }
+
+      /**
+       * @see com.google.gson.TypeAdapter#read(com.google.gson.stream.JsonReader)
+       */
+      @Override
+      public TableResponse read(JsonReader reader) throws IOException
+      {
+         // Table responses are never received from clients
+         return null;
+      }
+   }
+}
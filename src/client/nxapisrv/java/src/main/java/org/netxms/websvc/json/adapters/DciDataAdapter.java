@@ -0,0 +1,102 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Raden Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.websvc.json.adapters;
+
+import java.io.IOException;
+import org.netxms.client.datacollection.DciData;
+import org.netxms.websvc.json.JsonTools;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Type adapter for DciData class. Writes values directly from columnar storage, without creating intermediate row objects.
+ * Output format is the same as for row-based representation: node ID, DCI ID, data type and array of values, each with
+ * timestamp (in seconds), value and optional raw value.
+ */
+public class DciDataAdapter extends TypeAdapter<DciData>
+{
+   /**
+    * @see com.google.gson.TypeAdapter#write(com.google.gson.stream.JsonWriter, java.lang.Object)
+    */
+   @Override
+   public void write(JsonWriter writer, DciData data) throws IOException
+   {
+      if (data == null)
+      {
+         writer.nullValue();
+         return;
+      }
+
+      writer.beginObject();
+      writer.name("nodeId").value(data.getNodeId());
+      writer.name("dciId").value(data.getDciId());
+      if (data.getDataType() != null)
+         writer.name("dataType").value(data.getDataType().name());
+      writer.name("values");
+      writer.beginArray();
+      boolean hasRawValues = data.hasRawValues();
+      for(int i = 0; i < data.size(); i++)
+      {
+         writer.beginObject();
+         writer.name("timestamp").value(data.getTimestamp(i) / 1000);
+         writer.name("value");
+         writeValue(writer, data.getValue(i));
+         if (hasRawValues)
+         {
+            String rawValue = data.getRawValue(i);
+            if (rawValue != null)
+               writer.name("rawValue").value(rawValue);
+         }
+         writer.endObject();
+      }
+      writer.endArray();
+      writer.endObject();
+   }
+
+   /**
+    * Write single value.
+    *
+    * @param writer JSON writer
+    * @param value value to write
+    * @throws IOException if write fails
+    */
+   @SuppressWarnings({ "rawtypes", "unchecked" })
+   private static void writeValue(JsonWriter writer, Object value) throws IOException
+   {
+      if (value == null)
+         writer.nullValue();
+      else if (value instanceof Number)
+         writer.value((Number)value);
+      else if (value instanceof String)
+         writer.value((String)value);
+      else
+         ((TypeAdapter)JsonTools.createGsonInstance().getAdapter(value.getClass())).write(writer, value);
+   }
+
+   /**
+    * @see com.google.gson.TypeAdapter#read(com.google.gson.stream.JsonReader)
+    */
+   @Override
+   public DciData read(JsonReader reader) throws IOException
+   {
+      // DciData is never received from clients
+      return null;
+   }
+}
@@ -26,7 +26,6 @@
 import org.eclipse.jface.action.IMenuListener;
 import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.MenuManager;
-import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.window.Window;
 import org.eclipse.swt.SWT;
@@ -84,6 +83,7 @@
 import org.netxms.nxmc.modules.alarms.widgets.AlarmCommentsEditor;
 import org.netxms.nxmc.modules.charts.api.ChartType;
 import org.netxms.nxmc.modules.charts.widgets.Chart;
+import org.netxms.nxmc.modules.datacollection.views.helpers.HistoricalDataContentProvider;
 import org.netxms.nxmc.modules.datacollection.views.helpers.HistoricalDataLabelProvider;
 import org.netxms.nxmc.modules.objects.views.AdHocObjectView;
 import org.netxms.nxmc.modules.objects.widgets.helpers.BaseObjectLabelProvider;
@@ -654,8 +654,8 @@ public void widgetDisposed(DisposeEvent e)
          tc = new TableColumn(dataViewer.getTable(), SWT.LEFT);
          tc.setText("Value");
 
-         dataViewer.setContentProvider(new ArrayContentProvider());
-         dataViewer.setLabelProvider(new HistoricalDataLabelProvider());
+         dataViewer.setContentProvider(new HistoricalDataContentProvider());
+         dataViewer.setLabelProvider(new HistoricalDataLabelProvider(dataViewer));
 
          dataViewControl = dataViewer.getControl();
       }
@@ -865,7 +865,7 @@ public void run()
                   {
                      if (!dataViewControl.isDisposed())
                      {
-                        dataViewer.setInput(data.getValues());
+                        dataViewer.setInput(data);
                         for(TableColumn tc : dataViewer.getTable().getColumns())
                         {
                            tc.pack();
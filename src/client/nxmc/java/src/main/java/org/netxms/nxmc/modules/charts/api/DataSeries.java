@@ -3,8 +3,6 @@
  */
 package org.netxms.nxmc.modules.charts.api;
 
-import java.util.Arrays;
-import java.util.Date;
 import org.netxms.client.constants.DataType;
 import org.netxms.client.constants.Severity;
 import org.netxms.client.datacollection.DciData;
@@ -17,7 +15,7 @@
 public class DataSeries
 {
    private DataType dataType;
-   private DciDataRow[] values;
+   private DciData data;
    private Severity currentThresholdSeverity;
 
    /**
@@ -26,17 +24,19 @@
    public DataSeries()
    {
       dataType = DataType.FLOAT;
-      values = new DciDataRow[0];
+      data = new DciData(0, 0);
       currentThresholdSeverity = Severity.NORMAL;
    }
 
    /**
-    * 
+    * Create data series backed by given data set (data set is not copied).
+    *
+    * @param data DCI data
     */
    public DataSeries(DciData data)
    {
       dataType = data.getDataType();
-      values = data.getValues();
+      this.data = data;
       currentThresholdSeverity = Severity.NORMAL;
    }
 
@@ -53,16 +53,17 @@ public DataSeries(DciDataRow value, DataType dataType)
    public DataSeries(DciDataRow value, DataType dataType, Severity currentThresholdSeverity)
    {
       this.dataType = dataType;
-      values = new DciDataRow[1];
-      values[0] = value;
+      data = new DciData(0, 0);
+      data.addValue(value.getTimestamp().getTime(), value.getValue());
+      data.setLastRawValue(value.getRawValue());
       this.currentThresholdSeverity = currentThresholdSeverity;
    }
 
    public DataSeries(double value)
    {
       dataType = DataType.FLOAT;
-      values = new DciDataRow[1];
-      values[0] = new DciDataRow(new Date(), Double.valueOf(value));
+      data = new DciData(0, 0);
+      data.addValue(System.currentTimeMillis(), value);
       currentThresholdSeverity = Severity.NORMAL;
    }
 
@@ -81,7 +82,7 @@ public DataType getDataType()
     */
    public double getCurrentValue()
    {
-      return (values.length > 0) ? values[0].getValueAsDouble() : 0;
+      return (data.size() > 0) ? data.getValueAsDouble(0) : 0;
    }
 
    /**
@@ -91,17 +92,49 @@ public double getCurrentValue()
     */
    public String getCurrentValueAsString()
    {
-      return (values.length > 0) ? values[0].getValueAsString() : "";
+      return (data.size() > 0) ? data.getValueAsString(0) : "";
    }
 
    /**
-    * Get all values
+    * Get number of values in series.
     *
-    * @return all values
+    * @return number of values in series
     */
-   public DciDataRow[] getValues()
+   public int size()
    {
-      return values;
+      return data.size();
+   }
+
+   /**
+    * Get timestamp of value at given position.
+    *
+    * @param index value index
+    * @return timestamp in milliseconds since epoch
+    */
+   public long getTimestamp(int index)
+   {
+      return data.getTimestamp(index);
+   }
+
+   /**
+    * Get value at given position as double.
+    *
+    * @param index value index
+    * @return value as double
+    */
+   public double getValueAsDouble(int index)
+   {
+      return data.getValueAsDouble(index);
+   }
+
+   /**
+    * Get all values as doubles.
+    *
+    * @return array of values
+    */
+   public double[] getValuesAsDouble()
+   {
+      return data.getValuesAsDouble();
    }
 
    /**
@@ -111,12 +144,12 @@ public DciDataRow[] getValues()
     */
    public double getMinValue()
    {
-      if (values.length == 0)
+      if (data.size() == 0)
          return 0;
-      double minValue = values[0].getValueAsDouble();
-      for(int i = 1; i < values.length; i++)
+      double minValue = data.getValueAsDouble(0);
+      for(int i = 1; i < data.size(); i++)
       {
-         double curr = values[i].getValueAsDouble();
+         double curr = data.getValueAsDouble(i);
          if (curr < minValue)
             minValue = curr;
       }
@@ -130,12 +163,12 @@ public double getMinValue()
     */
    public double getMaxValue()
    {
-      if (values.length == 0)
+      if (data.size() == 0)
          return 0;
-      double maxValue = values[0].getValueAsDouble();
-      for(int i = 1; i < values.length; i++)
+      double maxValue = data.getValueAsDouble(0);
+      for(int i = 1; i < data.size(); i++)
       {
-         double curr = values[i].getValueAsDouble();
+         double curr = data.getValueAsDouble(i);
          if (curr > maxValue)
             maxValue = curr;
       }
@@ -149,14 +182,12 @@ public double getMaxValue()
     */
    public double getAverageValue()
    {
-      if (values.length == 0)
+      if (data.size() == 0)
          return 0;
-      double sum = values[0].getValueAsDouble();
-      for(int i = 1; i < values.length; i++)
-      {
-         sum += values[i].getValueAsDouble();
-      }
-      return sum / values.length;
+      double sum = 0;
+      for(int i = 0; i < data.size(); i++)
+         sum += data.getValueAsDouble(i);
+      return sum / data.size();
    }
 
    /**
@@ -185,6 +216,6 @@ public void setActiveThresholdSeverity(Severity severity)
    @Override
    public String toString()
    {
-      return "DataSeries [dataType=" + dataType + ", values=" + Arrays.toString(values) + ", currentThresholdSeverity=" + currentThresholdSeverity + "]";
+      return "DataSeries [dataType=" + dataType + ", size=" + data.size() + ", currentThresholdSeverity=" + currentThresholdSeverity + "]";
    }
 }
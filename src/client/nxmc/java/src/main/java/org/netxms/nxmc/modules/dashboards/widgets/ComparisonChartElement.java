@@ -27,7 +27,6 @@
 import java.util.regex.PatternSyntaxException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.netxms.client.NXCSession;
-import org.netxms.client.constants.HistoricalDataType;
 import org.netxms.client.dashboards.DashboardElement;
 import org.netxms.client.datacollection.ChartDciConfig;
 import org.netxms.client.datacollection.DataCollectionObject;
@@ -39,11 +38,14 @@
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.nxmc.Registry;
 import org.netxms.nxmc.base.jobs.Job;
+import org.netxms.nxmc.base.widgets.MessageArea;
 import org.netxms.nxmc.localization.LocalizationHelper;
 import org.netxms.nxmc.modules.charts.widgets.Chart;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.DataListener;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.Request;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.Subscription;
 import org.netxms.nxmc.modules.dashboards.widgets.helpers.UnmappedDciException;
-import org.netxms.nxmc.tools.ViewRefreshController;
 import org.xnap.commons.i18n.I18n;
 
 /**
@@ -59,8 +61,7 @@ public abstract class ComparisonChartElement extends ElementWidget
 	protected boolean updateThresholds = false;
    protected List<ChartDciConfig> runtimeDciList = new ArrayList<>();
 
-	private ViewRefreshController refreshController;
-	private boolean updateInProgress = false;
+	private Subscription subscription;
 
    /**
     * @param parent parent composite
@@ -73,8 +74,8 @@ public ComparisonChartElement(DashboardControl parent, DashboardElement element,
       session = Registry.getSession();
 
       addDisposeListener((e) -> {
-         if (refreshController != null)
-            refreshController.dispose();
+         if (subscription != null)
+            subscription.cancel();
       });
    }
 
@@ -178,92 +179,51 @@ protected String getErrorMessage()
 	 */
 	protected void startRefreshTimer()
 	{
-      refreshController = new ViewRefreshController(view, refreshInterval, () -> {
-         if (ComparisonChartElement.this.isDisposed())
-            return;
-         refreshData();
-		});
-      refreshData();
-	}
-
-	/**
-	 * Refresh graph's data
-	 */
-   protected void refreshData()
-	{
-		if (updateInProgress)
-			return;
-
-		updateInProgress = true;
-
-      final long dashboardId = getDashboardObjectId();
-      Job job = new Job(i18n.tr("Reading DCI data for chart"), view, this) {
-			@Override
-         protected void run(IProgressMonitor monitor) throws Exception
-			{
-            final DciData[] data = new DciData[runtimeDciList.size()];
-            for(int i = 0; i < runtimeDciList.size(); i++)
-				{
-               ChartDciConfig dci = runtimeDciList.get(i);
-               if ((dci.nodeId == AbstractObject.UNKNOWN) || (dci.dciId <= 0))
-                  throw new UnmappedDciException();
-               if (dci.type == ChartDciConfig.ITEM)
-                  data[i] = session.getCollectedData(dci.nodeId, dci.dciId, null, null, 1, HistoricalDataType.PROCESSED, dashboardId);
-					else
-                  data[i] = session.getCollectedTableData(dci.nodeId, dci.dciId, dci.instance, dci.column, null, null, 1, dashboardId);
-				}
+      List<Request> requests = new ArrayList<Request>(runtimeDciList.size());
+      try
+      {
+         for(ChartDciConfig dci : runtimeDciList)
+            requests.add(Request.lastValue(dci));
+      }
+      catch(UnmappedDciException e)
+      {
+         addMessage(MessageArea.ERROR, i18n.tr("Cannot read DCI data") + ": " + e.getLocalizedMessage());
+         return;
+      }
+
+      subscription = getDataScheduler().subscribe(this, refreshInterval, requests, updateThresholds, new DataListener() {
+         @Override
+         public void onDataReceived(Date timestamp, DciData[] data, Threshold[][] thresholds)
+         {
+            if (chart.isDisposed())
+               return;
 
-            final Threshold[][] thresholds;
-            if (updateThresholds)
-            {
-               thresholds = new Threshold[runtimeDciList.size()][];
-               for(int i = 0; i < runtimeDciList.size(); i++)
-               {
-                  ChartDciConfig dci = runtimeDciList.get(i);
-                  if (dci.type == ChartDciConfig.ITEM)
-                     thresholds[i] = session.getThresholds(dci.nodeId, dci.dciId, dashboardId);
-                  else
-                     thresholds[i] = new Threshold[0];
-               }
-            }
-            else
+            for(int i = 0; i < data.length; i++)
             {
-               thresholds = null;
+               DciDataRow lastValue = data[i].getLastValue();
+               chart.updateParameter(i, (lastValue != null) ? lastValue : new DciDataRow(new Date(), 0.0), data[i].getDataType(), false);
+               if (thresholds != null)
+                  chart.updateParameterThresholds(i, thresholds[i]);
             }
-
-            runInUIThread(() -> {
-               updateInProgress = false;
-               if (chart.isDisposed())
-                  return;
-
-               for(int i = 0; i < data.length; i++)
-					{
-                  DciDataRow lastValue = data[i].getLastValue();
-                  chart.updateParameter(i, (lastValue != null) ? lastValue : new DciDataRow(new Date(), 0.0), data[i].getDataType(), false);
-                  if (updateThresholds)
-                     chart.updateParameterThresholds(i, thresholds[i]);
-					}
-               chart.refresh();
-               clearMessages();
-				});
-			}
-
-			@Override
-			protected String getErrorMessage()
-			{
-            return i18n.tr("Cannot read DCI data");
-			}
+            chart.refresh();
+            clearMessages();
+         }
 
          @Override
-         protected void jobFailureHandler(Exception e)
+         public void onError(Exception e)
          {
-            runInUIThread(() -> {
-               updateInProgress = false;
-            });
+            addMessage(MessageArea.ERROR, i18n.tr("Cannot read DCI data") + ": " + e.getLocalizedMessage());
          }
-		};
-		job.setUser(false);
-		job.start();
+      });
+	}
+
+	/**
+	 * Refresh graph's data. Data is read by dashboard's shared data scheduler together with data for other elements.
+	 */
+   protected void refreshData()
+	{
+      if (subscription != null)
+         subscription.refreshNow();
 	}
 
    /**
@@ -48,6 +48,7 @@
 import org.netxms.nxmc.modules.dashboards.config.DashboardElementLayout;
 import org.netxms.nxmc.modules.dashboards.dialogs.EditElementXmlDlg;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler;
 import org.netxms.nxmc.resources.ThemeEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -86,6 +87,7 @@ public class DashboardControl extends Composite
    private boolean narrowScreenMode = false;
 	private DashboardModifyListener modifyListener = null;
    private AbstractDashboardView view;
+   private DashboardDataScheduler dataScheduler = null;
 
    /**
     * Create new dashboard control.
@@ -135,6 +137,11 @@ public DashboardControl(Composite parent, int style, DashboardControl originalCo
 	 */
 	private void createContent()
 	{
+      addDisposeListener((e) -> {
+         if (dataScheduler != null)
+            dataScheduler.dispose();
+      });
+
       setBackground(ThemeEngine.getBackgroundColor("Dashboard"));
 
       if (narrowScreenMode)
@@ -785,6 +792,18 @@ public boolean isNarrowScreenMode()
       return narrowScreenMode;
    }
 
+   /**
+    * Get shared data scheduler for this dashboard. Scheduler is created on first call.
+    *
+    * @return shared data scheduler
+    */
+   public DashboardDataScheduler getDataScheduler()
+   {
+      if (dataScheduler == null)
+         dataScheduler = new DashboardDataScheduler(view, getDisplay(), dashboard.getObjectId());
+      return dataScheduler;
+   }
+
    /**
     * Request dashboard layout. Can be called by dashboard element if it's size could have been changed.
     */
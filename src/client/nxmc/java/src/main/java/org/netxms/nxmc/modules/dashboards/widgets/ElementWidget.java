@@ -45,6 +45,7 @@
 import org.netxms.nxmc.modules.dashboards.config.DashboardElementConfig;
 import org.netxms.nxmc.modules.dashboards.config.DashboardElementLayout;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler;
 import org.netxms.nxmc.tools.ColorConverter;
 import org.netxms.nxmc.tools.FontTools;
 import org.slf4j.Logger;
@@ -424,6 +425,16 @@ protected long getDashboardObjectId()
       return dbc.getDashboardObject().getObjectId();
    }
 
+   /**
+    * Get shared data scheduler of owning dashboard.
+    *
+    * @return shared data scheduler
+    */
+   protected DashboardDataScheduler getDataScheduler()
+   {
+      return dbc.getDataScheduler();
+   }
+
    /**
     * Get context for owning dashboard.
     *
@@ -32,7 +32,6 @@
 import org.eclipse.jface.action.Separator;
 import org.eclipse.swt.SWT;
 import org.netxms.client.NXCSession;
-import org.netxms.client.constants.HistoricalDataType;
 import org.netxms.client.constants.TimeUnit;
 import org.netxms.client.dashboards.DashboardElement;
 import org.netxms.client.datacollection.ChartConfiguration;
@@ -46,16 +45,19 @@
 import org.netxms.nxmc.Registry;
 import org.netxms.nxmc.base.actions.RefreshAction;
 import org.netxms.nxmc.base.jobs.Job;
+import org.netxms.nxmc.base.widgets.MessageArea;
 import org.netxms.nxmc.localization.LocalizationHelper;
 import org.netxms.nxmc.modules.charts.api.ChartType;
 import org.netxms.nxmc.modules.charts.widgets.Chart;
 import org.netxms.nxmc.modules.dashboards.config.LineChartConfig;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.DataListener;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.Request;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.Subscription;
 import org.netxms.nxmc.modules.dashboards.widgets.helpers.UnmappedDciException;
 import org.netxms.nxmc.modules.datacollection.views.HistoricalGraphView;
 import org.netxms.nxmc.modules.datacollection.views.HistoricalGraphView.ChartActionType;
 import org.netxms.nxmc.modules.datacollection.views.HistoricalGraphView.HistoricalChartOwner;
-import org.netxms.nxmc.tools.ViewRefreshController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
@@ -70,8 +72,7 @@ public class LineChartElement extends ElementWidget implements HistoricalChartOw
 
    private Chart chart;
 	private LineChartConfig config;
-	private ViewRefreshController refreshController;
-	private boolean updateInProgress = false;
+	private Subscription subscription;
 	private NXCSession session;
    private List<ChartDciConfig> runtimeDciList = new ArrayList<>();
 	private List<DataCacheElement> dataCache = new ArrayList<DataCacheElement>(16);
@@ -124,8 +125,8 @@ public LineChartElement(DashboardControl parent, DashboardElement element, Abstr
       chart = new Chart(getContentArea(), SWT.NONE, ChartType.LINE, chartConfig);
 
       addDisposeListener((e) -> {
-         if (refreshController != null)
-            refreshController.dispose();
+         if (subscription != null)
+            subscription.cancel();
       });
 
 		if (config.isInteractive())
@@ -215,14 +216,7 @@ protected void run(IProgressMonitor monitor) throws Exception
 
                chart.rebuild();
                layout(true, true);
-               refreshData();
-
-               refreshController = new ViewRefreshController(view, config.getRefreshRate(), () -> {
-                  if (LineChartElement.this.isDisposed())
-                     return;
-
-                  refreshData();
-               });
+               subscribe();
             });
          }
 
@@ -259,6 +253,17 @@ public void onPresetSelected(TimeUnit unit, int range)
          {
             config.setTimeUnits(unit.getValue());
             config.setTimeRange(range);
+            if (subscription != null)
+            {
+               try
+               {
+                  subscription.setRequests(createDataRequests());
+               }
+               catch(UnmappedDciException e)
+               {
+                  // Should not happen - DCI list was already validated when subscription was created
+               }
+            }
             refreshData();
          }
       });
@@ -295,78 +300,70 @@ private void fillContextMenu(IMenuManager manager)
       manager.add(actionRefresh);
 	}
 
-	/**
-	 * Refresh graph's data
-	 */
-	private void refreshData()
-	{
-		if (updateInProgress)
-			return;
-
-		updateInProgress = true;
+   /**
+    * Create data requests for all configured DCIs.
+    *
+    * @return list of data requests
+    * @throws UnmappedDciException if any of configured DCIs is not mapped
+    */
+   private List<Request> createDataRequests() throws UnmappedDciException
+   {
+      List<Request> requests = new ArrayList<Request>(runtimeDciList.size());
+      for(ChartDciConfig dci : runtimeDciList)
+         requests.add(Request.history(dci, config.getTimeRangeMillis()));
+      return requests;
+   }
 
-      final long dashboardId = getDashboardObjectId();
-      Job job = new Job(i18n.tr("Reading DCI data for line chart"), view, this) {
-			private ChartDciConfig currentDci;
+   /**
+    * Subscribe for data updates from dashboard's shared data scheduler
+    */
+   private void subscribe()
+   {
+      List<Request> requests;
+      try
+      {
+         requests = createDataRequests();
+      }
+      catch(UnmappedDciException e)
+      {
+         addMessage(MessageArea.ERROR, i18n.tr("Dashboard misconfiguration") + ": " + e.getLocalizedMessage());
+         return;
+      }
+
+      subscription = getDataScheduler().subscribe(this, config.getRefreshRate(), requests, true, new DataListener() {
+         @Override
+         public void onDataReceived(Date timestamp, DciData[] data, Threshold[][] thresholds)
+         {
+            if (chart.isDisposed())
+               return;
 
-			@Override
-         protected void run(IProgressMonitor monitor) throws Exception
-			{
-				final Date from = new Date(System.currentTimeMillis() - config.getTimeRangeMillis());
-				final Date to = new Date(System.currentTimeMillis());
-            final DciData[] data = new DciData[runtimeDciList.size()];
-            final Threshold[][] thresholds = new Threshold[runtimeDciList.size()][];
-            for(int i = 0; i < runtimeDciList.size(); i++)
+            dataCache.clear();
+            chart.setTimeRange(new Date(timestamp.getTime() - config.getTimeRangeMillis()), timestamp);
+            for(int i = 0; i < data.length; i++)
             {
-               currentDci = runtimeDciList.get(i);
-               if ((currentDci.nodeId == AbstractObject.UNKNOWN) || (currentDci.dciId <= 0))
-                  throw new UnmappedDciException();
-               if (currentDci.type == ChartDciConfig.ITEM)
-               {
-                  data[i] = session.getCollectedData(currentDci.nodeId, currentDci.dciId, from, to, 0, HistoricalDataType.PROCESSED, dashboardId);
-                  thresholds[i] = session.getThresholds(currentDci.nodeId, currentDci.dciId,dashboardId);
-               }
-               else
-               {
-                  data[i] = session.getCollectedTableData(currentDci.nodeId, currentDci.dciId, currentDci.instance, currentDci.column, from, to, 0, dashboardId);
-                  thresholds[i] = null;
-               }
+               chart.updateParameter(i, data[i], false);
+               dataCache.add(new DataCacheElement(runtimeDciList.get(i), data[i]));
             }
-            runInUIThread(() -> {
-               if (!chart.isDisposed())
-               {
-                  dataCache.clear();
-                  chart.setTimeRange(from, to);
-                  for(int i = 0; i < data.length; i++)
-                  {
-                     chart.updateParameter(i, data[i], false);
-                     dataCache.add(new DataCacheElement(runtimeDciList.get(i), data[i]));
-                  }
-                  chart.setThresholds(thresholds);
-                  chart.refresh();
-                  clearMessages();
-               }
-               updateInProgress = false;
-            });
-			}
+            chart.setThresholds(thresholds);
+            chart.refresh();
+            clearMessages();
+         }
 
-			@Override
-			protected String getErrorMessage()
-			{
-            if ((currentDci.nodeId == AbstractObject.UNKNOWN) || (currentDci.dciId <= 0))
-               return i18n.tr("Dashboard misconfiguration");
-            return String.format(i18n.tr("Cannot get value for DCI %s:\"%s\""), session.getObjectName(currentDci.nodeId), currentDci.name);
-			}
+         @Override
+         public void onError(Exception e)
+         {
+            addMessage(MessageArea.ERROR, i18n.tr("Cannot read DCI data for line chart") + ": " + e.getLocalizedMessage());
+         }
+      });
+   }
 
-			@Override
-         protected void jobFailureHandler(Exception e)
-			{
-				updateInProgress = false;
-            super.jobFailureHandler(e);
-			}
-		};
-		job.setUser(false);
-		job.start();
+	/**
+	 * Refresh graph's data. Data is read by dashboard's shared data scheduler together with data for other elements.
+	 */
+	private void refreshData()
+	{
+      if (subscription != null)
+         subscription.refreshNow();
 	}
 
 	/**
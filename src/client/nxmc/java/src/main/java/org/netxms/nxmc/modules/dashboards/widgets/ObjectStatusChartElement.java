@@ -36,6 +36,7 @@
 import org.netxms.nxmc.modules.dashboards.config.ObjectStatusChartConfig;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
 import org.netxms.nxmc.resources.StatusDisplayInfo;
+import org.netxms.nxmc.tools.ViewRefreshController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +48,7 @@ public class ObjectStatusChartElement extends ComparisonChartElement
    private static final Logger logger = LoggerFactory.getLogger(ObjectStatusChartElement.class);
 
 	private ObjectStatusChartConfig elementConfig;
+   private ViewRefreshController refreshController;
 
 	/**
 	 * @param parent
@@ -56,6 +58,11 @@ public ObjectStatusChartElement(DashboardControl parent, DashboardElement elemen
 	{
       super(parent, element, view);
 
+      addDisposeListener((e) -> {
+         if (refreshController != null)
+            refreshController.dispose();
+      });
+
 		try
 		{
          elementConfig = XMLTools.createFromXml(ObjectStatusChartConfig.class, element.getData());
@@ -100,6 +107,23 @@ protected ChartDciConfig[] getDciList()
 		return null;
 	}
 
+   /**
+    * Object status chart is built from local object cache, so it is refreshed by own timer instead of dashboard's data
+    * scheduler.
+    *
+    * @see org.netxms.nxmc.modules.dashboards.widgets.ComparisonChartElement#startRefreshTimer()
+    */
+   @Override
+   protected void startRefreshTimer()
+   {
+      refreshController = new ViewRefreshController(view, refreshInterval, () -> {
+         if (ObjectStatusChartElement.this.isDisposed())
+            return;
+         refreshData();
+      });
+      refreshData();
+   }
+
    /**
     * @see org.netxms.nxmc.modules.dashboards.widgets.ComparisonChartElement#refreshData()
     */
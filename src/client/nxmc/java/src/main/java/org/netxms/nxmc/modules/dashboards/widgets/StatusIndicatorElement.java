@@ -19,6 +19,7 @@
 package org.netxms.nxmc.modules.dashboards.widgets;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -37,11 +38,11 @@
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
 import org.netxms.client.NXCSession;
+import org.netxms.client.Table;
 import org.netxms.client.constants.ObjectStatus;
 import org.netxms.client.dashboards.DashboardElement;
 import org.netxms.client.datacollection.DciValue;
 import org.netxms.client.datacollection.Threshold;
-import org.netxms.client.maps.configs.SingleDciConfig;
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.client.xml.XMLTools;
 import org.netxms.nxmc.Registry;
@@ -50,6 +51,9 @@
 import org.netxms.nxmc.modules.dashboards.config.StatusIndicatorConfig;
 import org.netxms.nxmc.modules.dashboards.config.StatusIndicatorConfig.StatusIndicatorElementConfig;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.LastValueListener;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.Request;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.Subscription;
 import org.netxms.nxmc.resources.StatusDisplayInfo;
 import org.netxms.nxmc.tools.ColorConverter;
 import org.netxms.nxmc.tools.ViewRefreshController;
@@ -72,6 +76,9 @@ public class StatusIndicatorElement extends ElementWidget
    private boolean requireScriptRun = false;
    private boolean requireDataCollection = false;
    private StatusIndicatorElementWidget[] elementWidgets;
+   private Subscription dciSubscription = null;
+   private Map<String, String> scriptData = null;
+   private DciValue[] dciValues = null;
 
 	private static final int ELEMENT_HEIGHT = 36;
 
@@ -167,6 +174,13 @@ public void run()
                   }
                }
             }
+            if (nodeDciList != null)
+            {
+               runInUIThread(() -> {
+                  if (!isDisposed())
+                     subscribeDciValues();
+               });
+            }
          }
 
          @Override
@@ -190,56 +204,31 @@ public void widgetDisposed(DisposeEvent e)
 	}
 
 	/**
-	 * Refresh element content
+	 * Refresh element content. DCI values are read by dashboard's shared data scheduler, so only script is executed here.
 	 */
    private void refreshData()
 	{
-      if (requireDataCollection || requireScriptRun)
+      if (requireScriptRun)
       {
          Job job = new Job(i18n.tr("Update status indicator"), view) {
             @Override
             protected void run(IProgressMonitor monitor) throws Exception
             {
-               final Map<String, String> scriptData;
-               if (requireScriptRun)
-               {
-                  long contextObjectId = config.getScriptContextObjectId();
-                  if (contextObjectId == 0)
-                     contextObjectId = getDashboardObjectId();
-                  else if (contextObjectId == AbstractObject.CONTEXT)
-                     contextObjectId = getContextObjectId();
-                  scriptData = session.queryScript(contextObjectId, config.getScript(), null, null);
-               }
-               else
-               {
-                  scriptData = null;
-               }
-
-               final DciValue[] dciValues;
-               if (requireDataCollection)
-               {
-                  List<SingleDciConfig> dciList = new ArrayList<>();
-                  for(int i = 0; i < config.getElements().length; i++)
-                  {
-                     StatusIndicatorElementConfig e = config.getElements()[i];
-                     if (((e.getType() == StatusIndicatorConfig.ELEMENT_TYPE_DCI) || (e.getType() == StatusIndicatorConfig.ELEMENT_TYPE_DCI_TEMPLATE)) && (e.getDciId() != 0))
-                     {
-                        dciList.add(new SingleDciConfig(e.getObjectId(), e.getDciId()));
-                     }
-                  }
-                  dciValues = !dciList.isEmpty() ? session.getLastValues(dciList) : null;
-               }
-               else
-               {
-                  dciValues = null;
-               }
-
+               long contextObjectId = config.getScriptContextObjectId();
+               if (contextObjectId == 0)
+                  contextObjectId = getDashboardObjectId();
+               else if (contextObjectId == AbstractObject.CONTEXT)
+                  contextObjectId = getContextObjectId();
+               final Map<String, String> data = session.queryScript(contextObjectId, config.getScript(), null, null);
                runInUIThread(new Runnable() {
                   @Override
                   public void run()
                   {
                      if (!isDisposed())
-                        updateElements(scriptData, dciValues);
+                     {
+                        scriptData = data;
+                        updateElements();
+                     }
                   }
                });
             }
@@ -255,17 +244,53 @@ protected String getErrorMessage()
       }
       else
       {
-         updateElements(null, null);
+         updateElements();
+      }
+   }
+
+   /**
+    * Subscribe for values of configured DCIs (or update existing subscription after DCI templates were resolved).
+    */
+   private void subscribeDciValues()
+   {
+      List<Request> requests = new ArrayList<Request>();
+      for(StatusIndicatorElementConfig e : config.getElements())
+      {
+         if (((e.getType() == StatusIndicatorConfig.ELEMENT_TYPE_DCI) || (e.getType() == StatusIndicatorConfig.ELEMENT_TYPE_DCI_TEMPLATE)) && (e.getDciId() != 0))
+            requests.add(Request.dciValue(e.getObjectId(), e.getDciId()));
+      }
+
+      if (dciSubscription != null)
+      {
+         dciSubscription.setRequests(requests);
+         dciSubscription.refreshNow();
+         return;
       }
+      if (requests.isEmpty())
+         return;
+
+      dciSubscription = getDataScheduler().subscribe(this, 15, requests, new LastValueListener() {
+         @Override
+         public void onDataReceived(Date timestamp, DciValue[] values, Table[] tables)
+         {
+            dciValues = values;
+            updateElements();
+         }
+
+         @Override
+         public void onError(Exception e)
+         {
+            logger.debug("Cannot read DCI values for status indicator", e);
+            dciValues = null;
+            updateElements();
+         }
+      });
    }
 
    /**
-    * Update elements
-    *
-    * @param scriptData data from script
-    * @param dciValues collected DCI values
+    * Update elements from last received script data and DCI values
     */
-   private void updateElements(Map<String, String> scriptData, DciValue[] dciValues)
+   private void updateElements()
    {
       for(StatusIndicatorElementWidget w : elementWidgets)
       {
@@ -277,7 +302,7 @@ private void updateElements(Map<String, String> scriptData, DciValue[] dciValues
                w.setStatus((object != null) ? object.getStatus() : ObjectStatus.UNKNOWN);
                break;
             case StatusIndicatorConfig.ELEMENT_TYPE_SCRIPT:
-               String value = scriptData.get(e.getTag());
+               String value = (scriptData != null) ? scriptData.get(e.getTag()) : null;
                if (value != null)
                {
                   try
@@ -301,7 +326,7 @@ private void updateElements(Map<String, String> scriptData, DciValue[] dciValues
                {
                   for(DciValue v : dciValues)
                   {
-                     if (v.getId() == e.getDciId())
+                     if ((v != null) && (v.getId() == e.getDciId()))
                      {
                         Threshold t = v.getActiveThreshold();
                         w.setStatus((t != null) ? ObjectStatus.getByValue(t.getCurrentSeverity().getValue()) : ObjectStatus.NORMAL);
@@ -335,6 +360,8 @@ public void run()
 			}
 		});
 		refreshData();
+      if (requireDataCollection)
+         subscribeDciValues();
 	}
 
    /**
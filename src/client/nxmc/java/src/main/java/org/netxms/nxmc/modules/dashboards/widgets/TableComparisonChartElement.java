@@ -18,10 +18,11 @@
  */
 package org.netxms.nxmc.modules.dashboards.widgets;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Widget;
@@ -32,13 +33,16 @@
 import org.netxms.client.dashboards.DashboardElement;
 import org.netxms.client.datacollection.ChartConfiguration;
 import org.netxms.client.datacollection.ChartDciConfig;
+import org.netxms.client.datacollection.DciValue;
 import org.netxms.nxmc.Registry;
-import org.netxms.nxmc.base.jobs.Job;
+import org.netxms.nxmc.base.widgets.MessageArea;
 import org.netxms.nxmc.localization.LocalizationHelper;
 import org.netxms.nxmc.modules.charts.widgets.Chart;
 import org.netxms.nxmc.modules.dashboards.config.TableComparisonChartConfig;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
-import org.netxms.nxmc.tools.ViewRefreshController;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.LastValueListener;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.Request;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.Subscription;
 import org.xnap.commons.i18n.I18n;
 
 /**
@@ -52,8 +56,7 @@ public abstract class TableComparisonChartElement extends ElementWidget
 	protected NXCSession session;
 	protected TableComparisonChartConfig config;
 	
-	private ViewRefreshController refreshController;
-	private boolean updateInProgress = false;
+   private Subscription subscription;
    private Map<String, Integer> instanceMap = new HashMap<String, Integer>(ChartConfiguration.MAX_GRAPH_ITEM_COUNT);
 	private boolean chartInitialized = false;
 
@@ -65,11 +68,6 @@ public TableComparisonChartElement(DashboardControl parent, DashboardElement ele
 	{
       super(parent, element, view);
       session = Registry.getSession();
-
-      addDisposeListener((e) -> {
-         if (refreshController != null)
-            refreshController.dispose();
-      });
 	}
 
 	/**
@@ -80,52 +78,33 @@ protected void startRefreshTimer()
 		if ((config == null) || (config.getDataColumn() == null))
 			return;	// Invalid configuration
 
-      refreshController = new ViewRefreshController(view, config.getRefreshRate(), () -> {
-         if (TableComparisonChartElement.this.isDisposed())
-            return;
+      subscription = getDataScheduler().subscribe(this, config.getRefreshRate(), Arrays.asList(Request.tableValue(config.getNodeId(), config.getDciId())),
+            new LastValueListener() {
+               @Override
+               public void onDataReceived(Date timestamp, DciValue[] values, Table[] tables)
+               {
+                  if (!((Widget)chart).isDisposed() && (tables[0] != null))
+                  {
+                     updateChart(tables[0]);
+                     clearMessages();
+                  }
+               }
 
-         refreshData();
-		});
-		refreshData();
+               @Override
+               public void onError(Exception e)
+               {
+                  addMessage(MessageArea.ERROR, i18n.tr("Cannot get DCI values for comparision chart") + ": " + e.getLocalizedMessage());
+               }
+            });
 	}
 
 	/**
-	 * Refresh graph's data
+	 * Refresh graph's data. Data is read by dashboard's shared data scheduler together with data for other elements.
 	 */
 	protected void refreshData()
 	{
-		if (updateInProgress)
-			return;
-		
-		updateInProgress = true;
-		
-      Job job = new Job(i18n.tr("Reading DCI values for table comparision chart"), view, this) {
-			@Override
-         protected void run(IProgressMonitor monitor) throws Exception
-			{
-				final Table data = session.getTableLastValues(config.getNodeId(), config.getDciId());
-            runInUIThread(() -> {
-               if (!((Widget)chart).isDisposed())
-                  updateChart(data);
-               updateInProgress = false;
-				});
-			}
-
-			@Override
-			protected String getErrorMessage()
-			{
-            return i18n.tr("Cannot get DCI values for comparision chart");
-			}
-	
-			@Override
-         protected void jobFailureHandler(Exception e)
-			{
-				updateInProgress = false;
-            super.jobFailureHandler(e);
-			}
-		};
-		job.setUser(false);
-		job.start();
+      if (subscription != null)
+         subscription.refreshNow();
 	}
 
 	/**
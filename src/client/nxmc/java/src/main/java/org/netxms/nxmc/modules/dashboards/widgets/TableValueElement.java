@@ -18,12 +18,13 @@
  */
 package org.netxms.nxmc.modules.dashboards.widgets;
 
+import java.util.Arrays;
+import java.util.Date;
 import java.util.regex.Pattern;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.events.DisposeEvent;
-import org.eclipse.swt.events.DisposeListener;
 import org.netxms.client.NXCSession;
+import org.netxms.client.Table;
 import org.netxms.client.dashboards.DashboardElement;
 import org.netxms.client.datacollection.DataCollectionObject;
 import org.netxms.client.datacollection.DciValue;
@@ -31,10 +32,13 @@
 import org.netxms.client.xml.XMLTools;
 import org.netxms.nxmc.Registry;
 import org.netxms.nxmc.base.jobs.Job;
+import org.netxms.nxmc.base.widgets.MessageArea;
 import org.netxms.nxmc.modules.dashboards.config.TableValueConfig;
 import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.LastValueListener;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.Request;
+import org.netxms.nxmc.modules.dashboards.widgets.helpers.DashboardDataScheduler.Subscription;
 import org.netxms.nxmc.modules.datacollection.widgets.TableValueViewer;
-import org.netxms.nxmc.tools.ViewRefreshController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +51,7 @@ public class TableValueElement extends ElementWidget
    
 	private TableValueConfig config;
 	private TableValueViewer viewer;
+   private Subscription subscription = null;
 
 	/**
 	 * @param parent
@@ -76,29 +81,41 @@ public TableValueElement(DashboardControl parent, DashboardElement element, Abst
       }
       else
       {
-         viewer.setObject(config.getObjectId(), config.getDciId());
-         viewer.refresh(null);
+         setObject(config.getObjectId(), config.getDciId());
       }
+	}
 
-      final ViewRefreshController refreshController = new ViewRefreshController(view, config.getRefreshRate(), new Runnable() {
-			@Override
-			public void run()
-			{
-				if (TableValueElement.this.isDisposed())
-					return;
+   /**
+    * Set table DCI to display and subscribe for its updates from dashboard's shared data scheduler.
+    *
+    * @param objectId node object ID
+    * @param dciId DCI ID
+    */
+   private void setObject(long objectId, long dciId)
+   {
+      viewer.setObject(objectId, dciId);
+      if (subscription != null)
+      {
+         subscription.setRequests(Arrays.asList(Request.tableValue(objectId, dciId)));
+         subscription.refreshNow();
+         return;
+      }
 
-				viewer.refresh(null);
-			}
-		});
+      subscription = getDataScheduler().subscribe(this, config.getRefreshRate(), Arrays.asList(Request.tableValue(objectId, dciId)), new LastValueListener() {
+         @Override
+         public void onDataReceived(Date timestamp, DciValue[] values, Table[] tables)
+         {
+            viewer.setData(tables[0]);
+            clearMessages();
+         }
 
-		addDisposeListener(new DisposeListener() {
          @Override
-         public void widgetDisposed(DisposeEvent e)
+         public void onError(Exception e)
          {
-            refreshController.dispose();
+            addMessage(MessageArea.ERROR, "Cannot read DCI data from server: " + e.getLocalizedMessage());
          }
       });
-	}
+   }
 
    /**
     * Configure context if element is context-aware
@@ -127,10 +144,7 @@ protected void run(IProgressMonitor monitor) throws Exception
                {
                   runInUIThread(() -> {
                      if (!viewer.isDisposed())
-                     {
-                        viewer.setObject(dciInfo.getNodeId(), dciInfo.getId());
-                        viewer.refresh(null);
-                     }
+                        setObject(dciInfo.getNodeId(), dciInfo.getId());
                   });
                   break;
                }
@@ -0,0 +1,883 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.nxmc.modules.dashboards.widgets.helpers;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.netxms.client.NXCSession;
+import org.netxms.client.Table;
+import org.netxms.client.constants.HistoricalDataType;
+import org.netxms.client.datacollection.ChartDciConfig;
+import org.netxms.client.datacollection.CollectedDataRequest;
+import org.netxms.client.datacollection.DciData;
+import org.netxms.client.datacollection.DciValue;
+import org.netxms.client.datacollection.Threshold;
+import org.netxms.client.maps.configs.SingleDciConfig;
+import org.netxms.client.objects.AbstractObject;
+import org.netxms.nxmc.Registry;
+import org.netxms.nxmc.base.jobs.Job;
+import org.netxms.nxmc.base.views.View;
+import org.netxms.nxmc.base.views.ViewStateListener;
+import org.netxms.nxmc.localization.LocalizationHelper;
+import org.netxms.nxmc.modules.dashboards.views.AbstractDashboardView;
+import org.xnap.commons.i18n.I18n;
+
+/**
+ * Shared data fetch scheduler for dashboard elements. Elements subscribe with list of DCI data requests and refresh interval.
+ * On each scheduler tick requests from all due subscriptions of visible elements are merged, duplicates are removed, and data
+ * is read from server in single batch. Results are then distributed to subscribers on UI thread. All methods except
+ * listener callbacks are expected to be called on UI thread.
+ * <p>
+ * Besides collected data, subscriptions can request last values of DCIs (with threshold status) and last values of table
+ * DCIs. Last values of all DCIs in a batch are read with single request, table values and thresholds are requested without
+ * waiting for each response. Thresholds are cached for {@value #THRESHOLD_CACHE_TTL} milliseconds.
+ */
+public class DashboardDataScheduler implements ViewStateListener
+{
+   private static final int TICK_INTERVAL = 1000; // milliseconds
+   private static final long THRESHOLD_CACHE_TTL = 300000; // milliseconds
+
+   private final I18n i18n = LocalizationHelper.getI18n(DashboardDataScheduler.class);
+
+   private NXCSession session;
+   private AbstractDashboardView view;
+   private Display display;
+   private long dashboardId;
+   private List<Subscription> subscriptions = new ArrayList<Subscription>();
+   private Runnable timer;
+   private boolean timerActive = false;
+   private boolean fetchInProgress = false;
+   private boolean disposed = false;
+   private Map<Request, CachedThresholds> thresholdCache = new ConcurrentHashMap<Request, CachedThresholds>();
+
+   /**
+    * Create new scheduler.
+    *
+    * @param view owning view (can be null)
+    * @param display display to use for timers and UI updates
+    * @param dashboardId ID of dashboard object (used for access checks on server side)
+    */
+   public DashboardDataScheduler(AbstractDashboardView view, Display display, long dashboardId)
+   {
+      this.session = Registry.getSession();
+      this.view = view;
+      this.display = display;
+      this.dashboardId = dashboardId;
+      timer = () -> {
+         timerActive = false;
+         if (disposed || subscriptions.isEmpty())
+            return;
+         runDueSubscriptions();
+         scheduleTimer();
+      };
+      if (view != null)
+         view.addStateListener(this);
+   }
+
+   /**
+    * Subscribe for periodic data updates. First update is performed on next scheduler tick.
+    *
+    * @param owner control which owns subscription (updates are suspended while it is not visible, subscription is cancelled when it is disposed)
+    * @param interval refresh interval in seconds
+    * @param requests data requests
+    * @param readThresholds true to read thresholds for requested data collection items
+    * @param listener data listener
+    * @return subscription object
+    */
+   public Subscription subscribe(Control owner, int interval, List<Request> requests, boolean readThresholds, DataListener listener)
+   {
+      return addSubscription(new Subscription(owner, interval, requests, readThresholds, listener, null));
+   }
+
+   /**
+    * Subscribe for periodic last value updates. Requests should be created with {@link Request#dciValue(long, long)} or
+    * {@link Request#tableValue(long, long)}. First update is performed on next scheduler tick.
+    *
+    * @param owner control which owns subscription (updates are suspended while it is not visible, subscription is cancelled when it is disposed)
+    * @param interval refresh interval in seconds
+    * @param requests last value requests
+    * @param listener last value listener
+    * @return subscription object
+    */
+   public Subscription subscribe(Control owner, int interval, List<Request> requests, LastValueListener listener)
+   {
+      return addSubscription(new Subscription(owner, interval, requests, false, null, listener));
+   }
+
+   /**
+    * Add new subscription.
+    *
+    * @param s subscription to add
+    * @return subscription object
+    */
+   private Subscription addSubscription(Subscription s)
+   {
+      if (disposed)
+      {
+         s.cancelled = true;
+         return s;
+      }
+      subscriptions.add(s);
+      display.asyncExec(() -> runDueSubscriptions());
+      scheduleTimer();
+      return s;
+   }
+
+   /**
+    * Dispose scheduler. All subscriptions are cancelled.
+    */
+   public void dispose()
+   {
+      if (disposed)
+         return;
+
+      disposed = true;
+      for(Subscription s : subscriptions)
+         s.cancelled = true;
+      subscriptions.clear();
+      if (timerActive && !display.isDisposed())
+         display.timerExec(-1, timer);
+      timerActive = false;
+      if (view != null)
+         view.removeStateListener(this);
+   }
+
+   /**
+    * Schedule timer if it is not active yet.
+    */
+   private void scheduleTimer()
+   {
+      if (timerActive || disposed || subscriptions.isEmpty() || display.isDisposed())
+         return;
+      display.timerExec(TICK_INTERVAL, timer);
+      timerActive = true;
+   }
+
+   /**
+    * Check if dashboard itself is visible.
+    *
+    * @return true if dashboard is visible
+    */
+   private boolean isDashboardVisible()
+   {
+      return (view == null) || view.isVisible();
+   }
+
+   /**
+    * Collect due subscriptions and start data fetch for them.
+    */
+   private void runDueSubscriptions()
+   {
+      if (disposed || fetchInProgress || !isDashboardVisible())
+         return;
+
+      long now = System.currentTimeMillis();
+      List<Subscription> dueSubscriptions = new ArrayList<Subscription>();
+      Iterator<Subscription> it = subscriptions.iterator();
+      while(it.hasNext())
+      {
+         Subscription s = it.next();
+         if (s.cancelled || s.owner.isDisposed())
+         {
+            s.cancelled = true;
+            it.remove();
+            continue;
+         }
+         if ((s.nextRunTime <= now) && s.owner.isVisible())
+         {
+            s.nextRunTime = (s.interval > 0) ? now + s.interval * 1000L : Long.MAX_VALUE;
+            dueSubscriptions.add(s);
+         }
+      }
+      if (dueSubscriptions.isEmpty())
+         return;
+
+      fetchInProgress = true;
+      final Date timestamp = new Date(now);
+      final Batch batch = new Batch(dueSubscriptions, timestamp);
+      Job job = new Job(i18n.tr("Reading dashboard data"), view, null, display) {
+         @Override
+         protected void run(IProgressMonitor monitor) throws Exception
+         {
+            try
+            {
+               batch.execute();
+            }
+            finally
+            {
+               runInUIThread(() -> {
+                  fetchInProgress = false;
+                  batch.deliver();
+               });
+            }
+         }
+
+         @Override
+         protected String getErrorMessage()
+         {
+            return i18n.tr("Cannot read dashboard data");
+         }
+      };
+      job.setUser(false);
+      job.setSystem(true);
+      job.start();
+   }
+
+   /**
+    * @see org.netxms.nxmc.base.views.ViewStateListener#viewActivated(org.netxms.nxmc.base.views.View)
+    */
+   @Override
+   public void viewActivated(View view)
+   {
+      // Subscriptions that became due while dashboard was hidden will be refreshed immediately
+      display.asyncExec(() -> runDueSubscriptions());
+   }
+
+   /**
+    * @see org.netxms.nxmc.base.views.ViewStateListener#viewDeactivated(org.netxms.nxmc.base.views.View)
+    */
+   @Override
+   public void viewDeactivated(View view)
+   {
+   }
+
+   /**
+    * @see org.netxms.nxmc.base.views.ViewStateListener#viewClosed(org.netxms.nxmc.base.views.View)
+    */
+   @Override
+   public void viewClosed(View view)
+   {
+      display.asyncExec(() -> dispose());
+   }
+
+   /**
+    * Subscription state captured when batch is built. Batch uses only this copy, so subscription's request list can be replaced
+    * on UI thread while batch is being executed.
+    */
+   private static class BatchEntry
+   {
+      private final Subscription subscription;
+      private final List<Request> requests;
+      private final boolean readThresholds;
+
+      private BatchEntry(Subscription subscription)
+      {
+         this.subscription = subscription;
+         this.requests = subscription.requests; // request lists are never modified after subscription gets them
+         this.readThresholds = subscription.readThresholds;
+      }
+   }
+
+   /**
+    * Single batch of data requests built from due subscriptions.
+    */
+   private class Batch
+   {
+      private List<BatchEntry> entries;
+      private Date timestamp;
+      private Map<Request, CollectedDataRequest> dataRequests = new LinkedHashMap<Request, CollectedDataRequest>();
+      private Map<Request, DciData> data = new HashMap<Request, DciData>();
+      private Set<Request> dciValueRequests = new LinkedHashSet<Request>();
+      private Set<Request> tableValueRequests = new LinkedHashSet<Request>();
+      private Map<Request, DciValue> dciValues = new HashMap<Request, DciValue>();
+      private Map<Request, Table> tableValues = new HashMap<Request, Table>();
+      private Map<Request, Exception> valueErrors = new HashMap<Request, Exception>();
+      private Map<Request, Threshold[]> thresholds = new HashMap<Request, Threshold[]>();
+      private Map<Request, Exception> thresholdErrors = new HashMap<Request, Exception>();
+      private Map<BatchEntry, Exception> errors = new HashMap<BatchEntry, Exception>();
+
+      /**
+       * Create batch from given subscriptions (called on UI thread).
+       *
+       * @param subscriptions due subscriptions
+       * @param timestamp batch timestamp (end of time range for history requests)
+       */
+      Batch(List<Subscription> subscriptions, Date timestamp)
+      {
+         this.entries = new ArrayList<BatchEntry>(subscriptions.size());
+         this.timestamp = timestamp;
+         for(Subscription s : subscriptions)
+         {
+            BatchEntry e = new BatchEntry(s);
+            entries.add(e);
+            for(Request r : e.requests)
+            {
+               if (r.kind == Request.DCI_VALUE)
+                  dciValueRequests.add(r);
+               else if (r.kind == Request.TABLE_VALUE)
+                  tableValueRequests.add(r);
+               else
+                  dataRequests.computeIfAbsent(r, (k) -> k.createCollectedDataRequest(timestamp, dashboardId));
+            }
+         }
+      }
+
+      /**
+       * Execute batch (called on background thread).
+       */
+      void execute()
+      {
+         readLastValues();
+         readTableValues();
+
+         try
+         {
+            readData(dataRequests.keySet());
+         }
+         catch(Exception e)
+         {
+            if (entries.size() == 1)
+            {
+               errors.put(entries.get(0), e);
+            }
+            else
+            {
+               // Batch failed as a whole (for example because of single inaccessible DCI), retry per subscription to isolate failure
+               for(BatchEntry be : entries)
+               {
+                  try
+                  {
+                     readData(be.requests);
+                  }
+                  catch(Exception se)
+                  {
+                     errors.put(be, se);
+                  }
+               }
+            }
+         }
+
+         readThresholds();
+      }
+
+      /**
+       * Read last values for all DCI value requests with single server request.
+       */
+      private void readLastValues()
+      {
+         if (dciValueRequests.isEmpty())
+            return;
+
+         List<SingleDciConfig> dciList = new ArrayList<SingleDciConfig>(dciValueRequests.size());
+         for(Request r : dciValueRequests)
+            dciList.add(new SingleDciConfig(r.nodeId, r.dciId));
+         try
+         {
+            for(DciValue v : session.getLastValues(dciList))
+               dciValues.put(Request.dciValue(v.getNodeId(), v.getId()), v);
+         }
+         catch(Exception e)
+         {
+            for(Request r : dciValueRequests)
+               valueErrors.put(r, e);
+         }
+      }
+
+      /**
+       * Read last values for all table value requests. All requests are sent before waiting for responses.
+       */
+      private void readTableValues()
+      {
+         Map<Request, CompletableFuture<Table>> pending = new HashMap<Request, CompletableFuture<Table>>();
+         for(Request r : tableValueRequests)
+            pending.put(r, session.getTableLastValuesAsync(r.nodeId, r.dciId));
+         for(Map.Entry<Request, CompletableFuture<Table>> e : pending.entrySet())
+         {
+            try
+            {
+               tableValues.put(e.getKey(), waitForResult(e.getValue()));
+            }
+            catch(Exception ex)
+            {
+               valueErrors.put(e.getKey(), ex);
+            }
+         }
+      }
+
+      /**
+       * Read thresholds for subscriptions that require them. Thresholds not found in cache are requested without waiting for
+       * each response.
+       */
+      private void readThresholds()
+      {
+         long now = System.currentTimeMillis();
+         Map<Request, CompletableFuture<Threshold[]>> pending = new HashMap<Request, CompletableFuture<Threshold[]>>();
+         for(BatchEntry be : entries)
+         {
+            if (!be.readThresholds || errors.containsKey(be))
+               continue;
+            for(Request r : be.requests)
+            {
+               if ((r.kind != Request.COLLECTED_DATA) || (r.type != ChartDciConfig.ITEM))
+                  continue;
+               Request key = r.getThresholdKey();
+               if (thresholds.containsKey(key) || pending.containsKey(key))
+                  continue;
+               CachedThresholds cached = thresholdCache.get(key);
+               if ((cached != null) && (now - cached.timestamp < THRESHOLD_CACHE_TTL))
+                  thresholds.put(key, cached.thresholds);
+               else
+                  pending.put(key, session.getThresholdsAsync(r.nodeId, r.dciId, dashboardId));
+            }
+         }
+
+         for(Map.Entry<Request, CompletableFuture<Threshold[]>> e : pending.entrySet())
+         {
+            try
+            {
+               Threshold[] t = waitForResult(e.getValue());
+               thresholds.put(e.getKey(), t);
+               thresholdCache.put(e.getKey(), new CachedThresholds(t, now));
+            }
+            catch(Exception ex)
+            {
+               thresholdErrors.put(e.getKey(), ex);
+               thresholdCache.remove(e.getKey());
+            }
+         }
+      }
+
+      /**
+       * Wait for result of asynchronous request.
+       *
+       * @param future request future
+       * @return request result
+       * @throws Exception if request failed
+       */
+      private <T> T waitForResult(CompletableFuture<T> future) throws Exception
+      {
+         try
+         {
+            return future.get();
+         }
+         catch(ExecutionException e)
+         {
+            throw (e.getCause() instanceof Exception) ? (Exception)e.getCause() : e;
+         }
+      }
+
+      /**
+       * Read data for given requests. Requests already satisfied are skipped.
+       *
+       * @param requests requests to read
+       * @throws Exception on error
+       */
+      private void readData(Iterable<Request> requests) throws Exception
+      {
+         List<CollectedDataRequest> pending = new ArrayList<CollectedDataRequest>();
+         Map<CollectedDataRequest, Request> reverseMap = new HashMap<CollectedDataRequest, Request>();
+         for(Request r : requests)
+         {
+            if ((r.kind != Request.COLLECTED_DATA) || data.containsKey(r))
+               continue;
+            CollectedDataRequest cdr = dataRequests.get(r);
+            pending.add(cdr);
+            reverseMap.put(cdr, r);
+         }
+         if (pending.isEmpty())
+            return;
+
+         Map<CollectedDataRequest, DciData> results = session.getCollectedData(pending, null);
+         for(CollectedDataRequest cdr : pending)
+            data.put(reverseMap.get(cdr), results.get(cdr));
+      }
+
+      /**
+       * Deliver results to subscribers (called on UI thread).
+       */
+      void deliver()
+      {
+         for(BatchEntry be : entries)
+         {
+            Subscription s = be.subscription;
+            if (s.cancelled || s.owner.isDisposed())
+               continue;
+
+            if (s.valueListener != null)
+            {
+               deliverLastValues(be);
+               continue;
+            }
+
+            Exception error = errors.get(be);
+            if (error != null)
+            {
+               s.listener.onError(error);
+               continue;
+            }
+
+            DciData[] result = new DciData[be.requests.size()];
+            Threshold[][] resultThresholds = be.readThresholds ? new Threshold[be.requests.size()][] : null;
+            for(int i = 0; i < result.length; i++)
+            {
+               Request r = be.requests.get(i);
+               result[i] = data.get(r);
+               if (result[i] == null)
+               {
+                  error = new Exception(i18n.tr("No data received from server"));
+                  break;
+               }
+               if (resultThresholds != null)
+               {
+                  if (r.type == ChartDciConfig.ITEM)
+                  {
+                     Request key = r.getThresholdKey();
+                     error = thresholdErrors.get(key);
+                     if (error != null)
+                        break;
+                     resultThresholds[i] = thresholds.get(key);
+                  }
+                  else
+                  {
+                     resultThresholds[i] = new Threshold[0];
+                  }
+               }
+            }
+
+            if (error != null)
+               s.listener.onError(error);
+            else
+               s.listener.onDataReceived(timestamp, result, resultThresholds);
+         }
+      }
+
+      /**
+       * Deliver last values to subscriber (called on UI thread).
+       *
+       * @param be batch entry
+       */
+      private void deliverLastValues(BatchEntry be)
+      {
+         Subscription s = be.subscription;
+         DciValue[] values = new DciValue[be.requests.size()];
+         Table[] tables = new Table[be.requests.size()];
+         for(int i = 0; i < values.length; i++)
+         {
+            Request r = be.requests.get(i);
+            Exception error = valueErrors.get(r);
+            if (error != null)
+            {
+               s.valueListener.onError(error);
+               return;
+            }
+            if (r.kind == Request.DCI_VALUE)
+               values[i] = dciValues.get(r);
+            else if (r.kind == Request.TABLE_VALUE)
+               tables[i] = tableValues.get(r);
+         }
+         s.valueListener.onDataReceived(timestamp, values, tables);
+      }
+   }
+
+   /**
+    * Cached threshold list
+    */
+   private static class CachedThresholds
+   {
+      private Threshold[] thresholds;
+      private long timestamp;
+
+      private CachedThresholds(Threshold[] thresholds, long timestamp)
+      {
+         this.thresholds = thresholds;
+         this.timestamp = timestamp;
+      }
+   }
+
+   /**
+    * Subscription for periodic data updates
+    */
+   public class Subscription
+   {
+      private Control owner;
+      private int interval;
+      private volatile List<Request> requests;
+      private final boolean readThresholds;
+      private DataListener listener;
+      private LastValueListener valueListener;
+      private long nextRunTime = 0;
+      private boolean cancelled = false;
+
+      /**
+       * Create subscription.
+       */
+      private Subscription(Control owner, int interval, List<Request> requests, boolean readThresholds, DataListener listener, LastValueListener valueListener)
+      {
+         this.owner = owner;
+         this.interval = interval;
+         this.requests = new ArrayList<Request>(requests);
+         this.readThresholds = readThresholds;
+         this.listener = listener;
+         this.valueListener = valueListener;
+      }
+
+      /**
+       * Replace list of data requests. New requests will be used starting from next update (update that is already running
+       * completes with old request list).
+       *
+       * @param requests new list of data requests
+       */
+      public void setRequests(List<Request> requests)
+      {
+         this.requests = new ArrayList<Request>(requests);
+      }
+
+      /**
+       * Request immediate update for this subscription. Update is performed as soon as owner is visible and no other fetch is
+       * running. Cached thresholds are discarded, so explicit refresh always shows current thresholds.
+       */
+      public void refreshNow()
+      {
+         if (cancelled)
+            return;
+         thresholdCache.clear();
+         nextRunTime = 0;
+         display.asyncExec(() -> runDueSubscriptions());
+      }
+
+      /**
+       * Cancel this subscription.
+       */
+      public void cancel()
+      {
+         cancelled = true;
+         subscriptions.remove(this);
+      }
+
+      /**
+       * Check if this subscription is cancelled.
+       *
+       * @return true if subscription is cancelled
+       */
+      public boolean isCancelled()
+      {
+         return cancelled;
+      }
+   }
+
+   /**
+    * Data request. Requests are compared by value, so identical requests from different elements are served by single read.
+    */
+   public static class Request
+   {
+      private static final int COLLECTED_DATA = 0;
+      private static final int DCI_VALUE = 1;
+      private static final int TABLE_VALUE = 2;
+
+      private int kind;
+      private int type;
+      private long nodeId;
+      private long dciId;
+      private String instance;
+      private String column;
+      private long timeRange;
+
+      /**
+       * Create request for collected data.
+       */
+      private Request(int type, long nodeId, long dciId, String instance, String column, long timeRange)
+      {
+         this(COLLECTED_DATA, type, nodeId, dciId, instance, column, timeRange);
+      }
+
+      /**
+       * Create request.
+       */
+      private Request(int kind, int type, long nodeId, long dciId, String instance, String column, long timeRange)
+      {
+         this.kind = kind;
+         this.type = type;
+         this.nodeId = nodeId;
+         this.dciId = dciId;
+         this.instance = instance;
+         this.column = column;
+         this.timeRange = timeRange;
+      }
+
+      /**
+       * Create request for last value of given DCI together with its threshold status.
+       *
+       * @param nodeId node object ID
+       * @param dciId DCI ID
+       * @return new request
+       */
+      public static Request dciValue(long nodeId, long dciId)
+      {
+         return new Request(DCI_VALUE, ChartDciConfig.ITEM, nodeId, dciId, null, null, 0);
+      }
+
+      /**
+       * Create request for last value of given table DCI.
+       *
+       * @param nodeId node object ID
+       * @param dciId DCI ID
+       * @return new request
+       */
+      public static Request tableValue(long nodeId, long dciId)
+      {
+         return new Request(TABLE_VALUE, ChartDciConfig.TABLE, nodeId, dciId, null, null, 0);
+      }
+
+      /**
+       * Create request for last value of given DCI.
+       *
+       * @param dci DCI configuration
+       * @return new request
+       * @throws UnmappedDciException if DCI configuration does not refer to existing DCI
+       */
+      public static Request lastValue(ChartDciConfig dci) throws UnmappedDciException
+      {
+         return create(dci, 0);
+      }
+
+      /**
+       * Create request for historical data of given DCI.
+       *
+       * @param dci DCI configuration
+       * @param timeRange time range in milliseconds (ending at request execution time)
+       * @return new request
+       * @throws UnmappedDciException if DCI configuration does not refer to existing DCI
+       */
+      public static Request history(ChartDciConfig dci, long timeRange) throws UnmappedDciException
+      {
+         return create(dci, timeRange);
+      }
+
+      /**
+       * Create request.
+       */
+      private static Request create(ChartDciConfig dci, long timeRange) throws UnmappedDciException
+      {
+         if ((dci.nodeId == AbstractObject.UNKNOWN) || (dci.dciId <= 0))
+            throw new UnmappedDciException();
+         return (dci.type == ChartDciConfig.ITEM) ?
+               new Request(ChartDciConfig.ITEM, dci.nodeId, dci.dciId, null, null, timeRange) :
+               new Request(ChartDciConfig.TABLE, dci.nodeId, dci.dciId, dci.instance, dci.column, timeRange);
+      }
+
+      /**
+       * Get key for threshold lookup (identifies DCI only).
+       *
+       * @return key for threshold lookup
+       */
+      private Request getThresholdKey()
+      {
+         return new Request(ChartDciConfig.ITEM, nodeId, dciId, null, null, -1);
+      }
+
+      /**
+       * Create client library request object.
+       *
+       * @param timestamp request execution time
+       * @param dashboardId dashboard object ID
+       * @return client library request object
+       */
+      private CollectedDataRequest createCollectedDataRequest(Date timestamp, long dashboardId)
+      {
+         Date from = (timeRange > 0) ? new Date(timestamp.getTime() - timeRange) : null;
+         Date to = (timeRange > 0) ? timestamp : null;
+         int maxRows = (timeRange > 0) ? 0 : 1;
+         if (type == ChartDciConfig.ITEM)
+            return new CollectedDataRequest(nodeId, dciId, from, to, maxRows, HistoricalDataType.PROCESSED, dashboardId);
+         return new CollectedDataRequest(nodeId, dciId, instance, column, from, to, maxRows, dashboardId);
+      }
+
+      /**
+       * @see java.lang.Object#hashCode()
+       */
+      @Override
+      public int hashCode()
+      {
+         return Objects.hash(kind, type, nodeId, dciId, instance, column, timeRange);
+      }
+
+      /**
+       * @see java.lang.Object#equals(java.lang.Object)
+       */
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (this == obj)
+            return true;
+         if (!(obj instanceof Request))
+            return false;
+         Request other = (Request)obj;
+         return (kind == other.kind) && (type == other.type) && (nodeId == other.nodeId) && (dciId == other.dciId) && (timeRange == other.timeRange) &&
+               Objects.equals(instance, other.instance) && Objects.equals(column, other.column);
+      }
+   }
+
+   /**
+    * Listener for subscription data updates. All methods are called on UI thread.
+    */
+   public interface DataListener
+   {
+      /**
+       * Called when new data is available.
+       *
+       * @param timestamp time when data was requested (end of time range for history requests)
+       * @param data data for each request, in the same order as requests in subscription
+       * @param thresholds thresholds for each request or null if thresholds were not requested
+       */
+      public void onDataReceived(Date timestamp, DciData[] data, Threshold[][] thresholds);
+
+      /**
+       * Called when data for subscription cannot be read.
+       *
+       * @param e exception
+       */
+      public void onError(Exception e);
+   }
+
+   /**
+    * Listener for last value subscription updates. All methods are called on UI thread.
+    */
+   public interface LastValueListener
+   {
+      /**
+       * Called when new values are available.
+       *
+       * @param timestamp time when values were requested
+       * @param values DCI last values for each DCI value request (null for other requests or if DCI value is not available)
+       * @param tables table values for each table value request (null for other requests)
+       */
+      public void onDataReceived(Date timestamp, DciValue[] values, Table[] tables);
+
+      /**
+       * Called when values for subscription cannot be read.
+       *
+       * @param e exception
+       */
+      public void onError(Exception e);
+   }
+}
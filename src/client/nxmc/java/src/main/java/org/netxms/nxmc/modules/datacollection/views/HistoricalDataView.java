@@ -19,7 +19,6 @@
 package org.netxms.nxmc.modules.datacollection.views;
 
 import java.util.Date;
-import java.util.List;
 import java.util.UUID;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.action.Action;
@@ -28,7 +27,6 @@
 import org.eclipse.jface.action.IToolBarManager;
 import org.eclipse.jface.action.MenuManager;
 import org.eclipse.jface.action.Separator;
-import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.window.Window;
 import org.eclipse.swt.SWT;
@@ -37,7 +35,6 @@
 import org.netxms.client.NXCSession;
 import org.netxms.client.constants.HistoricalDataType;
 import org.netxms.client.datacollection.DciData;
-import org.netxms.client.datacollection.DciDataRow;
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.nxmc.Memento;
 import org.netxms.nxmc.Registry;
@@ -50,6 +47,7 @@
 import org.netxms.nxmc.localization.LocalizationHelper;
 import org.netxms.nxmc.modules.datacollection.dialogs.HistoricalDataSelectionDialog;
 import org.netxms.nxmc.modules.datacollection.views.helpers.HistoricalDataComparator;
+import org.netxms.nxmc.modules.datacollection.views.helpers.HistoricalDataContentProvider;
 import org.netxms.nxmc.modules.datacollection.views.helpers.HistoricalDataFilter;
 import org.netxms.nxmc.modules.datacollection.views.helpers.HistoricalDataLabelProvider;
 import org.netxms.nxmc.resources.ResourceManager;
@@ -203,8 +201,8 @@ protected void createContent(Composite parent)
          new String[] { i18n.tr("Timestamp"), i18n.tr("Value"), i18n.tr("Raw value") };
 		final int[] widths = { 150, 400, 400 };
 		viewer = new SortableTableViewer(parent, names, widths, 0, SWT.DOWN, SWT.FULL_SELECTION | SWT.MULTI);
-		viewer.setContentProvider(new ArrayContentProvider());
-		viewer.setLabelProvider(new HistoricalDataLabelProvider());
+		viewer.setContentProvider(new HistoricalDataContentProvider());
+		viewer.setLabelProvider(new HistoricalDataLabelProvider(viewer));
 		viewer.setComparator(new HistoricalDataComparator());
 		HistoricalDataFilter filter = new HistoricalDataFilter();
       viewer.addFilter(filter);
@@ -324,7 +322,7 @@ protected void run(IProgressMonitor monitor) throws Exception
 					@Override
 					public void run()
 					{
-						viewer.setInput(data.getValues());
+						viewer.setInput(data);
 						updateInProgress = false;
 					}
 				});
@@ -362,14 +360,18 @@ private void deleteValue()
       if (selection.isEmpty())
 	      return;
 
+      final DciData currentData = (DciData)viewer.getInput();
+      final long[] timestamps = new long[selection.size()];
+      int count = 0;
+      for(Object o : selection.toList())
+         timestamps[count++] = currentData.getTimestamp((Integer)o);
+
       new Job("Delete DCI value", null) {
-         @SuppressWarnings("unchecked")
          @Override
          protected void run(IProgressMonitor monitor) throws Exception
          {
-            List<DciDataRow> list = selection.toList();
-            for(DciDataRow r : list)
-               session.deleteDciEntry(contextId, dciId, r.getTimestamp().getTime() / 1000); // Convert back to seconds
+            for(long t : timestamps)
+               session.deleteDciEntry(contextId, dciId, t / 1000); // Convert back to seconds
 
             final DciData data;
             if (tableName != null)
@@ -381,7 +383,7 @@ protected void run(IProgressMonitor monitor) throws Exception
                @Override
                public void run()
                {
-                  viewer.setInput(data.getValues());
+                  viewer.setInput(data);
                   updateInProgress = false;
                }
             });
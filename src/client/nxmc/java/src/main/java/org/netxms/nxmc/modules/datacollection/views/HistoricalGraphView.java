@@ -49,6 +49,7 @@
 import org.netxms.client.datacollection.ChartConfiguration;
 import org.netxms.client.datacollection.ChartConfigurationChangeListener;
 import org.netxms.client.datacollection.ChartDciConfig;
+import org.netxms.client.datacollection.CollectedDataRequest;
 import org.netxms.client.datacollection.DciData;
 import org.netxms.client.datacollection.GraphDefinition;
 import org.netxms.client.datacollection.MeasurementUnit;
@@ -442,33 +443,38 @@ private void getDataFromServer()
 
       // Request data from server
       Job job = new Job(i18n.tr("Get DCI values for history graph"), this) {
-         private ChartDciConfig currentItem;
-
          @Override
          protected void run(IProgressMonitor monitor) throws Exception
          {
-            monitor.beginTask(getName(), dciList.length);
+            monitor.beginTask(getName(), dciList.length * 2);
+
+            // Request data for all DCIs in one batch
+            final List<CollectedDataRequest> requests = new ArrayList<CollectedDataRequest>(dciList.length);
+            for(ChartDciConfig item : dciList)
+            {
+               if (item.type == ChartDciConfig.ITEM)
+                  requests.add(new CollectedDataRequest(item.nodeId, item.dciId, configuration.getTimeFrom(), configuration.getTimeTo(), 0,
+                        item.useRawValues ? HistoricalDataType.RAW : HistoricalDataType.PROCESSED, 0));
+               else
+                  requests.add(new CollectedDataRequest(item.nodeId, item.dciId, item.instance, item.column, configuration.getTimeFrom(),
+                        configuration.getTimeTo(), 0, 0));
+            }
+            final Map<CollectedDataRequest, DciData> results = session.getCollectedData(requests, (r, d) -> monitor.worked(1));
+
             final DciData[] data = new DciData[dciList.length];
-            final Threshold[][] thresholds = new Threshold[dciList.length][];
+            final long[] nodeIds = new long[dciList.length];
+            final long[] dciIds = new long[dciList.length];
             for(int i = 0; i < dciList.length; i++)
             {
-               currentItem = dciList[i];
-               if (currentItem.type == ChartDciConfig.ITEM)
-               {
-                  data[i] = session.getCollectedData(currentItem.nodeId, currentItem.dciId, configuration.getTimeFrom(),
-                        configuration.getTimeTo(), 0,
-                        currentItem.useRawValues ? HistoricalDataType.RAW : HistoricalDataType.PROCESSED);
-                  thresholds[i] = session.getThresholds(currentItem.nodeId, currentItem.dciId);
-               }
-               else
-               {
-                  data[i] = session.getCollectedTableData(currentItem.nodeId, currentItem.dciId, currentItem.instance,
-                        currentItem.column, configuration.getTimeFrom(), configuration.getTimeTo(), 0);
-                  thresholds[i] = null;
-               }
-               monitor.worked(1);
+               data[i] = results.get(requests.get(i));
+               nodeIds[i] = dciList[i].nodeId;
+               dciIds[i] = (dciList[i].type == ChartDciConfig.ITEM) ? dciList[i].dciId : 0;
             }
 
+            // Request thresholds for all DCIs in one batch
+            final Threshold[][] thresholds = session.getThresholds(nodeIds, dciIds, 0);
+            monitor.worked(dciList.length);
+
             runInUIThread(new Runnable() {
                @Override
                public void run()
@@ -487,8 +493,7 @@ public void run()
          @Override
          protected String getErrorMessage()
          {
-            return String.format(i18n.tr("Cannot get value for DCI %s:\"%s\""), session.getObjectName(currentItem.nodeId),
-                  currentItem.name);
+            return i18n.tr("Cannot get DCI values for history graph");
          }
 
          @Override
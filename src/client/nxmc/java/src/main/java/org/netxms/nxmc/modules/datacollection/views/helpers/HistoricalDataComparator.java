@@ -5,7 +5,7 @@
 import org.eclipse.jface.viewers.ViewerComparator;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.TableColumn;
-import org.netxms.client.datacollection.DciDataRow;
+import org.netxms.client.datacollection.DciData;
 import org.netxms.nxmc.base.views.helpers.NaturalOrderComparator;
 import org.netxms.nxmc.modules.datacollection.views.HistoricalDataView;
 
@@ -21,14 +21,17 @@ public int compare(Viewer viewer, Object e1, Object e2)
       if (sortColumn == null)
          return 0;
       
+      DciData data = (DciData)viewer.getInput();
+      int i1 = (Integer)e1;
+      int i2 = (Integer)e2;
       int rc;
       switch((Integer)sortColumn.getData("ID"))
       {
          case HistoricalDataView.COLUMN_TIME:
-            rc = Long.signum(((DciDataRow)e1).getTimestamp().getTime() - ((DciDataRow)e2).getTimestamp().getTime());
+            rc = Long.signum(data.getTimestamp(i1) - data.getTimestamp(i2));
             break;
          case HistoricalDataView.COLUMN_DATA:
-            rc = NaturalOrderComparator.compare(((DciDataRow)e1).getValueAsString(), ((DciDataRow)e2).getValueAsString());
+            rc = NaturalOrderComparator.compare(data.getValueAsString(i1), data.getValueAsString(i2));
             break;
          default:
             rc = 0;
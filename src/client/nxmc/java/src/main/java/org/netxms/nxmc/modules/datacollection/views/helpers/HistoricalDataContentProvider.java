@@ -0,0 +1,43 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.nxmc.modules.datacollection.views.helpers;
+
+import org.eclipse.jface.viewers.IStructuredContentProvider;
+import org.netxms.client.datacollection.DciData;
+
+/**
+ * Content provider for historical data view. Input is DciData object, and elements are indexes of values within input, so no
+ * row objects are created for displayed values.
+ */
+public class HistoricalDataContentProvider implements IStructuredContentProvider
+{
+   /**
+    * @see org.eclipse.jface.viewers.IStructuredContentProvider#getElements(java.lang.Object)
+    */
+   @Override
+   public Object[] getElements(Object inputElement)
+   {
+      if (!(inputElement instanceof DciData))
+         return new Object[0];
+      Integer[] elements = new Integer[((DciData)inputElement).size()];
+      for(int i = 0; i < elements.length; i++)
+         elements[i] = i;
+      return elements;
+   }
+}
@@ -18,9 +18,10 @@
  */
 package org.netxms.nxmc.modules.datacollection.views.helpers;
 
+import java.util.Date;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerFilter;
-import org.netxms.client.datacollection.DciDataRow;
+import org.netxms.client.datacollection.DciData;
 import org.netxms.nxmc.base.views.AbstractViewerFilter;
 import org.netxms.nxmc.localization.DateFormatFactory;
 
@@ -40,8 +41,11 @@ public boolean select(Viewer viewer, Object parentElement, Object element)
       if ((filterString == null) || filterString.isEmpty())
          return true;
 
-      return DateFormatFactory.getDateTimeFormat().format(((DciDataRow)element).getTimestamp()).contains(filterString) || ((DciDataRow)element).getValueAsString().contains(filterString) ||
-            ((DciDataRow)element).getRawValue().contains(filterString);
+      DciData data = (DciData)parentElement;
+      int index = (Integer)element;
+      String rawValue = data.getRawValue(index);
+      return DateFormatFactory.getDateTimeFormat().format(new Date(data.getTimestamp(index))).contains(filterString) || data.getValueAsString(index).contains(filterString) ||
+            ((rawValue != null) && rawValue.contains(filterString));
    }
 
    /**
@@ -18,10 +18,12 @@
  */
 package org.netxms.nxmc.modules.datacollection.views.helpers;
 
+import java.util.Date;
 import org.eclipse.jface.viewers.ITableLabelProvider;
 import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.graphics.Image;
-import org.netxms.client.datacollection.DciDataRow;
+import org.netxms.client.datacollection.DciData;
 import org.netxms.nxmc.localization.DateFormatFactory;
 
 /**
@@ -29,6 +31,19 @@
  */
 public class HistoricalDataLabelProvider extends LabelProvider implements ITableLabelProvider
 {
+   private Viewer viewer;
+
+   /**
+    * Create label provider. Viewer input should be DciData object, with elements being indexes of values (as provided by
+    * {@link HistoricalDataContentProvider}).
+    *
+    * @param viewer owning viewer
+    */
+   public HistoricalDataLabelProvider(Viewer viewer)
+   {
+      this.viewer = viewer;
+   }
+
    /**
     * @see org.eclipse.jface.viewers.ITableLabelProvider#getColumnImage(java.lang.Object, int)
     */
@@ -44,14 +59,16 @@ public Image getColumnImage(Object element, int columnIndex)
    @Override
    public String getColumnText(Object element, int columnIndex)
    {
+      DciData data = (DciData)viewer.getInput();
+      int index = (Integer)element;
       switch(columnIndex)
       {
          case 0:
-            return DateFormatFactory.getDateTimeFormat().format(((DciDataRow)element).getTimestamp());
+            return DateFormatFactory.getDateTimeFormat().format(new Date(data.getTimestamp(index)));
          case 1:
-            return ((DciDataRow)element).getValueAsString();
+            return data.getValueAsString(index);
          case 2:
-            return ((DciDataRow)element).getRawValue();
+            return data.getRawValue(index);
       }
       return null;
    }
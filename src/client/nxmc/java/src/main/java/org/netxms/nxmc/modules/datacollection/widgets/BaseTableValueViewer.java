@@ -307,14 +307,7 @@ protected void run(IProgressMonitor monitor) throws Exception
                if (viewer.getControl().isDisposed())
                   return;
 
-               if (errorLabel != null)
-               {
-                  errorLabel.dispose();
-                  errorLabel = null;
-                  viewer.getControl().setVisible(true);
-                  viewer.getControl().getParent().layout(true, true);
-               }
-               updateViewer(table);
+               setData(table);
                if (postRefreshHook != null)
                {
                   postRefreshHook.run();
@@ -332,6 +325,27 @@ protected String getErrorMessage()
       job.start();
    }
 
+   /**
+    * Show given table data. Can be used instead of {@link #refresh(Runnable)} when data is read by caller. Must be called on
+    * UI thread.
+    *
+    * @param table table data
+    */
+   public void setData(final Table table)
+   {
+      if (viewer.getControl().isDisposed())
+         return;
+
+      if (errorLabel != null)
+      {
+         errorLabel.dispose();
+         errorLabel = null;
+         viewer.getControl().setVisible(true);
+         viewer.getControl().getParent().layout(true, true);
+      }
+      updateViewer(table);
+   }
+
    public AbstractViewerFilter getFilter()
    {
       return filter;
@@ -24,6 +24,7 @@
 import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.widgets.Composite;
 import org.netxms.client.AgentFileData;
+import org.netxms.client.FileMonitorDataConsumer;
 import org.netxms.client.NXCSession;
 import org.netxms.client.ProgressListener;
 import org.netxms.client.SessionListener;
@@ -263,11 +264,29 @@ protected void canceling()
       @Override
       protected void run(IProgressMonitor monitor) throws Exception
       {
+         final StringBuilder sb = new StringBuilder();
+         final FileMonitorDataConsumer consumer = new FileMonitorDataConsumer() {
+            @Override
+            public void dataDiscarded(long characters)
+            {
+               sb.append("\n----------------------------------------------------------------------\n"); //$NON-NLS-1$
+               sb.append(i18n.tr("{0} characters skipped", Long.toString(characters)));
+               sb.append("\n----------------------------------------------------------------------\n"); //$NON-NLS-1$
+            }
+
+            @Override
+            public void dataReceived(String data)
+            {
+               sb.append(data);
+            }
+         };
+
          while(tracking)
          {
-            final String s = session.waitForFileUpdate(monitorId, 3000);
-            if (s != null)
+            sb.setLength(0);
+            if (session.waitForFileUpdate(monitorId, 3000, consumer))
             {
+               final String s = sb.toString();
                runInUIThread(new Runnable() {
                   @Override
                   public void run()
@@ -467,24 +467,28 @@ public void setEnabled(boolean enabled)
    }
 
    /**
-    * Handler for filter modification
+    * Handler for filter modification. Matching objects are searched in background, so typing is not blocked on large
+    * object trees; tree is updated when search for latest filter string completes.
     */
    private void onFilterModify()
    {
       final String text = getFilterText();
-      filter.setFilterString(text);
-      AbstractObject obj = filter.getLastMatch();
-      if (obj != null)
-      {
-         AbstractObject parent = getParent(obj);
-         if (parent != null)
-            objectTree.expandToLevel(parent, 1);
-         objectTree.setSelection(new StructuredSelection(obj), true);
-         objectTree.reveal(obj);
-         if (statusIndicatorEnabled)
-            updateStatusIndicator();
-      }
-      objectTree.refresh(false);
+      filter.setFilterStringAsync(text, () -> {
+         if (objectTree.getControl().isDisposed())
+            return;
+         AbstractObject obj = filter.getLastMatch();
+         if (obj != null)
+         {
+            AbstractObject parent = getParent(obj);
+            if (parent != null)
+               objectTree.expandToLevel(parent, 1);
+            objectTree.setSelection(new StructuredSelection(obj), true);
+            objectTree.reveal(obj);
+            if (statusIndicatorEnabled)
+               updateStatusIndicator();
+         }
+         objectTree.refresh(false);
+      });
    }
 
    /**
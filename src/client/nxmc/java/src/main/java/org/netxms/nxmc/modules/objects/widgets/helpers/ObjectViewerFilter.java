@@ -18,16 +18,23 @@
  */
 package org.netxms.nxmc.modules.objects.widgets.helpers;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerFilter;
 import org.netxms.base.Glob;
 import org.netxms.base.InetAddressEx;
+import org.netxms.client.NXCSession;
 import org.netxms.client.constants.ObjectStatus;
 import org.netxms.client.objects.AbstractNode;
 import org.netxms.client.objects.AbstractObject;
@@ -38,9 +45,13 @@
 import org.netxms.client.objects.VPNConnector;
 import org.netxms.client.objects.Zone;
 import org.netxms.nxmc.Registry;
+import org.netxms.nxmc.base.jobs.Job;
+import org.netxms.nxmc.localization.LocalizationHelper;
+import org.xnap.commons.i18n.I18n;
 
 /**
- * Filter for object tree
+ * Filter for object tree. Set of matching objects is computed once per filter string change together with closure of
+ * their ancestors, so check if element (or any of its descendants) matches filter is a constant time lookup.
  */
 public class ObjectViewerFilter extends ViewerFilter
 {
@@ -52,16 +63,17 @@ public class ObjectViewerFilter extends ViewerFilter
    private static final int OBJECT_ID = 5;
    private static final int ZONE = 6;
 
-	private String filterString = null;
+   private static final int CANCELLATION_CHECK_INTERVAL = 1024;
+
+   private final I18n i18n = LocalizationHelper.getI18n(ObjectViewerFilter.class);
+
 	private boolean hideUnmanaged = false;
 	private boolean hideTemplateChecks = false;
 	private boolean hideSubInterfaces = false;
-	private Map<Long, AbstractObject> objectList = null;
-	private AbstractObject lastMatch = null;
+   private volatile MatchResult matchResult = null;
+   private final AtomicLong generation = new AtomicLong(0);
 	private List<AbstractObject> sourceObjects = null;
 	private Set<Integer> classFilter = null;
-	private boolean usePatternMatching = false;
-	private int mode = NAME;
 
 	/**
 	 * Constructor
@@ -73,13 +85,17 @@ public ObjectViewerFilter(AbstractObject[] sourceObjects, Set<Integer> classFilt
 	}
 
 	/**
-	 * Match given value to current filter string
+	 * Match given value to filter criteria
 	 * 
+	 * @param c filter criteria
 	 * @param object object to match
-	 * @return true if object matched to current filter string
+	 * @return true if object matched to filter criteria
 	 */
-	private boolean matchFilterString(AbstractObject object)
+	private static boolean matchFilterString(Criteria c, AbstractObject object)
 	{
+      final int mode = c.mode;
+      final String filterString = c.filterString;
+      final boolean usePatternMatching = c.usePatternMatching;
 		if ((mode == NONE) || (filterString == null))
 			return true;
 
@@ -148,7 +164,7 @@ else if (object instanceof AccessPoint)
 			         return true;
 			      else
 			      {
-                  Zone zone = Registry.getSession().findZone(zoneUIN);
+                  Zone zone = c.session.findZone(zoneUIN);
 			         if (zone != null)
 			            return usePatternMatching ? Glob.matchIgnoreCase(filterString, zone.getObjectName()) : zone.getObjectName().toLowerCase().contains(filterString.toLowerCase());
 			      }
@@ -166,30 +182,20 @@ public boolean select(Viewer viewer, Object parentElement, Object element)
 	   if (!passMainFilters(element))
 	      return false;	   
 
-      if (objectList == null)
+      MatchResult r = matchResult;
+      if (r == null)
          return true;
-	   
-		boolean pass = objectList.containsKey(((AbstractObject)element).getObjectId());
-		if (!pass)
-		{
-		   if (((AbstractObject)element).hasChildren())
-         {
-            for(AbstractObject o : objectList.values())
-            {
-               if (o.isChildOf(((AbstractObject)element).getObjectId()))
-               {
-                  pass = true;
-                  break;
-               }
-            }
-         }
-         else if (((AbstractObject)element).hasParents() &&
-               ((element instanceof Interface) || (element instanceof AccessPoint) || (element instanceof NetworkService) || (element instanceof VPNConnector)))
-         {
-            pass = objectList.containsKey(((AbstractObject)element).getParentIdList()[0]);
-         }
-		}
-		return pass;
+
+      AbstractObject object = (AbstractObject)element;
+      if (r.objects.containsKey(object.getObjectId()) || r.ancestors.contains(object.getObjectId()))
+         return true;
+
+      if (!object.hasChildren() && object.hasParents() &&
+            ((element instanceof Interface) || (element instanceof AccessPoint) || (element instanceof NetworkService) || (element instanceof VPNConnector)))
+      {
+         return r.objects.containsKey(object.getParentIdList()[0]);
+      }
+		return false;
 	}
 	
 	private boolean passMainFilters(Object element)
@@ -209,107 +215,165 @@ private boolean passMainFilters(Object element)
 	}
 
 	/**
-	 * Set filter string
+	 * Set filter string. Matching objects are searched in calling thread.
 	 * 
 	 * @param filterString new filter string
 	 */
 	public void setFilterString(final String filterString)
 	{
-		boolean fullSearch = true;
-		if ((filterString != null) && !filterString.isEmpty())
-		{
-			if (filterString.charAt(0) == '/')
-			{
-				mode = COMMENTS;
-            String newFilterString = filterString.substring(1).toLowerCase();
-            if ((this.filterString != null) && newFilterString.startsWith(this.filterString))
-               fullSearch = false;
-            this.filterString = newFilterString;
-			}
-			else if (filterString.charAt(0) == '>')
-			{
-            mode = IP_ADDRESS_PATTERN;
-				this.filterString = filterString.substring(1);
-			}
-         else if (filterString.charAt(0) == '^')
+      generation.incrementAndGet();
+      Criteria criteria = parseFilterString(filterString, Registry.getSession());
+      matchResult = (criteria != null) ? findMatchingObjects(criteria, getNarrowingBase(criteria), () -> false) : null;
+	}
+
+   /**
+    * Set filter string asynchronously. Matching objects are searched by background job, and filter is updated in UI thread
+    * when search completes. Search started by previous call that is still running is cancelled, so only result for the last
+    * filter string is applied. Must be called from UI thread.
+    *
+    * @param filterString new filter string
+    * @param completionHandler handler called in UI thread after filter update (can be null)
+    */
+   public void setFilterStringAsync(final String filterString, final Runnable completionHandler)
+   {
+      final long currentGeneration = generation.incrementAndGet();
+      final Criteria criteria = parseFilterString(filterString, Registry.getSession());
+      if (criteria == null)
+      {
+         matchResult = null;
+         if (completionHandler != null)
+            completionHandler.run();
+         return;
+      }
+
+      final MatchResult base = getNarrowingBase(criteria);
+      Job job = new Job(i18n.tr("Filtering objects"), null) {
+         @Override
+         protected void run(IProgressMonitor monitor) throws Exception
          {
-            mode = IP_ADDRESS_EXACT;
-            this.filterString = filterString.substring(1);
+            final MatchResult result = findMatchingObjects(criteria, base, () -> generation.get() != currentGeneration);
+            if (result == null)
+               return; // cancelled
+            runInUIThread(() -> {
+               if (generation.get() != currentGeneration)
+                  return;
+               matchResult = result;
+               if (completionHandler != null)
+                  completionHandler.run();
+            });
          }
-			else if (filterString.charAt(0) == '#')
-			{
-			   mode = OBJECT_ID;
-			   this.filterString = filterString.substring(1);
-			}
-			else if (filterString.charAt(0) == '@')
-			{
-			   mode = ZONE;
-			   this.filterString = filterString.substring(1);
-			}
-			else
-			{
-				mode = NAME;
-				usePatternMatching = filterString.contains("*") || filterString.contains("?"); //$NON-NLS-1$ //$NON-NLS-2$
-				if (usePatternMatching)
-				{
-					this.filterString = filterString.toLowerCase() + "*"; //$NON-NLS-1$
-				}
-				else
-				{
-					String newFilterString = filterString.toLowerCase();
-					if ((this.filterString != null) && newFilterString.startsWith(this.filterString))
-					   fullSearch = false;
-					this.filterString = newFilterString;
-				}
-			}
-		}
-		else
-		{
-			this.filterString = null;
-			usePatternMatching = false;
-			mode = NONE;
-		}
-		updateObjectList(fullSearch);
-	}
+
+         @Override
+         protected String getErrorMessage()
+         {
+            return i18n.tr("Cannot filter objects");
+         }
+      };
+      job.setUser(false);
+      job.setSystem(true);
+      job.start();
+   }
+
+   /**
+    * Parse filter string.
+    *
+    * @param filterString filter string
+    * @param session client session
+    * @return filter criteria or null if filter string is empty
+    */
+   private static Criteria parseFilterString(String filterString, NXCSession session)
+   {
+      if ((filterString == null) || filterString.isEmpty())
+         return null;
+
+      switch(filterString.charAt(0))
+      {
+         case '/':
+            return new Criteria(COMMENTS, filterString.substring(1).toLowerCase(), false, session);
+         case '>':
+            return new Criteria(IP_ADDRESS_PATTERN, filterString.substring(1), false, session);
+         case '^':
+            return new Criteria(IP_ADDRESS_EXACT, filterString.substring(1), false, session);
+         case '#':
+            return new Criteria(OBJECT_ID, filterString.substring(1), false, session);
+         case '@':
+            return new Criteria(ZONE, filterString.substring(1), false, session);
+         default:
+            boolean usePatternMatching = filterString.contains("*") || filterString.contains("?"); //$NON-NLS-1$ //$NON-NLS-2$
+            return new Criteria(NAME, usePatternMatching ? filterString.toLowerCase() + "*" : filterString.toLowerCase(), usePatternMatching, session); //$NON-NLS-1$
+      }
+   }
+
+   /**
+    * Get current match result if it can be used as base for new search (new filter string only narrows current one).
+    *
+    * @param criteria new filter criteria
+    * @return current match result or null if full search is required
+    */
+   private MatchResult getNarrowingBase(Criteria criteria)
+   {
+      MatchResult r = matchResult;
+      if ((r == null) || (r.criteria.mode != criteria.mode) || criteria.usePatternMatching || r.criteria.usePatternMatching)
+         return null;
+      if ((criteria.mode != NAME) && (criteria.mode != COMMENTS))
+         return null;
+      return criteria.filterString.startsWith(r.criteria.filterString) ? r : null;
+   }
 
 	/**
-	 * Update list of matching objects
-	 */
-	private void updateObjectList(boolean doFullSearch)
-	{
-		if (filterString != null)
-		{
-			if (doFullSearch)
-			{
-            List<AbstractObject> fullList = (sourceObjects != null) ? sourceObjects : Registry.getSession().getAllObjects();
-				objectList = new HashMap<Long, AbstractObject>();
-				for(AbstractObject o : fullList)
-               if (matchFilterString(o) && passMainFilters(o))
-					{
-						objectList.put(o.getObjectId(), o);
-						lastMatch = o;
-					}
-			}
-			else
-			{
-				lastMatch = null;
-				Iterator<AbstractObject> it = objectList.values().iterator();
-				while(it.hasNext())
-				{
-					AbstractObject obj = it.next();
-					if (!matchFilterString(obj) || !passMainFilters(obj))
-						it.remove();
-					else
-						lastMatch = obj;
-				}
-			}
-		}
-		else
-		{
-			objectList = null;
-			lastMatch = null;
-		}
-	}
+    * Find objects matching given criteria and build closure of their ancestors.
+    *
+    * @param criteria filter criteria
+    * @param base previous result to narrow (null for full search)
+    * @param cancellationCheck cancellation check
+    * @return match result or null if search was cancelled
+    */
+   private MatchResult findMatchingObjects(Criteria criteria, MatchResult base, BooleanSupplier cancellationCheck)
+   {
+      Collection<AbstractObject> candidates = (base != null) ? base.objects.values() :
+            ((sourceObjects != null) ? sourceObjects : criteria.session.getAllObjects());
+
+      Map<Long, AbstractObject> objects = new HashMap<Long, AbstractObject>();
+      AbstractObject lastMatch = null;
+      int count = 0;
+      for(AbstractObject o : candidates)
+      {
+         if ((++count % CANCELLATION_CHECK_INTERVAL == 0) && cancellationCheck.getAsBoolean())
+            return null;
+         if (matchFilterString(criteria, o) && passMainFilters(o))
+         {
+            objects.put(o.getObjectId(), o);
+            lastMatch = o;
+         }
+      }
+
+      // Ancestor closure - every object is visited at most once, regardless of number of matching descendants
+      Set<Long> ancestors = new HashSet<Long>();
+      Deque<Long> pending = new ArrayDeque<Long>();
+      for(AbstractObject o : objects.values())
+      {
+         if ((++count % CANCELLATION_CHECK_INTERVAL == 0) && cancellationCheck.getAsBoolean())
+            return null;
+         for(long parentId : o.getParentIdList())
+         {
+            if (ancestors.add(parentId))
+               pending.push(parentId);
+         }
+         while(!pending.isEmpty())
+         {
+            AbstractObject parent = criteria.session.findObjectById(pending.pop());
+            if (parent == null)
+               continue;
+            for(long parentId : parent.getParentIdList())
+            {
+               if (ancestors.add(parentId))
+                  pending.push(parentId);
+            }
+         }
+      }
+
+      return new MatchResult(criteria, objects, ancestors, lastMatch);
+   }
 
 	/**
 	 * Get last matched object
@@ -317,7 +381,8 @@ private void updateObjectList(boolean doFullSearch)
 	 */
 	public final AbstractObject getLastMatch()
 	{
-		return lastMatch;
+      MatchResult r = matchResult;
+		return (r != null) ? r.lastMatch : null;
 	}
 
 	/**
@@ -367,4 +432,48 @@ public void setHideSubInterfaces(boolean hideSubInterfaces)
    {
       this.hideSubInterfaces = hideSubInterfaces;
    }
+
+   /**
+    * Parsed filter criteria
+    */
+   private static final class Criteria
+   {
+      final int mode;
+      final String filterString;
+      final boolean usePatternMatching;
+      final NXCSession session;
+
+      /**
+       * Create criteria.
+       */
+      Criteria(int mode, String filterString, boolean usePatternMatching, NXCSession session)
+      {
+         this.mode = mode;
+         this.filterString = filterString;
+         this.usePatternMatching = usePatternMatching;
+         this.session = session;
+      }
+   }
+
+   /**
+    * Immutable result of object search
+    */
+   private static final class MatchResult
+   {
+      final Criteria criteria;
+      final Map<Long, AbstractObject> objects;
+      final Set<Long> ancestors;
+      final AbstractObject lastMatch;
+
+      /**
+       * Create result.
+       */
+      MatchResult(Criteria criteria, Map<Long, AbstractObject> objects, Set<Long> ancestors, AbstractObject lastMatch)
+      {
+         this.criteria = criteria;
+         this.objects = objects;
+         this.ancestors = ancestors;
+         this.lastMatch = lastMatch;
+      }
+   }
 }
@@ -52,7 +52,6 @@
 import org.netxms.client.datacollection.ChartConfiguration;
 import org.netxms.client.datacollection.ChartDciConfig;
 import org.netxms.client.datacollection.DataFormatter;
-import org.netxms.client.datacollection.DciDataRow;
 import org.netxms.client.datacollection.Threshold;
 import org.netxms.client.events.EventTemplate;
 import org.netxms.nxmc.PreferenceStore;
@@ -60,6 +59,7 @@
 import org.netxms.nxmc.localization.DateFormatFactory;
 import org.netxms.nxmc.modules.charts.api.ChartColor;
 import org.netxms.nxmc.modules.charts.api.DataPoint;
+import org.netxms.nxmc.modules.charts.api.DataSeries;
 import org.netxms.nxmc.modules.charts.widgets.internal.SelectionRectangle;
 import org.netxms.nxmc.resources.StatusDisplayInfo;
 import org.netxms.nxmc.resources.ThemeEngine;
@@ -513,16 +513,13 @@ public void refresh()
     */
    private void updateSeries(int index, ChartDciConfig item)
 	{
-      final DciDataRow[] values = chart.getDataSeries().get(index).getValues();
+      final DataSeries values = chart.getDataSeries().get(index);
 
 		// Create series
-		Date[] xSeries = new Date[values.length];
-		double[] ySeries = new double[values.length];
-		for(int i = 0; i < values.length; i++)
-		{
-			xSeries[i] = values[i].getTimestamp();
-			ySeries[i] = values[i].getValueAsDouble();
-		}
+		Date[] xSeries = new Date[values.size()];
+		for(int i = 0; i < xSeries.length; i++)
+			xSeries[i] = new Date(values.getTimestamp(i));
+		double[] ySeries = values.getValuesAsDouble();
 
       ILineSeries<?> series = addLineSeries(index, item.getLabel(), xSeries, ySeries);
       if (item.getColorAsInt() != -1)
@@ -45,7 +45,7 @@
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.FileDialog;
-import org.netxms.client.datacollection.DciDataRow;
+import org.netxms.client.datacollection.DciData;
 import org.netxms.client.objects.AbstractObject;
 import org.netxms.client.objects.Dashboard;
 import org.netxms.nxmc.base.jobs.Job;
@@ -205,21 +205,22 @@ protected void run(IProgressMonitor monitor) throws Exception
             List<Date> combinedTimeSeries = new ArrayList<Date>();
             for(DataCacheElement d : data)
             {
-               for(DciDataRow r : d.data.getValues())
+               for(int n = 0; n < d.data.size(); n++)
                {
+                  final long timestamp = d.data.getTimestamp(n);
                   int i;
                   for(i = 0; i < combinedTimeSeries.size(); i++)
                   {
-                     if (combinedTimeSeries.get(i).getTime() == r.getTimestamp().getTime())
+                     if (combinedTimeSeries.get(i).getTime() == timestamp)
                         break;                 
-                     if (combinedTimeSeries.get(i).getTime() < r.getTimestamp().getTime())
+                     if (combinedTimeSeries.get(i).getTime() < timestamp)
                      {
-                        combinedTimeSeries.add(i, r.getTimestamp());
+                        combinedTimeSeries.add(i, new Date(timestamp));
                         break;
                      }
                   }
                   if (i == combinedTimeSeries.size())
-                     combinedTimeSeries.add(r.getTimestamp());
+                     combinedTimeSeries.add(new Date(timestamp));
                }
             }
 
@@ -232,18 +233,18 @@ protected void run(IProgressMonitor monitor) throws Exception
                int combinedIndex = 0;
                double lastValue = 0;
                long lastTimestamp = 0;
-               DciDataRow[] values = d.data.getValues();
-               for(int i = 0; i < values.length; i++)
+               final DciData values = d.data;
+               for(int i = 0; i < values.size(); i++)
                {
-                  Date currentTimestamp = values[i].getTimestamp();
-                  double currentValue = values[i].getValueAsDouble();
+                  long currentTimestamp = values.getTimestamp(i);
+                  double currentValue = values.getValueAsDouble(i);
                   long currentCombinedTimestamp = combinedTimeSeries.get(combinedIndex).getTime();
-                  while(currentCombinedTimestamp > currentTimestamp.getTime())
+                  while(currentCombinedTimestamp > currentTimestamp)
                   {
                      if ((lastTimestamp != 0) && doInterpolation)
                      {
                         // do linear interpolation for missed value
-                        ySeries[combinedIndex] = lastValue + (currentValue - lastValue) * ((double)(lastTimestamp - currentCombinedTimestamp) / (double)(lastTimestamp - currentTimestamp.getTime()));
+                        ySeries[combinedIndex] = lastValue + (currentValue - lastValue) * ((double)(lastTimestamp - currentCombinedTimestamp) / (double)(lastTimestamp - currentTimestamp));
                      }
                      else
                      {
@@ -253,7 +254,7 @@ protected void run(IProgressMonitor monitor) throws Exception
                      currentCombinedTimestamp = combinedTimeSeries.get(combinedIndex).getTime();
                   }
                   ySeries[combinedIndex++] = currentValue;
-                  lastTimestamp = currentTimestamp.getTime();
+                  lastTimestamp = currentTimestamp;
                   lastValue = currentValue;
                }
                combinedData.add(ySeries);
@@ -158,6 +158,19 @@ public int end()
       return ret;
    }
 
+   /**
+    * Reset compression state so deflater can be reused for new stream without re-allocating internal buffers.
+    *
+    * @return Z_OK on success
+    */
+   public int reset()
+   {
+      if (dstate == null)
+         return Z_STREAM_ERROR;
+      finished = false;
+      return dstate.deflateReset();
+   }
+
    public int params(int level, int strategy)
    {
       if (dstate == null)
@@ -0,0 +1,84 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading from byte buffer without copying it. Reading advances buffer's position.
+ */
+public class ByteBufferInputStream extends InputStream
+{
+   private ByteBuffer buffer;
+
+   /**
+    * Create input stream for reading remaining bytes of given buffer.
+    *
+    * @param buffer source buffer
+    */
+   public ByteBufferInputStream(ByteBuffer buffer)
+   {
+      this.buffer = buffer;
+   }
+
+   /**
+    * @see java.io.InputStream#read()
+    */
+   @Override
+   public int read()
+   {
+      return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+   }
+
+   /**
+    * @see java.io.InputStream#read(byte[], int, int)
+    */
+   @Override
+   public int read(byte[] b, int off, int len)
+   {
+      if (len == 0)
+         return 0;
+      if (!buffer.hasRemaining())
+         return -1;
+      int bytes = Math.min(len, buffer.remaining());
+      buffer.get(b, off, bytes);
+      return bytes;
+   }
+
+   /**
+    * @see java.io.InputStream#skip(long)
+    */
+   @Override
+   public long skip(long n)
+   {
+      int bytes = (int)Math.min(Math.max(n, 0), buffer.remaining());
+      buffer.position(buffer.position() + bytes);
+      return bytes;
+   }
+
+   /**
+    * @see java.io.InputStream#available()
+    */
+   @Override
+   public int available()
+   {
+      return buffer.remaining();
+   }
+}
@@ -0,0 +1,138 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+import com.jcraft.jzlib.Deflater;
+import com.jcraft.jzlib.GZIPException;
+import com.jcraft.jzlib.JZlib;
+
+/**
+ * Deflate (zlib) compression codec. This is the only compression method supported by NXCP peers, and produces data in format
+ * expected by receiver for messages with MF_COMPRESSED flag. Underlying deflater is created on first use and reset between
+ * calls, so internal window and hash tables are allocated only once per codec instance.
+ */
+public class DeflateCodec implements NXCPCompressionCodec
+{
+   /**
+    * Fastest compression (lowest compression ratio)
+    */
+   public static final int LEVEL_FASTEST = JZlib.Z_BEST_SPEED;
+
+   /**
+    * Default zlib compression level
+    */
+   public static final int LEVEL_DEFAULT = 6;
+
+   /**
+    * Best compression (slowest)
+    */
+   public static final int LEVEL_BEST = JZlib.Z_BEST_COMPRESSION;
+
+   private final int level;
+   private Deflater deflater = null;
+
+   /**
+    * Create deflate codec with given compression level.
+    *
+    * @param level compression level (1 to 9)
+    * @throws IllegalArgumentException if compression level is out of range
+    */
+   public DeflateCodec(int level)
+   {
+      if ((level < LEVEL_FASTEST) || (level > LEVEL_BEST))
+         throw new IllegalArgumentException("Invalid compression level " + level);
+      this.level = level;
+   }
+
+   /**
+    * Create deflate codec with best compression level.
+    */
+   public DeflateCodec()
+   {
+      this(LEVEL_BEST);
+   }
+
+   /**
+    * @see org.netxms.base.NXCPCompressionCodec#getName()
+    */
+   @Override
+   public String getName()
+   {
+      return "deflate";
+   }
+
+   /**
+    * @see org.netxms.base.NXCPCompressionCodec#getLevel()
+    */
+   @Override
+   public int getLevel()
+   {
+      return level;
+   }
+
+   /**
+    * @see org.netxms.base.NXCPCompressionCodec#compress(byte[], int, int, byte[], int, int)
+    */
+   @Override
+   public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int maxLength)
+   {
+      try
+      {
+         if (deflater == null)
+            deflater = new Deflater(level);
+         else if (deflater.reset() != JZlib.Z_OK)
+            deflater = new Deflater(level);
+      }
+      catch(GZIPException e)
+      {
+         deflater = null;
+         return -1;
+      }
+
+      deflater.setInput(src, srcOffset, srcLength, false);
+      deflater.setOutput(dst, dstOffset, maxLength);
+      final int rc = deflater.deflate(JZlib.Z_FINISH);
+      final int compressedSize = (int)deflater.getTotalOut();
+      // Drop references to caller's arrays
+      deflater.setInput(null, 0, 0, false);
+      deflater.setOutput(null, 0, 0);
+      return (rc == JZlib.Z_STREAM_END) ? compressedSize : -1;
+   }
+
+   /**
+    * Release resources used by underlying deflater. Codec can still be used after this call.
+    */
+   public void close()
+   {
+      if (deflater != null)
+      {
+         deflater.end();
+         deflater = null;
+      }
+   }
+
+   /**
+    * @see java.lang.Object#toString()
+    */
+   @Override
+   public String toString()
+   {
+      return "DeflateCodec [level=" + level + "]";
+   }
+}
@@ -21,6 +21,7 @@
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.KeyFactory;
@@ -286,7 +287,21 @@ private byte[] encryptPayloadHeader(byte[] msgBytes) throws IOException
 	 */
 	public byte[] encryptMessage(NXCPMessage msg, boolean allowCompression) throws IOException, GeneralSecurityException
 	{
-		final byte[] msgBytes = msg.createNXCPMessage(allowCompression);
+		return encryptMessage(msg, allowCompression ? new DeflateCodec(DeflateCodec.LEVEL_BEST) : null);
+	}
+
+	/**
+	 * Encrypt NXCP message, compressing payload with given codec.
+	 * 
+	 * @param msg message to encrypt
+	 * @param codec compression codec or null to disable compression
+	 * @return encrypted message as sequence of bytes, ready to send over the network
+	 * @throws IOException if I/O error occurs
+	 * @throws GeneralSecurityException if any of underlying crypto functions fails
+	 */
+	public byte[] encryptMessage(NXCPMessage msg, NXCPCompressionCodec codec) throws IOException, GeneralSecurityException
+	{
+		final byte[] msgBytes = msg.createNXCPMessage(codec);
 		
 		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
 		DataOutputStream outputStream = new DataOutputStream(byteStream);
@@ -351,6 +366,25 @@ public byte[] decryptMessage(NXCPDataInputStream inputStream, int length) throws
 		return byteStream.toByteArray();
 	}
 	
+   /**
+    * Decrypt message from byte buffer. All bytes between buffer's position and limit are decrypted and buffer position is
+    * advanced to its limit.
+    *
+    * @param buffer byte buffer containing encrypted message
+    * @return decrypted message
+    * @throws GeneralSecurityException if any of underlying crypto functions fails
+    */
+   public byte[] decryptMessage(ByteBuffer buffer) throws GeneralSecurityException
+   {
+      synchronized(decryptor)
+      {
+         decryptor.init(Cipher.DECRYPT_MODE, key, iv);
+         ByteBuffer output = ByteBuffer.allocate(decryptor.getOutputSize(buffer.remaining()));
+         decryptor.doFinal(buffer, output);
+         return (output.position() == output.capacity()) ? output.array() : Arrays.copyOf(output.array(), output.position());
+      }
+   }
+
 	/**
 	 * Get cipher
 	 * 
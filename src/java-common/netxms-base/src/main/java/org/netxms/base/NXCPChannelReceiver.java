@@ -0,0 +1,246 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Message receiver for NXCP protocol working on top of byte buffer. Messages are parsed directly from receive buffer without
+ * intermediate copies. Buffer is used as a ring: read and write positions only move forward, and are reset when all received
+ * data is consumed. Data is moved within buffer only when incomplete message reaches the end of the buffer.
+ */
+public class NXCPChannelReceiver
+{
+   private int defaultBufferSize;
+   private int maxBufferSize;
+   private boolean direct;
+   private boolean lazyFieldDecoding = false;
+   private ByteBuffer buffer;
+   private int readPos = 0;
+   private int writePos = 0;
+
+   /**
+    * Create new receiver with heap buffer.
+    *
+    * @param defaultBufferSize default receiving buffer size (in bytes)
+    * @param maxBufferSize maximum receiving buffer size (in bytes)
+    */
+   public NXCPChannelReceiver(int defaultBufferSize, int maxBufferSize)
+   {
+      this(defaultBufferSize, maxBufferSize, false);
+   }
+
+   /**
+    * Create new receiver.
+    *
+    * @param defaultBufferSize default receiving buffer size (in bytes)
+    * @param maxBufferSize maximum receiving buffer size (in bytes)
+    * @param direct true to use direct byte buffer
+    */
+   public NXCPChannelReceiver(int defaultBufferSize, int maxBufferSize, boolean direct)
+   {
+      this.defaultBufferSize = defaultBufferSize;
+      this.maxBufferSize = maxBufferSize;
+      this.direct = direct;
+      buffer = allocate(defaultBufferSize);
+   }
+
+   /**
+    * Allocate new buffer.
+    *
+    * @param size buffer size
+    * @return new buffer
+    */
+   private ByteBuffer allocate(int size)
+   {
+      return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+   }
+
+   /**
+    * Check if lazy field decoding is enabled for received messages.
+    *
+    * @return true if lazy field decoding is enabled
+    */
+   public boolean isLazyFieldDecoding()
+   {
+      return lazyFieldDecoding;
+   }
+
+   /**
+    * Enable or disable lazy field decoding for received messages. When enabled, messages keep raw field data and decode
+    * individual fields on first access.
+    *
+    * @param lazyFieldDecoding true to enable lazy field decoding
+    */
+   public void setLazyFieldDecoding(boolean lazyFieldDecoding)
+   {
+      this.lazyFieldDecoding = lazyFieldDecoding;
+   }
+
+   /**
+    * Get message from receiver's buffer
+    *
+    * @param ectx encryption context
+    * @return message object or null if there are not enough data in the buffer
+    * @throws IOException if message cannot be parsed
+    * @throws NXCPException if message is too large or cannot be decrypted
+    */
+   private NXCPMessage getMessageFromBuffer(EncryptionContext ectx) throws IOException, NXCPException
+   {
+      final int available = writePos - readPos;
+      if (available < NXCPMessage.HEADER_SIZE)
+      {
+         ensureSpace(NXCPMessage.HEADER_SIZE);
+         return null;
+      }
+
+      final long size = (long)buffer.getInt(readPos + 4) & 0xFFFFFFFFL;
+      if (size > maxBufferSize)
+         throw new NXCPException(NXCPException.MESSAGE_TOO_LARGE);
+      if (size < NXCPMessage.HEADER_SIZE)
+         throw new NXCPException(NXCPException.FATAL_PROTOCOL_ERROR);
+
+      if (size > available)
+      {
+         ensureSpace((int)size);
+         return null;
+      }
+
+      // Entire message in buffer, parse it in place
+      final ByteBuffer view = buffer.duplicate();
+      view.limit(readPos + (int)size).position(readPos);
+      try
+      {
+         return new NXCPMessage(view, ectx, lazyFieldDecoding);
+      }
+      finally
+      {
+         readPos += (int)size;
+         if (readPos == writePos)
+         {
+            readPos = 0;
+            writePos = 0;
+            // Shrink buffer if possible
+            if (buffer.capacity() > defaultBufferSize)
+               buffer = allocate(defaultBufferSize);
+         }
+      }
+   }
+
+   /**
+    * Make sure that message of given size starting at current read position will fit into buffer.
+    *
+    * @param size message size
+    */
+   private void ensureSpace(int size)
+   {
+      if (readPos + size <= buffer.capacity())
+         return;
+
+      buffer.limit(writePos).position(readPos);
+      if (size > buffer.capacity())
+      {
+         final ByteBuffer target = allocate(size);
+         target.put(buffer);
+         buffer = target;
+      }
+      else
+      {
+         buffer.compact();
+      }
+      writePos -= readPos;
+      readPos = 0;
+   }
+
+   /**
+    * Receive NXCP message from byte channel
+    *
+    * @param channel byte channel
+    * @param ectx encryption context
+    * @return message object
+    * @throws IOException if read from channel fails
+    * @throws NXCPException if message is too large or if communication session is closed
+    */
+   public NXCPMessage receiveMessage(final ReadableByteChannel channel, EncryptionContext ectx) throws IOException, NXCPException
+   {
+      while(true)
+      {
+         NXCPMessage msg = getMessageFromBuffer(ectx);
+         if (msg != null)
+            return msg;
+         buffer.limit(buffer.capacity()).position(writePos);
+         final int bytes = channel.read(buffer);
+         if (bytes == -1)
+            throw new NXCPException(NXCPException.SESSION_CLOSED);
+         writePos += bytes;
+      }
+   }
+
+   /**
+    * Receive NXCP message from input stream. For heap buffers data is read directly into buffer's backing array.
+    *
+    * @param in input stream
+    * @param ectx encryption context
+    * @return message object
+    * @throws IOException if read from input stream fails
+    * @throws NXCPException if message is too large or if communication session is closed
+    */
+   public NXCPMessage receiveMessage(final InputStream in, EncryptionContext ectx) throws IOException, NXCPException
+   {
+      byte[] tempBuffer = null;
+      while(true)
+      {
+         NXCPMessage msg = getMessageFromBuffer(ectx);
+         if (msg != null)
+            return msg;
+         final int bytes;
+         if (buffer.hasArray())
+         {
+            bytes = in.read(buffer.array(), buffer.arrayOffset() + writePos, buffer.capacity() - writePos);
+         }
+         else
+         {
+            if (tempBuffer == null)
+               tempBuffer = new byte[8192];
+            bytes = in.read(tempBuffer, 0, Math.min(tempBuffer.length, buffer.capacity() - writePos));
+            if (bytes > 0)
+            {
+               buffer.limit(buffer.capacity()).position(writePos);
+               buffer.put(tempBuffer, 0, bytes);
+            }
+         }
+         if (bytes == -1)
+            throw new NXCPException(NXCPException.SESSION_CLOSED);
+         writePos += bytes;
+      }
+   }
+
+   /**
+    * @see java.lang.Object#toString()
+    */
+   @Override
+   public String toString()
+   {
+      return "NXCPChannelReceiver [defaultBufferSize=" + defaultBufferSize + " maxBufferSize=" + maxBufferSize + " direct=" + direct +
+            " capacity=" + buffer.capacity() + " readPos=" + readPos + " writePos=" + writePos + "]";
+   }
+}
@@ -0,0 +1,53 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+/**
+ * Compression codec used for NXCP message payload compression. Codec instances may keep internal state between calls to avoid
+ * re-allocation of working buffers, so single instance should be used by one thread at a time.
+ */
+public interface NXCPCompressionCodec
+{
+   /**
+    * Get codec name.
+    *
+    * @return codec name
+    */
+   public String getName();
+
+   /**
+    * Get compression level used by this codec.
+    *
+    * @return compression level
+    */
+   public int getLevel();
+
+   /**
+    * Compress given data block. Compression is considered failed if compressed data does not fit into given output space.
+    *
+    * @param src source array
+    * @param srcOffset offset of data in source array
+    * @param srcLength length of data in source array
+    * @param dst destination array
+    * @param dstOffset offset in destination array
+    * @param maxLength maximum number of bytes that can be written to destination array
+    * @return size of compressed data or -1 if data cannot be compressed into given space
+    */
+   public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int maxLength);
+}
@@ -0,0 +1,206 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Index of encoded fields within raw NXCP message data. Maps field ID to field offset using open addressing hash table with
+ * primitive keys. Fields are decoded on first access and cached.
+ */
+final class NXCPFieldIndex
+{
+   private final ByteBuffer data;
+   private final long[] keys;
+   private final int[] offsets;
+   private final NXCPMessageField[] decoded;
+   private final int shift;
+   private int size = 0;
+
+   /**
+    * Build index for given number of fields starting at current position of given buffer. Buffer should not be modified after
+    * index is built.
+    *
+    * @param data buffer with encoded fields
+    * @param numFields number of fields
+    * @throws IOException if encoded fields are incomplete or malformed
+    */
+   NXCPFieldIndex(ByteBuffer data, int numFields) throws IOException
+   {
+      this.data = data;
+
+      // Each field takes at least 8 bytes, so field count cannot exceed data size / 8
+      if ((numFields < 0) || (numFields > data.remaining() / 8))
+         throw new EOFException("Invalid NXCP message field count");
+      int capacity = Integer.highestOneBit(Math.max(numFields, 4) * 2 - 1) << 1;
+      shift = 64 - Integer.numberOfTrailingZeros(capacity);
+      keys = new long[capacity];
+      offsets = new int[capacity];
+      decoded = new NXCPMessageField[capacity];
+      for(int i = 0; i < capacity; i++)
+         offsets[i] = -1;
+
+      int offset = data.position();
+      final int limit = data.limit();
+      for(int i = 0; i < numFields; i++)
+      {
+         if (offset + 8 > limit)
+            throw new EOFException("Incomplete NXCP message field");
+         final int fieldSize = NXCPMessageField.getEncodedSize(data, offset);
+         if ((fieldSize < 0) || (offset + fieldSize > limit))
+            throw new EOFException("Incomplete NXCP message field");
+         put((long)data.getInt(offset) & 0xFFFFFFFFL, offset);
+         // Each field aligned to 8-bytes boundary
+         offset = Math.min(offset + ((fieldSize + 7) & ~7), limit);
+      }
+   }
+
+   /**
+    * Calculate slot for given key.
+    *
+    * @param key field ID
+    * @return initial slot
+    */
+   private int slot(long key)
+   {
+      return (int)((key * 0x9E3779B97F4A7C15L) >>> shift);
+   }
+
+   /**
+    * Add field offset to index. Later fields with same ID replace earlier ones.
+    *
+    * @param key field ID
+    * @param offset field offset
+    */
+   private void put(long key, int offset)
+   {
+      final int mask = keys.length - 1;
+      int i = slot(key);
+      while(offsets[i] != -1)
+      {
+         if (keys[i] == key)
+         {
+            offsets[i] = offset;
+            return;
+         }
+         i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      offsets[i] = offset;
+      size++;
+   }
+
+   /**
+    * Find slot for given key.
+    *
+    * @param key field ID
+    * @return slot index or -1 if not found
+    */
+   private int find(long key)
+   {
+      final int mask = keys.length - 1;
+      int i = slot(key);
+      while(offsets[i] != -1)
+      {
+         if (keys[i] == key)
+            return i;
+         i = (i + 1) & mask;
+      }
+      return -1;
+   }
+
+   /**
+    * Decode field in given slot.
+    *
+    * @param slot slot index
+    * @return decoded field or null if field cannot be decoded
+    */
+   private NXCPMessageField decode(int slot)
+   {
+      NXCPMessageField field = decoded[slot];
+      if (field == null)
+      {
+         final ByteBuffer in = data.duplicate();
+         in.position(offsets[slot]);
+         try
+         {
+            field = new NXCPMessageField(in);
+            decoded[slot] = field;
+         }
+         catch(IOException e)
+         {
+            return null;
+         }
+      }
+      return field;
+   }
+
+   /**
+    * Check if field with given ID is present.
+    *
+    * @param fieldId field ID
+    * @return true if field is present
+    */
+   boolean contains(long fieldId)
+   {
+      return find(fieldId) != -1;
+   }
+
+   /**
+    * Get field with given ID, decoding it if needed.
+    *
+    * @param fieldId field ID
+    * @return field or null if not found
+    */
+   synchronized NXCPMessageField get(long fieldId)
+   {
+      final int slot = find(fieldId);
+      return (slot != -1) ? decode(slot) : null;
+   }
+
+   /**
+    * Decode all fields and put them into given map.
+    *
+    * @param fields target map
+    */
+   synchronized void decodeAll(Map<Long, NXCPMessageField> fields)
+   {
+      for(int i = 0; i < offsets.length; i++)
+      {
+         if (offsets[i] == -1)
+            continue;
+         NXCPMessageField field = decode(i);
+         if (field != null)
+            fields.put(field.getId(), field);
+      }
+   }
+
+   /**
+    * Get number of indexed fields.
+    *
+    * @return number of indexed fields
+    */
+   int size()
+   {
+      return size;
+   }
+}
@@ -18,11 +18,14 @@
  */
 package org.netxms.base;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -35,10 +38,7 @@
 import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.zip.CRC32;
-import com.jcraft.jzlib.Deflater;
-import com.jcraft.jzlib.DeflaterOutputStream;
 import com.jcraft.jzlib.InflaterInputStream;
-import com.jcraft.jzlib.JZlib;
 
 /**
  * NXCP (NetXMS Communication Protocol) message
@@ -62,8 +62,10 @@
 	private int messageFlags;
 	private long messageId;
 	private Map<Long, NXCPMessageField> fields = new HashMap<Long, NXCPMessageField>(0);
+	private volatile NXCPFieldIndex fieldIndex = null;
 	private long timestamp;
 	private byte[] binaryData = null;
+	private int binaryDataLength = 0;
 	private long controlData = 0;
 
    /**
@@ -91,6 +93,28 @@ public NXCPMessage(final int msgCode, final long msgId)
 		messageFlags = 0;
 	}
 
+   /**
+    * Create copy of given message. Fields are shared with source message, but set of fields can be changed independently.
+    *
+    * @param src source message
+    */
+   public NXCPMessage(final NXCPMessage src)
+   {
+      if (src.fieldIndex != null)
+         src.decodeAllFields();
+      messageCode = src.messageCode;
+      messageFlags = src.messageFlags;
+      messageId = src.messageId;
+      timestamp = src.timestamp;
+      controlData = src.controlData;
+      fields = new HashMap<Long, NXCPMessageField>(src.fields);
+      if (src.binaryData != null)
+      {
+         binaryData = Arrays.copyOf(src.binaryData, src.binaryDataLength);
+         binaryDataLength = src.binaryDataLength;
+      }
+   }
+
 	/**
 	 * Create NXCPMessage from binary NXCP message
 	 * 
@@ -101,147 +125,184 @@ public NXCPMessage(final int msgCode, final long msgId)
 	 */
 	public NXCPMessage(final byte[] nxcpMessage, EncryptionContext ectx) throws IOException, NXCPException
 	{
-		final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(nxcpMessage);
-		final NXCPDataInputStream inputStream = new NXCPDataInputStream(byteArrayInputStream);
-
-		messageCode = inputStream.readUnsignedShort();
-		if (messageCode == NXCPCodes.CMD_ENCRYPTED_MESSAGE)
-		{
-			if (ectx == null)
-			{
-			   inputStream.close();
-				throw new NXCPException(NXCPException.DECRYPTION_ERROR);
-			}
-			
-			int padding = inputStream.readByte();
-			inputStream.skipBytes(1);
-			int msgLen = inputStream.readInt();
-			byte[] payload;
-			try
-			{
-				payload = ectx.decryptMessage(inputStream, msgLen - padding - ENCRYPTION_HEADER_SIZE);
-			}
-			catch(GeneralSecurityException e)
-			{		   
-				throw new NXCPException(NXCPException.DECRYPTION_ERROR, e);
-			}
-
-			final ByteArrayInputStream payloadByteArrayInputStream = new ByteArrayInputStream(payload);
-			final NXCPDataInputStream payloadInputStream = new NXCPDataInputStream(payloadByteArrayInputStream);
-			
-			CRC32 crc32 = new CRC32();
-			crc32.update(payload, 8, payload.length - 8);
-			if (payloadInputStream.readUnsignedInt() != crc32.getValue())
-			{
-			   payloadInputStream.close();
-				throw new NXCPException(NXCPException.DECRYPTION_ERROR);
-			}
-			
-			payloadInputStream.skip(4);
-			messageCode = payloadInputStream.readUnsignedShort();
-			createFromStream(payloadInputStream);
-		}
-		else
-		{
-			createFromStream(inputStream);
-		}
+	   this(ByteBuffer.wrap(nxcpMessage), ectx);
 	}
 
-	/**
-	 * Create NXCPMessage from prepared input byte stream
-	 * @param inputStream
-	 * @param byteArrayInputStream
-	 * @throws IOException
-	 */
-	private void createFromStream(NXCPDataInputStream inputStream) throws IOException
-	{
-		messageFlags = inputStream.readUnsignedShort();
-		inputStream.skipBytes(4);	// Message size
-		messageId = (long)inputStream.readInt();
-		
-		if ((messageFlags & MF_BINARY) == MF_BINARY)
-		{
-			final int size = inputStream.readInt();
-			binaryData = new byte[size];
-         if (((messageFlags & MF_COMPRESSED) == MF_COMPRESSED) && ((messageFlags & MF_STREAM) == 0))
+   /**
+    * Create NXCPMessage from binary NXCP message located between current position and limit of given byte buffer. Fields are
+    * decoded directly from the buffer, so it can be either heap or direct buffer. Buffer's position and limit are not changed.
+    *
+    * @param nxcpMessage byte buffer containing NXCP message
+    * @param ectx encryption context
+    * @throws IOException if message data is incomplete or malformed
+    * @throws NXCPException if message cannot be decrypted
+    */
+   public NXCPMessage(final ByteBuffer nxcpMessage, EncryptionContext ectx) throws IOException, NXCPException
+   {
+      this(nxcpMessage, ectx, false);
+   }
+
+   /**
+    * Create NXCPMessage from binary NXCP message located between current position and limit of given byte buffer. If lazy
+    * decoding is requested, raw field data is kept within message and individual fields are decoded on first access. Buffer's
+    * position and limit are not changed, and buffer can be reused after this call.
+    *
+    * @param nxcpMessage byte buffer containing NXCP message
+    * @param ectx encryption context
+    * @param lazyDecoding true to decode fields on first access
+    * @throws IOException if message data is incomplete or malformed
+    * @throws NXCPException if message cannot be decrypted
+    */
+   public NXCPMessage(final ByteBuffer nxcpMessage, EncryptionContext ectx, boolean lazyDecoding) throws IOException, NXCPException
+   {
+      boolean ownData = false;
+      ByteBuffer in = nxcpMessage.slice().order(ByteOrder.BIG_ENDIAN);
+      if (in.remaining() < HEADER_SIZE)
+         throw new EOFException("Incomplete NXCP message header");
+
+      messageCode = in.getShort(0) & 0xFFFF;
+      if (messageCode == NXCPCodes.CMD_ENCRYPTED_MESSAGE)
+      {
+         if (ectx == null)
+            throw new NXCPException(NXCPException.DECRYPTION_ERROR);
+
+         int padding = in.get(2);
+         int msgLen = in.getInt(4);
+         byte[] payload;
+         try
          {
-            // Compressed message
-            inputStream.skip(4);  // skip original message length
-            inputStream = new NXCPDataInputStream(new InflaterInputStream(inputStream));
+            in.limit(msgLen - padding).position(ENCRYPTION_HEADER_SIZE);
+            payload = ectx.decryptMessage(in);
+         }
+         catch(GeneralSecurityException | IllegalArgumentException e)
+         {
+            throw new NXCPException(NXCPException.DECRYPTION_ERROR, e);
          }
-			inputStream.readFully(binaryData);
-		}
-		else if ((messageFlags & MF_CONTROL) == MF_CONTROL)
-		{
-			controlData = inputStream.readUnsignedInt();
-		}
-		else
-		{
-         final int numVars = inputStream.readInt();
-		   if ((messageFlags & MF_COMPRESSED) == MF_COMPRESSED)
-		   {
-		      // Compressed message
-		      inputStream.skip(4);  // skip original message length
-		      inputStream = new NXCPDataInputStream(new InflaterInputStream(inputStream));
-		   }
-		   
-			for(int i = 0; i < numVars; i++)
-			{
-				// Read first 8 bytes - any DF (data field) is at least 8 bytes long
-				byte[] df = new byte[32];
-				inputStream.readFully(df, 0, 8);
-	
-				switch(df[4])
-				{
-					case NXCPMessageField.TYPE_INT16:
-						break;
-					case NXCPMessageField.TYPE_FLOAT:		// all these types requires additional 8 bytes
-					case NXCPMessageField.TYPE_INTEGER:
-					case NXCPMessageField.TYPE_INT64:
-						inputStream.readFully(df, 8, 8);
-						break;
-					case NXCPMessageField.TYPE_STRING:		// all these types has 4-byte length field followed by actual content
-               case NXCPMessageField.TYPE_UTF8_STRING:
-					case NXCPMessageField.TYPE_BINARY:
-						int size = inputStream.readInt();
-						df = Arrays.copyOf(df, size + 12);
-						intToBytes(size, df, 8);
-						inputStream.readFully(df, 12, size);
-
-						// Each df aligned to 8-bytes boundary
-						final int rem = (size + 12) % 8;
-						if (rem != 0)
-						{
-							inputStream.skipBytes(8 - rem);
-						}
-						break;
-					case NXCPMessageField.TYPE_INETADDR:    // address always 32 byte long
-					   inputStream.readFully(df, 8, 24);
-					   break;
-				}
-	
-				final NXCPMessageField variable = new NXCPMessageField(df);
-				fields.put(variable.getId(), variable);
-			}
-		}
-	}
 
-	/**
-	 * Encode 32 bit integer into byte array (in network byte order)
-	 * 
-	 * @param value integer value
-	 * @param data byte array
-	 * @param offset offset within byte array
-	 * @throws ArrayIndexOutOfBoundsException if given offset is invalid or there is not enough space for placing integer
-	 */
-	private static void intToBytes(int value, byte[] data, int offset) throws ArrayIndexOutOfBoundsException
-	{
-	   data[offset] = (byte)(value >> 24);
-      data[offset + 1] = (byte)((value >> 16) & 0xFF);
-      data[offset + 2] = (byte)((value >> 8) & 0xFF);
-      data[offset + 3] = (byte)(value & 0xFF);
-	}
-	
+         CRC32 crc32 = new CRC32();
+         crc32.update(payload, 8, payload.length - 8);
+         ByteBuffer decrypted = ByteBuffer.wrap(payload);
+         if (((long)decrypted.getInt(0) & 0xFFFFFFFFL) != crc32.getValue())
+            throw new NXCPException(NXCPException.DECRYPTION_ERROR);
+
+         decrypted.position(8);
+         in = decrypted.slice();
+         messageCode = in.getShort(0) & 0xFFFF;
+         ownData = true;
+      }
+      createFromBuffer(in, lazyDecoding, ownData);
+   }
+
+   /**
+    * Create NXCPMessage from prepared byte buffer (starting at message header)
+    *
+    * @param in byte buffer with message data
+    * @param lazyDecoding true to build field index instead of decoding fields
+    * @param ownData true if buffer is owned by this message and can be referenced after construction
+    * @throws IOException if message data is incomplete or malformed
+    */
+   private void createFromBuffer(ByteBuffer in, boolean lazyDecoding, boolean ownData) throws IOException
+   {
+      try
+      {
+         messageFlags = in.getShort(2) & 0xFFFF;
+         messageId = (long)in.getInt(8);
+
+         if ((messageFlags & MF_BINARY) == MF_BINARY)
+         {
+            final int size = in.getInt(12);
+            if (((messageFlags & MF_COMPRESSED) == MF_COMPRESSED) && ((messageFlags & MF_STREAM) == 0))
+            {
+               // Compressed message, skip original message length
+               in.position(HEADER_SIZE + 4);
+               binaryData = inflate(in, size);
+               messageFlags &= ~MF_COMPRESSED;
+            }
+            else
+            {
+               binaryData = new byte[size];
+               in.position(HEADER_SIZE);
+               in.get(binaryData);
+            }
+            binaryDataLength = binaryData.length;
+         }
+         else if ((messageFlags & MF_CONTROL) == MF_CONTROL)
+         {
+            controlData = (long)in.getInt(12) & 0xFFFFFFFFL;
+         }
+         else
+         {
+            final int numVars = in.getInt(12);
+            ByteBuffer data;
+            if ((messageFlags & MF_COMPRESSED) == MF_COMPRESSED)
+            {
+               // Compressed message, first 4 bytes of payload is original message length
+               final int dataSize = in.getInt(HEADER_SIZE) - HEADER_SIZE;
+               in.position(HEADER_SIZE + 4);
+               data = ByteBuffer.wrap(inflate(in, dataSize));
+               ownData = true;
+               messageFlags &= ~MF_COMPRESSED; // clear "compressed" flag so it will not be mistakenly re-sent
+            }
+            else
+            {
+               in.position(HEADER_SIZE);
+               data = in;
+            }
+
+            if (lazyDecoding)
+            {
+               if (!ownData)
+               {
+                  // Receive buffer will be reused, so keep own copy of raw field data
+                  final byte[] raw = new byte[data.remaining()];
+                  data.get(raw);
+                  data = ByteBuffer.wrap(raw);
+               }
+               fieldIndex = new NXCPFieldIndex(data.slice(), numVars);
+               return;
+            }
+
+            for(int i = 0; i < numVars; i++)
+            {
+               final int start = data.position();
+               final NXCPMessageField field = new NXCPMessageField(data);
+               fields.put(field.getId(), field);
+
+               // Each field aligned to 8-bytes boundary
+               final int next = start + ((data.position() - start + 7) & ~7);
+               data.position(Math.min(next, data.limit()));
+            }
+         }
+      }
+      catch(BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e)
+      {
+         throw new EOFException("Incomplete or malformed NXCP message");
+      }
+   }
+
+   /**
+    * Decompress data starting at current buffer position.
+    *
+    * @param in byte buffer with compressed data
+    * @param size expected size of decompressed data
+    * @return decompressed data
+    * @throws IOException if decompression fails
+    */
+   private static byte[] inflate(ByteBuffer in, int size) throws IOException
+   {
+      final byte[] data = new byte[size];
+      final NXCPDataInputStream inputStream = new NXCPDataInputStream(new InflaterInputStream(new ByteBufferInputStream(in)));
+      try
+      {
+         inputStream.readFully(data);
+      }
+      finally
+      {
+         inputStream.close();
+      }
+      return data;
+   }
+
 	/**
     * Get this message's code
     * 
@@ -310,7 +371,8 @@ public void setTimestamp(final long timestamp)
 	 */
 	public NXCPMessageField findField(final long fieldId)
 	{
-		return fields.get(fieldId);
+	   final NXCPFieldIndex index = fieldIndex;
+		return (index != null) ? index.get(fieldId) : fields.get(fieldId);
 	}
 	
 	/**
@@ -321,9 +383,47 @@ public NXCPMessageField findField(final long fieldId)
 	 */
 	public boolean isFieldPresent(final long fieldId)
 	{
-	   return fields.containsKey(fieldId);
+      final NXCPFieldIndex index = fieldIndex;
+	   return (index != null) ? index.contains(fieldId) : fields.containsKey(fieldId);
 	}
 
+   /**
+    * Remove field with given ID from message.
+    *
+    * @param fieldId field ID
+    * @return true if field was present in the message
+    */
+   public boolean removeField(final long fieldId)
+   {
+      if (fieldIndex != null)
+         decodeAllFields();
+      return fields.remove(fieldId) != null;
+   }
+
+   /**
+    * Check if fields of this message are decoded on first access.
+    *
+    * @return true if message has fields that are not decoded yet
+    */
+   public boolean isLazyDecoded()
+   {
+      return fieldIndex != null;
+   }
+
+   /**
+    * Decode all fields not decoded yet and switch message to normal mode.
+    */
+   private synchronized void decodeAllFields()
+   {
+      final NXCPFieldIndex index = fieldIndex;
+      if (index != null)
+      {
+         fields = new HashMap<Long, NXCPMessageField>(index.size() * 2);
+         index.decodeAll(fields);
+         fieldIndex = null;
+      }
+   }
+
 	/**
 	 * Set field as copy of another field
 	 * 
@@ -331,6 +431,8 @@ public boolean isFieldPresent(final long fieldId)
 	 */
 	public void setField(final NXCPMessageField src)
 	{
+	   if (fieldIndex != null)
+	      decodeAllFields();
 		fields.put(src.getId(), src);
 	}
 
@@ -755,6 +857,145 @@ public Date getFieldAsDate(final long fieldId)
 		return (var != null) ? new Date(var.getAsInteger() * 1000) : null;
 	}
 
+   /**
+    * Get size of this message in NXCP encoding without compression.
+    *
+    * @return encoded message size in bytes
+    */
+   public int getEncodedSize()
+   {
+      if ((messageFlags & MF_CONTROL) == MF_CONTROL)
+         return HEADER_SIZE;
+      if ((messageFlags & MF_BINARY) == MF_BINARY)
+         return (binaryDataLength + HEADER_SIZE + 7) & ~7;
+      if (fieldIndex != null)
+         decodeAllFields();
+      int size = HEADER_SIZE;
+      for(NXCPMessageField f : fields.values())
+         size += f.getEncodedSize();
+      return size;
+   }
+
+   /**
+    * Encode this message without compression into given byte buffer at its current position. Buffer should have at least
+    * {@link #getEncodedSize()} bytes remaining and use big endian byte order.
+    *
+    * @param out output buffer
+    */
+   public void encode(ByteBuffer out)
+   {
+      encodeHeader(out, getEncodedSize());
+      if ((messageFlags & MF_CONTROL) == MF_CONTROL)
+         return;
+      if ((messageFlags & MF_BINARY) == MF_BINARY)
+      {
+         out.put(binaryData, 0, binaryDataLength);
+         final int padding = (8 - ((binaryDataLength + HEADER_SIZE) % 8)) & 7;
+         for(int i = 0; i < padding; i++)
+            out.put((byte)0);
+      }
+      else
+      {
+         for(NXCPMessageField f : fields.values())
+            f.encode(out);
+      }
+   }
+
+   /**
+    * Encode message header with given message size into given buffer. For binary messages payload is not encoded, so header
+    * can be sent separately followed by binary data and padding.
+    *
+    * @param out output buffer
+    * @param size message size to be written into header
+    */
+   void encodeHeader(ByteBuffer out, int size)
+   {
+      out.putShort((short)messageCode);
+      // For stream messages "compressed" flag marks compressed stream chunk and should be preserved
+      out.putShort((short)(((messageFlags & MF_STREAM) != 0) ? messageFlags : (messageFlags & ~MF_COMPRESSED)));
+      out.putInt(size);
+      out.putInt((int)messageId);
+      if ((messageFlags & MF_CONTROL) == MF_CONTROL)
+      {
+         out.putInt((int)controlData);
+      }
+      else if ((messageFlags & MF_BINARY) == MF_BINARY)
+      {
+         out.putInt(binaryDataLength); // dwNumVars, here used for real size of the payload (w/o headers and padding)
+      }
+      else
+      {
+         if (fieldIndex != null)
+            decodeAllFields();
+         out.putInt(fields.size());
+      }
+   }
+
+   /**
+    * Check if encoded message is a candidate for compression.
+    *
+    * @param msg encoded message
+    * @return true if message should be compressed
+    */
+   static boolean isCompressible(ByteBuffer msg)
+   {
+      final int flags = msg.getShort(2) & 0xFFFF;
+      if ((flags & MF_CONTROL) != 0)
+         return false;
+      if ((flags & MF_BINARY) != 0)
+         return ((flags & MF_STREAM) == 0) && (msg.getInt(12) > 128);
+      return msg.getInt(4) - HEADER_SIZE > 128;
+   }
+
+   /**
+    * Compress encoded message. Source buffer should be backed by an array and contain complete encoded message starting at
+    * position 0. Compressed message is written to target buffer (also backed by an array) starting at its current position.
+    * Target buffer should have at least as many bytes remaining as the size of source message.
+    *
+    * @param source encoded message
+    * @param target buffer for compressed message
+    * @param codec compression codec
+    * @return true if message was compressed, false if compression does not reduce message size (target buffer content is
+    *         undefined in that case)
+    */
+   static boolean compress(ByteBuffer source, ByteBuffer target, NXCPCompressionCodec codec)
+   {
+      final byte[] src = source.array();
+      final int srcOffset = source.arrayOffset();
+      final int flags = source.getShort(2) & 0xFFFF;
+      final boolean binary = (flags & MF_BINARY) != 0;
+      final int dataSize = binary ? source.getInt(12) : source.getInt(4) - HEADER_SIZE;
+
+      final int start = target.position();
+      final byte[] dst = target.array();
+      final int dstOffset = target.arrayOffset() + start + HEADER_SIZE + 4;
+      // Compressed data should be smaller than original, so do not allow deflater to write more than that
+      final int maxCompressedSize = Math.min(dataSize - (binary ? 4 : 8), target.remaining() - HEADER_SIZE - 4);
+      if (maxCompressedSize <= 0)
+         return false;
+
+      final int compressedSize = codec.compress(src, srcOffset + HEADER_SIZE, dataSize, dst, dstOffset, maxCompressedSize);
+      if (compressedSize < 0)
+         return false;
+
+      final int payloadSize = compressedSize + 4;
+      final int padding = (8 - ((payloadSize + HEADER_SIZE) % 8)) & 7;
+      if (binary ? (payloadSize >= dataSize) : (payloadSize + padding >= dataSize - 4))
+         return false;
+
+      target.put(src, srcOffset, HEADER_SIZE);
+      target.putShort(start + 2, (short)(flags | MF_COMPRESSED));
+      target.putInt(start + 4, payloadSize + padding + HEADER_SIZE);
+      if (binary)
+         target.putInt(((8 - ((dataSize + HEADER_SIZE) % 8)) & 7) + HEADER_SIZE); // unpacked message size
+      else
+         target.putInt(dataSize + HEADER_SIZE);
+      target.position(start + HEADER_SIZE + payloadSize);
+      for(int i = 0; i < padding; i++)
+         target.put((byte)0);
+      return true;
+   }
+
 	/**
     * Create binary NXCP message
     * 
@@ -764,104 +1005,32 @@ public Date getFieldAsDate(final long fieldId)
     */
 	public byte[] createNXCPMessage(boolean allowCompression) throws IOException
 	{
-		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-		DataOutputStream outputStream = new DataOutputStream(byteStream);
-
-		if ((messageFlags & MF_CONTROL) == MF_CONTROL)
-		{
-			outputStream.writeShort(messageCode);
-			outputStream.writeShort(messageFlags);
-			outputStream.writeInt(HEADER_SIZE);	   // Size
-			outputStream.writeInt((int)messageId);
-			outputStream.writeInt((int)controlData);
-		}
-		else if ((messageFlags & MF_BINARY) == MF_BINARY) 
-		{
-			byte[] payload = binaryData;
-			boolean compressed = false;
-			if (allowCompression && ((messageFlags & MF_STREAM) == 0) && (binaryData.length > 128))
-			{
-			   ByteArrayOutputStream compDataByteStream = new ByteArrayOutputStream();
-            byte[] length = new byte[4];
-            final int unpackedPadding = (8 - ((binaryData.length + HEADER_SIZE) % 8)) & 7;
-            intToBytes(unpackedPadding + HEADER_SIZE, length, 0);
-            compDataByteStream.write(length);   // unpacked message size
-            
-            DeflaterOutputStream deflaterStream = new DeflaterOutputStream(compDataByteStream, new Deflater(JZlib.Z_BEST_COMPRESSION));
-            deflaterStream.write(binaryData);
-            deflaterStream.close();
-
-            byte[] compPayload = compDataByteStream.toByteArray();
-            if (compPayload.length < binaryData.length)
-            {
-               payload = compPayload;
-               compressed = true;
-            }
-			}
-
-         outputStream.writeShort(messageCode); // wCode
-			outputStream.writeShort(compressed ? (messageFlags | MF_COMPRESSED) : messageFlags); // wFlags
-			   
-			final int length = payload.length;
-			final int padding = (8 - ((length + HEADER_SIZE) % 8)) & 7;
-			final int packetSize = length + HEADER_SIZE + padding;
-			outputStream.writeInt(packetSize); // dwSize (padded to 8 bytes boundaries)
-			outputStream.writeInt((int)messageId); // dwId
-			outputStream.writeInt(binaryData.length); // dwNumVars, here used for real size of the payload (w/o headers and padding)
-			outputStream.write(payload);
-			for (int i = 0; i < padding; i++)
-				outputStream.writeByte(0);
-		}
-		else
-		{
-			// Create byte array with all variables
-			for(final NXCPMessageField nxcpVariable: fields.values())
-			{
-				final byte[] field = nxcpVariable.createNXCPDataField();
-				outputStream.write(field);
-			}
-			byte[] payload = byteStream.toByteArray();
-			
-			boolean compressed = false;
-         if (allowCompression && (payload.length > 128))
-         {
-            byteStream = new ByteArrayOutputStream();
-            byte[] length = new byte[4];
-            intToBytes(payload.length + HEADER_SIZE, length, 0);
-            byteStream.write(length);
-            DeflaterOutputStream deflaterStream = new DeflaterOutputStream(byteStream, new Deflater(JZlib.Z_BEST_COMPRESSION));
-            deflaterStream.write(payload);
-            deflaterStream.close();
-
-            final int padding = (8 - (byteStream.size() % 8)) & 7;
-            for (int i = 0; i < padding; i++)
-               byteStream.write(0);
-            
-            byte[] compPayload = byteStream.toByteArray();
-            if (compPayload.length < payload.length - 4)
-            {
-               payload = compPayload;
-               compressed = true;
-            }
-         }
-
-			// Create message header in new byte stream and add payload
-			byteStream = new ByteArrayOutputStream();
-			//noinspection IOResourceOpenedButNotSafelyClosed
-			outputStream = new DataOutputStream(byteStream);
-			outputStream.writeShort(messageCode);
-			outputStream.writeShort(messageFlags | (compressed ? MF_COMPRESSED : 0));
-			outputStream.writeInt(payload.length + HEADER_SIZE);	   // Size
-			outputStream.writeInt((int)messageId);
-			outputStream.writeInt(fields.size());
-		   outputStream.write(payload);
-		}
+	   return createNXCPMessage(allowCompression ? new DeflateCodec(DeflateCodec.LEVEL_BEST) : null);
+	}
 
-		return byteStream.toByteArray();
+	/**
+    * Create binary NXCP message using given compression codec.
+    * 
+    * @param codec compression codec or null to disable compression
+    * @return byte stream ready to send
+    * @throws IOException if write to underlying data output stream fails
+    */
+	public byte[] createNXCPMessage(NXCPCompressionCodec codec) throws IOException
+	{
+	   final ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize());
+	   encode(buffer);
+	   if ((codec != null) && isCompressible(buffer))
+	   {
+	      final ByteBuffer compressed = ByteBuffer.allocate(buffer.capacity());
+	      if (compress(buffer, compressed, codec))
+	         return Arrays.copyOf(compressed.array(), compressed.position());
+	   }
+		return buffer.array();
 	}
 
 	/**
-	 * Get data of raw message. Will return null if message is not a raw message.
+	 * Get data of raw message. Will return null if message is not a raw message. If data was set with explicit length, returned
+	 * array may be longer than actual data (see {@link #getBinaryDataLength()}).
 	 * 
 	 * @return Binary data of raw message
 	 */
@@ -870,6 +1039,16 @@ public byte[] getBinaryData()
 		return binaryData;
 	}
 
+   /**
+    * Get length of raw message data.
+    *
+    * @return length of raw message data in bytes
+    */
+   public int getBinaryDataLength()
+   {
+      return binaryDataLength;
+   }
+
 	/**
 	 * Set data for raw message.
 	 * 
@@ -878,7 +1057,23 @@ public byte[] getBinaryData()
 	public void setBinaryData(final byte[] binaryData)
 	{
 		this.binaryData = binaryData;
+		this.binaryDataLength = (binaryData != null) ? binaryData.length : 0;
 	}
+
+   /**
+    * Set data for raw message using first <code>length</code> bytes of given array. Array is not copied, so it can be reused
+    * (for example, as send buffer) only after message is serialized.
+    *
+    * @param binaryData data to set
+    * @param length data length
+    */
+   public void setBinaryData(final byte[] binaryData, int length)
+   {
+      if ((length < 0) || (length > binaryData.length))
+         throw new IllegalArgumentException("Invalid binary data length " + length);
+      this.binaryData = binaryData;
+      this.binaryDataLength = length;
+   }
 	
 	/**
 	 * Return true if message contains raw (binary) data
@@ -1177,6 +1372,8 @@ public Map<String, String> getStringMapFromFields(long baseId, long countId)
 	@Override
 	public String toString()
 	{
+      if (fieldIndex != null)
+         decodeAllFields();
 		return "NXCPMessage [code=0x" + Integer.toHexString(messageCode) + ", flags=0x" + Integer.toHexString(messageFlags) + ", id=" + messageId + ", fields=" + fields + "]";
 	}
 }
@@ -20,11 +20,15 @@
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.UUID;
@@ -384,6 +388,33 @@ public NXCPMessageField(final long fieldId, final String[] value)
       realValue = (double)0;
    }
 
+   /**
+    * Get size of encoded field located at given offset within buffer (without alignment padding).
+    *
+    * @param in byte buffer containing encoded field
+    * @param offset field offset
+    * @return encoded field size in bytes
+    */
+   static int getEncodedSize(ByteBuffer in, int offset)
+   {
+      switch(in.get(offset + 4))
+      {
+         case TYPE_INTEGER:
+            return 12;
+         case TYPE_INT64:
+         case TYPE_FLOAT:
+            return 16;
+         case TYPE_STRING:
+         case TYPE_UTF8_STRING:
+         case TYPE_BINARY:
+            return (offset + 12 <= in.limit()) ? 12 + in.getInt(offset + 8) : -1;
+         case TYPE_INETADDR:
+            return 32;
+         default:
+            return 8;
+      }
+   }
+
 	/**
     * Create field object from NXCP message data field
     *
@@ -392,71 +423,96 @@ public NXCPMessageField(final long fieldId, final String[] value)
     */
 	public NXCPMessageField(final byte[] nxcpDataField) throws IOException
 	{
-		NXCPDataInputStream in = new NXCPDataInputStream(nxcpDataField);
-
-		id = (long)in.readUnsignedInt();
-		type = in.readUnsignedByte();
-		int flags = in.readUnsignedByte();
-		if (type == TYPE_INT16)
-		{
-			integerValue = (long)(((flags & SIGNED) != 0) ? in.readShort() : in.readUnsignedShort());
-			realValue = integerValue.doubleValue();
-			stringValue = integerValue.toString();
-		}
-		else
-		{
-			in.skipBytes(2);
-			switch(type)
-			{
-				case TYPE_INTEGER:
-					integerValue = ((flags & SIGNED) != 0) ? in.readInt() : in.readUnsignedInt();
-					realValue = integerValue.doubleValue();
-					stringValue = integerValue.toString();
-					break;
-				case TYPE_INT64:
-					integerValue = in.readLong();
-					realValue = integerValue.doubleValue();
-					stringValue = integerValue.toString();
-					break;
-				case TYPE_FLOAT:
-					realValue = in.readDouble();
-					integerValue = realValue.longValue();
-					stringValue = realValue.toString();
-					break;
-				case TYPE_STRING:
-					int len = in.readInt() / 2;
-					StringBuilder sb = new StringBuilder(len);
-					while (len > 0)
-					{
-						sb.append(in.readChar());
-						len--;
-					}
-					setStringValue(sb.toString());
-					break;
-            case TYPE_UTF8_STRING:
-               utf8StringValue = new byte[in.readInt()];
-               in.readFully(utf8StringValue);
-               setStringValue(new String(utf8StringValue, "UTF-8"));
-               break;
-				case TYPE_BINARY:
-					binaryValue = new byte[in.readInt()];
-					in.readFully(binaryValue);
-					break;
-				case TYPE_INETADDR:
-				   binaryValue = new byte[16];
-				   in.readFully(binaryValue);
-				   int family = in.readUnsignedByte();
-				   int bits = in.readUnsignedByte();
-				   in.skipBytes(6);
-				   inetAddressValue = (family == 2) ? new InetAddressEx() :
-				      new InetAddressEx(InetAddress.getByAddress((family == 0) ? Arrays.copyOf(binaryValue, 4) : binaryValue), bits);
-				   stringValue = inetAddressValue.toString();
-				   break;
-			}
-		}
-		in.close();
+	   this(ByteBuffer.wrap(nxcpDataField));
 	}
 
+   /**
+    * Create field object from NXCP message data field located at current position of given byte buffer. Buffer position is
+    * advanced to the end of field data (alignment padding is not skipped). Buffer byte order is expected to be big endian.
+    *
+    * @param in byte buffer containing NXCP message data field
+    * @throws java.io.IOException if buffer does not contain complete field
+    */
+   public NXCPMessageField(final ByteBuffer in) throws IOException
+   {
+      try
+      {
+         id = (long)in.getInt() & 0xFFFFFFFFL;
+         type = in.get() & 0xFF;
+         int flags = in.get() & 0xFF;
+         if (type == TYPE_INT16)
+         {
+            integerValue = (long)(((flags & SIGNED) != 0) ? in.getShort() : (in.getShort() & 0xFFFF));
+            realValue = integerValue.doubleValue();
+            stringValue = integerValue.toString();
+         }
+         else
+         {
+            in.position(in.position() + 2);
+            switch(type)
+            {
+               case TYPE_INTEGER:
+                  integerValue = ((flags & SIGNED) != 0) ? (long)in.getInt() : ((long)in.getInt() & 0xFFFFFFFFL);
+                  realValue = integerValue.doubleValue();
+                  stringValue = integerValue.toString();
+                  break;
+               case TYPE_INT64:
+                  integerValue = in.getLong();
+                  realValue = integerValue.doubleValue();
+                  stringValue = integerValue.toString();
+                  break;
+               case TYPE_FLOAT:
+                  realValue = in.getDouble();
+                  integerValue = realValue.longValue();
+                  stringValue = realValue.toString();
+                  break;
+               case TYPE_STRING:
+                  int len = in.getInt() / 2;
+                  char[] chars = new char[len];
+                  for(int i = 0; i < len; i++)
+                     chars[i] = in.getChar();
+                  setStringValue(new String(chars));
+                  break;
+               case TYPE_UTF8_STRING:
+                  int size = in.getInt();
+                  if (in.hasArray())
+                  {
+                     // Decode directly from backing array; UTF-8 representation will be re-created on serialization if needed
+                     if (size > in.remaining())
+                        throw new BufferUnderflowException();
+                     setStringValue(new String(in.array(), in.arrayOffset() + in.position(), size, StandardCharsets.UTF_8));
+                     in.position(in.position() + size);
+                  }
+                  else
+                  {
+                     utf8StringValue = new byte[size];
+                     in.get(utf8StringValue);
+                     setStringValue(new String(utf8StringValue, StandardCharsets.UTF_8));
+                  }
+                  break;
+               case TYPE_BINARY:
+                  binaryValue = new byte[in.getInt()];
+                  in.get(binaryValue);
+                  break;
+               case TYPE_INETADDR:
+                  binaryValue = new byte[16];
+                  in.get(binaryValue);
+                  int family = in.get() & 0xFF;
+                  int bits = in.get() & 0xFF;
+                  in.position(in.position() + 6);
+                  inetAddressValue = (family == 2) ? new InetAddressEx() :
+                     new InetAddressEx(InetAddress.getByAddress((family == 0) ? Arrays.copyOf(binaryValue, 4) : binaryValue), bits);
+                  stringValue = inetAddressValue.toString();
+                  break;
+            }
+         }
+      }
+      catch(BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e)
+      {
+         throw new EOFException("Incomplete or malformed NXCP message field");
+      }
+   }
+
 	/**
     * Get field's value as long integer
     * 
@@ -833,6 +889,16 @@ private int calculateBinarySize()
 		return size;
 	}
 
+   /**
+    * Get size of this field in NXCP encoding, including alignment padding.
+    *
+    * @return encoded field size in bytes
+    */
+   public int getEncodedSize()
+   {
+      return (calculateBinarySize() + 7) & ~7;
+   }
+
 	/**
     * Create NXCP DF structure
     * 
@@ -841,83 +907,84 @@ private int calculateBinarySize()
     */
 	public byte[] createNXCPDataField() throws IOException
 	{
-		final ByteArrayOutputStream byteStream = new ByteArrayOutputStream(calculateBinarySize());
-		final DataOutputStream out = new DataOutputStream(byteStream);
+	   final ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize());
+	   encode(buffer);
+	   return buffer.array();
+	}
 
-		out.writeInt(Long.valueOf(id).intValue());
-		out.writeByte(Long.valueOf(type).byteValue());
-		out.writeByte(0);		// Padding
-		if (type == TYPE_INT16)
-		{
-			out.writeShort(integerValue.shortValue());
-		}
-		else
-		{
-			out.writeShort(0);	// Padding
-			switch(type)
-			{
-				case TYPE_INTEGER:
-					out.writeInt(integerValue.intValue());
-					break;
-				case TYPE_INT64:
-					out.writeLong(integerValue);
-					break;
-				case TYPE_FLOAT:
-					out.writeDouble(realValue);
-					break;
-				case TYPE_STRING:
-					out.writeInt(stringValue.length() * 2);
-					out.writeChars(stringValue);
-					break;
+   /**
+    * Encode this field into given byte buffer at its current position. Buffer should have at least
+    * {@link #getEncodedSize()} bytes remaining and use big endian byte order.
+    *
+    * @param out output buffer
+    */
+   public void encode(ByteBuffer out)
+   {
+      final int start = out.position();
+      out.putInt((int)id);
+      out.put((byte)type);
+      out.put((byte)0); // Padding
+      if (type == TYPE_INT16)
+      {
+         out.putShort(integerValue.shortValue());
+      }
+      else
+      {
+         out.putShort((short)0); // Padding
+         switch(type)
+         {
+            case TYPE_INTEGER:
+               out.putInt(integerValue.intValue());
+               break;
+            case TYPE_INT64:
+               out.putLong(integerValue);
+               break;
+            case TYPE_FLOAT:
+               out.putDouble(realValue);
+               break;
+            case TYPE_STRING:
+               out.putInt(stringValue.length() * 2);
+               for(int i = 0; i < stringValue.length(); i++)
+                  out.putChar(stringValue.charAt(i));
+               break;
             case TYPE_UTF8_STRING:
-               try
+               if (utf8StringValue == null)
+                  utf8StringValue = stringValue.getBytes(StandardCharsets.UTF_8);
+               out.putInt(utf8StringValue.length);
+               out.put(utf8StringValue);
+               break;
+            case TYPE_BINARY:
+               out.putInt(binaryValue.length);
+               out.put(binaryValue);
+               break;
+            case TYPE_INETADDR:
+               if (inetAddressValue.address == null)
+               {
+                  out.put(PADDING, 0, 16);
+                  out.put((byte)2);
+               }
+               else if (inetAddressValue.address instanceof Inet4Address)
                {
-                  if (utf8StringValue == null)
-                     utf8StringValue = stringValue.getBytes("UTF-8"); 
+                  out.put(inetAddressValue.address.getAddress());
+                  out.put(PADDING, 0, 12);
+                  out.put((byte)0);
                }
-               catch(UnsupportedEncodingException e)
+               else
                {
-                  utf8StringValue = new byte[0];
+                  out.put(inetAddressValue.address.getAddress());
+                  out.put((byte)1);
                }
-               out.writeInt(utf8StringValue.length);
-               out.write(utf8StringValue);
+               out.put((byte)inetAddressValue.mask);
+               out.put(PADDING, 0, 6);
                break;
-				case TYPE_BINARY:
-					out.writeInt(binaryValue.length);
-					out.write(binaryValue);
-					break;
-				case TYPE_INETADDR:
-				   if (inetAddressValue.address == null)
-				   {
-                  out.write(PADDING, 0, 16);
-                  out.writeByte(2);
-				   }
-				   else if (inetAddressValue.address instanceof Inet4Address)
-				   {
-                  out.write(inetAddressValue.address.getAddress());
-                  out.write(PADDING, 0, 12);
-	               out.writeByte(0);
-				   }
-				   else
-				   {
-	               out.write(inetAddressValue.address.getAddress());
-	               out.writeByte(1);
-				   }
-				   out.writeByte(inetAddressValue.mask);
-               out.write(PADDING, 0, 6);
-				   break;
-			}
-		}
-
-		// Align to 8-bytes boundary
-		final int rem = byteStream.size() % 8;
-		if (rem != 0)
-		{
-			out.write(PADDING, 0, 8 - rem);
-		}
+         }
+      }
 
-		return byteStream.toByteArray();
-	}
+      // Align to 8-bytes boundary
+      final int rem = (out.position() - start) % 8;
+      if (rem != 0)
+         out.put(PADDING, 0, 8 - rem);
+   }
 
    /**
     * @see java.lang.Object#toString()
@@ -0,0 +1,241 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Serializer for NXCP messages. Message size is calculated first, and then header and fields are encoded directly into reusable
+ * buffer, without creating intermediate byte arrays for individual fields. Large binary messages that are not compressed are
+ * written using gathering write (header, then data, then padding), without copying message data. Writer instance is not
+ * thread safe and should be used by one thread at a time (usually under session's send lock).
+ */
+public class NXCPMessageWriter
+{
+   private static final byte[] PADDING = new byte[8];
+
+   private int defaultBufferSize;
+   private int maxBufferSize;
+   private ByteBuffer buffer;
+   private ByteBuffer compressionBuffer = null;
+   private NXCPCompressionCodec codec = new DeflateCodec(DeflateCodec.LEVEL_BEST);
+   private final ByteBuffer header = ByteBuffer.allocate(NXCPMessage.HEADER_SIZE);
+
+   /**
+    * Create new message writer.
+    *
+    * @param defaultBufferSize initial size of reusable buffer (in bytes)
+    * @param maxBufferSize maximum size of reusable buffer (in bytes); larger messages are serialized into temporary buffers
+    */
+   public NXCPMessageWriter(int defaultBufferSize, int maxBufferSize)
+   {
+      this.defaultBufferSize = defaultBufferSize;
+      this.maxBufferSize = maxBufferSize;
+      buffer = ByteBuffer.allocate(defaultBufferSize);
+   }
+
+   /**
+    * Create new message writer with default buffer sizes (64KB initial, 4MB maximum).
+    */
+   public NXCPMessageWriter()
+   {
+      this(65536, 4194304);
+   }
+
+   /**
+    * Get compression codec used by this writer.
+    *
+    * @return compression codec
+    */
+   public NXCPCompressionCodec getCompressionCodec()
+   {
+      return codec;
+   }
+
+   /**
+    * Set compression codec used for compressing outgoing messages. Default is deflate with best compression level.
+    *
+    * @param codec new compression codec (must not be null)
+    */
+   public void setCompressionCodec(NXCPCompressionCodec codec)
+   {
+      if (codec == null)
+         throw new IllegalArgumentException("Compression codec must not be null");
+      this.codec = codec;
+   }
+
+   /**
+    * Set compression level for default deflate codec. Lower levels are significantly faster at the cost of slightly lower
+    * compression ratio.
+    *
+    * @param level compression level (1 to 9)
+    */
+   public void setCompressionLevel(int level)
+   {
+      if (codec.getLevel() != level)
+         codec = new DeflateCodec(level);
+   }
+
+   /**
+    * Get buffer of at least given size. Buffer is cleared and ready for writing.
+    *
+    * @param current current buffer (may be null)
+    * @param size required size
+    * @return buffer to use
+    */
+   private ByteBuffer prepareBuffer(ByteBuffer current, int size)
+   {
+      if ((current != null) && (current.capacity() >= size))
+      {
+         current.clear();
+         return current;
+      }
+      return ByteBuffer.allocate(Math.max(size, defaultBufferSize));
+   }
+
+   /**
+    * Serialize message. Returned buffer contains serialized message between position 0 and limit, and remains valid until next
+    * call to any method of this writer.
+    *
+    * @param msg message to serialize
+    * @param allowCompression true if message compression is allowed
+    * @return buffer with serialized message
+    */
+   public ByteBuffer serialize(NXCPMessage msg, boolean allowCompression)
+   {
+      final int size = msg.getEncodedSize();
+      final ByteBuffer out = prepareBuffer(buffer, size);
+      if ((out.capacity() <= maxBufferSize) && (out != buffer))
+         buffer = out;
+      msg.encode(out);
+      out.flip();
+
+      if (allowCompression && NXCPMessage.isCompressible(out))
+      {
+         final ByteBuffer target = prepareBuffer(compressionBuffer, size);
+         if (target.capacity() <= maxBufferSize)
+            compressionBuffer = target;
+         if (NXCPMessage.compress(out, target, codec))
+         {
+            target.flip();
+            return target;
+         }
+      }
+      return out;
+   }
+
+   /**
+    * Check if message should be sent using gathering write.
+    *
+    * @param msg message to check
+    * @param allowCompression true if message compression is allowed
+    * @return true if message is a binary message that should be sent directly from its data array
+    */
+   private boolean useGatheringWrite(NXCPMessage msg, boolean allowCompression)
+   {
+      if (!msg.isBinaryMessage() || msg.isControlMessage())
+         return false;
+      final int length = msg.getBinaryDataLength();
+      if (length < defaultBufferSize)
+         return false;
+      return !allowCompression || msg.isStream();
+   }
+
+   /**
+    * Write message to byte channel.
+    *
+    * @param msg message to write
+    * @param allowCompression true if message compression is allowed
+    * @param channel output channel
+    * @throws IOException if write to channel fails
+    */
+   public void writeMessage(NXCPMessage msg, boolean allowCompression, WritableByteChannel channel) throws IOException
+   {
+      if (useGatheringWrite(msg, allowCompression))
+      {
+         final byte[] data = msg.getBinaryData();
+         final int size = msg.getEncodedSize();
+         header.clear();
+         msg.encodeHeader(header, size);
+         header.flip();
+         final int length = msg.getBinaryDataLength();
+         final ByteBuffer[] parts = new ByteBuffer[] { header, ByteBuffer.wrap(data, 0, length), ByteBuffer.wrap(PADDING, 0, size - length - NXCPMessage.HEADER_SIZE) };
+         if (channel instanceof GatheringByteChannel)
+         {
+            final GatheringByteChannel gc = (GatheringByteChannel)channel;
+            long remaining = size;
+            while(remaining > 0)
+               remaining -= gc.write(parts);
+         }
+         else
+         {
+            for(ByteBuffer b : parts)
+            {
+               while(b.hasRemaining())
+                  channel.write(b);
+            }
+         }
+         return;
+      }
+
+      final ByteBuffer out = serialize(msg, allowCompression);
+      while(out.hasRemaining())
+         channel.write(out);
+   }
+
+   /**
+    * Write message to output stream.
+    *
+    * @param msg message to write
+    * @param allowCompression true if message compression is allowed
+    * @param stream output stream
+    * @throws IOException if write to stream fails
+    */
+   public void writeMessage(NXCPMessage msg, boolean allowCompression, OutputStream stream) throws IOException
+   {
+      if (useGatheringWrite(msg, allowCompression))
+      {
+         final byte[] data = msg.getBinaryData();
+         final int size = msg.getEncodedSize();
+         header.clear();
+         msg.encodeHeader(header, size);
+         final int length = msg.getBinaryDataLength();
+         stream.write(header.array(), 0, header.position());
+         stream.write(data, 0, length);
+         stream.write(PADDING, 0, size - length - NXCPMessage.HEADER_SIZE);
+         return;
+      }
+
+      final ByteBuffer out = serialize(msg, allowCompression);
+      stream.write(out.array(), out.arrayOffset(), out.limit());
+   }
+
+   /**
+    * @see java.lang.Object#toString()
+    */
+   @Override
+   public String toString()
+   {
+      return "NXCPMessageWriter [defaultBufferSize=" + defaultBufferSize + " maxBufferSize=" + maxBufferSize + " capacity=" + buffer.capacity() + " codec=" + codec + "]";
+   }
+}
@@ -1,6 +1,6 @@
 /**
  * NetXMS - open source network management system
- * Copyright (C) 2003-2021 Victor Kirhenshtein
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -18,196 +18,491 @@
  */
 package org.netxms.base;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * NXCP message wait queue
+ * NXCP message wait queue. Messages are indexed by (code, id) pair and distributed over several independently locked stripes.
+ * Each waiter waits on condition bound to the key it is waiting for, so incoming message wakes up only thread waiting for that
+ * message. Unclaimed messages are expired using timer wheel.
  */
 public class NXCPMsgWaitQueue
 {
-	private List<NXCPMessage> messageList = new ArrayList<NXCPMessage>(0);
-	private int defaultTimeout;
-	private int messageLifeTime;
-	private boolean isActive = true;
-	private HousekeeperThread housekeeperThread = null;
-
-   /**
-	 * Housekeeper thread - deletes expired messages from queue.
-	 */
-	private class HousekeeperThread extends Thread
-	{
-		HousekeeperThread()
-		{
-			super("NXCPMsgWaitQueue::HousekeeperThread");
-			setDaemon(true);
-			start();
-		}
-		
-		public void run()
-		{
-			while(isActive)
-			{
-				try
-				{
-					Thread.sleep(2000);
-				}
-				catch(InterruptedException e)
-				{
-				}
-				synchronized(messageList)
-				{
-					final long currTime = System.currentTimeMillis();
-					final Iterator<NXCPMessage> it = messageList.iterator();
-					while(it.hasNext())
-					{
-						final NXCPMessage msg = it.next();
-						if (msg.getTimestamp() + messageLifeTime < currTime)
-						{
-							// Message expired, remove it
-							it.remove();
-						}
-					}
-				}
-			}
-		}
-	}
-
-	/**
+   private static final int STRIPE_COUNT = 16;
+   private static final int TICK_INTERVAL = 250;
+
+   private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+   private final TimerWheel timerWheel;
+   private int defaultTimeout;
+   private int messageLifeTime;
+   private volatile boolean isActive = true;
+   private HousekeeperThread housekeeperThread = null;
+
+   /**
+    * Queued message. Reference to message is cleared when message is taken from queue, so timer wheel does not keep it alive.
+    */
+   private static final class Entry
+   {
+      final long key;
+      final long expirationTick;
+      final boolean discardMarker;
+      NXCPMessage message;
+
+      Entry(long key, long expirationTick, NXCPMessage message)
+      {
+         this.key = key;
+         this.expirationTick = expirationTick;
+         this.message = message;
+         this.discardMarker = false;
+      }
+
+      Entry(long key, long expirationTick)
+      {
+         this.key = key;
+         this.expirationTick = expirationTick;
+         this.message = null;
+         this.discardMarker = true;
+      }
+   }
+
+   /**
+    * Slot for single (code, id) pair - holds received but not yet claimed messages and condition for waiters.
+    */
+   private static final class Slot
+   {
+      final ArrayDeque<Entry> messages = new ArrayDeque<Entry>(1);
+      final Condition condition;
+      int waiters = 0;
+      long discardUntilTick = 0;
+
+      Slot(Condition condition)
+      {
+         this.condition = condition;
+      }
+   }
+
+   /**
+    * Lock stripe
+    */
+   private static final class Stripe
+   {
+      final ReentrantLock lock = new ReentrantLock();
+      final Map<Long, Slot> slots = new HashMap<Long, Slot>();
+
+      /**
+       * Get existing slot or create new one. Must be called with lock held.
+       */
+      Slot getOrCreateSlot(long key)
+      {
+         Slot slot = slots.get(key);
+         if (slot == null)
+         {
+            slot = new Slot(lock.newCondition());
+            slots.put(key, slot);
+         }
+         return slot;
+      }
+
+      /**
+       * Remove slot if it is not in use anymore. Must be called with lock held.
+       */
+      void releaseSlot(long key, Slot slot)
+      {
+         if (slot.messages.isEmpty() && (slot.waiters == 0) && (slot.discardUntilTick == 0))
+            slots.remove(key, slot);
+      }
+   }
+
+   /**
+    * Timer wheel for message expiration. Each bucket holds entries expiring within one tick.
+    */
+   private static final class TimerWheel
+   {
+      private final List<Entry>[] buckets;
+      private long currentTick;
+
+      @SuppressWarnings("unchecked")
+      TimerWheel(int size, long startTick)
+      {
+         buckets = new List[size];
+         for(int i = 0; i < size; i++)
+            buckets[i] = new ArrayList<Entry>();
+         currentTick = startTick;
+      }
+
+      synchronized void add(Entry e)
+      {
+         buckets[(int)(e.expirationTick % buckets.length)].add(e);
+      }
+
+      /**
+       * Advance wheel up to given tick and collect expired entries.
+       */
+      synchronized List<Entry> advance(long tick, List<Entry> expired)
+      {
+         while(currentTick < tick)
+         {
+            currentTick++;
+            List<Entry> bucket = buckets[(int)(currentTick % buckets.length)];
+            if (bucket.isEmpty())
+               continue;
+            int retained = 0;
+            for(int i = 0; i < bucket.size(); i++)
+            {
+               Entry e = bucket.get(i);
+               if (e.expirationTick <= currentTick)
+                  expired.add(e);
+               else
+                  bucket.set(retained++, e);
+            }
+            bucket.subList(retained, bucket.size()).clear();
+         }
+         return expired;
+      }
+
+      synchronized void clear()
+      {
+         for(List<Entry> b : buckets)
+            b.clear();
+      }
+   }
+
+   /**
+    * Housekeeper thread - advances timer wheel and deletes expired messages from queue.
+    */
+   private class HousekeeperThread extends Thread
+   {
+      HousekeeperThread()
+      {
+         super("NXCPMsgWaitQueue::HousekeeperThread");
+         setDaemon(true);
+         start();
+      }
+
+      @Override
+      public void run()
+      {
+         final List<Entry> expired = new ArrayList<Entry>();
+         while(isActive)
+         {
+            try
+            {
+               Thread.sleep(TICK_INTERVAL);
+            }
+            catch(InterruptedException e)
+            {
+            }
+            timerWheel.advance(currentTick(), expired);
+            for(Entry e : expired)
+               removeExpiredEntry(e);
+            expired.clear();
+         }
+      }
+   }
+
+   /**
     * Create message wait queue.
-    * 
+    *
     * @param defaultTimeout default wait timeout in milliseconds
     * @param messageLifeTime message lifetime in milliseconds
     */
-	public NXCPMsgWaitQueue(final int defaultTimeout, final int messageLifeTime)
-	{
-		this.defaultTimeout = defaultTimeout;
-		this.messageLifeTime = messageLifeTime;
-		housekeeperThread = new HousekeeperThread();
-	}
+   public NXCPMsgWaitQueue(final int defaultTimeout, final int messageLifeTime)
+   {
+      this.defaultTimeout = defaultTimeout;
+      this.messageLifeTime = messageLifeTime;
+      for(int i = 0; i < STRIPE_COUNT; i++)
+         stripes[i] = new Stripe();
+      timerWheel = new TimerWheel(messageLifeTime / TICK_INTERVAL + 2, currentTick());
+      housekeeperThread = new HousekeeperThread();
+   }
 
-	/**
+   /**
     * Create message wait queue with default message lifetime (60 seconds).
-    * 
+    *
     * @param defaultTimeout default wait timeout in milliseconds
     */
-	public NXCPMsgWaitQueue(final int defaultTimeout)
-	{
+   public NXCPMsgWaitQueue(final int defaultTimeout)
+   {
       this(defaultTimeout, 60000);
-	}
-
-	/**
-	 * Put message into queue.
-	 * 
-	 * @param msg NXCP message
-	 */
-	public void putMessage(final NXCPMessage msg)
-	{
-		synchronized(messageList)
-		{
-			msg.setTimestamp(System.currentTimeMillis());
-			messageList.add(msg);
-			messageList.notifyAll();
-		}
-	}
-
-	/**
-	 * Wait for message.
-	 * 
-	 * @param code	Message code
-	 * @param id Message id
-	 * @param timeout Wait timeout in milliseconds
+   }
+
+   /**
+    * Get current timer wheel tick.
+    *
+    * @return current tick
+    */
+   private static long currentTick()
+   {
+      return System.currentTimeMillis() / TICK_INTERVAL;
+   }
+
+   /**
+    * Build lookup key from message code and ID. NXCP message code and ID are both 32 bit on the wire.
+    *
+    * @param code message code
+    * @param id message ID
+    * @return lookup key
+    */
+   private static long makeKey(int code, long id)
+   {
+      return ((long)code << 32) | (id & 0xFFFFFFFFL);
+   }
+
+   /**
+    * Get stripe for given key.
+    *
+    * @param key lookup key
+    * @return stripe
+    */
+   private Stripe getStripe(long key)
+   {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return stripes[(int)(h >>> 60) & (STRIPE_COUNT - 1)];
+   }
+
+   /**
+    * Remove expired entry from its slot.
+    *
+    * @param e expired entry
+    */
+   private void removeExpiredEntry(Entry e)
+   {
+      Stripe stripe = getStripe(e.key);
+      stripe.lock.lock();
+      try
+      {
+         if (e.discardMarker)
+         {
+            Slot slot = stripe.slots.get(e.key);
+            if ((slot != null) && (slot.discardUntilTick != 0) && (slot.discardUntilTick <= e.expirationTick))
+            {
+               slot.discardUntilTick = 0;
+               stripe.releaseSlot(e.key, slot);
+            }
+            return;
+         }
+         if (e.message == null)
+            return; // already claimed
+         e.message = null;
+         Slot slot = stripe.slots.get(e.key);
+         if (slot != null)
+         {
+            slot.messages.remove(e);
+            stripe.releaseSlot(e.key, slot);
+         }
+      }
+      finally
+      {
+         stripe.lock.unlock();
+      }
+   }
+
+   /**
+    * Put message into queue.
+    *
+    * @param msg NXCP message
+    */
+   public void putMessage(final NXCPMessage msg)
+   {
+      final long now = System.currentTimeMillis();
+      msg.setTimestamp(now);
+
+      final long key = makeKey(msg.getMessageCode(), msg.getMessageId());
+      final Entry e = new Entry(key, (now + messageLifeTime) / TICK_INTERVAL + 1, msg);
+      final Stripe stripe = getStripe(key);
+      stripe.lock.lock();
+      try
+      {
+         Slot slot = stripe.getOrCreateSlot(key);
+         if (slot.discardUntilTick != 0)
+            return; // nobody will wait for this message
+         slot.messages.add(e);
+         if (slot.waiters > 0)
+            slot.condition.signal();
+      }
+      finally
+      {
+         stripe.lock.unlock();
+      }
+      timerWheel.add(e);
+   }
+
+   /**
+    * Discard messages with given code and ID. Already queued messages are removed, and messages arriving within message
+    * lifetime are dropped on arrival. Intended for responses to requests abandoned by the caller, so late responses do not
+    * stay in the queue until they expire.
+    *
+    * @param code message code
+    * @param id message ID
+    */
+   public void discardMessages(final int code, final long id)
+   {
+      final long key = makeKey(code, id);
+      final long expirationTick = (System.currentTimeMillis() + messageLifeTime) / TICK_INTERVAL + 1;
+      final Stripe stripe = getStripe(key);
+      stripe.lock.lock();
+      try
+      {
+         Slot slot = stripe.getOrCreateSlot(key);
+         for(Entry e : slot.messages)
+            e.message = null;
+         slot.messages.clear();
+         slot.discardUntilTick = expirationTick;
+      }
+      finally
+      {
+         stripe.lock.unlock();
+      }
+      timerWheel.add(new Entry(key, expirationTick));
+   }
+
+   /**
+    * Wait for message.
+    *
+    * @param code	Message code
+    * @param id Message id
+    * @param timeout Wait timeout in milliseconds
     * @return received NXCP message or null if message was not received before timeout
-	 */
-	public NXCPMessage waitForMessage(final int code, final long id, final int timeout)
-	{
-		NXCPMessage msg = null;
-		int actualTimeout = timeout;
-
-      while((actualTimeout > 0) && isActive)
-		{
-			synchronized(messageList)
-			{
-				final Iterator<NXCPMessage> it = messageList.iterator();
-				boolean found = false;
-				while(it.hasNext())
-				{
-					msg = it.next();
-					if ((msg.getMessageCode() == code) && (msg.getMessageId() == id)) 
-					{
-						it.remove();
-						found = true;
-						break;
-					}
-				}
-				if (found)
-					break;
-				
-				msg = null;
-				long startTime = System.currentTimeMillis();
-				try
-				{
-					messageList.wait(actualTimeout);
-				}
-				catch(InterruptedException e)
-				{
-				}
-				actualTimeout -= System.currentTimeMillis() - startTime;
-			}
-		}
-		return msg;
-	}
-
-	/**
+    */
+   public NXCPMessage waitForMessage(final int code, final long id, final int timeout)
+   {
+      final long key = makeKey(code, id);
+      final Stripe stripe = getStripe(key);
+      stripe.lock.lock();
+      try
+      {
+         Slot slot = stripe.getOrCreateSlot(key);
+         long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+         slot.waiters++;
+         try
+         {
+            while(isActive)
+            {
+               Entry e = slot.messages.poll();
+               if (e != null)
+               {
+                  NXCPMessage msg = e.message;
+                  e.message = null;
+                  return msg;
+               }
+               if (remaining <= 0)
+                  break;
+               try
+               {
+                  remaining = slot.condition.awaitNanos(remaining);
+               }
+               catch(InterruptedException ex)
+               {
+               }
+            }
+         }
+         finally
+         {
+            slot.waiters--;
+            stripe.releaseSlot(key, slot);
+         }
+      }
+      finally
+      {
+         stripe.lock.unlock();
+      }
+      return null;
+   }
+
+   /**
     * Wait for message using default wait timeout.
-    * 
+    *
     * @param code Message code
     * @param id Message id
     * @return received NXCP message or null if message was not received before timeout
     */
-	public NXCPMessage waitForMessage(final int code, final long id)
-	{
-		return waitForMessage(code, id, defaultTimeout);
-	}
+   public NXCPMessage waitForMessage(final int code, final long id)
+   {
+      return waitForMessage(code, id, defaultTimeout);
+   }
 
-	/**
-	 * Shutdown wait queue.
-	 */
+   /**
+    * Shutdown wait queue.
+    */
    public synchronized void shutdown()
-	{
-		isActive = false;
-		if (housekeeperThread != null)
-		{
-			housekeeperThread.interrupt();
-			while(housekeeperThread.isAlive())
-			{
-				try
-				{
-					housekeeperThread.join();
-				}
-				catch(InterruptedException e)
-				{
-				}
-			}
-			housekeeperThread = null;
-		}
-      synchronized(messageList)
-      {
-         messageList.clear();
-         messageList.notifyAll();
-      }
-	}
-
-	/**
+   {
+      isActive = false;
+      if (housekeeperThread != null)
+      {
+         housekeeperThread.interrupt();
+         while(housekeeperThread.isAlive())
+         {
+            try
+            {
+               housekeeperThread.join();
+            }
+            catch(InterruptedException e)
+            {
+            }
+         }
+         housekeeperThread = null;
+      }
+      for(Stripe stripe : stripes)
+      {
+         stripe.lock.lock();
+         try
+         {
+            for(Slot slot : stripe.slots.values())
+            {
+               for(Entry e : slot.messages)
+                  e.message = null;
+               slot.messages.clear();
+               slot.condition.signalAll();
+            }
+            stripe.slots.clear();
+         }
+         finally
+         {
+            stripe.lock.unlock();
+         }
+      }
+      timerWheel.clear();
+   }
+
+   /**
     * Get queue's default wait timeout
-    * 
+    *
     * @return default wait timeout in milliseconds
     */
-	public int getDefaultTimeout()
-	{
-		return defaultTimeout;
-	}
+   public int getDefaultTimeout()
+   {
+      return defaultTimeout;
+   }
+
+   /**
+    * Get number of messages currently waiting in queue.
+    *
+    * @return number of queued messages
+    */
+   public int size()
+   {
+      int count = 0;
+      for(Stripe stripe : stripes)
+      {
+         stripe.lock.lock();
+         try
+         {
+            for(Slot slot : stripe.slots.values())
+               count += slot.messages.size();
+         }
+         finally
+         {
+            stripe.lock.unlock();
+         }
+      }
+      return count;
+   }
 
    /**
     * @see java.lang.Object#toString()
@@ -215,8 +510,8 @@ public int getDefaultTimeout()
    @Override
    public String toString()
    {
-      return "NXCPMsgWaitQueue [messageList=" + messageList.toString()
+      return "NXCPMsgWaitQueue [size=" + size()
             + " defaultTimeout=" + defaultTimeout + " messageLifeTime="
-            + messageLifeTime + " isActive=" + isActive;
+            + messageLifeTime + " isActive=" + isActive + "]";
    }
 }
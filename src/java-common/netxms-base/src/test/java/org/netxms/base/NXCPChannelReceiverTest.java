@@ -0,0 +1,167 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for byte buffer based NXCP message receiver
+ */
+public class NXCPChannelReceiverTest
+{
+   /**
+    * Channel returning data in small chunks
+    */
+   private static class ChunkedChannel implements ReadableByteChannel
+   {
+      private ByteBuffer data;
+      private int chunkSize;
+
+      ChunkedChannel(byte[] data, int chunkSize)
+      {
+         this.data = ByteBuffer.wrap(data);
+         this.chunkSize = chunkSize;
+      }
+
+      @Override
+      public boolean isOpen()
+      {
+         return true;
+      }
+
+      @Override
+      public void close()
+      {
+      }
+
+      @Override
+      public int read(ByteBuffer dst)
+      {
+         if (!data.hasRemaining())
+            return -1;
+         int bytes = Math.min(Math.min(chunkSize, dst.remaining()), data.remaining());
+         ByteBuffer chunk = data.slice();
+         chunk.limit(bytes);
+         dst.put(chunk);
+         data.position(data.position() + bytes);
+         return bytes;
+      }
+   }
+
+   /**
+    * Create stream of test messages
+    */
+   private static byte[] createMessageStream(int count, byte[] binaryValue) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      for(int i = 0; i < count; i++)
+      {
+         NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_OBJECT, i);
+         msg.setField(1, "object " + i);
+         msg.setFieldInt32(2, i);
+         msg.setField(3, binaryValue);
+         msg.setField(4, "UCS-2 string " + i, true);
+         out.write(msg.createNXCPMessage(i % 2 == 0));
+      }
+      return out.toByteArray();
+   }
+
+   private static void checkMessages(NXCPChannelReceiver receiver, ReadableByteChannel channel, int count, byte[] binaryValue) throws Exception
+   {
+      for(int i = 0; i < count; i++)
+      {
+         NXCPMessage msg = receiver.receiveMessage(channel, null);
+         assertEquals(NXCPCodes.CMD_OBJECT, msg.getMessageCode());
+         assertEquals(i, msg.getMessageId());
+         assertEquals("object " + i, msg.getFieldAsString(1));
+         assertEquals(i, msg.getFieldAsInt32(2));
+         assertArrayEquals(binaryValue, msg.getFieldAsBinary(3));
+         assertEquals("UCS-2 string " + i, msg.getFieldAsString(4));
+      }
+   }
+
+   @Test
+   public void testHeapBuffer() throws Exception
+   {
+      byte[] binaryValue = new byte[3000];
+      for(int i = 0; i < binaryValue.length; i++)
+         binaryValue[i] = (byte)(i * 7);
+      byte[] data = createMessageStream(50, binaryValue);
+      checkMessages(new NXCPChannelReceiver(1024, 65536), new ChunkedChannel(data, 333), 50, binaryValue);
+   }
+
+   @Test
+   public void testDirectBuffer() throws Exception
+   {
+      byte[] binaryValue = new byte[700];
+      for(int i = 0; i < binaryValue.length; i++)
+         binaryValue[i] = (byte)i;
+      byte[] data = createMessageStream(50, binaryValue);
+      checkMessages(new NXCPChannelReceiver(4096, 65536, true), new ChunkedChannel(data, 1000), 50, binaryValue);
+   }
+
+   @Test
+   public void testLazyFieldDecoding() throws Exception
+   {
+      byte[] binaryValue = new byte[500];
+      for(int i = 0; i < binaryValue.length; i++)
+         binaryValue[i] = (byte)(i * 3);
+      byte[] data = createMessageStream(20, binaryValue);
+      NXCPChannelReceiver receiver = new NXCPChannelReceiver(2048, 65536);
+      receiver.setLazyFieldDecoding(true);
+      checkMessages(receiver, new ChunkedChannel(data, 700), 20, binaryValue);
+   }
+
+   @Test
+   public void testInputStream() throws Exception
+   {
+      byte[] binaryValue = new byte[100];
+      byte[] data = createMessageStream(10, binaryValue);
+      NXCPChannelReceiver receiver = new NXCPChannelReceiver(512, 65536);
+      ByteArrayInputStream in = new ByteArrayInputStream(data);
+      for(int i = 0; i < 10; i++)
+      {
+         NXCPMessage msg = receiver.receiveMessage(in, null);
+         assertEquals(i, msg.getMessageId());
+         assertEquals("object " + i, msg.getFieldAsString(1));
+      }
+      NXCPException e = assertThrows(NXCPException.class, () -> receiver.receiveMessage(in, null));
+      assertEquals(NXCPException.SESSION_CLOSED, e.getErrorCode());
+   }
+
+   @Test
+   public void testMessageTooLarge() throws Exception
+   {
+      byte[] binaryValue = new byte[10000];
+      new Random(1).nextBytes(binaryValue);
+      byte[] data = createMessageStream(1, binaryValue);
+      NXCPChannelReceiver receiver = new NXCPChannelReceiver(1024, 4096);
+      NXCPException e = assertThrows(NXCPException.class, () -> receiver.receiveMessage(new ChunkedChannel(data, 4096), null));
+      assertEquals(NXCPException.MESSAGE_TOO_LARGE, e.getErrorCode());
+   }
+}
@@ -19,7 +19,10 @@
 package org.netxms.base;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import org.junit.jupiter.api.Test;
 
@@ -121,6 +124,96 @@ public void testCompressedBinaryMessage() throws Exception
       assertTrue(Arrays.equals(byteTest, msg2.getBinaryData()));
    }
    
+   @Test
+   public void testDecodingFromDirectBuffer() throws Exception
+   {
+      final NXCPMessage msg1 = new NXCPMessage(1, 2);
+      msg1.setField(1, "string value");
+      msg1.setFieldInt16(2, 10);
+      msg1.setFieldInt64(3, -5L);
+      msg1.setField(4, 3.5);
+      msg1.setField(5, "string value - UCS2", true);
+
+      final byte[] bytes = msg1.createNXCPMessage(false);
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 16);
+      buffer.position(8);
+      buffer.put(bytes);
+      buffer.flip().position(8);
+
+      final NXCPMessage msg2 = new NXCPMessage(buffer, null);
+      assertEquals(8, buffer.position());
+      assertEquals(1, msg2.getMessageCode());
+      assertEquals(2L, msg2.getMessageId());
+      assertEquals("string value", msg2.getFieldAsString(1));
+      assertEquals(10, msg2.getFieldAsInt32(2));
+      assertEquals(-5L, msg2.getFieldAsInt64(3));
+      assertEquals(3.5, msg2.getFieldAsDouble(4));
+      assertEquals("string value - UCS2", msg2.getFieldAsString(5));
+   }
+
+   @Test
+   public void testLazyDecoding() throws Exception
+   {
+      final byte[] byteTest = { 0x10, 0x20, 0x30, 0x40, 0x50 };
+
+      final NXCPMessage msg1 = new NXCPMessage(1, 2);
+      for(int i = 0; i < 100; i++)
+         msg1.setField(1000 + i, "field " + i);
+      msg1.setFieldInt16(2, 10);
+      msg1.setFieldInt32(3, 20);
+      msg1.setField(5, byteTest);
+
+      for(boolean compressed : new boolean[] { false, true })
+      {
+         final byte[] bytes = msg1.createNXCPMessage(compressed);
+         final NXCPMessage msg2 = new NXCPMessage(ByteBuffer.wrap(bytes), null, true);
+         Arrays.fill(bytes, (byte)0); // message should not depend on source buffer
+
+         assertTrue(msg2.isLazyDecoded());
+         assertTrue(msg2.isFieldPresent(1050));
+         assertFalse(msg2.isFieldPresent(4));
+         assertNull(msg2.findField(4));
+         assertEquals("field 50", msg2.getFieldAsString(1050));
+         assertEquals(10, msg2.getFieldAsInt32(2));
+         assertEquals(20, msg2.getFieldAsInt32(3));
+         assertTrue(Arrays.equals(byteTest, msg2.getFieldAsBinary(5)));
+
+         msg2.setFieldInt32(3, 30);
+         assertFalse(msg2.isLazyDecoded());
+         assertEquals(30, msg2.getFieldAsInt32(3));
+         assertEquals("field 99", msg2.getFieldAsString(1099));
+
+         final NXCPMessage msg3 = new NXCPMessage(msg2.createNXCPMessage(false), null);
+         assertEquals("field 0", msg3.getFieldAsString(1000));
+         assertEquals(30, msg3.getFieldAsInt32(3));
+      }
+   }
+
+   @Test
+   public void testCopyAndRemoveField() throws Exception
+   {
+      final NXCPMessage msg1 = new NXCPMessage(1, 2);
+      msg1.setField(1, "public");
+      msg1.setField(2, "secret");
+      msg1.setFieldInt32(3, 20);
+
+      final NXCPMessage msg2 = new NXCPMessage(ByteBuffer.wrap(msg1.createNXCPMessage(false)), null, true);
+      final NXCPMessage copy = new NXCPMessage(msg2);
+      assertTrue(copy.removeField(2));
+      assertFalse(copy.removeField(4));
+
+      assertEquals(1, copy.getMessageCode());
+      assertEquals(2L, copy.getMessageId());
+      assertEquals("public", copy.getFieldAsString(1));
+      assertFalse(copy.isFieldPresent(2));
+      assertEquals(20, copy.getFieldAsInt32(3));
+      assertEquals("secret", msg2.getFieldAsString(2));
+
+      final NXCPMessage msg3 = new NXCPMessage(copy.createNXCPMessage(false), null);
+      assertEquals("public", msg3.getFieldAsString(1));
+      assertNull(msg3.findField(2));
+   }
+
 	/**
 	 * Do encryption test for given cipher ID
 	 * 
@@ -0,0 +1,191 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for NXCP message writer
+ */
+public class NXCPMessageWriterTest
+{
+   private static NXCPMessage createTestMessage() throws Exception
+   {
+      final NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_PUSH_DCI_DATA, 42);
+      for(int i = 0; i < 50; i++)
+      {
+         msg.setField(1000 + i, "value " + i);
+         msg.setFieldInt64(2000 + i, i * 1000000L);
+      }
+      msg.setFieldInt16(1, 5);
+      msg.setField(2, 1.25);
+      msg.setField(3, InetAddress.getByName("10.0.0.1"));
+      msg.setField(4, "UCS-2 string", true);
+      return msg;
+   }
+
+   private static byte[] toArray(ByteBuffer buffer)
+   {
+      return Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.limit());
+   }
+
+   @Test
+   public void testUncompressedSerialization() throws Exception
+   {
+      final NXCPMessage msg = createTestMessage();
+      final NXCPMessageWriter writer = new NXCPMessageWriter(256, 65536);
+      final byte[] bytes = toArray(writer.serialize(msg, false));
+      assertEquals(msg.getEncodedSize(), bytes.length);
+      assertArrayEquals(msg.createNXCPMessage(false), bytes);
+   }
+
+   @Test
+   public void testCompressedSerialization() throws Exception
+   {
+      final NXCPMessage msg = createTestMessage();
+      final NXCPMessageWriter writer = new NXCPMessageWriter(256, 65536);
+      final byte[] bytes = toArray(writer.serialize(msg, true));
+      assertTrue(bytes.length < msg.getEncodedSize());
+      assertEquals(0, bytes.length % 8);
+
+      final NXCPMessage decoded = new NXCPMessage(bytes, null);
+      assertEquals(NXCPCodes.CMD_PUSH_DCI_DATA, decoded.getMessageCode());
+      assertEquals(42, decoded.getMessageId());
+      assertEquals("value 10", decoded.getFieldAsString(1010));
+      assertEquals(49000000L, decoded.getFieldAsInt64(2049));
+      assertEquals(5, decoded.getFieldAsInt32(1));
+      assertEquals(1.25, decoded.getFieldAsDouble(2));
+      assertEquals(InetAddress.getByName("10.0.0.1"), decoded.getFieldAsInetAddress(3));
+      assertEquals("UCS-2 string", decoded.getFieldAsString(4));
+   }
+
+   @Test
+   public void testBinaryMessage() throws Exception
+   {
+      final byte[] data = new byte[100003];
+      new Random(7).nextBytes(data);
+      final NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_FILE_DATA, 7);
+      msg.setBinaryMessage(true);
+      msg.setStream(true, false);
+      msg.setBinaryData(data);
+
+      final NXCPMessageWriter writer = new NXCPMessageWriter(1024, 65536);
+
+      final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      writer.writeMessage(msg, true, stream);
+      assertArrayEquals(msg.createNXCPMessage(true), stream.toByteArray());
+
+      final ByteArrayOutputStream channelStream = new ByteArrayOutputStream();
+      writer.writeMessage(msg, false, Channels.newChannel(channelStream));
+      final NXCPMessage decoded = new NXCPMessage(channelStream.toByteArray(), null);
+      assertTrue(decoded.isBinaryMessage());
+      assertArrayEquals(data, decoded.getBinaryData());
+   }
+
+   @Test
+   public void testBinaryDataWithLength() throws Exception
+   {
+      final byte[] buffer = new byte[200000];
+      new Random(11).nextBytes(buffer);
+      final NXCPMessageWriter writer = new NXCPMessageWriter(1024, 65536);
+      for(int length : new int[] { 0, 13, 1000, 150001 })
+      {
+         final NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_FILE_DATA, 9);
+         msg.setBinaryMessage(true);
+         msg.setStream(true, false);
+         msg.setBinaryData(buffer, length);
+         assertEquals((length + NXCPMessage.HEADER_SIZE + 7) & ~7, msg.getEncodedSize());
+
+         final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+         writer.writeMessage(msg, false, stream);
+         final NXCPMessage decoded = new NXCPMessage(stream.toByteArray(), null);
+         assertEquals(length, decoded.getBinaryDataLength());
+         assertArrayEquals(Arrays.copyOf(buffer, length), decoded.getBinaryData());
+
+         final ByteArrayOutputStream channelStream = new ByteArrayOutputStream();
+         writer.writeMessage(msg, false, Channels.newChannel(channelStream));
+         assertArrayEquals(stream.toByteArray(), channelStream.toByteArray());
+      }
+   }
+
+   @Test
+   public void testCompressedStreamFlag() throws Exception
+   {
+      final NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_FILE_DATA, 10);
+      msg.setBinaryMessage(true);
+      msg.setStream(true, true);
+      msg.setBinaryData(new byte[300]);
+
+      final NXCPMessageWriter writer = new NXCPMessageWriter(64, 65536);
+      final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      writer.writeMessage(msg, true, stream);
+      final NXCPMessage decoded = new NXCPMessage(stream.toByteArray(), null);
+      assertTrue(decoded.isCompressedStream());
+      assertEquals(300, decoded.getBinaryDataLength());
+   }
+
+   @Test
+   public void testBufferReuse() throws Exception
+   {
+      final NXCPMessageWriter writer = new NXCPMessageWriter(64, 65536);
+      for(int i = 0; i < 10; i++)
+      {
+         final NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_REQUEST_COMPLETED, i);
+         msg.setFieldInt32(NXCPCodes.VID_RCC, i);
+         if (i % 2 == 0)
+            msg.setField(NXCPCodes.VID_DESCRIPTION, "description text for message " + i);
+         final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+         writer.writeMessage(msg, true, stream);
+         final NXCPMessage decoded = new NXCPMessage(stream.toByteArray(), null);
+         assertEquals(i, decoded.getMessageId());
+         assertEquals(i, decoded.getFieldAsInt32(NXCPCodes.VID_RCC));
+      }
+   }
+
+   @Test
+   public void testCompressionLevels() throws Exception
+   {
+      final NXCPMessage msg = createTestMessage();
+      final NXCPMessageWriter writer = new NXCPMessageWriter(256, 65536);
+      for(int level = DeflateCodec.LEVEL_FASTEST; level <= DeflateCodec.LEVEL_BEST; level++)
+      {
+         writer.setCompressionLevel(level);
+         assertEquals(level, writer.getCompressionCodec().getLevel());
+         // Serialize twice to check that codec state is correctly reset between messages
+         for(int i = 0; i < 2; i++)
+         {
+            final byte[] bytes = toArray(writer.serialize(msg, true));
+            assertTrue(bytes.length < msg.getEncodedSize());
+            final NXCPMessage decoded = new NXCPMessage(bytes, null);
+            assertEquals("value 25", decoded.getFieldAsString(1025));
+            assertEquals("UCS-2 string", decoded.getFieldAsString(4));
+            assertEquals(1.25, decoded.getFieldAsDouble(2));
+         }
+      }
+   }
+}
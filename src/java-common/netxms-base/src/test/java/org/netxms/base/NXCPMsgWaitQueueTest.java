@@ -21,6 +21,9 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -68,4 +71,86 @@ public void testHousekeeper()
 
 		mwq.shutdown();
 	}
+
+   @Test
+   public void testConcurrentWaiters() throws Exception
+   {
+      final NXCPMsgWaitQueue mwq = new NXCPMsgWaitQueue(5000, 10000);
+      final int count = 64;
+      final CountDownLatch completed = new CountDownLatch(count);
+      final AtomicInteger matched = new AtomicInteger(0);
+      for(int i = 0; i < count; i++)
+      {
+         final long id = i;
+         Thread t = new Thread(() -> {
+            NXCPMessage msg = mwq.waitForMessage(10, id);
+            if ((msg != null) && (msg.getMessageId() == id))
+               matched.incrementAndGet();
+            completed.countDown();
+         });
+         t.start();
+      }
+
+      for(int i = count - 1; i >= 0; i--)
+         mwq.putMessage(new NXCPMessage(10, i));
+
+      completed.await();
+      assertEquals(count, matched.get());
+      assertEquals(0, mwq.size());
+
+      mwq.shutdown();
+   }
+
+   @Test
+   public void testDuplicateMessages()
+   {
+      final NXCPMsgWaitQueue mwq = new NXCPMsgWaitQueue(500, 10000);
+
+      mwq.putMessage(new NXCPMessage(10, 1L));
+      mwq.putMessage(new NXCPMessage(10, 1L));
+      mwq.putMessage(new NXCPMessage(11, 1L));
+
+      assertNotNull(mwq.waitForMessage(10, 1L));
+      assertNotNull(mwq.waitForMessage(10, 1L));
+      assertNull(mwq.waitForMessage(10, 1L));
+      assertEquals(1, mwq.size());
+
+      mwq.shutdown();
+   }
+
+   @Test
+   public void testDiscardMessages() throws Exception
+   {
+      final NXCPMsgWaitQueue mwq = new NXCPMsgWaitQueue(500, 2000);
+
+      mwq.putMessage(new NXCPMessage(10, 1L));
+      mwq.putMessage(new NXCPMessage(10, 2L));
+      mwq.discardMessages(10, 1L);
+      assertEquals(1, mwq.size());
+
+      // Late response for discarded request is dropped on arrival
+      mwq.putMessage(new NXCPMessage(10, 1L));
+      assertEquals(1, mwq.size());
+      assertNull(mwq.waitForMessage(10, 1L, 100));
+      assertNotNull(mwq.waitForMessage(10, 2L));
+
+      // Discard marker expires together with message lifetime
+      Thread.sleep(3000);
+      mwq.putMessage(new NXCPMessage(10, 1L));
+      assertNotNull(mwq.waitForMessage(10, 1L));
+
+      mwq.shutdown();
+   }
+
+   @Test
+   public void testShutdownReleasesWaiters() throws Exception
+   {
+      final NXCPMsgWaitQueue mwq = new NXCPMsgWaitQueue(60000, 10000);
+      Thread t = new Thread(() -> mwq.waitForMessage(10, 1L));
+      t.start();
+      Thread.sleep(200);
+      mwq.shutdown();
+      t.join(5000);
+      assertFalse(t.isAlive());
+   }
 }
@@ -0,0 +1,166 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.netxms.base.DeflateCodec;
+import org.netxms.base.NXCPCodes;
+import org.netxms.base.NXCPMessage;
+import org.netxms.base.NXCPMessageWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare deflate compression levels for representative NXCP payloads: object list (many string and integer fields), DCI data
+ * block (binary message with timestamps and values) and file chunk (text log data). Compression ratio for each combination is
+ * printed during setup. Run with
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.netxms.base.benchmark.NXCPCompressionBenchmark</code>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NXCPCompressionBenchmark
+{
+   @Param({ "objects", "dcidata", "file" })
+   public String payload;
+
+   @Param({ "1", "3", "6", "9" })
+   public int level;
+
+   private NXCPMessage message;
+   private NXCPMessageWriter writer;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception
+   {
+      final Random random = new Random(1);
+      if (payload.equals("objects"))
+         message = createObjectList(random);
+      else if (payload.equals("dcidata"))
+         message = createDciData(random);
+      else
+         message = createFileChunk(random);
+
+      writer = new NXCPMessageWriter();
+      writer.setCompressionCodec(new DeflateCodec(level));
+      final int original = message.getEncodedSize();
+      final int compressed = writer.serialize(message, true).limit();
+      System.out.printf("%n%s level %d: %d -> %d bytes (%.1f%%)%n", payload, level, original, compressed, compressed * 100.0 / original);
+   }
+
+   /**
+    * Create message similar to object list update: sequence of objects with names, comments, addresses and custom attributes.
+    */
+   private static NXCPMessage createObjectList(Random random)
+   {
+      final NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_OBJECT, 1);
+      long fieldId = 0x10000000L;
+      for(int i = 0; i < 500; i++)
+      {
+         msg.setFieldInt32(fieldId++, 1000 + i);
+         msg.setFieldInt16(fieldId++, 2 + (i % 5));
+         msg.setField(fieldId++, "node-" + i + ".branch" + (i % 20) + ".example.com");
+         msg.setField(fieldId++, "Automatically discovered node in segment " + (i % 20));
+         msg.setFieldInt32(fieldId++, 0x0A000000 | random.nextInt(0xFFFF));
+         msg.setFieldInt64(fieldId++, 1700000000000L + random.nextInt(86400000));
+         msg.setField(fieldId++, "Location");
+         msg.setField(fieldId++, "Building " + (i % 7) + ", rack " + (i % 42));
+         fieldId += 2;
+      }
+      return msg;
+   }
+
+   /**
+    * Create binary message with DCI data block: sequence of (timestamp, value) pairs with regular polling interval.
+    */
+   private static NXCPMessage createDciData(Random random)
+   {
+      final byte[] data = new byte[16 * 8192];
+      long timestamp = 1700000000L;
+      double value = 50;
+      for(int i = 0, pos = 0; i < 8192; i++)
+      {
+         timestamp += 60;
+         value += random.nextGaussian();
+         final long t = timestamp;
+         final long v = Double.doubleToLongBits(Math.round(value * 100) / 100.0);
+         for(int j = 7; j >= 0; j--)
+            data[pos++] = (byte)(t >> (j * 8));
+         for(int j = 7; j >= 0; j--)
+            data[pos++] = (byte)(v >> (j * 8));
+      }
+      final NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_DCI_DATA, 1);
+      msg.setBinaryMessage(true);
+      msg.setBinaryData(data);
+      return msg;
+   }
+
+   /**
+    * Create binary message with file chunk containing log file lines.
+    */
+   private static NXCPMessage createFileChunk(Random random)
+   {
+      final StringBuilder sb = new StringBuilder();
+      final String[] severities = { "INFO", "DEBUG", "WARNING", "ERROR" };
+      while(sb.length() < 65536)
+      {
+         sb.append("2024-01-15 12:").append(10 + random.nextInt(50)).append(':').append(10 + random.nextInt(50));
+         sb.append(" [").append(severities[random.nextInt(severities.length)]).append("] worker-").append(random.nextInt(16));
+         sb.append(": processed request ").append(random.nextInt(1000000)).append(" in ").append(random.nextInt(500)).append(" ms\n");
+      }
+      final NXCPMessage msg = new NXCPMessage(NXCPCodes.CMD_FILE_DATA, 1);
+      msg.setBinaryMessage(true);
+      msg.setBinaryData(sb.substring(0, 65536).getBytes());
+      return msg;
+   }
+
+   @Benchmark
+   public int compress()
+   {
+      return writer.serialize(message, true).limit();
+   }
+
+   /**
+    * Run benchmark from command line.
+    *
+    * @param args command line arguments (ignored)
+    * @throws RunnerException on benchmark failure
+    */
+   public static void main(String[] args) throws RunnerException
+   {
+      new Runner(new OptionsBuilder().include(NXCPCompressionBenchmark.class.getSimpleName()).build()).run();
+   }
+}
@@ -0,0 +1,173 @@
+/**
+ * NetXMS - open source network management system
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.netxms.base.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.netxms.base.NXCPMessage;
+import org.netxms.base.NXCPMsgWaitQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare list based and indexed message wait queues. Each operation starts given number of concurrent waiters, each waiting for
+ * its own message, and then delivers all messages in reverse order. Run with
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.netxms.base.benchmark.NXCPMsgWaitQueueBenchmark</code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NXCPMsgWaitQueueBenchmark
+{
+   private static final int MESSAGE_CODE = 0x1D; // CMD_REQUEST_COMPLETED
+
+   /**
+    * Common interface for queue implementations
+    */
+   private static interface Queue
+   {
+      void putMessage(NXCPMessage msg);
+      NXCPMessage waitForMessage(int code, long id);
+      void shutdown();
+   }
+
+   @Param({ "legacy", "indexed" })
+   public String implementation;
+
+   @Param({ "1", "16", "256" })
+   public int waiters;
+
+   private Queue queue;
+   private ExecutorService executor;
+   private AtomicInteger idBase = new AtomicInteger(0);
+
+   @Setup(Level.Trial)
+   public void setup()
+   {
+      if (implementation.equals("legacy"))
+      {
+         final LegacyNXCPMsgWaitQueue q = new LegacyNXCPMsgWaitQueue(30000);
+         queue = new Queue() {
+            @Override
+            public void putMessage(NXCPMessage msg)
+            {
+               q.putMessage(msg);
+            }
+
+            @Override
+            public NXCPMessage waitForMessage(int code, long id)
+            {
+               return q.waitForMessage(code, id);
+            }
+
+            @Override
+            public void shutdown()
+            {
+               q.shutdown();
+            }
+         };
+      }
+      else
+      {
+         final NXCPMsgWaitQueue q = new NXCPMsgWaitQueue(30000);
+         queue = new Queue() {
+            @Override
+            public void putMessage(NXCPMessage msg)
+            {
+               q.putMessage(msg);
+            }
+
+            @Override
+            public NXCPMessage waitForMessage(int code, long id)
+            {
+               return q.waitForMessage(code, id);
+            }
+
+            @Override
+            public void shutdown()
+            {
+               q.shutdown();
+            }
+         };
+      }
+      executor = Executors.newFixedThreadPool(waiters);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown()
+   {
+      executor.shutdownNow();
+      queue.shutdown();
+   }
+
+   @Benchmark
+   public int deliver() throws InterruptedException
+   {
+      final int base = idBase.getAndAdd(waiters);
+      final CountDownLatch started = new CountDownLatch(waiters);
+      final CountDownLatch completed = new CountDownLatch(waiters);
+      final AtomicInteger received = new AtomicInteger(0);
+      for(int i = 0; i < waiters; i++)
+      {
+         final long id = base + i;
+         executor.execute(() -> {
+            started.countDown();
+            if (queue.waitForMessage(MESSAGE_CODE, id) != null)
+               received.incrementAndGet();
+            completed.countDown();
+         });
+      }
+      started.await();
+      for(int i = waiters - 1; i >= 0; i--)
+         queue.putMessage(new NXCPMessage(MESSAGE_CODE, base + i));
+      completed.await();
+      return received.get();
+   }
+
+   /**
+    * Run benchmark from command line.
+    *
+    * @param args command line arguments (ignored)
+    * @throws RunnerException on benchmark failure
+    */
+   public static void main(String[] args) throws RunnerException
+   {
+      new Runner(new OptionsBuilder().include(NXCPMsgWaitQueueBenchmark.class.getSimpleName()).build()).run();
+   }
+}
@@ -42,6 +42,7 @@
 import org.netxms.client.dashboards.DashboardElement;
 import org.netxms.client.datacollection.ChartConfiguration;
 import org.netxms.client.datacollection.ChartDciConfig;
+import org.netxms.client.datacollection.CollectedDataRequest;
 import org.netxms.client.datacollection.DataCollectionObject;
 import org.netxms.client.datacollection.DciData;
 import org.netxms.client.datacollection.DciValue;
@@ -320,29 +321,34 @@ private void refreshData()
 		updateInProgress = true;
 		
 		ConsoleJob job = new ConsoleJob(Messages.get().LineChartElement_JobTitle, viewPart, Activator.PLUGIN_ID) {
-			private ChartDciConfig currentDci;
-
 			@Override
 			protected void runInternal(IProgressMonitor monitor) throws Exception
 			{
 				final Date from = new Date(System.currentTimeMillis() - config.getTimeRangeMillis());
 				final Date to = new Date(System.currentTimeMillis());
+            final List<CollectedDataRequest> requests = new ArrayList<CollectedDataRequest>(runtimeDciList.size());
+            for(ChartDciConfig dci : runtimeDciList)
+            {
+               if (dci.type == ChartDciConfig.ITEM)
+                  requests.add(new CollectedDataRequest(dci.nodeId, dci.dciId, from, to, 0, HistoricalDataType.PROCESSED, 0));
+               else
+                  requests.add(new CollectedDataRequest(dci.nodeId, dci.dciId, dci.instance, dci.column, from, to, 0, 0));
+            }
+            final Map<CollectedDataRequest, DciData> results = session.getCollectedData(requests, null);
+
             final DciData[] data = new DciData[runtimeDciList.size()];
-            final Threshold[][] thresholds = new Threshold[runtimeDciList.size()][];
+            final long[] nodeIds = new long[runtimeDciList.size()];
+            final long[] dciIds = new long[runtimeDciList.size()];
             for(int i = 0; i < runtimeDciList.size(); i++)
             {
-               currentDci = runtimeDciList.get(i);
-               if (currentDci.type == ChartDciConfig.ITEM)
-               {
-                  data[i] = session.getCollectedData(currentDci.nodeId, currentDci.dciId, from, to, 0, HistoricalDataType.PROCESSED);
-                  thresholds[i] = session.getThresholds(currentDci.nodeId, currentDci.dciId);
-               }
-               else
-               {
-                  data[i] = session.getCollectedTableData(currentDci.nodeId, currentDci.dciId, currentDci.instance, currentDci.column, from, to, 0);
-                  thresholds[i] = null;
-               }
+               ChartDciConfig dci = runtimeDciList.get(i);
+               data[i] = results.get(requests.get(i));
+               nodeIds[i] = dci.nodeId;
+               dciIds[i] = (dci.type == ChartDciConfig.ITEM) ? dci.dciId : 0;
             }
+
+            // Request thresholds for all DCIs in one batch
+            final Threshold[][] thresholds = session.getThresholds(nodeIds, dciIds, 0);
             runInUIThread(new Runnable() {
                @Override
                public void run()
@@ -368,7 +374,7 @@ public void run()
 			@Override
 			protected String getErrorMessage()
 			{
-				return String.format(Messages.get().LineChartElement_JobError, session.getObjectName(currentDci.nodeId), currentDci.name);
+				return getName();
 			}
 
 			@Override
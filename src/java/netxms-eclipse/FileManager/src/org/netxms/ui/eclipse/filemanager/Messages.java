@@ -53,6 +53,7 @@ public class Messages extends NLS
    public static String CreateFolderDialog_Label;
    public static String CreateFolderDialog_Title;
    public static String DynamicFileViewer_CannotRestartFileTracking;
+   public static String DynamicFileViewer_CharactersSkipped;
    public static String DynamicFileViewer_FileTrackingFailed;
    public static String DynamicFileViewer_RestartFileTracking;
    public static String DynamicFileViewer_TrackFileChanges;
@@ -1,6 +1,6 @@
 /**
  * NetXMS - open source network management system
- * Copyright (C) 2003-2022 Victor Kirhenshtein
+ * Copyright (C) 2003-2024 Victor Kirhenshtein
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -25,6 +25,7 @@
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.ui.IViewPart;
 import org.netxms.client.AgentFileData;
+import org.netxms.client.FileMonitorDataConsumer;
 import org.netxms.client.NXCSession;
 import org.netxms.client.ProgressListener;
 import org.netxms.client.SessionListener;
@@ -262,11 +263,29 @@ protected void canceling()
       @Override
       protected void runInternal(IProgressMonitor monitor) throws Exception
       {
+         final StringBuilder sb = new StringBuilder();
+         final FileMonitorDataConsumer consumer = new FileMonitorDataConsumer() {
+            @Override
+            public void dataDiscarded(long characters)
+            {
+               sb.append("\n----------------------------------------------------------------------\n"); //$NON-NLS-1$
+               sb.append(String.format(Messages.get().DynamicFileViewer_CharactersSkipped, characters));
+               sb.append("\n----------------------------------------------------------------------\n"); //$NON-NLS-1$
+            }
+
+            @Override
+            public void dataReceived(String data)
+            {
+               sb.append(data);
+            }
+         };
+
          while(tracking)
          {
-            final String s = session.waitForFileUpdate(monitorId, 3000);
-            if (s != null)
+            sb.setLength(0);
+            if (session.waitForFileUpdate(monitorId, 3000, consumer))
             {
+               final String s = sb.toString();
                runInUIThread(new Runnable() {
                   @Override
                   public void run()